@@ -17,10 +17,13 @@ package com.google.api.ads.adwords.lib;
 import com.google.api.ads.adwords.lib.client.AdWordsServiceClient;
 import com.google.api.ads.adwords.lib.conf.AdWordsConfigurationModule;
 import com.google.api.ads.adwords.lib.utils.AdHocReportDownloadHelper;
+import com.google.api.ads.adwords.lib.utils.ReportHttpTransportProvider;
 import com.google.api.ads.adwords.lib.utils.logging.AdWordsLoggingModule;
 import com.google.api.ads.common.lib.AdsModule;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.inject.Singleton;
+import com.google.inject.name.Names;
 
 /**
  * Guice module for AdWords bindings.
@@ -35,6 +38,9 @@ public class AdWordsModule extends AdsModule {
     configureLogging(AdWordsServiceClient.class.getName());
     install(new AdWordsConfigurationModule());
     bind(HttpTransport.class).to(NetHttpTransport.class);
+    // Only report downloads use the pool configured for them.
+    bind(HttpTransport.class).annotatedWith(Names.named("reportHttpTransport"))
+        .toProvider(ReportHttpTransportProvider.class).in(Singleton.class);
   }
 
   @Override
@@ -14,14 +14,23 @@
 
 package com.google.api.ads.adwords.lib.client;
 
+import com.google.api.ads.common.lib.client.AdsRateLimiter;
+import com.google.api.ads.common.lib.client.AdsRateLimiter.RateExceeded;
 import com.google.api.ads.common.lib.client.AdsServiceClient;
 import com.google.api.ads.common.lib.client.HeaderHandler;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
 import com.google.api.ads.common.lib.soap.SoapServiceClient;
 import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
+import com.google.api.ads.common.lib.utils.metrics.MetricsSink;
+import com.google.api.ads.common.lib.utils.metrics.NoOpMetricsSink;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 
+import java.util.List;
+
 /**
  * Wrapper of underlying SOAP client which allows access for setting
  * headers retrieved from the session.
@@ -29,6 +38,31 @@ import com.google.inject.assistedinject.Assisted;
 public class AdWordsServiceClient extends AdsServiceClient<AdWordsSession,
                                                            AdWordsServiceDescriptor> {
 
+  private static final String RATE_EXCEEDED_ERROR = "RateExceededError";
+  private static final String ACCOUNT_RATE_SCOPE = "ACCOUNT";
+  private static final String DEVELOPER_RATE_SCOPE = "DEVELOPER";
+
+  /**
+   * Constructor for a client that does not record metrics.
+   *
+   * @param soapClient the SOAP client
+   * @param adWordsServiceDescriptor the AdWords service descriptor
+   * @param adWordsSession the AdWords session
+   * @param soapClientHandler the SOAP client handler
+   * @param adWordsHeaderHandler the AdWords header handler
+   * @param adsServiceLoggers the ads service loggers
+   */
+  public AdWordsServiceClient(Object soapClient,
+      AdWordsServiceDescriptor adWordsServiceDescriptor, AdWordsSession adWordsSession,
+      @SuppressWarnings({"rawtypes", "unchecked"})  /* Due to problem with guice binding */
+      SoapClientHandlerInterface soapClientHandler,
+      @SuppressWarnings({"rawtypes"})  /* Guice binding does not support template types */
+      HeaderHandler adWordsHeaderHandler,
+      AdsServiceLoggers adsServiceLoggers) {
+    this(soapClient, adWordsServiceDescriptor, adWordsSession, soapClientHandler,
+        adWordsHeaderHandler, adsServiceLoggers, NoOpMetricsSink.getInstance());
+  }
+
   /**
    * Constructor.
    *
@@ -38,6 +72,7 @@ public class AdWordsServiceClient extends AdsServiceClient<AdWordsSession,
    * @param soapClientHandler the SOAP client handler
    * @param adWordsHeaderHandler the AdWords header handler
    * @param adsServiceLoggers the ads service loggers
+   * @param metricsSink the metrics sink
    */
   @SuppressWarnings("unchecked") // All generics of SoapClientHandlerInterface
                                  // extend Object.
@@ -49,9 +84,20 @@ public class AdWordsServiceClient extends AdsServiceClient<AdWordsSession,
       SoapClientHandlerInterface soapClientHandler,
       @SuppressWarnings({"rawtypes"})  /* Guice binding does not support template types */
       HeaderHandler adWordsHeaderHandler,
-      AdsServiceLoggers adsServiceLoggers) {
+      AdsServiceLoggers adsServiceLoggers,
+      MetricsSink metricsSink) {
     super(soapClient, adWordsSession, adWordsServiceDescriptor, soapClientHandler,
-        adWordsHeaderHandler, adsServiceLoggers);
+        adWordsHeaderHandler, adsServiceLoggers, metricsSink);
+  }
+
+  /**
+   * Records metrics under the client customer ID of the session.
+   *
+   * @see AdsServiceClient#getCustomerId()
+   */
+  @Override
+  protected String getCustomerId() {
+    return getAdsSession().getClientCustomerId();
   }
 
   /**
@@ -61,4 +107,61 @@ public class AdWordsServiceClient extends AdsServiceClient<AdWordsSession,
   protected Throwable handleException(Throwable e) {
     return super.handleException(e);
   }
+
+  /**
+   * Limits calls per developer token, per client customer ID and per service.
+   *
+   * @see AdsServiceClient#getRateLimitKeys()
+   */
+  @Override
+  protected List<String> getRateLimitKeys() {
+    List<String> keys = Lists.newArrayList(getDeveloperTokenRateLimitKey());
+    String clientCustomerIdKey = getClientCustomerIdRateLimitKey();
+    if (clientCustomerIdKey != null) {
+      keys.add(clientCustomerIdKey);
+    }
+    keys.addAll(super.getRateLimitKeys());
+    return keys;
+  }
+
+  /**
+   * Recognizes an {@code ApiException} containing a {@code RateExceededError}.
+   * An error with the {@code ACCOUNT} scope applies to the client customer ID,
+   * one with the {@code DEVELOPER} scope to the developer token, and any other
+   * to all rate limit keys of this client.
+   *
+   * @see AdsServiceClient#getRateExceeded(Throwable)
+   */
+  @Override
+  protected Optional<RateExceeded> getRateExceeded(Throwable exception) {
+    for (Object error : getApiErrors(exception)) {
+      if (error != null && RATE_EXCEEDED_ERROR.equals(error.getClass().getSimpleName())) {
+        Object retryAfterSeconds = invokeGetter(error, "getRetryAfterSeconds");
+        Object rateScope = invokeGetter(error, "getRateScope");
+        List<String> keys;
+        String clientCustomerIdKey = getClientCustomerIdRateLimitKey();
+        if (ACCOUNT_RATE_SCOPE.equals(rateScope) && clientCustomerIdKey != null) {
+          keys = ImmutableList.of(clientCustomerIdKey);
+        } else if (DEVELOPER_RATE_SCOPE.equals(rateScope)) {
+          keys = ImmutableList.of(getDeveloperTokenRateLimitKey());
+        } else {
+          keys = getRateLimitKeys();
+        }
+        return Optional.of(new RateExceeded(keys, retryAfterSeconds instanceof Number
+            ? ((Number) retryAfterSeconds).longValue() : 0L));
+      }
+    }
+    return Optional.absent();
+  }
+
+  private String getDeveloperTokenRateLimitKey() {
+    return AdsRateLimiter.createKey(AdsRateLimiter.DEVELOPER_TOKEN_SCOPE,
+        getAdsSession().getDeveloperToken());
+  }
+
+  private String getClientCustomerIdRateLimitKey() {
+    String clientCustomerId = getAdsSession().getClientCustomerId();
+    return clientCustomerId == null ? null : AdsRateLimiter.createKey(
+        AdsRateLimiter.CLIENT_CUSTOMER_ID_SCOPE, clientCustomerId.replace("-", ""));
+  }
 }
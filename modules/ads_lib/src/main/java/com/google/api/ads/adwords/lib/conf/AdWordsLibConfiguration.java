@@ -20,6 +20,10 @@ import com.google.inject.name.Named;
 
 import org.apache.commons.configuration.Configuration;
 
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
 /**
  * Configuration information for AdWords library.
  */
@@ -28,6 +32,17 @@ public class AdWordsLibConfiguration extends AdsLibConfiguration {
   private static final String KEY_PREFIX = "api.adwords";
   private static final String REPORT_DOWNLOAD_TIMEOUT_KEY = "reportDownloadTimeout";
   private static final int DEFAULT_REPORT_DOWNLOAD_TIMEOUT = 3 * 60 * 1000;
+  private static final String REPORT_HTTP_MAX_CONNECTIONS_PER_HOST_KEY =
+      "reportHttpMaxConnectionsPerHost";
+  private static final String REPORT_HTTP_MAX_TOTAL_CONNECTIONS_KEY =
+      "reportHttpMaxTotalConnections";
+  private static final String REPORT_HTTP_IDLE_TIMEOUT_MILLIS_KEY = "reportHttpIdleTimeoutMillis";
+  private static final long DEFAULT_REPORT_HTTP_IDLE_TIMEOUT_MILLIS = 60 * 1000;
+  private static final String REPORT_CACHE_DIRECTORY_KEY = "reportCacheDirectory";
+  private static final String REPORT_CACHE_MAX_BYTES_KEY = "reportCacheMaxBytes";
+  private static final long DEFAULT_REPORT_CACHE_MAX_BYTES = 1024L * 1024 * 1024;
+  private static final String REPORT_CACHE_SETTLE_DAYS_KEY = "reportCacheSettleDays";
+  private static final int DEFAULT_REPORT_CACHE_SETTLE_DAYS = 3;
 
   /**
    * Constructor.
@@ -52,9 +67,198 @@ public class AdWordsLibConfiguration extends AdsLibConfiguration {
     return config.getInt(
         KEY_PREFIX + "." + REPORT_DOWNLOAD_TIMEOUT_KEY, DEFAULT_REPORT_DOWNLOAD_TIMEOUT);
   }
+
+  /**
+   * Returns the maximum number of pooled report download connections per host
+   * as specified in ads.properties (default 0, which uses a
+   * {@code NetHttpTransport} without a configurable pool).
+   */
+  public int getReportHttpMaxConnectionsPerHost() {
+    return config.getInt(KEY_PREFIX + "." + REPORT_HTTP_MAX_CONNECTIONS_PER_HOST_KEY, 0);
+  }
+
+  /**
+   * Returns the maximum number of pooled report download connections as
+   * specified in ads.properties (default 0, which allows as many as to a single
+   * host).
+   */
+  public int getReportHttpMaxTotalConnections() {
+    return config.getInt(KEY_PREFIX + "." + REPORT_HTTP_MAX_TOTAL_CONNECTIONS_KEY, 0);
+  }
+
+  /**
+   * Returns the time after which idle pooled report download connections are
+   * closed as specified in ads.properties (default 1 minute).
+   */
+  public long getReportHttpIdleTimeoutMillis() {
+    return config.getLong(KEY_PREFIX + "." + REPORT_HTTP_IDLE_TIMEOUT_MILLIS_KEY,
+        DEFAULT_REPORT_HTTP_IDLE_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Returns the directory of the on-disk cache of reports with closed date
+   * ranges as specified in ads.properties, or {@code null} if reports are not
+   * cached (default).
+   */
+  @Nullable
+  public String getReportCacheDirectory() {
+    return config.getString(KEY_PREFIX + "." + REPORT_CACHE_DIRECTORY_KEY, null);
+  }
+
+  /**
+   * Returns the maximum total size in bytes of the cached reports as specified
+   * in ads.properties (default 1 GiB).
+   */
+  public long getReportCacheMaxBytes() {
+    return config.getLong(
+        KEY_PREFIX + "." + REPORT_CACHE_MAX_BYTES_KEY, DEFAULT_REPORT_CACHE_MAX_BYTES);
+  }
+
+  /**
+   * Returns the number of days after which a day's report statistics are
+   * considered final and may be cached, as specified in ads.properties
+   * (default 3).
+   */
+  public int getReportCacheSettleDays() {
+    return config.getInt(
+        KEY_PREFIX + "." + REPORT_CACHE_SETTLE_DAYS_KEY, DEFAULT_REPORT_CACHE_SETTLE_DAYS);
+  }
   
   @Override
   public boolean isCompressionEnabled() {
     return config.getBoolean(KEY_PREFIX + "." + USE_COMPRESSION_POSTFIX, false);
   }
+
+  @Override
+  public int getSoapClientPoolSize() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_CLIENT_POOL_SIZE_POSTFIX, 0);
+  }
+
+  @Override
+  public int getSoapClientCacheSize() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_CLIENT_CACHE_SIZE_POSTFIX, 0);
+  }
+
+  @Override
+  public int getRequestHeaderCacheSize() {
+    return config.getInt(KEY_PREFIX + "." + REQUEST_HEADER_CACHE_SIZE_POSTFIX,
+        DEFAULT_REQUEST_HEADER_CACHE_SIZE);
+  }
+
+  @Override
+  public int getMaxSoapXmlLength() {
+    return config.getInt(KEY_PREFIX + "." + MAX_SOAP_XML_LENGTH_POSTFIX, 0);
+  }
+
+  @Override
+  public double getRateLimitQps() {
+    return config.getDouble(KEY_PREFIX + "." + RATE_LIMIT_QPS_POSTFIX, 0);
+  }
+
+  @Override
+  public double getRateLimitQps(String scope) {
+    return config.getDouble(KEY_PREFIX + "." + scope + SCOPED_RATE_LIMIT_QPS_POSTFIX,
+        getRateLimitQps());
+  }
+
+  @Override
+  public int getRetryMaxAttempts() {
+    return config.getInt(KEY_PREFIX + "." + RETRY_MAX_ATTEMPTS_POSTFIX, 0);
+  }
+
+  @Override
+  public long getRetryInitialDelayMillis() {
+    return config.getLong(KEY_PREFIX + "." + RETRY_INITIAL_DELAY_MILLIS_POSTFIX,
+        DEFAULT_RETRY_INITIAL_DELAY_MILLIS);
+  }
+
+  @Override
+  public long getRetryMaxDelayMillis() {
+    return config.getLong(KEY_PREFIX + "." + RETRY_MAX_DELAY_MILLIS_POSTFIX,
+        DEFAULT_RETRY_MAX_DELAY_MILLIS);
+  }
+
+  @Override
+  public long getRetryDeadlineMillis() {
+    return config.getLong(KEY_PREFIX + "." + RETRY_DEADLINE_MILLIS_POSTFIX, 0L);
+  }
+
+  @Override
+  public int getSoapLoggingQueueSize() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_LOGGING_QUEUE_SIZE_POSTFIX, 0);
+  }
+
+  @Override
+  public boolean isSoapLoggingBlockWhenFull() {
+    return config.getBoolean(KEY_PREFIX + "." + SOAP_LOGGING_BLOCK_WHEN_FULL_POSTFIX, false);
+  }
+
+  @Override
+  public Set<String> getRedactedSoapXmlElements() {
+    return getStringSet(KEY_PREFIX + "." + REDACTED_SOAP_XML_ELEMENTS_POSTFIX,
+        DEFAULT_REDACTED_SOAP_XML_ELEMENTS);
+  }
+
+  @Override
+  public int getMaxPrettySoapXmlLength() {
+    return config.getInt(KEY_PREFIX + "." + MAX_PRETTY_SOAP_XML_LENGTH_POSTFIX, 0);
+  }
+
+  @Override
+  public int getSoapXmlLogSampleRate() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_XML_LOG_SAMPLE_RATE_POSTFIX, 1);
+  }
+
+  @Override
+  public long getSoapXmlLogSlowCallMillis() {
+    return config.getLong(KEY_PREFIX + "." + SOAP_XML_LOG_SLOW_CALL_MILLIS_POSTFIX, 0L);
+  }
+
+  @Override
+  public boolean isMetricsEnabled() {
+    return config.getBoolean(KEY_PREFIX + "." + METRICS_ENABLED_POSTFIX, false);
+  }
+
+  @Override
+  public int getSoapHttpMaxConnectionsPerHost() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_HTTP_MAX_CONNECTIONS_PER_HOST_POSTFIX, 0);
+  }
+
+  @Override
+  public int getSoapHttpMaxTotalConnections() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_HTTP_MAX_TOTAL_CONNECTIONS_POSTFIX, 0);
+  }
+
+  @Override
+  public long getSoapHttpIdleTimeoutMillis() {
+    return config.getLong(KEY_PREFIX + "." + SOAP_HTTP_IDLE_TIMEOUT_MILLIS_POSTFIX,
+        DEFAULT_SOAP_HTTP_IDLE_TIMEOUT_MILLIS);
+  }
+
+  @Override
+  public int getSoapHttpConnectTimeoutMillis() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_HTTP_CONNECT_TIMEOUT_MILLIS_POSTFIX, 0);
+  }
+
+  @Override
+  public int getSoapHttpReadTimeoutMillis() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_HTTP_READ_TIMEOUT_MILLIS_POSTFIX, 0);
+  }
+
+  @Override
+  public long getSoapHttpPoolTimeoutMillis() {
+    return config.getLong(KEY_PREFIX + "." + SOAP_HTTP_POOL_TIMEOUT_MILLIS_POSTFIX,
+        DEFAULT_SOAP_HTTP_POOL_TIMEOUT_MILLIS);
+  }
+
+  @Override
+  public boolean isSoapResponseStreamingEnabled() {
+    return config.getBoolean(KEY_PREFIX + "." + SOAP_RESPONSE_STREAMING_ENABLED_POSTFIX, false);
+  }
+
+  @Override
+  public int getCompressionThresholdBytes() {
+    return config.getInt(KEY_PREFIX + "." + COMPRESSION_THRESHOLD_BYTES_POSTFIX,
+        DEFAULT_COMPRESSION_THRESHOLD_BYTES);
+  }
 }
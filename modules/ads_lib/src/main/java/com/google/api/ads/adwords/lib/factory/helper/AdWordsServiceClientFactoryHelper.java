@@ -17,6 +17,9 @@ package com.google.api.ads.adwords.lib.factory.helper;
 import com.google.api.ads.adwords.lib.client.AdWordsServiceClient;
 import com.google.api.ads.adwords.lib.client.AdWordsServiceDescriptor;
 import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.utils.AdWordsInternals;
+import com.google.api.ads.common.lib.client.AdsRateLimiter;
+import com.google.api.ads.common.lib.client.RetryPolicy;
 import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
 import com.google.api.ads.common.lib.factory.FactoryModule.AdsServiceClientFactoryInterface;
 import com.google.api.ads.common.lib.factory.FactoryModule.AdsServiceDescriptorFactoryInterface;
@@ -39,6 +42,7 @@ public class AdWordsServiceClientFactoryHelper extends
   private static final Pattern VERSION_PATTERN = Pattern.compile("^.*(v[0-9][^\\.]*).*$");
 
   private final AdsLibConfiguration adsLibConfiguration;
+  private final RetryPolicy retryPolicy;
 
   /**
    * Constructor.
@@ -61,6 +65,7 @@ public class AdWordsServiceClientFactoryHelper extends
       AdsLibConfiguration adsLibConfiguration) {
     super(adsServiceClientFactory, adsServiceDescriptorFactory, soapClientHandler);
     this.adsLibConfiguration = adsLibConfiguration;
+    this.retryPolicy = createRetryPolicy(adsLibConfiguration);
   }
 
   /**
@@ -75,4 +80,56 @@ public class AdWordsServiceClientFactoryHelper extends
       return adsLibConfiguration.getDuckTypedVersion();
     }
   }
+
+  /**
+   * @see BaseAdsServiceClientFactoryHelper#getSoapClientPoolSize()
+   */
+  @Override
+  protected int getSoapClientPoolSize() {
+    return adsLibConfiguration.getSoapClientPoolSize();
+  }
+
+  /**
+   * @see BaseAdsServiceClientFactoryHelper#getSoapClientCacheSize()
+   */
+  @Override
+  protected int getSoapClientCacheSize() {
+    return adsLibConfiguration.getSoapClientCacheSize();
+  }
+
+  /**
+   * @see BaseAdsServiceClientFactoryHelper#getRateLimitQps()
+   */
+  @Override
+  protected double getRateLimitQps() {
+    return adsLibConfiguration.getRateLimitQps();
+  }
+
+  /**
+   * @see BaseAdsServiceClientFactoryHelper#getRateLimitQps(String)
+   */
+  @Override
+  protected double getRateLimitQps(String scope) {
+    return adsLibConfiguration.getRateLimitQps(scope);
+  }
+
+  /**
+   * Uses the rate limiter of {@link AdWordsInternals}, so report downloads
+   * share the rate limits of the service clients.
+   *
+   * @see BaseAdsServiceClientFactoryHelper#createRateLimiter()
+   */
+  @Override
+  protected AdsRateLimiter createRateLimiter() {
+    AdsRateLimiter rateLimiter = AdWordsInternals.getInstance().getRateLimiter();
+    return rateLimiter != null ? rateLimiter : super.createRateLimiter();
+  }
+
+  /**
+   * @see BaseAdsServiceClientFactoryHelper#getRetryPolicy()
+   */
+  @Override
+  protected RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
 }
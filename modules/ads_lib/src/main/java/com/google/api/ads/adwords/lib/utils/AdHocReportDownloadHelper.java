@@ -15,10 +15,9 @@
 package com.google.api.ads.adwords.lib.utils;
 
 import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
 import com.google.api.ads.common.lib.exception.AuthenticationException;
-import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpRequest;
-import com.google.api.client.http.HttpRequestFactory;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.util.Charsets;
 import com.google.common.annotations.VisibleForTesting;
@@ -27,6 +26,8 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.charset.Charset;
 
+import javax.annotation.Nullable;
+
 /**
  * Helper class that handles AdHoc report downloads. Requests will be logged (header and payload) to
  * INFO. Successful reports will be logged (headers and response code) to INFO. Failed reports will
@@ -38,6 +39,7 @@ public class AdHocReportDownloadHelper {
   private final ReportRequestFactoryHelper reportRequestFactoryHelper;
   private final ReportBodyProviderFactory reportBodyProviderFactory;
   private final String version;
+  @Nullable private volatile ReportCache reportCache;
 
   /**
    * The default Charset for report request and response contents.
@@ -54,10 +56,13 @@ public class AdHocReportDownloadHelper {
     this.version = version;
     this.reportRequestFactoryHelper = new ReportRequestFactoryHelper(session);
     this.reportBodyProviderFactory = new ReportBodyProviderFactory();
+    this.reportCache = AdWordsInternals.getInstance().getReportCache();
   }
 
   /**
-   * Downloads a report and returns a ReportDownloadResponse with the results.
+   * Downloads a report and returns a ReportDownloadResponse with the results. If a
+   * {@link ReportCache} is set and the report's date range is closed, the report is returned from
+   * the cache, or stored in the cache as it is read.
    *
    * @param reportRequest the report request.
    * @return encapsulated http response body and status code.
@@ -66,14 +71,29 @@ public class AdHocReportDownloadHelper {
    */
   public RawReportDownloadResponse downloadReport(ReportRequest reportRequest)
       throws ReportException {
+    ReportCache cache = reportCache;
+    String cacheKey = cache == null ? null : cache.getCacheKey(session, version, reportRequest);
+    if (cacheKey != null) {
+      RawReportDownloadResponse cachedResponse = cache.get(cacheKey, reportRequest);
+      if (cachedResponse != null) {
+        return cachedResponse;
+      }
+    }
+    RawReportDownloadResponse response = downloadReportFromServer(reportRequest);
+    return cacheKey == null ? response : cache.put(cacheKey, reportRequest, response);
+  }
+
+  /**
+   * Downloads a report from the report download server.
+   */
+  private RawReportDownloadResponse downloadReportFromServer(ReportRequest reportRequest)
+      throws ReportException {
     try {
       String downloadUrl = generateReportUrl(version);
-      HttpRequestFactory requestFactory =
-          reportRequestFactoryHelper.getHttpRequestFactory(downloadUrl, version);
       ReportBodyProvider reportBodyProvider =
           reportBodyProviderFactory.getReportBodyProvider(reportRequest);
-      HttpRequest httpRequest = requestFactory
-          .buildPostRequest(new GenericUrl(downloadUrl), reportBodyProvider.getHttpContent());
+      HttpRequest httpRequest = reportRequestFactoryHelper.buildPostRequest(
+          downloadUrl, version, reportBodyProvider.getHttpContent());
       HttpResponse response = httpRequest.execute();
       
       Charset charSet = REPORT_CHARSET;
@@ -106,6 +126,32 @@ public class AdHocReportDownloadHelper {
     return session.getEndpoint() + ReportRequestFactoryHelper.DOWNLOAD_SERVER_URI + '/' + version;
   }
 
+  /**
+   * Returns the reporting configuration of the session, which determines the rows included in
+   * downloaded reports.
+   */
+  @Nullable
+  public ReportingConfiguration getReportingConfiguration() {
+    return session.getReportingConfiguration();
+  }
+
+  /**
+   * Returns the cache of reports with closed date ranges, or {@code null} if reports are not
+   * cached.
+   */
+  @Nullable
+  public ReportCache getReportCache() {
+    return reportCache;
+  }
+
+  /**
+   * Sets the cache of reports with closed date ranges, or {@code null} to not cache reports. The
+   * default is the cache configured in ads.properties, if any.
+   */
+  public void setReportCache(@Nullable ReportCache reportCache) {
+    this.reportCache = reportCache;
+  }
+
   /**
    * Returns the reportDownloadTimeout in milliseconds
    */
@@ -18,12 +18,22 @@ import com.google.api.ads.adwords.lib.AdWordsModule;
 import com.google.api.ads.adwords.lib.conf.AdWordsLibConfiguration;
 import com.google.api.ads.adwords.lib.utils.logging.AdWordsServiceLoggers;
 import com.google.api.ads.common.lib.auth.AuthorizationHeaderProvider;
+import com.google.api.ads.common.lib.auth.OAuth2CredentialRegistry;
 import com.google.api.ads.common.lib.auth.OAuth2Helper;
+import com.google.api.ads.common.lib.client.AdsRateLimiter;
 import com.google.api.ads.common.lib.useragent.UserAgentCombiner;
 import com.google.api.ads.common.lib.utils.Internals;
 import com.google.api.client.http.HttpTransport;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import java.io.File;
+import java.util.Map;
+
+import javax.annotation.Nullable;
 
 /**
  * Provides access to some internal guice-injected objects.
@@ -34,14 +44,20 @@ public class AdWordsInternals extends Internals {
       new AdWordsModule()).getInstance(AdWordsInternals.class);
 
   private final AdWordsLibConfiguration adWordsLibConfiguration;
+  private final HttpTransport reportHttpTransport;
+  private ReportCache reportCache;
+  private AdsRateLimiter rateLimiter;
 
   @Inject
   public AdWordsInternals(AuthorizationHeaderProvider authorizationHeaderProvider,
       UserAgentCombiner userAgentCombiner, HttpTransport httpTransport,
+      @Named("reportHttpTransport") HttpTransport reportHttpTransport,
       AdWordsLibConfiguration adWordsLibConfiguration,
-      AdWordsServiceLoggers adWordsServiceLoggers, OAuth2Helper oAuth2Helper) {
+      AdWordsServiceLoggers adWordsServiceLoggers, OAuth2Helper oAuth2Helper,
+      OAuth2CredentialRegistry oAuth2CredentialRegistry) {
     super(authorizationHeaderProvider, userAgentCombiner, httpTransport, adWordsServiceLoggers,
-        oAuth2Helper);
+        oAuth2Helper, oAuth2CredentialRegistry);
+    this.reportHttpTransport = reportHttpTransport;
     this.adWordsLibConfiguration = adWordsLibConfiguration;
   }
 
@@ -59,6 +75,53 @@ public class AdWordsInternals extends Internals {
     return adWordsLibConfiguration;
   }
   
+  /**
+   * Returns the HttpTransport of report downloads, which is separate from
+   * {@link #getHttpTransport()} so that only report downloads use the
+   * connection pool configured for them.
+   */
+  public HttpTransport getReportHttpTransport() {
+    return reportHttpTransport;
+  }
+
+  /**
+   * Returns the on-disk cache of reports with closed date ranges, created on
+   * first use, or {@code null} if no report cache directory is configured.
+   */
+  @Nullable
+  public synchronized ReportCache getReportCache() {
+    String directory = adWordsLibConfiguration.getReportCacheDirectory();
+    if (reportCache == null && directory != null && !directory.isEmpty()) {
+      reportCache = new ReportCache(new File(directory),
+          adWordsLibConfiguration.getReportCacheMaxBytes(),
+          adWordsLibConfiguration.getReportCacheSettleDays());
+    }
+    return reportCache;
+  }
+
+  /**
+   * Returns the rate limiter shared by the AdWords service clients and report
+   * downloads, created on first use, or {@code null} if no rate limit is
+   * configured.
+   */
+  @Nullable
+  public synchronized AdsRateLimiter getRateLimiter() {
+    if (rateLimiter == null) {
+      Map<String, Double> maxQpsByScope = Maps.newHashMap();
+      boolean rateLimited = adWordsLibConfiguration.getRateLimitQps() > 0;
+      for (String scope : ImmutableList.of(AdsRateLimiter.DEVELOPER_TOKEN_SCOPE,
+          AdsRateLimiter.CLIENT_CUSTOMER_ID_SCOPE, AdsRateLimiter.SERVICE_SCOPE)) {
+        double maxQps = adWordsLibConfiguration.getRateLimitQps(scope);
+        maxQpsByScope.put(scope, maxQps);
+        rateLimited |= maxQps > 0;
+      }
+      if (rateLimited) {
+        rateLimiter = new AdsRateLimiter(maxQpsByScope, adWordsLibConfiguration.getRateLimitQps());
+      }
+    }
+    return rateLimiter;
+  }
+
   /**
    * Returns the utility that provides access to additional AdWords-specific loggers.
    */
@@ -0,0 +1,376 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.conf.AdWordsLibConfiguration;
+import com.google.api.ads.common.lib.client.AdsRateLimiter;
+import com.google.api.ads.common.lib.client.AdsRateLimiter.RateExceeded;
+import com.google.api.ads.common.lib.client.ExponentialBackoffRetryPolicy;
+import com.google.api.ads.common.lib.client.RetryPolicy;
+import com.google.api.ads.common.lib.exception.ValidationException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Downloads the same report for many accounts on a bounded pool of threads.
+ * Each account is downloaded with a copy of a template session that has the
+ * account's client customer ID, and its report is passed to a
+ * {@link ReportDownloadHandler} as it arrives.
+ * <p>
+ * Downloads that fail with a transport problem, a server error or a rate
+ * exceeded error are retried according to the {@link RetryPolicy}. Every
+ * attempt takes a permit from the {@link AdsRateLimiter} under the developer
+ * token and the client customer ID first, and rate exceeded errors slow the
+ * limiter down. By default this is the limiter of the AdWords service clients,
+ * so downloads and service calls share the same rate limits. Each attempt is
+ * bounded by the report download timeout. By default these settings come from
+ * the {@code api.adwords.retry*}, {@code api.adwords.rateLimitQps} and
+ * {@code api.adwords.reportDownloadTimeout} properties, except that downloads
+ * are retried up to {@value #DEFAULT_MAX_ATTEMPTS} times if the properties do
+ * not allow any retry.
+ * </p>
+ * <p>
+ * Use the version-specific {@code MultiAccountReportDownloader} rather than
+ * this class directly. Settings must not be changed while reports are being
+ * downloaded.
+ * </p>
+ */
+public class MultiAccountReportDownloadHelper {
+
+  /** The default maximum number of concurrent downloads. */
+  public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 8;
+
+  /** The maximum number of attempts if the configuration does not allow retries. */
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+  /** The HTTP status of a response rejected because a rate was exceeded. */
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  /** The prefix of the types of rate exceeded API errors. */
+  private static final String RATE_EXCEEDED_ERROR = "RateExceededError";
+
+  private final AdWordsSession session;
+  private int maxConcurrentDownloads = DEFAULT_MAX_CONCURRENT_DOWNLOADS;
+  private RetryPolicy retryPolicy;
+  private AdsRateLimiter rateLimiter;
+  private int reportDownloadTimeout;
+
+  /**
+   * Downloads a report for a single account.
+   */
+  public interface AccountReportDownload {
+
+    /**
+     * Downloads the report with the given session.
+     *
+     * @param session the session of the account
+     * @param reportDownloadTimeout the connect and read timeout in milliseconds
+     * @return the successful response
+     * @throws ReportException if there is a transport problem
+     * @throws ReportDownloadResponseException if the server returned an error
+     */
+    ReportDownloadResponse downloadReport(AdWordsSession session, int reportDownloadTimeout)
+        throws ReportException, ReportDownloadResponseException;
+  }
+
+  /**
+   * Constructs a helper with settings from the AdWords lib configuration.
+   *
+   * @param session the template for the session of each account
+   */
+  public MultiAccountReportDownloadHelper(AdWordsSession session) {
+    this(session, AdWordsInternals.getInstance().getAdWordsLibConfiguration(),
+        AdWordsInternals.getInstance().getRateLimiter());
+  }
+
+  @VisibleForTesting
+  MultiAccountReportDownloadHelper(AdWordsSession session,
+      AdWordsLibConfiguration adWordsLibConfiguration, @Nullable AdsRateLimiter rateLimiter) {
+    this.session = Preconditions.checkNotNull(session, "Null session");
+    this.retryPolicy = new ExponentialBackoffRetryPolicy(
+        Math.max(adWordsLibConfiguration.getRetryMaxAttempts(), DEFAULT_MAX_ATTEMPTS),
+        adWordsLibConfiguration.getRetryInitialDelayMillis(),
+        adWordsLibConfiguration.getRetryMaxDelayMillis(),
+        adWordsLibConfiguration.getRetryDeadlineMillis());
+    this.rateLimiter = rateLimiter;
+    this.reportDownloadTimeout = adWordsLibConfiguration.getReportDownloadTimeout();
+  }
+
+  /**
+   * Downloads a report for each of the given accounts, and waits until all of
+   * them have been handled or have failed.
+   *
+   * @param download downloads the report of one account
+   * @param clientCustomerIds the client customer IDs of the accounts
+   * @param handler receives the report of each account
+   * @return the summary of the run
+   * @throws InterruptedException if the calling thread was interrupted, in
+   *     which case the downloads in progress are interrupted
+   */
+  public MultiAccountReportSummary downloadReports(final AccountReportDownload download,
+      Collection<String> clientCustomerIds, final ReportDownloadHandler handler)
+      throws InterruptedException {
+    Preconditions.checkNotNull(download, "Null download");
+    Preconditions.checkNotNull(handler, "Null handler");
+    final List<String> accounts = ImmutableList.copyOf(clientCustomerIds);
+    final AtomicInteger successCount = new AtomicInteger();
+    final AtomicLong attemptCount = new AtomicLong();
+    final AtomicLong byteCount = new AtomicLong();
+    final ConcurrentMap<String, Exception> failures = Maps.newConcurrentMap();
+    long startNanos = System.nanoTime();
+    if (!accounts.isEmpty()) {
+      ExecutorService executor = Executors.newFixedThreadPool(
+          Math.min(maxConcurrentDownloads, accounts.size()),
+          new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("ads-report-download-%d")
+              .build());
+      try {
+        for (final String clientCustomerId : accounts) {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              Exception failure = downloadAccount(download, clientCustomerId, handler,
+                  attemptCount, byteCount);
+              if (failure == null) {
+                successCount.incrementAndGet();
+              } else {
+                failures.put(clientCustomerId, failure);
+              }
+            }
+          });
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+          // Keeps waiting; each attempt is bounded by the report download timeout.
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    return new MultiAccountReportSummary(accounts.size(), successCount.get(), attemptCount.get(),
+        byteCount.get(), System.nanoTime() - startNanos, failures);
+  }
+
+  /**
+   * Downloads and handles the report of one account, retrying failed
+   * attempts.
+   *
+   * @return {@code null} on success, otherwise the exception of the last
+   *     attempt
+   */
+  private Exception downloadAccount(AccountReportDownload download, String clientCustomerId,
+      ReportDownloadHandler handler, AtomicLong attemptCount, AtomicLong byteCount) {
+    AdWordsSession accountSession;
+    try {
+      accountSession = createAccountSession(clientCustomerId);
+    } catch (ValidationException e) {
+      return e;
+    }
+    List<String> rateLimitKeys = ImmutableList.of(
+        AdsRateLimiter.createKey(AdsRateLimiter.DEVELOPER_TOKEN_SCOPE, session.getDeveloperToken()),
+        AdsRateLimiter.createKey(AdsRateLimiter.CLIENT_CUSTOMER_ID_SCOPE,
+            clientCustomerId.replace("-", "")));
+    long startNanos = System.nanoTime();
+    for (int attempt = 1;; attempt++) {
+      if (rateLimiter != null) {
+        try {
+          rateLimiter.acquire(rateLimitKeys);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return e;
+        }
+      }
+      attemptCount.incrementAndGet();
+      Exception failure;
+      try {
+        ReportDownloadResponse response =
+            download.downloadReport(accountSession, reportDownloadTimeout);
+        handleReport(clientCustomerId, response, handler, byteCount);
+        return null;
+      } catch (ReportDownloadResponseException e) {
+        failure = e;
+        if (isRateExceeded(e) && rateLimiter != null) {
+          rateLimiter.recordRateExceeded(new RateExceeded(rateLimitKeys, 0));
+        }
+        if (!isRetryable(e)) {
+          return e;
+        }
+      } catch (ReportException e) {
+        failure = e;
+      } catch (IOException e) {
+        failure = e;
+      } catch (RuntimeException e) {
+        return e;
+      }
+      long delayMillis = retryPolicy == null ? -1 : retryPolicy.getRetryDelayMillis(attempt,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+      if (delayMillis < 0) {
+        return failure;
+      }
+      try {
+        sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return failure;
+      }
+    }
+  }
+
+  /**
+   * Passes a report to the handler, counting the bytes read from it, and
+   * closes the report stream afterwards.
+   */
+  private static void handleReport(String clientCustomerId, ReportDownloadResponse response,
+      ReportDownloadHandler handler, AtomicLong byteCount) throws IOException {
+    InputStream inputStream = response.getInputStream();
+    if (inputStream == null) {
+      handler.handleReport(clientCustomerId, response);
+      return;
+    }
+    CountingInputStream countingStream = new CountingInputStream(inputStream);
+    try {
+      handler.handleReport(clientCustomerId, response.withInputStream(countingStream));
+    } finally {
+      byteCount.addAndGet(countingStream.getCount());
+      Closeables.closeQuietly(countingStream);
+    }
+  }
+
+  /**
+   * Creates a copy of the template session for an account.
+   */
+  @VisibleForTesting
+  AdWordsSession createAccountSession(String clientCustomerId) throws ValidationException {
+    return new AdWordsSession.Builder()
+        .withOAuth2Credential(session.getOAuth2Credential())
+        .withDeveloperToken(session.getDeveloperToken())
+        .withUserAgent(session.getUserAgent())
+        .withEndpoint(session.getEndpoint())
+        .withReportingConfiguration(session.getReportingConfiguration())
+        .withClientCustomerId(clientCustomerId)
+        .build();
+  }
+
+  /**
+   * Returns {@code true} if the server rejected the download because a rate
+   * was exceeded.
+   */
+  @VisibleForTesting
+  static boolean isRateExceeded(ReportDownloadResponseException exception) {
+    String type = exception.getType();
+    return exception.getHttpStatus() == HTTP_TOO_MANY_REQUESTS
+        || (type != null && type.startsWith(RATE_EXCEEDED_ERROR));
+  }
+
+  /**
+   * Returns {@code true} if a download that failed with the given error may
+   * succeed when retried.
+   */
+  @VisibleForTesting
+  static boolean isRetryable(ReportDownloadResponseException exception) {
+    return exception.getHttpStatus() >= 500 || isRateExceeded(exception);
+  }
+
+  /**
+   * Waits before a retry.
+   */
+  @VisibleForTesting
+  void sleep(long millis) throws InterruptedException {
+    Thread.sleep(millis);
+  }
+
+  /**
+   * Gets the maximum number of reports downloaded concurrently.
+   */
+  public int getMaxConcurrentDownloads() {
+    return maxConcurrentDownloads;
+  }
+
+  /**
+   * Sets the maximum number of reports downloaded concurrently.
+   */
+  public void setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+    Preconditions.checkArgument(maxConcurrentDownloads > 0,
+        "maxConcurrentDownloads must be positive");
+    this.maxConcurrentDownloads = maxConcurrentDownloads;
+  }
+
+  /**
+   * Gets the retry policy, or {@code null} if failed downloads are not
+   * retried.
+   */
+  @Nullable
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * Sets the retry policy, or {@code null} to not retry failed downloads.
+   */
+  public void setRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * Gets the rate limiter, or {@code null} if downloads are not throttled.
+   */
+  @Nullable
+  public AdsRateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Sets the rate limiter, which may be shared with service clients, or
+   * {@code null} to not throttle downloads.
+   */
+  public void setRateLimiter(@Nullable AdsRateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Returns the reportDownloadTimeout of each attempt in milliseconds.
+   */
+  public int getReportDownloadTimeout() {
+    return reportDownloadTimeout;
+  }
+
+  /**
+   * Sets the reportDownloadTimeout of each attempt (milliseconds).
+   */
+  public void setReportDownloadTimeout(int reportDownloadTimeout) {
+    this.reportDownloadTimeout = reportDownloadTimeout;
+  }
+}
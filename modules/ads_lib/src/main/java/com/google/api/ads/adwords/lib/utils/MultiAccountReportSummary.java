@@ -0,0 +1,109 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of downloading a report for many accounts with a
+ * {@link MultiAccountReportDownloadHelper}.
+ */
+public class MultiAccountReportSummary {
+
+  private final int accountCount;
+  private final int successCount;
+  private final long attemptCount;
+  private final long byteCount;
+  private final long elapsedNanos;
+  private final Map<String, Exception> failures;
+
+  /**
+   * Constructor.
+   *
+   * @param accountCount the number of accounts a report was requested for
+   * @param successCount the number of accounts whose report was handled
+   * @param attemptCount the number of download attempts, including retries
+   * @param byteCount the number of report bytes received, as transferred
+   * @param elapsedNanos the duration of the whole run
+   * @param failures the last exception of each account that failed, by client
+   *     customer ID
+   */
+  public MultiAccountReportSummary(int accountCount, int successCount, long attemptCount,
+      long byteCount, long elapsedNanos, Map<String, Exception> failures) {
+    this.accountCount = accountCount;
+    this.successCount = successCount;
+    this.attemptCount = attemptCount;
+    this.byteCount = byteCount;
+    this.elapsedNanos = elapsedNanos;
+    this.failures = ImmutableMap.copyOf(failures);
+  }
+
+  public int getAccountCount() {
+    return accountCount;
+  }
+
+  public int getSuccessCount() {
+    return successCount;
+  }
+
+  public int getFailureCount() {
+    return failures.size();
+  }
+
+  /**
+   * Gets the last exception of each account whose report could not be
+   * downloaded, by client customer ID.
+   */
+  public Map<String, Exception> getFailures() {
+    return failures;
+  }
+
+  public long getAttemptCount() {
+    return attemptCount;
+  }
+
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  public long getElapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+  }
+
+  /**
+   * Gets the number of accounts whose report was handled per second.
+   */
+  public double getAccountsPerSecond() {
+    return elapsedNanos > 0 ? successCount * 1e9 / elapsedNanos : 0;
+  }
+
+  /**
+   * Gets the number of report bytes received per second.
+   */
+  public double getBytesPerSecond() {
+    return elapsedNanos > 0 ? byteCount * 1e9 / elapsedNanos : 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d/%d accounts succeeded, %d failed, %d attempts, %d bytes in %dms "
+        + "(%.2f accounts/s, %.0f bytes/s)", successCount, accountCount, getFailureCount(),
+        attemptCount, byteCount, getElapsedMillis(), getAccountsPerSecond(), getBytesPerSecond());
+  }
+}
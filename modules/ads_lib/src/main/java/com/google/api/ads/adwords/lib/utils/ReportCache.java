@@ -0,0 +1,655 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
+import com.google.api.ads.common.lib.utils.compression.GzipStreams;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Closeables;
+
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * A size-bounded on-disk cache of downloaded reports whose date range has
+ * closed, so that re-requesting them returns the stored contents instead of
+ * downloading them again.
+ * <p>
+ * A report is cached only if its date range is a custom range or
+ * {@code LAST_MONTH}, and ended more than {@code settleDays} days ago, as the
+ * statistics of more recent days may still change. All other requests,
+ * including those with live ranges such as {@code TODAY} or
+ * {@code LAST_7_DAYS}, bypass the cache. Entries are keyed by a SHA-256 hash
+ * of the client customer ID, endpoint, API version, normalized AWQL query or
+ * report definition, download format, reporting configuration and resolved
+ * date range.
+ * </p>
+ * <p>
+ * Entries are stored gzip compressed, one file per entry, and the least
+ * recently used entries are deleted once the cache holds more than
+ * {@code maxBytes}. A response that is not in the cache is stored while the
+ * caller reads it, and only once it was read to the end. A response closed
+ * with at most {@value #MAX_DRAIN_BYTES} bytes left, such as the end of the
+ * stream after the gzip trailer, is read to the end on close; one closed
+ * earlier is not cached. Entries left in the directory by a previous cache
+ * are reused.
+ * </p>
+ * <p>
+ * This class is thread-safe, but a directory must not be shared by several
+ * caches at a time.
+ * </p>
+ */
+public class ReportCache {
+
+  private static final String ENTRY_SUFFIX = ".gz";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  /** The most bytes read from a response on close to reach its end. */
+  @VisibleForTesting
+  static final int MAX_DRAIN_BYTES = 8 * 1024;
+  private static final Pattern ENTRY_NAME =
+      Pattern.compile("([0-9a-f]{64})\\.([A-Za-z0-9_.:+-]+)\\.gz");
+
+  private static final Pattern AWQL_DURING = Pattern.compile(
+      "\\bDURING\\s+(?:(\\d{8})\\s*,\\s*(\\d{8})|([A-Z_0-9]+))", Pattern.CASE_INSENSITIVE);
+  private static final Pattern XML_DATE_RANGE_TYPE =
+      Pattern.compile("<dateRangeType>\\s*([A-Z_0-9]+)\\s*</dateRangeType>");
+  private static final Pattern XML_DATE_RANGE = Pattern.compile(
+      "<dateRange>\\s*<min>\\s*(\\d{8})\\s*</min>\\s*<max>\\s*(\\d{8})\\s*</max>\\s*</dateRange>");
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormat.forPattern("yyyyMMdd");
+
+  private final File directory;
+  private final long maxBytes;
+  private final int settleDays;
+  private final Supplier<LocalDate> today;
+
+  /** The entries by key, in order of access. */
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private long sizeBytes;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong bypassCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param directory the directory holding the entries, created if necessary
+   * @param maxBytes the maximum total size of the entries
+   * @param settleDays the number of days after which the statistics of a day
+   *     no longer change
+   * @throws IllegalArgumentException if the directory cannot be created
+   */
+  public ReportCache(File directory, long maxBytes, int settleDays) {
+    this(directory, maxBytes, settleDays, new Supplier<LocalDate>() {
+      @Override
+      public LocalDate get() {
+        return new LocalDate();
+      }
+    });
+  }
+
+  @VisibleForTesting
+  ReportCache(File directory, long maxBytes, int settleDays, Supplier<LocalDate> today) {
+    Preconditions.checkArgument(maxBytes > 0, "maxBytes must be positive");
+    Preconditions.checkArgument(settleDays >= 0, "settleDays must not be negative");
+    Preconditions.checkArgument(directory.isDirectory() || directory.mkdirs(),
+        "Unable to create report cache directory %s", directory);
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.settleDays = settleDays;
+    this.today = today;
+    loadEntries();
+  }
+
+  /**
+   * Adds the entries found in the directory, least recently used first, and
+   * deletes temporary and backup files left by interrupted downloads.
+   */
+  private synchronized void loadEntries() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    List<File> entryFiles = Lists.newArrayList();
+    for (File file : files) {
+      if (file.getName().endsWith(TEMP_FILE_SUFFIX)
+          || file.getName().endsWith(ReportFiles.BACKUP_FILE_SUFFIX)) {
+        file.delete();
+      } else if (ENTRY_NAME.matcher(file.getName()).matches()) {
+        entryFiles.add(file);
+      }
+    }
+    Collections.sort(entryFiles, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        long aModified = a.lastModified();
+        long bModified = b.lastModified();
+        return aModified < bModified ? -1 : aModified == bModified ? 0 : 1;
+      }
+    });
+    for (File file : entryFiles) {
+      Matcher matcher = ENTRY_NAME.matcher(file.getName());
+      matcher.matches();
+      if (Charset.isSupported(matcher.group(2))) {
+        addEntry(matcher.group(1), new Entry(file, Charset.forName(matcher.group(2))));
+      } else {
+        file.delete();
+      }
+    }
+    evict();
+  }
+
+  /**
+   * Gets the cache key of a report request, or {@code null} if the request
+   * must bypass the cache because its date range is not closed.
+   *
+   * @param session the session the report is downloaded with
+   * @param version the version of the AdWords API
+   * @param reportRequest the report request
+   */
+  @Nullable
+  public String getCacheKey(AdWordsSession session, String version,
+      ReportRequest reportRequest) {
+    LocalDate[] dateRange = getClosedDateRange(reportRequest);
+    if (dateRange == null) {
+      bypassCount.incrementAndGet();
+      return null;
+    }
+    ReportingConfiguration config = session.getReportingConfiguration();
+    String request = reportRequest.getRequestType() == ReportRequest.RequestType.AWQL
+        ? normalizeAwql(reportRequest.getReportRequestString())
+        : reportRequest.getReportRequestString();
+    String keyMaterial = Joiner.on('\n').useForNull("").join(
+        session.getClientCustomerId(),
+        session.getEndpoint(),
+        version,
+        reportRequest.getRequestType(),
+        reportRequest.getDownloadFormat().name(),
+        request,
+        config == null ? null : config.isSkipReportHeader(),
+        config == null ? null : config.isSkipColumnHeader(),
+        config == null ? null : config.isSkipReportSummary(),
+        config == null ? null : config.isIncludeZeroImpressions(),
+        DATE_FORMAT.print(dateRange[0]) + "," + DATE_FORMAT.print(dateRange[1]));
+    return Hashing.sha256().hashString(keyMaterial, Charsets.UTF_8).toString();
+  }
+
+  /**
+   * Gets the date range of a report request if it is closed.
+   *
+   * @return the first and last day of the range, or {@code null} if the range
+   *     is not a custom range or {@code LAST_MONTH}, or has not closed yet
+   */
+  @VisibleForTesting
+  @Nullable
+  LocalDate[] getClosedDateRange(ReportRequest reportRequest) {
+    String request = reportRequest.getReportRequestString();
+    String rangeType;
+    String min = null;
+    String max = null;
+    if (reportRequest.getRequestType() == ReportRequest.RequestType.AWQL) {
+      Matcher matcher = AWQL_DURING.matcher(request);
+      MatchResult last = null;
+      while (matcher.find()) {
+        last = matcher.toMatchResult();
+      }
+      if (last == null) {
+        return null;
+      }
+      rangeType = last.group(3) == null ? "CUSTOM_DATE" : last.group(3).toUpperCase();
+      min = last.group(1);
+      max = last.group(2);
+    } else {
+      Matcher typeMatcher = XML_DATE_RANGE_TYPE.matcher(request);
+      if (!typeMatcher.find()) {
+        return null;
+      }
+      rangeType = typeMatcher.group(1);
+      Matcher rangeMatcher = XML_DATE_RANGE.matcher(request);
+      if (rangeMatcher.find()) {
+        min = rangeMatcher.group(1);
+        max = rangeMatcher.group(2);
+      }
+    }
+    LocalDate now = today.get();
+    LocalDate start;
+    LocalDate end;
+    if ("CUSTOM_DATE".equals(rangeType) && min != null) {
+      try {
+        start = DATE_FORMAT.parseLocalDate(min);
+        end = DATE_FORMAT.parseLocalDate(max);
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+    } else if ("LAST_MONTH".equals(rangeType)) {
+      start = now.minusMonths(1).withDayOfMonth(1);
+      end = now.withDayOfMonth(1).minusDays(1);
+    } else {
+      return null;
+    }
+    if (!end.isBefore(now.minusDays(settleDays))) {
+      return null;
+    }
+    return new LocalDate[] {start, end};
+  }
+
+  /**
+   * Collapses the whitespace of an AWQL query outside of quoted strings.
+   */
+  @VisibleForTesting
+  static String normalizeAwql(String query) {
+    StringBuilder normalized = new StringBuilder(query.length());
+    char quote = 0;
+    boolean pendingSpace = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        pendingSpace = normalized.length() > 0;
+        continue;
+      }
+      if (pendingSpace) {
+        normalized.append(' ');
+        pendingSpace = false;
+      }
+      normalized.append(c);
+      if (quote == 0 && (c == '"' || c == '\'')) {
+        quote = c;
+      } else if (c == quote && query.charAt(i - 1) != '\\') {
+        quote = 0;
+      }
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Gets the cached response for a key.
+   *
+   * @param key the cache key of the request
+   * @param reportRequest the report request
+   * @return the cached response, or {@code null} if there is none
+   */
+  @Nullable
+  public RawReportDownloadResponse get(String key, ReportRequest reportRequest) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    if (entry != null) {
+      try {
+        InputStream inputStream = new FileInputStream(entry.file);
+        if (!isGzipped(reportRequest)) {
+          try {
+            inputStream = GzipStreams.newInputStream(inputStream, new CompressionStats());
+          } catch (IOException e) {
+            Closeables.closeQuietly(inputStream);
+            throw e;
+          }
+        }
+        entry.file.setLastModified(System.currentTimeMillis());
+        hitCount.incrementAndGet();
+        return new RawReportDownloadResponse(HttpURLConnection.HTTP_OK, inputStream,
+            entry.charset, reportRequest.getDownloadFormat().name());
+      } catch (IOException e) {
+        // The entry was deleted or damaged outside of the cache.
+        removeEntry(key, entry);
+      }
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Stores a downloaded response while it is read. Responses that were not
+   * successful are returned as is.
+   *
+   * @param key the cache key of the request
+   * @param reportRequest the report request
+   * @param response the downloaded response
+   * @return a response whose contents are stored in the cache once they were
+   *     read to the end, or closed close enough to the end
+   */
+  public RawReportDownloadResponse put(String key, ReportRequest reportRequest,
+      RawReportDownloadResponse response) {
+    if (response.getHttpStatus() != HttpURLConnection.HTTP_OK
+        || response.getInputStream() == null) {
+      return response;
+    }
+    File tempFile;
+    OutputStream outputStream;
+    try {
+      tempFile = File.createTempFile(key + ".", TEMP_FILE_SUFFIX, directory);
+      try {
+        outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+        if (!isGzipped(reportRequest)) {
+          outputStream = GzipStreams.newOutputStream(outputStream, new CompressionStats());
+        }
+      } catch (IOException e) {
+        tempFile.delete();
+        throw e;
+      }
+    } catch (IOException e) {
+      // Caching is best effort; the download itself is unaffected.
+      return response;
+    }
+    File entryFile =
+        new File(directory, key + "." + response.getCharset().name() + ENTRY_SUFFIX);
+    return new RawReportDownloadResponse(response.getHttpStatus(),
+        new CachingInputStream(response.getInputStream(), outputStream, tempFile,
+            new Entry(entryFile, response.getCharset()), key),
+        response.getCharset(), response.getDownloadFormat());
+  }
+
+  private static boolean isGzipped(ReportRequest reportRequest) {
+    return reportRequest.getDownloadFormat().name().startsWith("GZIPPED");
+  }
+
+  /**
+   * Adds a stored entry, replacing any previous entry for the same key, and
+   * evicts entries if the cache is too large.
+   */
+  private synchronized void commitEntry(String key, Entry entry) {
+    addEntry(key, entry);
+    evict();
+  }
+
+  private synchronized void addEntry(String key, Entry entry) {
+    Entry previous = entries.put(key, entry);
+    if (previous != null) {
+      sizeBytes -= previous.size;
+      // The file name includes the charset, so it may not have been replaced.
+      if (!previous.file.equals(entry.file)) {
+        previous.file.delete();
+      }
+    }
+    sizeBytes += entry.size;
+  }
+
+  private synchronized void removeEntry(String key, Entry entry) {
+    if (entries.get(key) == entry) {
+      entries.remove(key);
+      sizeBytes -= entry.size;
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries until the cache is within its
+   * maximum size.
+   */
+  private synchronized void evict() {
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (sizeBytes > maxBytes && iterator.hasNext()) {
+      Entry entry = iterator.next().getValue();
+      iterator.remove();
+      sizeBytes -= entry.size;
+      entry.file.delete();
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Gets the number of requests answered from the cache.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Gets the number of cacheable requests that were not in the cache.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Gets the number of requests that bypassed the cache because their date
+   * range was not closed.
+   */
+  public long getBypassCount() {
+    return bypassCount.get();
+  }
+
+  /**
+   * Gets the number of entries deleted to keep the cache within its maximum
+   * size.
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Gets the number of cached reports.
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the total size of the cached reports, as stored.
+   */
+  public synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d hits, %d misses, %d bypasses, %d evictions, %d entries (%d bytes)",
+        getHitCount(), getMissCount(), getBypassCount(), getEvictionCount(), getEntryCount(),
+        getSizeBytes());
+  }
+
+  /**
+   * A cached report.
+   */
+  private static final class Entry {
+    private final File file;
+    private final Charset charset;
+    private long size;
+
+    Entry(File file, Charset charset) {
+      this.file = file;
+      this.charset = charset;
+      this.size = file.length();
+    }
+  }
+
+  /**
+   * Copies the bytes read from a response to a temporary file, which becomes
+   * a cache entry once the response was read to the end. Readers such as
+   * {@link java.util.zip.GZIPInputStream} stop at the end of the compressed
+   * data without reading the end of the response, so up to
+   * {@link #MAX_DRAIN_BYTES} more bytes are read when the stream is closed.
+   * The temporary file is deleted if the end was not reached then, or if the
+   * response cannot be read or written.
+   */
+  private final class CachingInputStream extends FilterInputStream {
+    private final File tempFile;
+    private final Entry entry;
+    private final String key;
+    private OutputStream outputStream;
+
+    CachingInputStream(InputStream in, OutputStream outputStream, File tempFile, Entry entry,
+        String key) {
+      super(in);
+      this.outputStream = outputStream;
+      this.tempFile = tempFile;
+      this.entry = entry;
+      this.key = key;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b == -1) {
+        commit();
+      } else if (outputStream != null) {
+        try {
+          outputStream.write(b);
+        } catch (IOException e) {
+          abort();
+        }
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n == -1) {
+        commit();
+      } else if (outputStream != null && n > 0) {
+        try {
+          outputStream.write(b, off, n);
+        } catch (IOException e) {
+          abort();
+        }
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // Skipped bytes must be read so that they are cached too.
+      byte[] buffer = new byte[(int) Math.min(n, 8192)];
+      long skipped = 0;
+      while (skipped < n) {
+        int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+        if (read == -1) {
+          break;
+        }
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {}
+
+    @Override
+    public synchronized void reset() throws IOException {
+      throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        drain();
+      } finally {
+        try {
+          abort();
+        } finally {
+          super.close();
+        }
+      }
+    }
+
+    /**
+     * Reads what is left of the response, up to {@link #MAX_DRAIN_BYTES}
+     * bytes, which commits the entry if the end is reached. A caller that
+     * stops reading early does not wait for the rest of the report.
+     */
+    private void drain() {
+      byte[] buffer = new byte[1024];
+      long remaining = MAX_DRAIN_BYTES + 1;
+      try {
+        while (outputStream != null && remaining > 0) {
+          int read = read(buffer, 0, (int) Math.min(buffer.length, remaining));
+          if (read == -1) {
+            break;
+          }
+          remaining -= read;
+        }
+      } catch (IOException e) {
+        // The response is incomplete, so it is not cached.
+      }
+    }
+
+    /**
+     * Turns the temporary file into a cache entry.
+     */
+    private void commit() {
+      if (outputStream == null) {
+        return;
+      }
+      try {
+        OutputStream out = outputStream;
+        outputStream = null;
+        out.close();
+        ReportFiles.replace(tempFile, entry.file);
+        entry.size = entry.file.length();
+        commitEntry(key, entry);
+      } catch (IOException e) {
+        tempFile.delete();
+      }
+    }
+
+    /**
+     * Stops caching the response and deletes the temporary file.
+     */
+    private void abort() {
+      if (outputStream == null) {
+        return;
+      }
+      try {
+        outputStream.close();
+      } catch (IOException e) {
+        // The file is deleted anyway.
+      } finally {
+        outputStream = null;
+        tempFile.delete();
+      }
+    }
+  }
+}
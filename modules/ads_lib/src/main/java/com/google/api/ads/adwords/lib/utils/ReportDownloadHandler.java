@@ -0,0 +1,43 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import java.io.IOException;
+
+/**
+ * Receives the reports downloaded for each account by a
+ * {@link MultiAccountReportDownloadHelper}. Implementations must be
+ * thread-safe, as reports for different accounts are handled concurrently.
+ */
+public interface ReportDownloadHandler {
+
+  /**
+   * Handles the report downloaded for an account, for example by writing it
+   * to a file or reading its rows. The response stream is closed once this
+   * method returns.
+   * <p>
+   * If this method throws an {@link IOException}, for instance because the
+   * connection was lost while the report was read, the download may be retried
+   * and this method called again for the same account. Anything written for
+   * the failed attempt should then be discarded.
+   * </p>
+   *
+   * @param clientCustomerId the client customer ID of the account
+   * @param response the successful response holding the report
+   * @throws IOException if the report cannot be read or stored
+   */
+  void handleReport(String clientCustomerId, ReportDownloadResponse response) throws IOException;
+}
@@ -14,12 +14,14 @@
 
 package com.google.api.ads.adwords.lib.utils;
 
+import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
 import com.google.api.ads.common.lib.utils.Streams;
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
+import com.google.api.ads.common.lib.utils.compression.GzipStreams;
 import com.google.common.base.Preconditions;
 
-import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -35,6 +37,7 @@ public class ReportDownloadResponse {
   private static final String HTTP_SUCCESS_MESSAGE = "SUCCESS";
 
   private final RawReportDownloadResponse rawResponse;
+  private final ReportingConfiguration reportingConfiguration;
 
   /**
    * Constructs a new instance from a successful raw response.
@@ -43,7 +46,23 @@ public class ReportDownloadResponse {
    * @throws IllegalArgumentException if {@code rawResponse} does not have a successful HTTP status.
    */
   public ReportDownloadResponse(RawReportDownloadResponse rawResponse) {
+    this(rawResponse, null);
+  }
+
+  /**
+   * Constructs a new instance from a successful raw response to a request made with the given
+   * reporting configuration.
+   *
+   * @param rawResponse the raw response
+   * @param reportingConfiguration the configuration the report was downloaded with, or
+   *     {@code null} if the server defaults were used
+   * @throws NullPointerException if {@code rawResponse} is null.
+   * @throws IllegalArgumentException if {@code rawResponse} does not have a successful HTTP status.
+   */
+  public ReportDownloadResponse(RawReportDownloadResponse rawResponse,
+      @Nullable ReportingConfiguration reportingConfiguration) {
     this.rawResponse = Preconditions.checkNotNull(rawResponse, "Null raw response");
+    this.reportingConfiguration = reportingConfiguration;
     Preconditions.checkArgument(rawResponse.getHttpStatus() == HttpURLConnection.HTTP_OK,
         "Expected a successful raw response but raw response status is: %s",
         rawResponse.getHttpStatus());
@@ -76,16 +95,70 @@ public class ReportDownloadResponse {
   }
   
   /**
-   * Writes the contents of the response to the specified File.
+   * Writes the contents of the response to the specified File, as downloaded, and closes the
+   * response stream. The file is replaced atomically once all of the contents were written.
    *
    * @param outputFile the output file to write to
    * @throws FileNotFoundException if unable to write to {@code outputFile}
    * @throws IOException if unable to read the response contents
    */
   public void saveToFile(String outputFile) throws FileNotFoundException, IOException {
-    Streams.copy(getInputStream(), new BufferedOutputStream(new FileOutputStream(outputFile)));
+    saveToFile(new File(outputFile), false);
   }
-  
+
+  /**
+   * Writes the contents of the response to the specified File in a single pass, and closes the
+   * response stream. The contents are written to a temporary file in the same directory, which
+   * then replaces {@code outputFile}, so readers never see a partial report. The CRC-32 checksum
+   * and line count of the written contents are computed on the way.
+   *
+   * @param outputFile the output file to write to
+   * @param decompress whether to inflate the response while writing it if it is in one of the
+   *     gzip formats
+   * @return the size, checksum and line count of the written file
+   * @throws FileNotFoundException if unable to write to {@code outputFile}
+   * @throws IOException if unable to read the response contents
+   */
+  public SavedReportFile saveToFile(File outputFile, boolean decompress)
+      throws FileNotFoundException, IOException {
+    Preconditions.checkNotNull(outputFile, "Null output file");
+    InputStream inputStream = getInputStream();
+    boolean gzipped = isGzipped();
+    if (gzipped && decompress) {
+      try {
+        inputStream = GzipStreams.newInputStream(inputStream, new CompressionStats());
+      } catch (IOException e) {
+        inputStream.close();
+        throw e;
+      }
+      return ReportFiles.save(inputStream, outputFile, true, true);
+    }
+    return ReportFiles.save(inputStream, outputFile, false, !gzipped);
+  }
+
+  /**
+   * Returns a reader over the rows of the report, which reads them from the response as they are
+   * requested rather than all at once. Inflates the response if it is in one of the gzip formats,
+   * and skips the report header and summary rows that the reporting configuration left in the
+   * report. The caller is responsible for closing the reader.
+   *
+   * @throws IOException if unable to read the response contents
+   * @throws UnsupportedOperationException if the rows of the download format cannot be read
+   */
+  public ReportRowReader getRowReader() throws IOException {
+    return new ReportRowReader(getInputStream(), rawResponse.getCharset(),
+        rawResponse.getDownloadFormat(), reportingConfiguration);
+  }
+
+  /**
+   * Returns a copy of this response whose contents are read from the given stream.
+   */
+  ReportDownloadResponse withInputStream(InputStream inputStream) {
+    return new ReportDownloadResponse(new RawReportDownloadResponse(rawResponse.getHttpStatus(),
+        inputStream, rawResponse.getCharset(), rawResponse.getDownloadFormat()),
+        reportingConfiguration);
+  }
+
   private boolean isGzipped() {
     return rawResponse.getDownloadFormat().startsWith("GZIPPED");
   }
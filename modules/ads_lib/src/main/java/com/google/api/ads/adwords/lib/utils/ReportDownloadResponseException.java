@@ -14,6 +14,7 @@
 
 package com.google.api.ads.adwords.lib.utils;
 
+import javax.annotation.Nullable;
 
 /**
  * Exception thrown when we receive an error response from the server.
@@ -45,4 +46,14 @@ public class ReportDownloadResponseException extends Exception {
   public int getHttpStatus() {
     return httpStatus;
   }
+
+  /**
+   * Returns the type of the API error, such as
+   * {@code RateExceededError.RATE_EXCEEDED}, or {@code null} if it is not
+   * known.
+   */
+  @Nullable
+  public String getType() {
+    return null;
+  }
 }
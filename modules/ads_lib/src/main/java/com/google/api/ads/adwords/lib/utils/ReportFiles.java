@@ -0,0 +1,159 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Saves report contents to files in a single pass, through one buffer that
+ * is written to a {@link FileChannel} while the checksum and line count of the
+ * contents are updated from it.
+ */
+final class ReportFiles {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  /** The suffix of the backup files made by {@link #replace(File, File)}. */
+  static final String BACKUP_FILE_SUFFIX = ".bak";
+
+  private ReportFiles() {}
+
+  /**
+   * Writes the contents of a stream to a file: the contents are written to a
+   * temporary file in the same directory, which then replaces
+   * {@code outputFile} as described in {@link #replace(File, File)}, so
+   * {@code outputFile} never has partial contents. The stream is closed
+   * afterwards.
+   *
+   * @param inputStream the contents to write
+   * @param outputFile the file to write
+   * @param decompressed whether {@code inputStream} decompresses a report in a
+   *     gzip format
+   * @param countLines whether to count the lines of the contents
+   * @return the description of the saved file
+   * @throws IOException if the contents cannot be read or written
+   */
+  static SavedReportFile save(InputStream inputStream, File outputFile, boolean decompressed,
+      boolean countLines) throws IOException {
+    File directory = outputFile.getAbsoluteFile().getParentFile();
+    File tempFile = null;
+    try {
+      tempFile = File.createTempFile(getTempFilePrefix(outputFile), TEMP_FILE_SUFFIX, directory);
+      CRC32 checksum = new CRC32();
+      long byteCount = 0;
+      long lineCount = 0;
+      byte lastByte = '\n';
+      ReadableByteChannel in = Channels.newChannel(inputStream);
+      FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+      try {
+        FileChannel out = fileOutputStream.getChannel();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          if (read == 0) {
+            continue;
+          }
+          checksum.update(bytes, 0, read);
+          if (countLines) {
+            for (int i = 0; i < read; i++) {
+              if (bytes[i] == '\n') {
+                lineCount++;
+              }
+            }
+          }
+          lastByte = bytes[read - 1];
+          byteCount += read;
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            out.write(buffer);
+          }
+          buffer.clear();
+        }
+        out.force(false);
+      } finally {
+        fileOutputStream.close();
+      }
+      if (countLines && lastByte != '\n') {
+        lineCount++;
+      }
+      replace(tempFile, outputFile);
+      tempFile = null;
+      return new SavedReportFile(outputFile, decompressed, byteCount, checksum.getValue(),
+          countLines ? lineCount : -1);
+    } finally {
+      try {
+        inputStream.close();
+      } finally {
+        if (tempFile != null) {
+          tempFile.delete();
+        }
+      }
+    }
+  }
+
+  /**
+   * Renames {@code source} to {@code target}, replacing {@code target} if it
+   * exists. The rename is atomic on file systems that can replace a file by
+   * renaming another one over it. Elsewhere, {@code target} is first renamed
+   * to a backup file in the same directory, which is renamed back if
+   * {@code source} cannot be renamed, so {@code target} is briefly missing
+   * but never lost.
+   *
+   * @throws IOException if {@code source} cannot be renamed to {@code target}
+   */
+  static void replace(File source, File target) throws IOException {
+    if (source.renameTo(target)) {
+      return;
+    }
+    if (!target.exists()) {
+      throw new IOException("Unable to rename " + source + " to " + target);
+    }
+    // Some platforms cannot rename over an existing file.
+    File backupFile = File.createTempFile(getTempFilePrefix(target), BACKUP_FILE_SUFFIX,
+        target.getAbsoluteFile().getParentFile());
+    if (!backupFile.delete() || !target.renameTo(backupFile)) {
+      backupFile.delete();
+      throw new IOException("Unable to rename " + source + " to " + target);
+    }
+    if (!source.renameTo(target)) {
+      if (!backupFile.renameTo(target)) {
+        throw new IOException("Unable to rename " + source + " to " + target
+            + " or to restore " + target + " from " + backupFile);
+      }
+      throw new IOException("Unable to rename " + source + " to " + target);
+    }
+    backupFile.delete();
+  }
+
+  /**
+   * Gets the prefix of a temporary file for {@code file}, which is padded to
+   * the three characters {@link File#createTempFile} requires however short
+   * the name of {@code file} is.
+   */
+  private static String getTempFilePrefix(File file) {
+    return "." + file.getName() + ".";
+  }
+}
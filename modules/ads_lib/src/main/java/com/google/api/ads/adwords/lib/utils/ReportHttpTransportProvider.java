@@ -0,0 +1,158 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import com.google.api.ads.adwords.lib.conf.AdWordsLibConfiguration;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
+import java.net.ProxySelector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the {@link HttpTransport} of report downloads.
+ * <p>
+ * By default this is a {@link NetHttpTransport}, which relies on the keep-alive
+ * cache of the JDK. If {@code api.adwords.reportHttpMaxConnectionsPerHost} is
+ * positive, it is instead an {@link ApacheHttpTransport} whose connections are
+ * kept alive in a thread-safe pool of that many connections per host, so that
+ * sequential and parallel downloads reuse connections instead of paying a TCP
+ * and TLS handshake each. A daemon thread closes pooled connections that have
+ * been idle for {@code api.adwords.reportHttpIdleTimeoutMillis}.
+ * </p>
+ */
+public class ReportHttpTransportProvider implements Provider<HttpTransport> {
+
+  /** The shortest interval between two evictions of idle connections. */
+  private static final long MIN_EVICTION_INTERVAL_MILLIS = 1000;
+
+  private static final int HTTP_PORT = 80;
+  private static final int HTTPS_PORT = 443;
+
+  private final AdWordsLibConfiguration adWordsLibConfiguration;
+
+  /**
+   * Constructor.
+   *
+   * @param adWordsLibConfiguration the configuration of the connection pool
+   */
+  @Inject
+  public ReportHttpTransportProvider(AdWordsLibConfiguration adWordsLibConfiguration) {
+    this.adWordsLibConfiguration = adWordsLibConfiguration;
+  }
+
+  @Override
+  public HttpTransport get() {
+    int maxConnectionsPerHost = adWordsLibConfiguration.getReportHttpMaxConnectionsPerHost();
+    if (maxConnectionsPerHost <= 0) {
+      return new NetHttpTransport();
+    }
+    int maxTotalConnections = Math.max(maxConnectionsPerHost,
+        adWordsLibConfiguration.getReportHttpMaxTotalConnections());
+    ThreadSafeClientConnManager connectionManager =
+        createConnectionManager(maxConnectionsPerHost, maxTotalConnections);
+    long idleTimeoutMillis = adWordsLibConfiguration.getReportHttpIdleTimeoutMillis();
+    if (idleTimeoutMillis > 0) {
+      startIdleConnectionEviction(connectionManager, idleTimeoutMillis);
+    }
+    return new ApacheHttpTransport(createHttpClient(connectionManager));
+  }
+
+  /**
+   * Creates a connection manager pooling the given number of connections.
+   */
+  private static ThreadSafeClientConnManager createConnectionManager(int maxConnectionsPerHost,
+      int maxTotalConnections) {
+    HttpParams params = createConnectionManagerParams(maxConnectionsPerHost, maxTotalConnections);
+    SchemeRegistry registry = new SchemeRegistry();
+    registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), HTTP_PORT));
+    registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), HTTPS_PORT));
+    return new ThreadSafeClientConnManager(params, registry);
+  }
+
+  /**
+   * Creates the parameters limiting the number of pooled connections.
+   */
+  @VisibleForTesting
+  static HttpParams createConnectionManagerParams(int maxConnectionsPerHost,
+      int maxTotalConnections) {
+    HttpParams params = new BasicHttpParams();
+    ConnManagerParams.setMaxConnectionsPerRoute(params,
+        new ConnPerRouteBean(maxConnectionsPerHost));
+    ConnManagerParams.setMaxTotalConnections(params, maxTotalConnections);
+    return params;
+  }
+
+  /**
+   * Creates an HTTP client like {@link ApacheHttpTransport#newDefaultHttpClient()}
+   * does, but with the given connection manager.
+   */
+  private static DefaultHttpClient createHttpClient(
+      ThreadSafeClientConnManager connectionManager) {
+    HttpParams params = new BasicHttpParams();
+    // Pooled connections are checked before reuse, as the server may have closed them.
+    HttpConnectionParams.setStaleCheckingEnabled(params, true);
+    HttpConnectionParams.setSocketBufferSize(params, 8192);
+    DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager, params);
+    // Retries are left to the report download callers.
+    httpClient.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+    httpClient.setRoutePlanner(new ProxySelectorRoutePlanner(
+        connectionManager.getSchemeRegistry(), ProxySelector.getDefault()));
+    return httpClient;
+  }
+
+  /**
+   * Closes expired connections and connections idle for longer than the idle
+   * timeout periodically, on a daemon thread.
+   */
+  private static void startIdleConnectionEviction(
+      final ThreadSafeClientConnManager connectionManager, final long idleTimeoutMillis) {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("ads-report-http-eviction-%d")
+            .build());
+    long intervalMillis = Math.max(MIN_EVICTION_INTERVAL_MILLIS, idleTimeoutMillis / 2);
+    executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+}
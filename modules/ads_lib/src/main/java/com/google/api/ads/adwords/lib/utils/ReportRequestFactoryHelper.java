@@ -19,6 +19,8 @@ import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
 import com.google.api.ads.common.lib.auth.AuthorizationHeaderProvider;
 import com.google.api.ads.common.lib.exception.AuthenticationException;
 import com.google.api.ads.common.lib.useragent.UserAgentCombiner;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestFactory;
@@ -40,8 +42,8 @@ public class ReportRequestFactoryHelper {
   private final AdWordsSession session;
   private final UserAgentCombiner userAgentCombiner;
   private final AuthorizationHeaderProvider authorizationHeaderProvider;
-  private final HttpTransport httpTransport;
-  private int reportDownloadTimeout;
+  private final HttpRequestFactory requestFactory;
+  private volatile int reportDownloadTimeout;
   private final HttpResponseInterceptor responseInterceptor;
 
   /**
@@ -63,7 +65,7 @@ public class ReportRequestFactoryHelper {
     this(session,
         internals.getAuthorizationHeaderProvider(),
         internals.getUserAgentCombiner(),
-        internals.getHttpTransport(),
+        internals.getReportHttpTransport(),
         internals.getAdWordsLibConfiguration().getReportDownloadTimeout(),
         new ReportResponseInterceptor(
             internals.getAdWordsServiceLoggers().getReportServiceLogger()));
@@ -87,34 +89,37 @@ public class ReportRequestFactoryHelper {
     this.session = session;
     this.authorizationHeaderProvider = authorizationHeaderProvider;
     this.userAgentCombiner = userAgentCombiner;
-    this.httpTransport = httpTransport;
     this.reportDownloadTimeout = reportDownloadTimeout;
     this.responseInterceptor = responseInterceptor;
+    this.requestFactory = httpTransport.createRequestFactory(new HttpRequestInitializer() {
+      @Override
+      public void initialize(HttpRequest request) throws IOException {
+        request.setConnectTimeout(ReportRequestFactoryHelper.this.reportDownloadTimeout);
+        request.setReadTimeout(ReportRequestFactoryHelper.this.reportDownloadTimeout);
+        request.setThrowExceptionOnExecuteError(false);
+        request.setLoggingEnabled(true);
+        request.setResponseInterceptor(ReportRequestFactoryHelper.this.responseInterceptor);
+      }
+    });
   }
 
   /**
-   * Gets the report HTTP URL connection given report URL and proper information needed to
-   * authenticate the request.
+   * Builds a report download request with the headers needed to authenticate it. Requests are
+   * built by a request factory shared by all requests of this helper, and only the headers are
+   * specific to each request, so that requests reuse the pooled connections of the transport.
    *
    * @param reportUrl the URL of the report response or download
-   * @return the report HTTP URL connection
+   * @param version the version of the AdWords API
+   * @param content the body of the request
+   * @return the report download request
    * @throws AuthenticationException If OAuth authorization fails.
+   * @throws IOException If the request cannot be built.
    */
-  @VisibleForTesting
-  HttpRequestFactory getHttpRequestFactory(final String reportUrl, String version)
-      throws AuthenticationException {
-    final HttpHeaders httpHeaders = createHeaders(reportUrl, version);
-    return httpTransport.createRequestFactory(new HttpRequestInitializer() {
-      @Override
-      public void initialize(HttpRequest request) throws IOException {
-        request.setHeaders(httpHeaders);
-        request.setConnectTimeout(reportDownloadTimeout);
-        request.setReadTimeout(reportDownloadTimeout);
-        request.setThrowExceptionOnExecuteError(false);
-        request.setLoggingEnabled(true);
-        request.setResponseInterceptor(responseInterceptor);
-      }
-    });
+  HttpRequest buildPostRequest(String reportUrl, String version, HttpContent content)
+      throws AuthenticationException, IOException {
+    HttpRequest request = requestFactory.buildPostRequest(new GenericUrl(reportUrl), content);
+    request.setHeaders(createHeaders(reportUrl, version));
+    return request;
   }
 
   /**
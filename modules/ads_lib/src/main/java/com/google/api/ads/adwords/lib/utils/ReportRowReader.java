@@ -0,0 +1,525 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
+import com.google.api.ads.common.lib.utils.compression.GzipStreams;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the rows of a downloaded report one at a time, without holding the
+ * report in memory.
+ *
+ * <pre>
+ *<code>ReportRowReader rows = reportDownloadResponse.getRowReader();
+ *try {
+ *  while (rows.next()) {
+ *    long impressions = rows.getLong(3);
+ *  }
+ *} finally {
+ *  rows.close();
+ *}
+ *</code>
+ *</pre>
+ *
+ * <p>The {@code CSV}, {@code CSVFOREXCEL}, {@code TSV} and {@code XML}
+ * download formats are supported, as are their {@code GZIPPED_} variants. The
+ * report header and report summary rows are skipped, and the column header row
+ * is exposed through {@link #getColumnNames()}, according to which of them the
+ * {@link ReportingConfiguration} left in the report.
+ *
+ * <p>The values of the current row are kept in column buffers that are reused
+ * for every row, so the {@link CharSequence} returned by
+ * {@link #getColumn(int)} is only valid until the next call to
+ * {@link #next()}.
+ *
+ * <p>Implementation is not thread-safe.
+ */
+public class ReportRowReader implements Closeable {
+
+  private static final String GZIPPED_PREFIX = "GZIPPED_";
+
+  private final RowSource source;
+  private final boolean skipSummaryRow;
+  private final List<String> columnNames;
+  private Row current = new Row();
+  private Row lookahead = new Row();
+  private boolean hasLookahead;
+  private long rowCount;
+
+  /**
+   * Constructs a reader over the contents of a successful report download,
+   * and reads the report header and column header rows.
+   *
+   * @param inputStream the report contents, gzip compressed if
+   *     {@code downloadFormat} starts with {@code GZIPPED_}
+   * @param charset the charset of the report contents
+   * @param downloadFormat the name of the report's download format
+   * @param reportingConfiguration the configuration the report was downloaded
+   *     with, or {@code null} if the server defaults were used
+   * @throws IOException if the report contents cannot be read
+   * @throws UnsupportedOperationException if the download format is not
+   *     supported
+   */
+  public ReportRowReader(InputStream inputStream, Charset charset, String downloadFormat,
+      @Nullable ReportingConfiguration reportingConfiguration) throws IOException {
+    Preconditions.checkNotNull(inputStream, "Null input stream");
+    Preconditions.checkNotNull(charset, "Null charset");
+    Preconditions.checkNotNull(downloadFormat, "Null download format");
+    String format = downloadFormat;
+    if (format.startsWith(GZIPPED_PREFIX)) {
+      format = format.substring(GZIPPED_PREFIX.length());
+      inputStream = GzipStreams.newInputStream(inputStream, new CompressionStats());
+    }
+    boolean hasReportHeader = !isSet(reportingConfiguration == null
+        ? null : reportingConfiguration.isSkipReportHeader());
+    boolean hasColumnHeader = !isSet(reportingConfiguration == null
+        ? null : reportingConfiguration.isSkipColumnHeader());
+    boolean hasReportSummary = !isSet(reportingConfiguration == null
+        ? null : reportingConfiguration.isSkipReportSummary());
+    if ("CSV".equals(format)) {
+      source = new DelimitedRowSource(new InputStreamReader(inputStream, charset), ',', true);
+    } else if ("CSVFOREXCEL".equals(format)) {
+      source = new DelimitedRowSource(new InputStreamReader(inputStream, charset), '\t', true);
+    } else if ("TSV".equals(format)) {
+      source = new DelimitedRowSource(new InputStreamReader(inputStream, charset), '\t', false);
+    } else if ("XML".equals(format)) {
+      source = new XmlRowSource(inputStream, charset);
+      // The report header, column header and summary are not rows of an XML report.
+      hasReportHeader = false;
+      hasColumnHeader = false;
+      hasReportSummary = false;
+    } else {
+      inputStream.close();
+      throw new UnsupportedOperationException(
+          "Cannot read the rows of a report in format " + downloadFormat);
+    }
+    this.skipSummaryRow = hasReportSummary;
+    try {
+      if (hasReportHeader) {
+        source.readRow(current);
+      }
+      if (hasColumnHeader && source.readRow(current)) {
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (int i = 0; i < current.size; i++) {
+          names.add(current.columns[i].toString());
+        }
+        this.columnNames = names.build();
+      } else {
+        this.columnNames = source.getColumnNames();
+      }
+      current.size = 0;
+      hasLookahead = source.readRow(lookahead);
+    } catch (IOException e) {
+      source.close();
+      throw e;
+    }
+  }
+
+  private static boolean isSet(@Nullable Boolean value) {
+    return value != null && value;
+  }
+
+  /**
+   * Returns the names of the report's columns, or an empty list if the report
+   * was downloaded without a column header.
+   */
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  /**
+   * Returns the index of the column with the given name, or {@code -1} if the
+   * report has no such column.
+   */
+  public int getColumnIndex(String columnName) {
+    return columnNames.indexOf(columnName);
+  }
+
+  /**
+   * Advances to the next row of the report.
+   *
+   * @return {@code true} if there is a current row, {@code false} if the end of
+   *     the report was reached
+   * @throws IOException if the report contents cannot be read
+   */
+  public boolean next() throws IOException {
+    if (!hasLookahead) {
+      current.size = 0;
+      return false;
+    }
+    Row row = current;
+    current = lookahead;
+    lookahead = row;
+    hasLookahead = source.readRow(lookahead);
+    if (!hasLookahead && skipSummaryRow) {
+      // The last row of the report is its summary.
+      current.size = 0;
+      return false;
+    }
+    rowCount++;
+    return true;
+  }
+
+  /**
+   * Returns the number of rows {@link #next()} has advanced to.
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the number of columns in the current row.
+   */
+  public int getColumnCount() {
+    return current.size;
+  }
+
+  /**
+   * Returns the value of a column of the current row. The returned buffer is
+   * reused for the next row.
+   *
+   * @throws IndexOutOfBoundsException if the current row has no such column
+   */
+  public CharSequence getColumn(int index) {
+    Preconditions.checkElementIndex(index, current.size);
+    return current.columns[index];
+  }
+
+  /**
+   * Returns the value of a column of the current row as a String.
+   *
+   * @throws IndexOutOfBoundsException if the current row has no such column
+   */
+  public String getString(int index) {
+    return getColumn(index).toString();
+  }
+
+  /**
+   * Returns the value of a column of the current row as a long.
+   *
+   * @throws IndexOutOfBoundsException if the current row has no such column
+   * @throws NumberFormatException if the value is not a decimal integer
+   */
+  public long getLong(int index) {
+    CharSequence value = getColumn(index);
+    int length = value.length();
+    if (length == 0) {
+      throw new NumberFormatException("Empty value in column " + index);
+    }
+    boolean negative = value.charAt(0) == '-';
+    int i = negative || value.charAt(0) == '+' ? 1 : 0;
+    if (i == length) {
+      throw new NumberFormatException("For input string: \"" + value + "\"");
+    }
+    long result = 0;
+    for (; i < length; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+        throw new NumberFormatException("For input string: \"" + value + "\"");
+      }
+      // Accumulates negatively so that Long.MIN_VALUE can be parsed.
+      result = result * 10 - digit;
+    }
+    if (!negative) {
+      if (result == Long.MIN_VALUE) {
+        throw new NumberFormatException("For input string: \"" + value + "\"");
+      }
+      result = -result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the value of a column of the current row as a double.
+   *
+   * @throws IndexOutOfBoundsException if the current row has no such column
+   * @throws NumberFormatException if the value is not a number
+   */
+  public double getDouble(int index) {
+    return Double.parseDouble(getString(index));
+  }
+
+  /**
+   * Closes the underlying report stream.
+   */
+  @Override
+  public void close() throws IOException {
+    hasLookahead = false;
+    current.size = 0;
+    source.close();
+  }
+
+  /**
+   * The values of one row, in buffers that are reused across rows.
+   */
+  private static final class Row {
+    private StringBuilder[] columns = new StringBuilder[0];
+    private int size;
+
+    /**
+     * Returns the cleared buffer of the next column of the row.
+     */
+    StringBuilder addColumn() {
+      if (size == columns.length) {
+        StringBuilder[] grown = new StringBuilder[Math.max(8, size * 2)];
+        System.arraycopy(columns, 0, grown, 0, size);
+        for (int i = size; i < grown.length; i++) {
+          grown[i] = new StringBuilder();
+        }
+        columns = grown;
+      }
+      StringBuilder column = columns[size++];
+      column.setLength(0);
+      return column;
+    }
+  }
+
+  /**
+   * A source of the rows of a report in one format.
+   */
+  private interface RowSource extends Closeable {
+
+    /**
+     * Reads the next row into {@code row}, replacing its values.
+     *
+     * @return {@code false} if there are no more rows
+     */
+    boolean readRow(Row row) throws IOException;
+
+    /**
+     * Returns the column names found in the report itself, if any.
+     */
+    List<String> getColumnNames();
+  }
+
+  /**
+   * Reads rows separated by line breaks and columns separated by a delimiter,
+   * optionally enclosed in double quotes.
+   */
+  private static final class DelimitedRowSource implements RowSource {
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Reader reader;
+    private final char delimiter;
+    private final boolean quoted;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean started;
+
+    DelimitedRowSource(Reader reader, char delimiter, boolean quoted) {
+      this.reader = reader;
+      this.delimiter = delimiter;
+      this.quoted = quoted;
+    }
+
+    /**
+     * Returns the next character, or {@code -1} at the end of the stream.
+     */
+    private int read() throws IOException {
+      if (position == limit) {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[position++];
+    }
+
+    @Override
+    public boolean readRow(Row row) throws IOException {
+      row.size = 0;
+      int c = read();
+      if (!started) {
+        started = true;
+        if (c == BYTE_ORDER_MARK) {
+          c = read();
+        }
+      }
+      if (c == -1) {
+        return false;
+      }
+      StringBuilder column = row.addColumn();
+      boolean inQuotes = false;
+      while (c != -1) {
+        if (inQuotes) {
+          if (c == '"') {
+            c = read();
+            if (c != '"') {
+              inQuotes = false;
+              continue;
+            }
+          }
+          column.append((char) c);
+        } else if (c == delimiter) {
+          column = row.addColumn();
+        } else if (c == '\n') {
+          break;
+        } else if (c == '"' && quoted && column.length() == 0) {
+          inQuotes = true;
+        } else if (c != '\r') {
+          column.append((char) c);
+        }
+        c = read();
+      }
+      return true;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+      return ImmutableList.of();
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reads the {@code row} elements of an XML report, whose attributes hold
+   * the values of the columns declared by its {@code column} elements.
+   */
+  private static final class XmlRowSource implements RowSource {
+    /**
+     * StAX factories are not guaranteed to be thread-safe. Reports never
+     * declare a DTD, so DTDs and external entities are not processed.
+     */
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORIES =
+        new ThreadLocal<XMLInputFactory>() {
+          @Override
+          protected XMLInputFactory initialValue() {
+            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            return inputFactory;
+          }
+        };
+
+    private final InputStream inputStream;
+    private final XMLStreamReader reader;
+    private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+    private final List<String> columnNames = new ArrayList<String>();
+    private boolean pendingRow;
+
+    XmlRowSource(InputStream inputStream, Charset charset) throws IOException {
+      this.inputStream = inputStream;
+      try {
+        this.reader = INPUT_FACTORIES.get().createXMLStreamReader(inputStream, charset.name());
+        // Reads the column declarations, which precede the first row.
+        while (!pendingRow && advanceToElement()) {
+          if ("column".equals(reader.getLocalName())) {
+            String name = reader.getAttributeValue(null, "name");
+            String display = reader.getAttributeValue(null, "display");
+            columnIndexes.put(name, columnIndexes.size());
+            columnNames.add(display != null ? display : name);
+          } else if ("row".equals(reader.getLocalName())) {
+            pendingRow = true;
+          }
+        }
+      } catch (XMLStreamException e) {
+        inputStream.close();
+        throw new IOException("Invalid XML report", e);
+      }
+    }
+
+    /**
+     * Advances to the start of the next element.
+     *
+     * @return {@code false} if the end of the document was reached
+     */
+    private boolean advanceToElement() throws XMLStreamException {
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean readRow(Row row) throws IOException {
+      row.size = 0;
+      try {
+        while (!pendingRow) {
+          if (!advanceToElement()) {
+            return false;
+          }
+          pendingRow = "row".equals(reader.getLocalName());
+        }
+        pendingRow = false;
+        int attributeCount = reader.getAttributeCount();
+        if (columnIndexes.isEmpty()) {
+          // Without column declarations, columns are in the order of the first row.
+          for (int i = 0; i < attributeCount; i++) {
+            columnIndexes.put(reader.getAttributeLocalName(i), i);
+          }
+        }
+        int columnCount = columnIndexes.size();
+        for (int i = 0; i < columnCount; i++) {
+          row.addColumn();
+        }
+        for (int i = 0; i < attributeCount; i++) {
+          Integer index = columnIndexes.get(reader.getAttributeLocalName(i));
+          if (index != null) {
+            row.columns[index].append(reader.getAttributeValue(i));
+          }
+        }
+        return true;
+      } catch (XMLStreamException e) {
+        throw new IOException("Invalid XML report", e);
+      }
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+      return ImmutableList.copyOf(columnNames);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        throw new IOException("Unable to close XML report", e);
+      } finally {
+        inputStream.close();
+      }
+    }
+  }
+}
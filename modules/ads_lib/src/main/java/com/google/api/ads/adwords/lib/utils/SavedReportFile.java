@@ -0,0 +1,90 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import java.io.File;
+
+/**
+ * Describes a report saved to a file by
+ * {@link ReportDownloadResponse#saveToFile(File, boolean)}.
+ */
+public class SavedReportFile {
+
+  private final File file;
+  private final boolean decompressed;
+  private final long byteCount;
+  private final long checksum;
+  private final long lineCount;
+
+  /**
+   * Constructor.
+   *
+   * @param file the file the report was saved to
+   * @param decompressed whether the report was decompressed while saved
+   * @param byteCount the size of the file
+   * @param checksum the CRC-32 checksum of the file contents
+   * @param lineCount the number of lines in the file, or {@code -1} if the
+   *     contents are compressed
+   */
+  public SavedReportFile(File file, boolean decompressed, long byteCount, long checksum,
+      long lineCount) {
+    this.file = file;
+    this.decompressed = decompressed;
+    this.byteCount = byteCount;
+    this.checksum = checksum;
+    this.lineCount = lineCount;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns {@code true} if a report in a gzip format was decompressed while
+   * it was saved.
+   */
+  public boolean isDecompressed() {
+    return decompressed;
+  }
+
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * Returns the CRC-32 checksum of the file contents, as computed by
+   * {@link java.util.zip.CRC32}.
+   */
+  public long getChecksum() {
+    return checksum;
+  }
+
+  /**
+   * Returns the number of lines in the file, counting a last line without a
+   * line break. For the CSV and TSV formats, this is the number of rows
+   * including any report header, column header and summary rows. Returns
+   * {@code -1} if the file holds compressed contents.
+   */
+  public long getLineCount() {
+    return lineCount;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %d bytes, %d lines, CRC-32 %08x", file, byteCount, lineCount,
+        checksum);
+  }
+}
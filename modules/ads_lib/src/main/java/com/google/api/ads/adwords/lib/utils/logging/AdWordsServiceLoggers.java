@@ -15,7 +15,9 @@
 package com.google.api.ads.adwords.lib.utils.logging;
 
 import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
+import com.google.api.ads.common.lib.utils.logging.AsyncLoggingQueue;
 import com.google.api.ads.common.lib.utils.logging.PrettyPrinterInterface;
+import com.google.api.ads.common.lib.utils.logging.SoapXmlLogSampler;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
@@ -32,8 +34,10 @@ public class AdWordsServiceLoggers extends AdsServiceLoggers {
   public AdWordsServiceLoggers(PrettyPrinterInterface prettyPrinter,
       @Named("soapXmlLogger") Logger soapXmlLogger,
       @Named("requestInfoLogger") Logger requestInfoLogger,
+      AsyncLoggingQueue asyncLoggingQueue,
+      SoapXmlLogSampler soapXmlLogSampler,
       ReportServiceLogger reportServiceLogger) {
-    super(prettyPrinter, soapXmlLogger, requestInfoLogger);
+    super(prettyPrinter, soapXmlLogger, requestInfoLogger, asyncLoggingQueue, soapXmlLogSampler);
     this.reportServiceLogger = reportServiceLogger;
   }
 
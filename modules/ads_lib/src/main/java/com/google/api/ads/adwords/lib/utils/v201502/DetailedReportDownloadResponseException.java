@@ -76,6 +76,7 @@ public class DetailedReportDownloadResponseException extends ReportDownloadRespo
     return trigger;
   }
 
+  @Override
   public String getType() {
     return type;
   }
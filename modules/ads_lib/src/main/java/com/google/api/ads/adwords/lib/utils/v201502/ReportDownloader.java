@@ -94,7 +94,8 @@ public class ReportDownloader {
   private ReportDownloadResponse handleResponse(RawReportDownloadResponse response)
       throws ReportDownloadResponseException {
     if (response.getHttpStatus() == HttpURLConnection.HTTP_OK) {
-      return new ReportDownloadResponse(response);
+      return new ReportDownloadResponse(response,
+          adHocReportDownloadHelper.getReportingConfiguration());
     }
     String responseText;
     try {
@@ -0,0 +1,130 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils.v201506;
+
+import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.jaxb.v201506.DownloadFormat;
+import com.google.api.ads.adwords.lib.jaxb.v201506.ReportDefinition;
+import com.google.api.ads.adwords.lib.utils.MultiAccountReportDownloadHelper;
+import com.google.api.ads.adwords.lib.utils.MultiAccountReportDownloadHelper.AccountReportDownload;
+import com.google.api.ads.adwords.lib.utils.MultiAccountReportSummary;
+import com.google.api.ads.adwords.lib.utils.ReportDownloadHandler;
+import com.google.api.ads.adwords.lib.utils.ReportDownloadResponse;
+import com.google.api.ads.adwords.lib.utils.ReportDownloadResponseException;
+import com.google.api.ads.adwords.lib.utils.ReportException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.util.Collection;
+
+/**
+ * Downloads the same report for many accounts concurrently, like in the
+ * following code:
+ *
+ * <pre>
+ *<code>MultiAccountReportSummary summary = new MultiAccountReportDownloader(adWordsSession)
+ *    .downloadReports(reportDefinition, clientCustomerIds, handler);
+ *</code>
+ *</pre>
+ *
+ * The {@code adWordsSession} is the template for the session of each account,
+ * which gets the account's client customer ID. Concurrency, retries, rate
+ * limiting and timeouts are configured through {@link #getHelper()}.
+ */
+public class MultiAccountReportDownloader {
+
+  private final MultiAccountReportDownloadHelper helper;
+
+  /**
+   * Constructs a {@link MultiAccountReportDownloader}.
+   *
+   * @param session AdWordsSession to copy for each account.
+   */
+  public MultiAccountReportDownloader(AdWordsSession session) {
+    this(new MultiAccountReportDownloadHelper(session));
+  }
+
+  @VisibleForTesting
+  MultiAccountReportDownloader(MultiAccountReportDownloadHelper helper) {
+    this.helper = helper;
+  }
+
+  /**
+   * Downloads a report for each account and passes it to the handler.
+   *
+   * @param reportDefinition the report to download for each account.
+   * @param clientCustomerIds the client customer IDs of the accounts.
+   * @param handler receives the report of each account.
+   * @return the summary of the run, including the accounts that failed.
+   * @throws InterruptedException if the calling thread was interrupted.
+   */
+  public MultiAccountReportSummary downloadReports(final ReportDefinition reportDefinition,
+      Collection<String> clientCustomerIds, ReportDownloadHandler handler)
+      throws InterruptedException {
+    Preconditions.checkNotNull(reportDefinition, "Null report definition");
+    return helper.downloadReports(new AccountReportDownload() {
+      @Override
+      public ReportDownloadResponse downloadReport(AdWordsSession session,
+          int reportDownloadTimeout) throws ReportException, ReportDownloadResponseException {
+        return newReportDownloader(session, reportDownloadTimeout)
+            .downloadReport(reportDefinition);
+      }
+    }, clientCustomerIds, handler);
+  }
+
+  /**
+   * Downloads a report query (AWQL) for each account and passes it to the handler.
+   *
+   * @param reportQuery the report query to download for each account.
+   * @param format Format to download the reports as.
+   * @param clientCustomerIds the client customer IDs of the accounts.
+   * @param handler receives the report of each account.
+   * @return the summary of the run, including the accounts that failed.
+   * @throws InterruptedException if the calling thread was interrupted.
+   */
+  public MultiAccountReportSummary downloadReports(final String reportQuery,
+      final DownloadFormat format, Collection<String> clientCustomerIds,
+      ReportDownloadHandler handler) throws InterruptedException {
+    Preconditions.checkNotNull(reportQuery, "Null report query");
+    Preconditions.checkNotNull(format, "Null download format");
+    return helper.downloadReports(new AccountReportDownload() {
+      @Override
+      public ReportDownloadResponse downloadReport(AdWordsSession session,
+          int reportDownloadTimeout) throws ReportException, ReportDownloadResponseException {
+        return newReportDownloader(session, reportDownloadTimeout)
+            .downloadReport(reportQuery, format);
+      }
+    }, clientCustomerIds, handler);
+  }
+
+  /**
+   * Creates the downloader for one account.
+   */
+  @VisibleForTesting
+  ReportDownloader newReportDownloader(AdWordsSession session, int reportDownloadTimeout) {
+    ReportDownloader reportDownloader = new ReportDownloader(session);
+    reportDownloader.setReportDownloadTimeout(reportDownloadTimeout);
+    return reportDownloader;
+  }
+
+  /**
+   * Returns the helper holding the concurrency, retry, rate limiting and
+   * timeout settings.
+   */
+  public MultiAccountReportDownloadHelper getHelper() {
+    return helper;
+  }
+}
@@ -11,6 +11,7 @@ import com.google.inject.name.Names;
 public class AuthModule extends AbstractModule {
 
   public static final Long DEFAULT_OAUTH2_REFRESH_WINDOW = 60L;
+  public static final Long DEFAULT_OAUTH2_BACKGROUND_REFRESH_WINDOW = 300L;
 
   /**
    * Default constructor.
@@ -23,5 +24,8 @@ public class AuthModule extends AbstractModule {
     bindConstant().annotatedWith(Names.named("requestMethod")).to("POST");
     bindConstant()
         .annotatedWith(Names.named("oAuth2RefreshWindow")).to(DEFAULT_OAUTH2_REFRESH_WINDOW);
+    bindConstant()
+        .annotatedWith(Names.named("oAuth2BackgroundRefreshWindow"))
+        .to(DEFAULT_OAUTH2_BACKGROUND_REFRESH_WINDOW);
   }
 }
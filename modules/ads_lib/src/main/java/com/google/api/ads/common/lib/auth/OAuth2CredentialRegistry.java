@@ -0,0 +1,156 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.auth;
+
+import com.google.api.ads.common.lib.exception.OAuthException;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.common.base.Objects;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Registry of offline credentials shared by every session using the same
+ * OAuth2 grant.
+ *
+ * <p>Credentials are keyed by client ID, refresh token and token server URL,
+ * so all {@link OfflineCredentials} for the same grant share one
+ * {@link Credential}, and therefore one access token and one refresh cycle,
+ * no matter how many sessions are created from them. The first request for a
+ * grant generates and refreshes the credential; concurrent requests for the
+ * same grant wait for that credential rather than refreshing their own.
+ */
+@Singleton
+public class OAuth2CredentialRegistry {
+
+  private final ConcurrentMap<CredentialKey, FutureTask<Credential>> credentials;
+
+  @Inject
+  public OAuth2CredentialRegistry() {
+    this.credentials = new ConcurrentHashMap<CredentialKey, FutureTask<Credential>>();
+  }
+
+  /**
+   * Gets the credential shared by every {@link OfflineCredentials} with the
+   * same grant, generating it from {@code offlineCredentials} if none is
+   * registered yet.
+   *
+   * @param offlineCredentials the offline credentials describing the grant
+   * @return the shared credential
+   * @throws OAuthException if the credential could not be generated. Nothing
+   *     is registered for the grant in this case, so a later call will try
+   *     again.
+   */
+  public Credential getCredential(final OfflineCredentials offlineCredentials)
+      throws OAuthException {
+    CredentialKey key = new CredentialKey(offlineCredentials);
+    FutureTask<Credential> task = credentials.get(key);
+    if (task == null) {
+      FutureTask<Credential> newTask = new FutureTask<Credential>(new Callable<Credential>() {
+        @Override
+        public Credential call() throws OAuthException {
+          return offlineCredentials.generateCredential();
+        }
+      });
+      task = credentials.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OAuthException("Interrupted while waiting for shared credential.", e);
+    } catch (ExecutionException e) {
+      credentials.remove(key, task);
+      Throwable cause = e.getCause();
+      if (cause instanceof OAuthException) {
+        throw (OAuthException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new OAuthException("Shared credential could not be generated.", cause);
+    }
+  }
+
+  /**
+   * Removes the credential registered for the grant of
+   * {@code offlineCredentials}, for example after its refresh token has been
+   * revoked. Sessions already holding the credential keep using it.
+   *
+   * @return {@code true} if a credential was registered for the grant
+   */
+  public boolean remove(OfflineCredentials offlineCredentials) {
+    return credentials.remove(new CredentialKey(offlineCredentials)) != null;
+  }
+
+  /**
+   * Removes all registered credentials.
+   */
+  public void clear() {
+    credentials.clear();
+  }
+
+  /**
+   * Gets the number of grants with a registered credential.
+   */
+  public int size() {
+    return credentials.size();
+  }
+
+  /**
+   * Identifies an OAuth2 grant.
+   */
+  private static final class CredentialKey {
+
+    private final String clientId;
+    private final String refreshToken;
+    private final String tokenServerUrl;
+
+    CredentialKey(OfflineCredentials offlineCredentials) {
+      this.clientId = offlineCredentials.getClientId();
+      this.refreshToken = offlineCredentials.getRefreshToken();
+      this.tokenServerUrl = offlineCredentials.getTokenServerUrl();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof CredentialKey)) {
+        return false;
+      }
+      CredentialKey other = (CredentialKey) obj;
+      return Objects.equal(clientId, other.clientId)
+          && Objects.equal(refreshToken, other.refreshToken)
+          && Objects.equal(tokenServerUrl, other.tokenServerUrl);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(clientId, refreshToken, tokenServerUrl);
+    }
+  }
+}
@@ -16,45 +16,108 @@ package com.google.api.ads.common.lib.auth;
 
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * OAuth2 helper functions.
+ *
+ * <p>Refreshes are single-flight: concurrent refreshes of the same credential,
+ * or of credentials with the same refresh token, are collapsed into one
+ * request to the token server. Credentials that are used within the background
+ * refresh window of their expiry are renewed on a background thread, so that
+ * callers only wait on the token server if a token is about to expire or has
+ * expired.
+ *
+ * <p>Each Guice injector of the library, such as the one behind the services
+ * and the one behind {@code Internals}, has its own instance of this class.
+ * The in-flight refreshes, the background refresh threads and the refresh
+ * statistics are therefore shared by all instances, so that refreshes are
+ * single-flight across service calls and report downloads, and the
+ * statistics read through {@code Internals.getOAuth2Helper()} include the
+ * refreshes made for service calls.
  */
+@Singleton
 public class OAuth2Helper {
 
+  private static final int MAX_BACKGROUND_REFRESH_THREADS = 4;
+
+  /** The refresh state shared by all instances. */
+  private static final RefreshState SHARED_REFRESH_STATE = new RefreshState();
+
   private final Long refreshWindowSeconds;
+  private final Long backgroundRefreshWindowSeconds;
   private final Logger libLogger;
+  private final RefreshState refreshState;
 
   /**
    * Constructor.
    *
    * @param libLogger the lib logger
    * @param refreshWindowSeconds the refresh window in seconds
+   * @param backgroundRefreshWindowSeconds the window in seconds before expiry
+   *     in which a used credential is refreshed in the background; values no
+   *     greater than {@code refreshWindowSeconds} disable background refreshes
    */
   @Inject
   public OAuth2Helper(@Named("libLogger") Logger libLogger,
-      @Named("oAuth2RefreshWindow") Long refreshWindowSeconds) {
+      @Named("oAuth2RefreshWindow") Long refreshWindowSeconds,
+      @Named("oAuth2BackgroundRefreshWindow") Long backgroundRefreshWindowSeconds) {
+    this(libLogger, refreshWindowSeconds, backgroundRefreshWindowSeconds, SHARED_REFRESH_STATE);
+  }
+
+  @VisibleForTesting
+  OAuth2Helper(Logger libLogger, Long refreshWindowSeconds, Long backgroundRefreshWindowSeconds,
+      RefreshState refreshState) {
     this.libLogger = libLogger;
     this.refreshWindowSeconds = refreshWindowSeconds;
+    this.backgroundRefreshWindowSeconds = backgroundRefreshWindowSeconds;
+    this.refreshState = refreshState;
   }
 
   /**
-   * Refreshes the credential if within the refresh window.
+   * Constructor without background refreshes.
+   *
+   * @param libLogger the lib logger
+   * @param refreshWindowSeconds the refresh window in seconds
+   */
+  public OAuth2Helper(Logger libLogger, Long refreshWindowSeconds) {
+    this(libLogger, refreshWindowSeconds, refreshWindowSeconds);
+  }
+
+  /**
+   * Refreshes the credential if within the refresh window. If the credential is
+   * only within the background refresh window, a refresh is started in the
+   * background and the credential is returned as is.
    *
    * @throws IOException if there was an problem refreshing the token
    */
   public Credential refreshCredential(Credential credential) throws IOException {
     if (isCredentialRefreshable(credential)) {
-      if (!callRefreshToken(credential)) {
+      if (!refreshOnce(credential)) {
         libLogger.warn("OAuth2 token could not be refreshed. "
             + "Add a refreshListener to the Credential to capture this failure.");
       }
+    } else if (isCredentialRenewable(credential)) {
+      refreshInBackground(credential);
     }
     return credential;
   }
@@ -76,4 +139,220 @@ public class OAuth2Helper {
     return credential.getAccessToken() == null || credential.getExpiresInSeconds() != null
         && credential.getExpiresInSeconds() <= refreshWindowSeconds;
   }
+
+  /**
+   * Returns {@code true} if the credential is still valid but should be
+   * refreshed in the background.
+   */
+  @VisibleForTesting
+  boolean isCredentialRenewable(Credential credential) {
+    return credential.getRefreshToken() != null && credential.getExpiresInSeconds() != null
+        && credential.getExpiresInSeconds() <= backgroundRefreshWindowSeconds;
+  }
+
+  /**
+   * Refreshes the credential, or waits for a refresh already in flight for the
+   * same refresh token and copies its access token.
+   *
+   * @return {@code true} if the credential was refreshed
+   * @throws IOException if the credential could not be refreshed
+   */
+  private boolean refreshOnce(Credential credential) throws IOException {
+    RefreshTask refreshTask = new RefreshTask(credential, false);
+    RefreshTask inFlight =
+        refreshState.refreshesInFlight.putIfAbsent(refreshTask.key, refreshTask);
+    if (inFlight == null) {
+      refreshTask.run();
+      return refreshTask.getResult();
+    }
+    boolean refreshed = inFlight.getResult();
+    if (refreshed && inFlight.credential != credential) {
+      credential.setAccessToken(inFlight.credential.getAccessToken());
+      credential.setExpirationTimeMilliseconds(
+          inFlight.credential.getExpirationTimeMilliseconds());
+    }
+    return refreshed;
+  }
+
+  /**
+   * Starts refreshing the credential on a background thread, unless a refresh
+   * for the same refresh token is already in flight.
+   */
+  private void refreshInBackground(Credential credential) {
+    final RefreshTask refreshTask = new RefreshTask(credential, true);
+    if (refreshState.refreshesInFlight.putIfAbsent(refreshTask.key, refreshTask) != null) {
+      return;
+    }
+    try {
+      refreshState.getBackgroundExecutor().execute(new Runnable() {
+        @Override
+        public void run() {
+          refreshTask.run();
+          try {
+            if (!refreshTask.getResult()) {
+              libLogger.warn("OAuth2 token could not be refreshed in the background.");
+            }
+          } catch (IOException e) {
+            libLogger.warn("OAuth2 token could not be refreshed in the background.", e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      refreshState.refreshesInFlight.remove(refreshTask.key, refreshTask);
+    }
+  }
+
+  /**
+   * Records the outcome and latency of a call to the token server.
+   */
+  private boolean timeRefresh(Credential credential) throws IOException {
+    long startNanos = System.nanoTime();
+    boolean refreshed = false;
+    try {
+      refreshed = callRefreshToken(credential);
+      return refreshed;
+    } finally {
+      long latencyNanos = System.nanoTime() - startNanos;
+      refreshState.totalRefreshLatencyNanos.addAndGet(latencyNanos);
+      long maxLatencyNanos;
+      do {
+        maxLatencyNanos = refreshState.maxRefreshLatencyNanos.get();
+      } while (latencyNanos > maxLatencyNanos
+          && !refreshState.maxRefreshLatencyNanos.compareAndSet(maxLatencyNanos, latencyNanos));
+      refreshState.refreshCount.incrementAndGet();
+      if (!refreshed) {
+        refreshState.refreshFailureCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of requests made to the token server by all instances.
+   */
+  public long getRefreshCount() {
+    return refreshState.refreshCount.get();
+  }
+
+  /**
+   * Returns the number of requests made to the token server by all instances
+   * that did not refresh the token.
+   */
+  public long getRefreshFailureCount() {
+    return refreshState.refreshFailureCount.get();
+  }
+
+  /**
+   * Returns the total time all instances spent waiting on the token server,
+   * in milliseconds.
+   */
+  public long getTotalRefreshLatencyMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(refreshState.totalRefreshLatencyNanos.get());
+  }
+
+  /**
+   * Returns the longest time spent waiting on the token server for a single
+   * request, in milliseconds.
+   */
+  public long getMaxRefreshLatencyMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(refreshState.maxRefreshLatencyNanos.get());
+  }
+
+  /**
+   * The in-flight refreshes, background refresh threads and refresh
+   * statistics of one or more instances.
+   */
+  @VisibleForTesting
+  static final class RefreshState {
+    private final ConcurrentMap<Object, OAuth2Helper.RefreshTask> refreshesInFlight =
+        new ConcurrentHashMap<Object, OAuth2Helper.RefreshTask>();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshFailureCount = new AtomicLong();
+    private final AtomicLong totalRefreshLatencyNanos = new AtomicLong();
+    private final AtomicLong maxRefreshLatencyNanos = new AtomicLong();
+    private volatile Executor backgroundExecutor;
+
+    private Executor getBackgroundExecutor() {
+      if (backgroundExecutor == null) {
+        synchronized (this) {
+          if (backgroundExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_BACKGROUND_REFRESH_THREADS,
+                MAX_BACKGROUND_REFRESH_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("ads-oauth2-refresh-%d")
+                    .build());
+            executor.allowCoreThreadTimeOut(true);
+            backgroundExecutor = executor;
+          }
+        }
+      }
+      return backgroundExecutor;
+    }
+  }
+
+  /**
+   * A refresh of one credential, which other callers needing the same refresh
+   * token may wait on. The task removes itself from the in-flight refreshes
+   * once it has completed.
+   *
+   * <p>A caller may find the credential expiring just after a previous refresh
+   * of it completed and left the in-flight refreshes. The task therefore checks
+   * the expiry again once it has claimed its slot, and skips the request to the
+   * token server if the credential no longer needs refreshing.
+   */
+  private class RefreshTask extends FutureTask<Boolean> {
+
+    private final Credential credential;
+    private final Object key;
+
+    RefreshTask(final Credential credential, final boolean background) {
+      super(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws IOException {
+          boolean needsRefresh = background
+              ? isCredentialRenewable(credential) : isCredentialRefreshable(credential);
+          if (!needsRefresh) {
+            return true;
+          }
+          return timeRefresh(credential);
+        }
+      });
+      this.credential = credential;
+      this.key = credential.getRefreshToken() != null ? credential.getRefreshToken() : credential;
+    }
+
+    @Override
+    protected void done() {
+      refreshState.refreshesInFlight.remove(key, this);
+    }
+
+    /**
+     * Waits for the refresh to complete.
+     *
+     * @return {@code true} if the credential was refreshed
+     * @throws IOException if the credential could not be refreshed
+     */
+    boolean getResult() throws IOException {
+      try {
+        return get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException interruptedException =
+            new InterruptedIOException("Interrupted while waiting for OAuth2 token refresh.");
+        interruptedException.initCause(e);
+        throw interruptedException;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
 }
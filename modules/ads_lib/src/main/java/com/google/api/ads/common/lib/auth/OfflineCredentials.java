@@ -51,6 +51,10 @@ import javax.annotation.Nullable;
  *     .generateCredential();
  * </code></pre>
  *
+ * Applications creating many sessions for the same grant should use
+ * {@link #generateSharedCredential()} instead, so the sessions share one
+ * access token and one refresh cycle.
+ *
  * This can be also used instead of service accounts. Generate a refresh token
  * once and place it in your ads.properties file to be read by this utility.
  */
@@ -92,6 +96,7 @@ public class OfflineCredentials {
   private final String clientId;
   private final String clientSecret;
   private final OAuth2Helper oAuth2Helper;
+  private final OAuth2CredentialRegistry credentialRegistry;
   private final String tokenServerUrl;
 
   /**
@@ -105,6 +110,7 @@ public class OfflineCredentials {
     this.clientId = builder.clientId;
     this.clientSecret = builder.clientSecret;
     this.oAuth2Helper = builder.oAuth2Helper;
+    this.credentialRegistry = builder.credentialRegistry;
     this.tokenServerUrl = builder.tokenServerUrl;
   }
 
@@ -124,6 +130,10 @@ public class OfflineCredentials {
     return clientSecret;
   }
 
+  String getTokenServerUrl() {
+    return tokenServerUrl;
+  }
+
   /**
    * Generates a new offline credential and immediately refreshes it.
    *
@@ -149,6 +159,20 @@ public class OfflineCredentials {
     return credential;
   }
 
+  /**
+   * Gets the credential shared by all offline credentials with the same client
+   * ID and refresh token, generating and refreshing it the first time it is
+   * requested. Sessions created with the shared credential share its access
+   * token and its refreshes, so it must not be modified by the caller.
+   *
+   * @return the shared offline credential.
+   * @throws OAuthException if the credential could not be refreshed.
+   * @see OAuth2CredentialRegistry
+   */
+  public Credential generateSharedCredential() throws OAuthException {
+    return credentialRegistry.getCredential(this);
+  }
+
   /**
    * Pre-builder for OfflineCredentials.
    */
@@ -156,6 +180,8 @@ public class OfflineCredentials {
 
     @Nullable
     private OAuth2Helper oAuth2Helper;
+    @Nullable
+    private OAuth2CredentialRegistry credentialRegistry;
 
     /**
      * Default constructor.
@@ -166,7 +192,14 @@ public class OfflineCredentials {
 
     @VisibleForTesting
     Builder(@Nullable OAuth2Helper oAuth2Helper) {
+      this(oAuth2Helper, null);
+    }
+
+    @VisibleForTesting
+    Builder(@Nullable OAuth2Helper oAuth2Helper,
+        @Nullable OAuth2CredentialRegistry credentialRegistry) {
       this.oAuth2Helper = oAuth2Helper;
+      this.credentialRegistry = credentialRegistry;
     }
 
     /**
@@ -175,13 +208,16 @@ public class OfflineCredentials {
      */
     public ForApiBuilder forApi(Api api) {
       defaultOptionals(api);
-      return new ForApiBuilder(api, oAuth2Helper);
+      return new ForApiBuilder(api, oAuth2Helper, credentialRegistry);
     }
 
     private void defaultOptionals(Api api) {
       if (oAuth2Helper == null) {
         oAuth2Helper = api.getInternals().getOAuth2Helper();
       }
+      if (credentialRegistry == null) {
+        credentialRegistry = api.getInternals().getOAuth2CredentialRegistry();
+      }
     }
   }
 
@@ -205,22 +241,32 @@ public class OfflineCredentials {
     private final ConfigurationHelper configHelper;
     private final Api api;
     private final OAuth2Helper oAuth2Helper;
+    private final OAuth2CredentialRegistry credentialRegistry;
 
     /**
      * Private constructor.
      *
      * @param api the API for the builder
      * @param oAuth2Helper the OAuth2 helper
+     * @param credentialRegistry the registry of shared credentials
      */
-    private ForApiBuilder(Api api, OAuth2Helper oAuth2Helper) {
-      this(new ConfigurationHelper(), api, oAuth2Helper);
+    private ForApiBuilder(Api api, OAuth2Helper oAuth2Helper,
+        OAuth2CredentialRegistry credentialRegistry) {
+      this(new ConfigurationHelper(), api, oAuth2Helper, credentialRegistry);
     }
 
     @VisibleForTesting
     ForApiBuilder(ConfigurationHelper configHelper, Api api, OAuth2Helper oAuth2Helper) {
+      this(configHelper, api, oAuth2Helper, api.getInternals().getOAuth2CredentialRegistry());
+    }
+
+    @VisibleForTesting
+    ForApiBuilder(ConfigurationHelper configHelper, Api api, OAuth2Helper oAuth2Helper,
+        OAuth2CredentialRegistry credentialRegistry) {
       this.configHelper = configHelper;
       this.api = api;
       this.oAuth2Helper = oAuth2Helper;
+      this.credentialRegistry = credentialRegistry;
     }
 
     @Override
@@ -0,0 +1,177 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket whose rate adapts to rate exceeded errors from the server.
+ * <p>
+ * The rate starts at the maximum. Each time the server reports that the rate
+ * was exceeded, the rate is halved, down to a minimum, and no permits are
+ * handed out until the server's retry delay has passed. Afterwards the rate
+ * recovers linearly back to the maximum, so callers settle just below the
+ * sustainable rate instead of alternating between bursts and penalty waits.
+ * Reports arriving from calls already in flight when the rate was reduced do
+ * not reduce it again.
+ * </p>
+ */
+public class AdaptiveRateLimiter {
+
+  /** The factor the rate is multiplied by when it is exceeded. */
+  private static final double DECREASE_FACTOR = 0.5;
+
+  /** The smallest rate, as a fraction of the maximum. */
+  private static final double MIN_RATE_FRACTION = 0.01;
+
+  /** The time it takes for the rate to recover from the minimum to the maximum. */
+  private static final long RECOVERY_SECONDS = 60;
+
+  /**
+   * The longest a caller waits for a permit without checking whether it was
+   * interrupted.
+   */
+  private static final long ACQUIRE_SLICE_MILLIS = 100;
+
+  private final RateLimiter rateLimiter;
+  private final double maxQps;
+  private final double minQps;
+  private final Ticker ticker;
+
+  private double qps;
+  private long lastUpdateNanos;
+  private long penaltyEndNanos;
+  private long decreaseHoldEndNanos;
+
+  /**
+   * Constructor.
+   *
+   * @param maxQps the maximum number of permits handed out per second
+   */
+  public AdaptiveRateLimiter(double maxQps) {
+    this(maxQps, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  AdaptiveRateLimiter(double maxQps, Ticker ticker) {
+    Preconditions.checkArgument(maxQps > 0, "maxQps must be positive");
+    this.rateLimiter = RateLimiter.create(maxQps);
+    this.maxQps = maxQps;
+    this.minQps = maxQps * MIN_RATE_FRACTION;
+    this.ticker = ticker;
+    this.qps = maxQps;
+    this.lastUpdateNanos = ticker.read();
+    this.penaltyEndNanos = lastUpdateNanos;
+    this.decreaseHoldEndNanos = lastUpdateNanos;
+  }
+
+  /**
+   * Blocks until a permit is available, waiting out any penalty imposed by the
+   * server first.
+   *
+   * @throws InterruptedException if the calling thread was interrupted while
+   *     waiting
+   */
+  public void acquire() throws InterruptedException {
+    long penaltyNanos;
+    synchronized (this) {
+      long now = ticker.read();
+      recover(now);
+      penaltyNanos = penaltyEndNanos - now;
+    }
+    if (penaltyNanos > 0) {
+      sleep(penaltyNanos);
+    }
+    // RateLimiter waits uninterruptibly, so permits are only taken once they
+    // are at most one slice away, and the caller sleeps interruptibly until
+    // then.
+    while (!rateLimiter.tryAcquire(1, ACQUIRE_SLICE_MILLIS, TimeUnit.MILLISECONDS)) {
+      sleep(TimeUnit.MILLISECONDS.toNanos(ACQUIRE_SLICE_MILLIS));
+    }
+    if (Thread.interrupted()) {
+      throw new InterruptedException("Interrupted while waiting for a rate limit permit.");
+    }
+  }
+
+  /**
+   * Records that the server rejected a call because the rate was exceeded.
+   *
+   * @param retryAfterSeconds the delay the server asked for before retrying,
+   *     or {@code 0} if none was given
+   */
+  public synchronized void recordRateExceeded(long retryAfterSeconds) {
+    long now = ticker.read();
+    recover(now);
+    long retryAfterNanos = TimeUnit.SECONDS.toNanos(Math.max(retryAfterSeconds, 0));
+    penaltyEndNanos = Math.max(penaltyEndNanos, now + retryAfterNanos);
+    if (now - decreaseHoldEndNanos >= 0) {
+      setQps(Math.max(minQps, qps * DECREASE_FACTOR));
+      decreaseHoldEndNanos = now + Math.max(retryAfterNanos, TimeUnit.SECONDS.toNanos(1));
+    }
+    lastUpdateNanos = now;
+  }
+
+  /**
+   * Gets the current rate in permits per second.
+   */
+  public synchronized double getRate() {
+    recover(ticker.read());
+    return qps;
+  }
+
+  /**
+   * Gets the maximum rate in permits per second.
+   */
+  public double getMaxRate() {
+    return maxQps;
+  }
+
+  /**
+   * Raises the rate linearly towards the maximum for the time elapsed since
+   * the last update, not counting any penalty.
+   */
+  private void recover(long now) {
+    if (qps < maxQps && now - penaltyEndNanos > 0) {
+      long elapsedNanos = now - Math.max(lastUpdateNanos, penaltyEndNanos);
+      if (elapsedNanos > 0) {
+        double increase = (maxQps - minQps) * elapsedNanos
+            / TimeUnit.SECONDS.toNanos(RECOVERY_SECONDS);
+        setQps(Math.min(maxQps, qps + increase));
+      }
+    }
+    lastUpdateNanos = now;
+  }
+
+  private void setQps(double qps) {
+    if (qps != this.qps) {
+      this.qps = qps;
+      rateLimiter.setRate(qps);
+    }
+  }
+
+  /**
+   * Sleeps for the penalty imposed by the server, or until a permit may be
+   * available.
+   */
+  @VisibleForTesting
+  void sleep(long nanos) throws InterruptedException {
+    TimeUnit.NANOSECONDS.sleep(nanos);
+  }
+}
@@ -0,0 +1,190 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Throttles calls shared by many service clients with one
+ * {@link AdaptiveRateLimiter} per rate limit key, such as a developer token,
+ * a client customer ID or a service. A call takes a permit from the limiter of
+ * each of its keys before it is sent.
+ * <p>
+ * Keys are made of a scope and an ID, such as
+ * {@code clientCustomerId:1234567890}, and each scope may have its own maximum
+ * rate. Keys of a scope without a positive maximum rate are not throttled.
+ * </p>
+ * <p>
+ * Limiters that have not been used for a while are discarded, so the number of
+ * keys seen over the lifetime of an application does not matter.
+ * </p>
+ */
+public class AdsRateLimiter {
+
+  /** The time after which an unused limiter is discarded. */
+  private static final long IDLE_MINUTES = 30;
+
+  /** The scope of keys limiting the calls made with a developer token. */
+  public static final String DEVELOPER_TOKEN_SCOPE = "developerToken";
+
+  /** The scope of keys limiting the calls made for a client customer ID. */
+  public static final String CLIENT_CUSTOMER_ID_SCOPE = "clientCustomerId";
+
+  /** The scope of keys limiting the calls made to a service. */
+  public static final String SERVICE_SCOPE = "service";
+
+  private static final char SCOPE_SEPARATOR = ':';
+
+  private final LoadingCache<String, AdaptiveRateLimiter> rateLimiters;
+  private final Map<String, Double> maxQpsByScope;
+  private final double defaultMaxQps;
+
+  /**
+   * Constructor for a limiter with the same maximum rate for every key.
+   *
+   * @param maxQps the maximum rate in calls per second for each key
+   */
+  public AdsRateLimiter(double maxQps) {
+    this(ImmutableMap.<String, Double>of(), maxQps);
+    Preconditions.checkArgument(maxQps > 0, "maxQps must be positive");
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxQpsByScope the maximum rate in calls per second for each key of
+   *     a scope
+   * @param defaultMaxQps the maximum rate in calls per second for each key of
+   *     the scopes not in {@code maxQpsByScope}
+   */
+  public AdsRateLimiter(Map<String, Double> maxQpsByScope, double defaultMaxQps) {
+    this.maxQpsByScope = ImmutableMap.copyOf(maxQpsByScope);
+    this.defaultMaxQps = defaultMaxQps;
+    this.rateLimiters = CacheBuilder.newBuilder()
+        .expireAfterAccess(IDLE_MINUTES, TimeUnit.MINUTES)
+        .build(new CacheLoader<String, AdaptiveRateLimiter>() {
+          @Override
+          public AdaptiveRateLimiter load(String key) {
+            return new AdaptiveRateLimiter(getMaxQps(key));
+          }
+        });
+  }
+
+  /**
+   * Creates the rate limit key for an ID in a scope.
+   *
+   * @param scope the scope, such as {@link #CLIENT_CUSTOMER_ID_SCOPE}
+   * @param id the ID within the scope
+   */
+  public static String createKey(String scope, String id) {
+    return scope + SCOPE_SEPARATOR + id;
+  }
+
+  /**
+   * Blocks until a call with the given keys may be sent.
+   *
+   * @param keys the rate limit keys of the call
+   * @throws InterruptedException if the calling thread was interrupted while
+   *     waiting
+   */
+  public void acquire(List<String> keys) throws InterruptedException {
+    for (String key : keys) {
+      AdaptiveRateLimiter rateLimiter = getRateLimiter(key);
+      if (rateLimiter != null) {
+        rateLimiter.acquire();
+      }
+    }
+  }
+
+  /**
+   * Records that the server rejected a call because a rate was exceeded.
+   *
+   * @param rateExceeded the keys whose rates were exceeded and the delay the
+   *     server asked for
+   */
+  public void recordRateExceeded(RateExceeded rateExceeded) {
+    for (String key : rateExceeded.getKeys()) {
+      AdaptiveRateLimiter rateLimiter = getRateLimiter(key);
+      if (rateLimiter != null) {
+        rateLimiter.recordRateExceeded(rateExceeded.getRetryAfterSeconds());
+      }
+    }
+  }
+
+  /**
+   * Gets the limiter for {@code key}, creating it if necessary.
+   *
+   * @return the limiter, or {@code null} if calls with {@code key} are not
+   *     throttled
+   */
+  @Nullable
+  public AdaptiveRateLimiter getRateLimiter(String key) {
+    if (getMaxQps(key) <= 0) {
+      return null;
+    }
+    return rateLimiters.getUnchecked(key);
+  }
+
+  /**
+   * Gets the maximum rate in calls per second for {@code key}, as set for its
+   * scope.
+   */
+  public double getMaxQps(String key) {
+    int separatorIndex = key.indexOf(SCOPE_SEPARATOR);
+    Double maxQps = separatorIndex < 0 ? null
+        : maxQpsByScope.get(key.substring(0, separatorIndex));
+    return maxQps != null ? maxQps : defaultMaxQps;
+  }
+
+  /**
+   * A rate exceeded error reported by the server.
+   */
+  public static final class RateExceeded {
+
+    private final List<String> keys;
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructor.
+     *
+     * @param keys the rate limit keys whose rates were exceeded
+     * @param retryAfterSeconds the delay the server asked for before retrying,
+     *     or {@code 0} if none was given
+     */
+    public RateExceeded(List<String> keys, long retryAfterSeconds) {
+      this.keys = ImmutableList.copyOf(keys);
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public List<String> getKeys() {
+      return keys;
+    }
+
+    public long getRetryAfterSeconds() {
+      return retryAfterSeconds;
+    }
+  }
+}
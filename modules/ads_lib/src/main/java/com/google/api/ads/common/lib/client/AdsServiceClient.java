@@ -14,12 +14,31 @@
 
 package com.google.api.ads.common.lib.client;
 
+import com.google.api.ads.common.lib.client.AdsRateLimiter.RateExceeded;
 import com.google.api.ads.common.lib.exception.AuthenticationException;
 import com.google.api.ads.common.lib.exception.ServiceException;
+import com.google.api.ads.common.lib.soap.RequestInfo;
+import com.google.api.ads.common.lib.soap.ResponseInfo;
+import com.google.api.ads.common.lib.soap.SoapCall;
 import com.google.api.ads.common.lib.soap.SoapCallReturn;
+import com.google.api.ads.common.lib.soap.SoapCallTimings;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
+import com.google.api.ads.common.lib.soap.SoapClientPool;
 import com.google.api.ads.common.lib.soap.SoapServiceClient;
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
 import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
+import com.google.api.ads.common.lib.utils.metrics.MetricsSink;
+import com.google.api.ads.common.lib.utils.metrics.NoOpMetricsSink;
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The base class for all AdsServiceClients.
@@ -31,6 +50,37 @@ import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
  * <li>Acting as an invocation wrapper for RPCs.</li>
  * <li>Setting the endpoint address.</li>
  * </ul>
+ * <p>
+ * By default all calls share a single SOAP client. Once
+ * {@link #enableSoapClientPool(int)} has been called, each call instead checks
+ * a SOAP client out of a bounded pool and sets the headers on that client, so
+ * a single proxy can carry several calls concurrently. A pool may also be
+ * shared by many service clients through
+ * {@link #setSoapClientPool(SoapClientPool)}, in which case the headers for
+ * this client's session are set on whichever SOAP client a call checks out,
+ * and the endpoint cannot be changed.
+ * </p>
+ * <p>
+ * Calls may also be throttled by an {@link AdsRateLimiter} shared with other
+ * service clients, set through {@link #setRateLimiter(AdsRateLimiter)}. Each
+ * call then waits for a permit for each of its
+ * {@link #getRateLimitKeys() rate limit keys}, and rate exceeded errors
+ * recognized by {@link #getRateExceeded(Throwable)} slow down the keys they
+ * apply to.
+ * </p>
+ * <p>
+ * Failed calls are retried according to a {@link RetryPolicy}, if set
+ * through {@link #setRetryPolicy(RetryPolicy)}, provided the call is
+ * {@link #isIdempotent(Method) safe to repeat} and its exception is
+ * {@link #isRetryable(Throwable) retryable}. Each failed attempt is logged.
+ * Every attempt of such a call is limited to the time the policy has left
+ * for the call, so retries do not run past its deadline.
+ * </p>
+ * <p>
+ * The latency, payload sizes, retries and errors of each attempt are recorded
+ * in a {@link MetricsSink} per service, method and
+ * {@link #getCustomerId() customer}.
+ * </p>
  *
  * @param <S> the type of {@link AdsSession}
  * @param <D> the type of {@link AdsServiceDescriptor}
@@ -41,10 +91,16 @@ public abstract class AdsServiceClient<S extends AdsSession,
   private S adsSession;
   private final D adsServiceDescriptor;
   private final AdsServiceLoggers adsServiceLoggers;
+  private final MetricsSink metricsSink;
   private final HeaderHandler<S, D> headerHandler;
+  private volatile SoapClientPool<Object> soapClientPool;
+  private volatile boolean soapClientPoolShared;
+  private volatile AdsRateLimiter rateLimiter;
+  private volatile RetryPolicy retryPolicy;
+  private volatile String metricsServiceName;
 
   /**
-   * Constructor.
+   * Constructor for a client that does not record metrics.
    *
    * @param soapClient the SOAP client
    * @param adsSession the session
@@ -56,10 +112,29 @@ public abstract class AdsServiceClient<S extends AdsSession,
   public AdsServiceClient(Object soapClient, S adsSession, D adsServiceDescriptor,
       SoapClientHandlerInterface<Object> soapClientHandler, HeaderHandler<S, D> headerHandler,
       AdsServiceLoggers adsServiceLoggers) {
+    this(soapClient, adsSession, adsServiceDescriptor, soapClientHandler, headerHandler,
+        adsServiceLoggers, NoOpMetricsSink.getInstance());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param soapClient the SOAP client
+   * @param adsSession the session
+   * @param adsServiceDescriptor the service descriptor
+   * @param soapClientHandler the SOAP client handler
+   * @param headerHandler the header handler
+   * @param adsServiceLoggers the loggers
+   * @param metricsSink the sink the metrics of each call are recorded in
+   */
+  public AdsServiceClient(Object soapClient, S adsSession, D adsServiceDescriptor,
+      SoapClientHandlerInterface<Object> soapClientHandler, HeaderHandler<S, D> headerHandler,
+      AdsServiceLoggers adsServiceLoggers, MetricsSink metricsSink) {
     super(soapClientHandler, soapClient);
     this.adsSession = adsSession;
     this.adsServiceDescriptor = adsServiceDescriptor;
     this.adsServiceLoggers = adsServiceLoggers;
+    this.metricsSink = metricsSink;
     this.headerHandler = headerHandler;
   }
 
@@ -90,6 +165,353 @@ public abstract class AdsServiceClient<S extends AdsSession,
     this.adsSession = session;
   }
 
+  /**
+   * Enables pooled mode, in which each call is made on a SOAP client checked
+   * out of a pool holding at most {@code maxSize} clients. The current SOAP
+   * client seeds the pool, and additional clients are created on demand with
+   * the endpoint address the current SOAP client has at that time.
+   *
+   * @param maxSize the maximum number of concurrent calls on this client
+   */
+  public void enableSoapClientPool(int maxSize) {
+    soapClientPool = new SoapClientPool<Object>(getSoapClient(), new Supplier<Object>() {
+      @Override
+      public Object get() {
+        Object soapClient = getSoapClientHandler().createSoapClient(adsServiceDescriptor);
+        getSoapClientHandler().setEndpointAddress(soapClient,
+            getSoapClientHandler().getEndpointAddress(getSoapClient()));
+        return soapClient;
+      }
+    }, maxSize);
+    soapClientPoolShared = false;
+  }
+
+  /**
+   * Enables pooled mode using a pool that may be shared with other service
+   * clients for the same service and endpoint. The pool's SOAP clients all
+   * have that endpoint, so {@link #setEndpointAddress(String)} is no longer
+   * supported.
+   *
+   * @param soapClientPool the pool to check SOAP clients out of
+   */
+  public void setSoapClientPool(SoapClientPool<Object> soapClientPool) {
+    this.soapClientPool = soapClientPool;
+    soapClientPoolShared = true;
+  }
+
+  /**
+   * @see SoapServiceClient#setEndpointAddress(String)
+   * @throws UnsupportedOperationException if calls are made on SOAP clients
+   *     shared with other service clients through
+   *     {@link #setSoapClientPool(SoapClientPool)}
+   */
+  @Override
+  public void setEndpointAddress(String endpointAddress) {
+    if (soapClientPoolShared) {
+      throw new UnsupportedOperationException("Cannot change the endpoint of a service client "
+          + "whose SOAP clients are shared. Create the service client with a session for the "
+          + "new endpoint instead.");
+    }
+    super.setEndpointAddress(endpointAddress);
+  }
+
+  /**
+   * Gets the SOAP client pool, or {@code null} if pooled mode is not enabled.
+   */
+  public SoapClientPool<Object> getSoapClientPool() {
+    return soapClientPool;
+  }
+
+  /**
+   * Throttles calls with the given rate limiter, or stops throttling them if
+   * {@code null}.
+   *
+   * @param rateLimiter the rate limiter, which may be shared with other service
+   *     clients
+   */
+  public void setRateLimiter(AdsRateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Gets the rate limiter, or {@code null} if calls are not throttled.
+   */
+  public AdsRateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Gets the keys of the rate limits that apply to calls from this client.
+   * Default implementation returns a single key for the service.
+   */
+  protected List<String> getRateLimitKeys() {
+    return ImmutableList.of(AdsRateLimiter.createKey(AdsRateLimiter.SERVICE_SCOPE,
+        adsServiceDescriptor.getInterfaceClass().getName()));
+  }
+
+  /**
+   * Determines if {@code exception} reports that a rate was exceeded, and if
+   * so which of the {@link #getRateLimitKeys() rate limit keys} it applies to.
+   * Default implementation never recognizes an exception.
+   *
+   * @param exception the exception thrown by the SOAP client
+   * @return the rate exceeded error, or absent if {@code exception} is not one
+   */
+  protected Optional<RateExceeded> getRateExceeded(Throwable exception) {
+    return Optional.absent();
+  }
+
+  /**
+   * Retries failed calls with the given policy, or stops retrying them if
+   * {@code null}.
+   *
+   * @param retryPolicy the retry policy, which may be shared with other
+   *     service clients
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * Gets the retry policy, or {@code null} if failed calls are not retried.
+   */
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * Determines if a call to {@code method} may be repeated without changing
+   * its outcome. Default implementation accepts the {@code get} and
+   * {@code query} methods of the services, and rejects methods such as
+   * {@code mutate} that change entities.
+   */
+  protected boolean isIdempotent(Method method) {
+    return method.getName().startsWith("get") || method.getName().startsWith("query");
+  }
+
+  /**
+   * Determines if a call that failed with {@code exception} may succeed if it
+   * is repeated. Default implementation accepts transient transport errors,
+   * as determined by the SOAP client handler, and {@code ApiException}s
+   * containing an {@code InternalApiError}.
+   */
+  protected boolean isRetryable(Throwable exception) {
+    if (getSoapClientHandler().isTransientError(exception)) {
+      return true;
+    }
+    for (Object error : getApiErrors(exception)) {
+      if (error != null && "InternalApiError".equals(error.getClass().getSimpleName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Makes the call, retrying it while the retry policy, if set, allows.
+   *
+   * @see SoapServiceClient#executeSoapCall(Method, Object[])
+   */
+  @Override
+  protected SoapCallReturn executeSoapCall(Method method, Object[] args) throws Throwable {
+    RetryPolicy policy = retryPolicy;
+    if (policy != null && !isIdempotent(method)) {
+      policy = null;
+    }
+    long startNanos = System.nanoTime();
+    for (int attempt = 1;; attempt++) {
+      SoapCallReturn soapCallReturn = executeRateLimitedSoapCall(method, args, policy, startNanos);
+      Throwable exception = soapCallReturn.getException();
+      if (policy == null || exception == null || !isRetryable(exception)) {
+        return soapCallReturn;
+      }
+      long delayMillis = policy.getRetryDelayMillis(attempt,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+      if (delayMillis < 0) {
+        return soapCallReturn;
+      }
+      logSoapCall(soapCallReturn);
+      metricsSink.recordRetry(getMetricsServiceName(), method.getName(), getCustomerId());
+      try {
+        Thread.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return soapCallReturn;
+      }
+    }
+  }
+
+  /**
+   * Waits for the rate limiter, if set, before making the call, and reports
+   * rate exceeded errors back to it. If the call may be retried, the attempt
+   * is limited to the time the retry policy has left for the call.
+   *
+   * @param policy the retry policy if the call may be retried, otherwise
+   *     {@code null}
+   * @param startNanos the start of the first attempt of the call
+   * @throws ServiceException if the calling thread was interrupted while
+   *     waiting for the rate limiter
+   */
+  private SoapCallReturn executeRateLimitedSoapCall(Method method, Object[] args,
+      RetryPolicy policy, long startNanos) throws Throwable {
+    AdsRateLimiter limiter = rateLimiter;
+    if (limiter != null) {
+      try {
+        limiter.acquire(getRateLimitKeys());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ServiceException("Interrupted while waiting for the rate limiter.", e);
+      }
+      SoapCallTimings.mark(SoapCallTimings.Mark.RATE_LIMIT_ACQUIRED);
+    }
+    int timeoutMillis = 0;
+    if (policy != null) {
+      timeoutMillis = (int) Math.min(Integer.MAX_VALUE, policy.getAttemptTimeoutMillis(
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+    }
+    long attemptStartNanos = System.nanoTime();
+    SoapCallReturn soapCallReturn = executePooledSoapCall(method, args, timeoutMillis);
+    recordMetrics(method, soapCallReturn, System.nanoTime() - attemptStartNanos);
+    if (limiter != null && soapCallReturn.getException() != null) {
+      Optional<RateExceeded> rateExceeded = getRateExceeded(soapCallReturn.getException());
+      if (rateExceeded.isPresent()) {
+        limiter.recordRateExceeded(rateExceeded.get());
+      }
+    }
+    return soapCallReturn;
+  }
+
+  /**
+   * Records the latency and payload sizes of the call, and the type of each
+   * of its errors if it failed.
+   */
+  private void recordMetrics(Method method, SoapCallReturn soapCallReturn, long latencyNanos) {
+    String serviceName = getMetricsServiceName();
+    String methodName = method.getName();
+    String customerId = getCustomerId();
+    RequestInfo requestInfo = soapCallReturn.getRequestInfo();
+    ResponseInfo responseInfo = soapCallReturn.getResponseInfo();
+    Throwable exception = soapCallReturn.getException();
+    metricsSink.recordCall(serviceName, methodName, customerId, latencyNanos,
+        requestInfo != null
+            ? getPayloadBytes(requestInfo.getContentLength(), requestInfo.getCompressionStats())
+            : -1,
+        responseInfo != null
+            ? getPayloadBytes(responseInfo.getContentLength(), responseInfo.getCompressionStats())
+            : -1,
+        exception != null);
+    if (exception != null) {
+      List<?> apiErrors = getApiErrors(exception);
+      if (apiErrors.isEmpty()) {
+        metricsSink.recordApiError(serviceName, methodName, customerId,
+            exception.getClass().getSimpleName());
+      }
+      for (Object error : apiErrors) {
+        if (error != null) {
+          metricsSink.recordApiError(serviceName, methodName, customerId,
+              error.getClass().getSimpleName());
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of bytes of a request or response sent over the wire,
+   * which is its content length if known, or else its compressed size if it
+   * was compressed by the library.
+   *
+   * @return the size in bytes, or {@code -1} if not known
+   */
+  private static long getPayloadBytes(long contentLength, CompressionStats compressionStats) {
+    if (contentLength >= 0) {
+      return contentLength;
+    }
+    if (compressionStats != null && compressionStats.getCompressedBytes() > 0) {
+      return compressionStats.getCompressedBytes();
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the name of the service that metrics are recorded under, which is
+   * the simple name of its interface without the {@code Interface} suffix.
+   */
+  private String getMetricsServiceName() {
+    String serviceName = metricsServiceName;
+    if (serviceName == null) {
+      Class<?> interfaceClass = adsServiceDescriptor.getInterfaceClass();
+      serviceName = interfaceClass == null ? ""
+          : interfaceClass.getSimpleName().replaceFirst("Interface$", "");
+      metricsServiceName = serviceName;
+    }
+    return serviceName;
+  }
+
+  /**
+   * Gets the customer that calls from this client are made for, which metrics
+   * are recorded under. Default implementation returns {@code null}.
+   */
+  protected String getCustomerId() {
+    return null;
+  }
+
+  /**
+   * Checks a SOAP client out of the pool, if enabled, and makes the call on it.
+   *
+   * @param timeoutMillis the longest the call may take, or {@code 0} to use
+   *     the timeout of the SOAP client
+   */
+  private SoapCallReturn executePooledSoapCall(Method method, Object[] args, int timeoutMillis)
+      throws Throwable {
+    SoapClientPool<Object> pool = soapClientPool;
+    if (pool == null) {
+      return super.executeSoapCall(method, args, timeoutMillis);
+    }
+    Object soapClient = pool.checkout();
+    try {
+      setHeaders(soapClient);
+      SoapCallTimings.mark(SoapCallTimings.Mark.HEADERS_SET);
+      return getSoapClientHandler().invokeSoapCall(new SoapCall<Object>(
+          getSoapClientHandler().getSoapClientMethod(soapClient, method), soapClient, args,
+          timeoutMillis));
+    } finally {
+      pool.release(soapClient);
+    }
+  }
+
+  /**
+   * Gets the errors of an Axis {@code ApiException} or of the fault info of a
+   * JAX-WS {@code ApiException_Exception}, or an empty list if
+   * {@code exception} is neither. The generated classes differ by product,
+   * version and SOAP framework, so they are inspected reflectively.
+   */
+  protected static List<?> getApiErrors(Throwable exception) {
+    Object apiException = invokeGetter(exception, "getFaultInfo");
+    Object errors = invokeGetter(apiException != null ? apiException : exception, "getErrors");
+    if (errors instanceof Object[]) {
+      return Arrays.asList((Object[]) errors);
+    } else if (errors instanceof List<?>) {
+      return (List<?>) errors;
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Invokes the public no argument method {@code name} of {@code object}, or
+   * returns {@code null} if there is none.
+   */
+  protected static Object invokeGetter(Object object, String name) {
+    try {
+      return object.getClass().getMethod(name).invoke(object);
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      return null;
+    } catch (InvocationTargetException e) {
+      return null;
+    }
+  }
+
   /**
    * @see #logSoapCall(SoapCallReturn)
    */
@@ -104,7 +526,14 @@ public abstract class AdsServiceClient<S extends AdsSession,
    */
   @Override
   protected void setHeaders() throws ServiceException, AuthenticationException {
-    getSoapClientHandler().clearHeaders(getSoapClient());
-    headerHandler.setHeaders(getSoapClient(), adsSession, adsServiceDescriptor);
+    setHeaders(getSoapClient());
+  }
+
+  /**
+   * Clears and sets the headers on the given SOAP client.
+   */
+  private void setHeaders(Object soapClient) throws ServiceException, AuthenticationException {
+    getSoapClientHandler().clearHeaders(soapClient);
+    headerHandler.setHeaders(soapClient, adsSession, adsServiceDescriptor);
   }
 }
@@ -0,0 +1,136 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.Reflection;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Implements an asynchronous twin of a service interface by running each call
+ * on an {@link Executor} and returning a {@link ListenableFuture} of its
+ * result.
+ * <p>
+ * Each method of the async interface must return {@link ListenableFuture} and
+ * have the same name and parameter types as a method of the service
+ * interface. For example, the twin of {@code CampaignServiceInterface} may be
+ * declared as:
+ * </p>
+ * <pre><code>
+ * public interface AsyncCampaignService {
+ *   ListenableFuture&lt;CampaignPage&gt; get(Selector serviceSelector);
+ *   ListenableFuture&lt;CampaignReturnValue&gt; mutate(CampaignOperation[] operations);
+ * }
+ * </code></pre>
+ * <p>
+ * A future fails with the exception the service call threw. The executor
+ * bounds how many calls run at once. Calls share one service client, so they
+ * only run in parallel if the client pools its SOAP clients, which is set by
+ * {@code soapClientPoolSize} in {@code ads.properties}. Otherwise they run one
+ * at a time.
+ * </p>
+ */
+public final class AsyncServiceInvocationHandler implements InvocationHandler {
+
+  private final Object service;
+  private final Map<Method, Method> serviceMethods;
+  private final Executor executor;
+
+  private AsyncServiceInvocationHandler(Object service, Map<Method, Method> serviceMethods,
+      Executor executor) {
+    this.service = service;
+    this.serviceMethods = serviceMethods;
+    this.executor = executor;
+  }
+
+  /**
+   * Creates an implementation of the async interface that calls the service
+   * on the executor.
+   *
+   * @param service the service client, which implements the service interface
+   * @param interfaceClass the service interface
+   * @param asyncInterfaceClass the async twin of the service interface
+   * @param executor the executor service calls run on
+   * @return the async service
+   * @throws IllegalArgumentException if a method of the async interface does
+   *     not return {@link ListenableFuture}, or has no counterpart in the
+   *     service interface
+   */
+  public static <T, A> A create(T service, Class<T> interfaceClass, Class<A> asyncInterfaceClass,
+      Executor executor) {
+    Preconditions.checkArgument(interfaceClass.isInstance(service),
+        "Service does not implement %s.", interfaceClass.getName());
+    Preconditions.checkArgument(asyncInterfaceClass.isInterface(),
+        "%s is not an interface.", asyncInterfaceClass.getName());
+    Preconditions.checkNotNull(executor, "Null executor");
+    ImmutableMap.Builder<Method, Method> serviceMethods = ImmutableMap.builder();
+    for (Method asyncMethod : asyncInterfaceClass.getMethods()) {
+      Preconditions.checkArgument(asyncMethod.getReturnType() == ListenableFuture.class,
+          "%s does not return ListenableFuture.", asyncMethod);
+      try {
+        serviceMethods.put(asyncMethod,
+            interfaceClass.getMethod(asyncMethod.getName(), asyncMethod.getParameterTypes()));
+      } catch (NoSuchMethodException e) {
+        throw new IllegalArgumentException(interfaceClass.getName() + " has no method "
+            + asyncMethod.getName() + Arrays.toString(asyncMethod.getParameterTypes()), e);
+      }
+    }
+    return Reflection.newProxy(asyncInterfaceClass,
+        new AsyncServiceInvocationHandler(service, serviceMethods.build(), executor));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, final Object[] args) throws Throwable {
+    final Method serviceMethod = serviceMethods.get(method);
+    if (serviceMethod == null) {
+      // Object methods. A proxy is only equal to itself, and its hash code and
+      // string come from this handler, of which it is the only user.
+      if ("equals".equals(method.getName())) {
+        return proxy == args[0];
+      }
+      return method.invoke(this, args);
+    }
+    ListenableFutureTask<Object> task = ListenableFutureTask.create(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        try {
+          return serviceMethod.invoke(service, args);
+        } catch (InvocationTargetException e) {
+          if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+          }
+          throw (Exception) e.getCause();
+        }
+      }
+    });
+    executor.execute(task);
+    return task;
+  }
+
+  @Override
+  public String toString() {
+    return "Async " + service;
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.util.Random;
+
+/**
+ * Retries failed calls with exponential backoff and full jitter, within a
+ * limit on the number of attempts and an overall deadline.
+ * <p>
+ * The delay before retry {@code n} is drawn uniformly between {@code 0} and
+ * {@code min(maxDelayMillis, initialDelayMillis * 2^(n - 1))}, so clients that
+ * failed together do not retry together. A retry is skipped if its delay
+ * would end past the deadline, measured from the start of the first attempt,
+ * and each attempt is limited to the time left until the deadline.
+ * </p>
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+  private final int maxAttempts;
+  private final long initialDelayMillis;
+  private final long maxDelayMillis;
+  private final long deadlineMillis;
+  private final Random random;
+
+  /**
+   * Constructor.
+   *
+   * @param maxAttempts the maximum number of attempts, including the first
+   * @param initialDelayMillis the maximum delay before the first retry
+   * @param maxDelayMillis the maximum delay before any retry
+   * @param deadlineMillis the time from the start of the first attempt after
+   *     which no retry is started, or {@code 0} for no deadline
+   */
+  public ExponentialBackoffRetryPolicy(int maxAttempts, long initialDelayMillis,
+      long maxDelayMillis, long deadlineMillis) {
+    this(maxAttempts, initialDelayMillis, maxDelayMillis, deadlineMillis, new Random());
+  }
+
+  @VisibleForTesting
+  ExponentialBackoffRetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis,
+      long deadlineMillis, Random random) {
+    Preconditions.checkArgument(maxAttempts > 0, "maxAttempts must be positive");
+    Preconditions.checkArgument(initialDelayMillis >= 0, "initialDelayMillis must not be negative");
+    Preconditions.checkArgument(maxDelayMillis >= initialDelayMillis,
+        "maxDelayMillis must not be less than initialDelayMillis");
+    Preconditions.checkArgument(deadlineMillis >= 0, "deadlineMillis must not be negative");
+    this.maxAttempts = maxAttempts;
+    this.initialDelayMillis = initialDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.deadlineMillis = deadlineMillis;
+    this.random = random;
+  }
+
+  @Override
+  public long getRetryDelayMillis(int attempt, long elapsedMillis) {
+    if (attempt >= maxAttempts) {
+      return -1;
+    }
+    // Stop doubling once the cap is reached to avoid overflow.
+    long capMillis = initialDelayMillis;
+    for (int i = 1; i < attempt && capMillis < maxDelayMillis; i++) {
+      capMillis *= 2;
+    }
+    capMillis = Math.min(capMillis, maxDelayMillis);
+    long delayMillis = (long) (random.nextDouble() * capMillis);
+    if (deadlineMillis > 0 && elapsedMillis + delayMillis >= deadlineMillis) {
+      return -1;
+    }
+    return delayMillis;
+  }
+
+  @Override
+  public long getAttemptTimeoutMillis(long elapsedMillis) {
+    if (deadlineMillis == 0) {
+      return 0;
+    }
+    return Math.max(1, deadlineMillis - elapsedMillis);
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public long getInitialDelayMillis() {
+    return initialDelayMillis;
+  }
+
+  public long getMaxDelayMillis() {
+    return maxDelayMillis;
+  }
+
+  public long getDeadlineMillis() {
+    return deadlineMillis;
+  }
+}
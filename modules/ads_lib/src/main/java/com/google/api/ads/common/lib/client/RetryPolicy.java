@@ -0,0 +1,45 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+/**
+ * Decides if and when a failed call that is safe to repeat is retried.
+ * Implementations must be thread-safe, as a policy is shared by all service
+ * clients created by a factory.
+ *
+ * @see AdsServiceClient#setRetryPolicy(RetryPolicy)
+ */
+public interface RetryPolicy {
+
+  /**
+   * Gets how long to wait before retrying a failed call.
+   *
+   * @param attempt the number of the attempt that failed, starting at 1
+   * @param elapsedMillis the time since the first attempt started
+   * @return the delay in milliseconds, or a negative number if the call should
+   *     not be retried
+   */
+  long getRetryDelayMillis(int attempt, long elapsedMillis);
+
+  /**
+   * Gets the longest an attempt of a call that may be retried can take, so
+   * that no attempt runs past the overall deadline of the call.
+   *
+   * @param elapsedMillis the time since the first attempt started
+   * @return the remaining time in milliseconds, at least {@code 1}, or
+   *     {@code 0} if attempts are not limited
+   */
+  long getAttemptTimeoutMillis(long elapsedMillis);
+}
@@ -0,0 +1,113 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+import com.google.api.ads.common.lib.exception.ServiceException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors for the asynchronous service clients returned by
+ * {@code BaseServices.getAsync}.
+ * <p>
+ * On Java 21 and later, {@link #newServiceCallExecutor(int)} runs each call on
+ * its own virtual thread, so a workload can start a call for every account at
+ * once without a platform thread per call. The SOAP clients are only locked
+ * with {@code java.util.concurrent} locks, so a virtual thread waiting for a
+ * response does not pin its carrier thread. The library is built for Java 6,
+ * so the virtual thread executor is looked up reflectively.
+ * </p>
+ */
+public final class ServiceExecutors {
+
+  private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR =
+      getNewVirtualThreadPerTaskExecutor();
+
+  private ServiceExecutors() {}
+
+  /**
+   * Returns {@code true} if the JVM supports virtual threads.
+   */
+  public static boolean isVirtualThreadSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor for service calls. If the JVM supports virtual
+   * threads, each call runs on a new virtual thread. Otherwise calls run on a
+   * fixed pool of daemon platform threads.
+   * <p>
+   * Calls to one service client only run in parallel up to its
+   * {@code soapClientPoolSize}, and wait for a SOAP client otherwise. The
+   * caller should shut the executor down when done with it.
+   * </p>
+   *
+   * @param maxPlatformThreads the number of platform threads to run calls on
+   *     if the JVM does not support virtual threads
+   * @return the executor
+   */
+  public static ExecutorService newServiceCallExecutor(int maxPlatformThreads) {
+    Preconditions.checkArgument(maxPlatformThreads > 0,
+        "maxPlatformThreads must be positive: %s", maxPlatformThreads);
+    if (isVirtualThreadSupported()) {
+      return newVirtualThreadPerTaskExecutor();
+    }
+    return newPlatformThreadExecutor(maxPlatformThreads);
+  }
+
+  /**
+   * Creates a fixed pool of daemon platform threads.
+   */
+  @VisibleForTesting
+  static ExecutorService newPlatformThreadExecutor(int threads) {
+    return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("ads-service-call-%d")
+        .build());
+  }
+
+  /**
+   * Calls {@code Executors.newVirtualThreadPerTaskExecutor()}.
+   *
+   * @throws ServiceException if the executor could not be created
+   */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+    } catch (IllegalAccessException e) {
+      throw new ServiceException("Could not create a virtual thread executor.", e);
+    } catch (InvocationTargetException e) {
+      throw new ServiceException("Could not create a virtual thread executor.", e.getCause());
+    }
+  }
+
+  /**
+   * Gets {@code Executors.newVirtualThreadPerTaskExecutor()}, or {@code null}
+   * if the JVM does not support virtual threads.
+   */
+  private static Method getNewVirtualThreadPerTaskExecutor() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
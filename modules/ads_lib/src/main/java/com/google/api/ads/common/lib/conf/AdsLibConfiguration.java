@@ -14,8 +14,12 @@
 
 package com.google.api.ads.common.lib.conf;
 
+import com.google.common.collect.ImmutableSet;
+
 import org.apache.commons.configuration.Configuration;
 
+import java.util.Set;
+
 /**
  * Configuration of lib properties.
  */
@@ -30,6 +34,46 @@ public abstract class AdsLibConfiguration extends BaseConfiguration {
   public static final String VERSION_KEY = "com.google.api.ads.version";
   public static final String AUTO_REFRESH_OAUTH2_TOKEN_POSTFIX = "refreshOAuth2Token";
   public static final String USE_COMPRESSION_POSTFIX = "useCompression";
+  public static final String SOAP_CLIENT_POOL_SIZE_POSTFIX = "soapClientPoolSize";
+  public static final String SOAP_CLIENT_CACHE_SIZE_POSTFIX = "soapClientCacheSize";
+  public static final String REQUEST_HEADER_CACHE_SIZE_POSTFIX = "requestHeaderCacheSize";
+  public static final int DEFAULT_REQUEST_HEADER_CACHE_SIZE = 20000;
+  public static final String MAX_SOAP_XML_LENGTH_POSTFIX = "maxSoapXmlLength";
+  public static final String RATE_LIMIT_QPS_POSTFIX = "rateLimitQps";
+  public static final String SCOPED_RATE_LIMIT_QPS_POSTFIX = "RateLimitQps";
+  public static final String RETRY_MAX_ATTEMPTS_POSTFIX = "retryMaxAttempts";
+  public static final String RETRY_INITIAL_DELAY_MILLIS_POSTFIX = "retryInitialDelayMillis";
+  public static final String RETRY_MAX_DELAY_MILLIS_POSTFIX = "retryMaxDelayMillis";
+  public static final String RETRY_DEADLINE_MILLIS_POSTFIX = "retryDeadlineMillis";
+  public static final String SOAP_LOGGING_QUEUE_SIZE_POSTFIX = "soapLoggingQueueSize";
+  public static final String SOAP_LOGGING_BLOCK_WHEN_FULL_POSTFIX = "soapLoggingBlockWhenFull";
+  public static final String REDACTED_SOAP_XML_ELEMENTS_POSTFIX = "redactedSoapXmlElements";
+  public static final String MAX_PRETTY_SOAP_XML_LENGTH_POSTFIX = "maxPrettySoapXmlLength";
+  public static final String SOAP_XML_LOG_SAMPLE_RATE_POSTFIX = "soapXmlLogSampleRate";
+  public static final String SOAP_XML_LOG_SLOW_CALL_MILLIS_POSTFIX = "soapXmlLogSlowCallMillis";
+  public static final String METRICS_ENABLED_POSTFIX = "metricsEnabled";
+  public static final String SOAP_HTTP_MAX_CONNECTIONS_PER_HOST_POSTFIX =
+      "soapHttpMaxConnectionsPerHost";
+  public static final String SOAP_HTTP_MAX_TOTAL_CONNECTIONS_POSTFIX =
+      "soapHttpMaxTotalConnections";
+  public static final String SOAP_HTTP_IDLE_TIMEOUT_MILLIS_POSTFIX = "soapHttpIdleTimeoutMillis";
+  public static final String SOAP_HTTP_CONNECT_TIMEOUT_MILLIS_POSTFIX =
+      "soapHttpConnectTimeoutMillis";
+  public static final String SOAP_HTTP_READ_TIMEOUT_MILLIS_POSTFIX = "soapHttpReadTimeoutMillis";
+  public static final String SOAP_HTTP_POOL_TIMEOUT_MILLIS_POSTFIX = "soapHttpPoolTimeoutMillis";
+  public static final String SOAP_RESPONSE_STREAMING_ENABLED_POSTFIX =
+      "soapResponseStreamingEnabled";
+  public static final String COMPRESSION_THRESHOLD_BYTES_POSTFIX = "compressionThresholdBytes";
+
+  /** The elements whose content is redacted from logged SOAP XML by default. */
+  public static final Set<String> DEFAULT_REDACTED_SOAP_XML_ELEMENTS =
+      ImmutableSet.of("developerToken", "authToken", "password");
+
+  protected static final long DEFAULT_RETRY_INITIAL_DELAY_MILLIS = 1000;
+  protected static final long DEFAULT_RETRY_MAX_DELAY_MILLIS = 30 * 1000;
+  protected static final long DEFAULT_SOAP_HTTP_IDLE_TIMEOUT_MILLIS = 60 * 1000;
+  protected static final long DEFAULT_SOAP_HTTP_POOL_TIMEOUT_MILLIS = 60 * 1000;
+  protected static final int DEFAULT_COMPRESSION_THRESHOLD_BYTES = 1024;
 
   /**
    * Constructor.
@@ -68,4 +112,233 @@ public abstract class AdsLibConfiguration extends BaseConfiguration {
   public boolean isCompressionEnabled() {
     return false;
   }
+
+  /**
+   * Returns the maximum number of SOAP clients pooled per service client, or
+   * {@code 0} if each service client should use a single SOAP client. Default
+   * is {@code 0}.
+   */
+  public int getSoapClientPoolSize() {
+    return 0;
+  }
+
+  /**
+   * Returns the maximum number of services whose SOAP clients are shared by all
+   * sessions, or {@code 0} if each service client should create its own. A
+   * positive value requires a positive {@link #getSoapClientPoolSize()}.
+   * Default is {@code 0}.
+   */
+  public int getSoapClientCacheSize() {
+    return 0;
+  }
+
+  /**
+   * Returns the maximum number of prebuilt request headers kept for reuse, or
+   * {@code 0} if headers should be built for every call. Since a header is
+   * built for each client customer ID, this should be at least the number of
+   * accounts the application calls for. Default is
+   * {@value #DEFAULT_REQUEST_HEADER_CACHE_SIZE}.
+   */
+  public int getRequestHeaderCacheSize() {
+    return DEFAULT_REQUEST_HEADER_CACHE_SIZE;
+  }
+
+  /**
+   * Returns the maximum number of characters of each SOAP request and response
+   * retained for logging, or {@code 0} to retain entire messages. Default is
+   * {@code 0}.
+   */
+  public int getMaxSoapXmlLength() {
+    return 0;
+  }
+
+  /**
+   * Returns the maximum rate, in calls per second, for each rate limit key
+   * such as a developer token, client customer ID or service, or {@code 0} if
+   * calls should not be throttled. Default is {@code 0}.
+   */
+  public double getRateLimitQps() {
+    return 0;
+  }
+
+  /**
+   * Returns the maximum rate, in calls per second, for each rate limit key of
+   * the given scope, or {@code 0} if calls should not be throttled by keys of
+   * that scope. Default is {@link #getRateLimitQps()}.
+   *
+   * @param scope the rate limit scope, such as
+   *     {@link com.google.api.ads.common.lib.client.AdsRateLimiter#CLIENT_CUSTOMER_ID_SCOPE}
+   */
+  public double getRateLimitQps(String scope) {
+    return getRateLimitQps();
+  }
+
+  /**
+   * Returns the maximum number of attempts for calls that are safe to retry,
+   * including the first, or {@code 0} if failed calls should not be retried.
+   * Default is {@code 0}.
+   */
+  public int getRetryMaxAttempts() {
+    return 0;
+  }
+
+  /**
+   * Returns the maximum delay in milliseconds before the first retry. Later
+   * retries double the maximum delay. Default is 1 second.
+   */
+  public long getRetryInitialDelayMillis() {
+    return DEFAULT_RETRY_INITIAL_DELAY_MILLIS;
+  }
+
+  /**
+   * Returns the maximum delay in milliseconds before any retry. Default is 30
+   * seconds.
+   */
+  public long getRetryMaxDelayMillis() {
+    return DEFAULT_RETRY_MAX_DELAY_MILLIS;
+  }
+
+  /**
+   * Returns the time in milliseconds from the start of a call after which it
+   * is no longer retried, or {@code 0} if only the number of attempts limits
+   * retries. Default is {@code 0}.
+   */
+  public long getRetryDeadlineMillis() {
+    return 0;
+  }
+
+  /**
+   * Returns the maximum number of SOAP messages waiting to be pretty printed
+   * and logged by a background thread, or {@code 0} if messages should be
+   * logged on the thread making the call. Default is {@code 0}.
+   */
+  public int getSoapLoggingQueueSize() {
+    return 0;
+  }
+
+  /**
+   * Returns {@code true} if a call should wait for room in a full SOAP
+   * logging queue, or {@code false} if its messages should be dropped instead.
+   * Default is {@code false}.
+   */
+  public boolean isSoapLoggingBlockWhenFull() {
+    return false;
+  }
+
+  /**
+   * Returns the local names of the elements whose content is redacted from
+   * logged SOAP XML, matched ignoring case. Default is
+   * {@link #DEFAULT_REDACTED_SOAP_XML_ELEMENTS}.
+   */
+  public Set<String> getRedactedSoapXmlElements() {
+    return DEFAULT_REDACTED_SOAP_XML_ELEMENTS;
+  }
+
+  /**
+   * Returns the maximum number of characters of each pretty-printed SOAP
+   * message that is logged, or {@code 0} to log entire messages. Default is
+   * {@code 0}.
+   */
+  public int getMaxPrettySoapXmlLength() {
+    return 0;
+  }
+
+  /**
+   * Returns {@code N} if the SOAP XML of one in every {@code N} successful
+   * calls to each service method should be logged. Default is {@code 1}, which
+   * logs every call.
+   */
+  public int getSoapXmlLogSampleRate() {
+    return 1;
+  }
+
+  /**
+   * Returns the duration in milliseconds at or above which the SOAP XML of a
+   * call is always logged at warn level, or {@code 0} if duration does not
+   * matter. Default is {@code 0}.
+   */
+  public long getSoapXmlLogSlowCallMillis() {
+    return 0;
+  }
+
+  /**
+   * Returns {@code true} if the metrics of each SOAP call should be recorded
+   * in the {@link com.google.api.ads.common.lib.utils.metrics.InMemoryMetricsRegistry#getDefault()
+   * default metrics registry}. Default is {@code false}.
+   */
+  public boolean isMetricsEnabled() {
+    return false;
+  }
+
+  /**
+   * Returns the maximum number of pooled keep-alive HTTP connections to each
+   * host used for SOAP calls, or {@code 0} if the SOAP framework's default
+   * HTTP transport should be used. Default is {@code 0}.
+   */
+  public int getSoapHttpMaxConnectionsPerHost() {
+    return 0;
+  }
+
+  /**
+   * Returns the maximum number of pooled HTTP connections to all hosts used
+   * for SOAP calls, or {@code 0} to allow as many as to a single host.
+   * Default is {@code 0}.
+   */
+  public int getSoapHttpMaxTotalConnections() {
+    return 0;
+  }
+
+  /**
+   * Returns the time in milliseconds after which an idle pooled HTTP
+   * connection is closed, or {@code 0} to keep idle connections open. Default
+   * is 1 minute.
+   */
+  public long getSoapHttpIdleTimeoutMillis() {
+    return DEFAULT_SOAP_HTTP_IDLE_TIMEOUT_MILLIS;
+  }
+
+  /**
+   * Returns the timeout in milliseconds for opening a pooled HTTP connection,
+   * or {@code 0} for no timeout. Default is {@code 0}.
+   */
+  public int getSoapHttpConnectTimeoutMillis() {
+    return 0;
+  }
+
+  /**
+   * Returns the timeout in milliseconds for reading from a pooled HTTP
+   * connection, or {@code 0} for no timeout. Default is {@code 0}.
+   */
+  public int getSoapHttpReadTimeoutMillis() {
+    return 0;
+  }
+
+  /**
+   * Returns the time in milliseconds a call waits for a pooled HTTP connection
+   * when all are in use, or {@code 0} to wait indefinitely. Default is 1
+   * minute.
+   */
+  public long getSoapHttpPoolTimeoutMillis() {
+    return DEFAULT_SOAP_HTTP_POOL_TIMEOUT_MILLIS;
+  }
+
+  /**
+   * Returns {@code true} if the SOAP framework should be set up so that the
+   * entries of result pages can be streamed one at a time. Default is
+   * {@code false}.
+   *
+   * @see com.google.api.ads.common.lib.soap.streaming.StreamingPages
+   */
+  public boolean isSoapResponseStreamingEnabled() {
+    return false;
+  }
+
+  /**
+   * Returns the size in bytes a SOAP request must exceed to be compressed, if
+   * compression is enabled. Smaller requests are sent uncompressed, since
+   * compressing them costs more than it saves. Default is {@code 1024}.
+   */
+  public int getCompressionThresholdBytes() {
+    return DEFAULT_COMPRESSION_THRESHOLD_BYTES;
+  }
 }
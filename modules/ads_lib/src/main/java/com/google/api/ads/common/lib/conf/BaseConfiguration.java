@@ -14,8 +14,12 @@
 
 package com.google.api.ads.common.lib.conf;
 
+import com.google.common.collect.ImmutableSet;
+
 import org.apache.commons.configuration.Configuration;
 
+import java.util.Set;
+
 /**
  * Base configuration class.
  */
@@ -49,4 +53,24 @@ public abstract class BaseConfiguration {
   protected String getString(String property) {
     return config.getString(property);
   }
+
+  /**
+   * Gets the comma-separated list property from the configuration as a set.
+   *
+   * @param property the property to fetch
+   * @param defaultValue the set returned if the property is not set
+   * @return the set of values
+   */
+  protected Set<String> getStringSet(String property, Set<String> defaultValue) {
+    if (!config.containsKey(property)) {
+      return defaultValue;
+    }
+    ImmutableSet.Builder<String> values = ImmutableSet.builder();
+    for (String value : config.getStringArray(property)) {
+      if (!value.trim().isEmpty()) {
+        values.add(value.trim());
+      }
+    }
+    return values.build();
+  }
 }
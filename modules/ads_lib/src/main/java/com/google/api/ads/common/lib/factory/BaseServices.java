@@ -17,6 +17,10 @@ package com.google.api.ads.common.lib.factory;
 import com.google.api.ads.common.lib.client.AdsServiceClient;
 import com.google.api.ads.common.lib.client.AdsServiceDescriptor;
 import com.google.api.ads.common.lib.client.AdsSession;
+import com.google.api.ads.common.lib.client.AsyncServiceInvocationHandler;
+import com.google.api.ads.common.lib.client.ServiceExecutors;
+
+import java.util.concurrent.Executor;
 
 /**
  * Base for a utility class which creates service clients.
@@ -57,4 +61,34 @@ public abstract class BaseServices<C extends AdsServiceClient<S, D>,
   public <T> T get(S session, Class<T> interfaceClass) {
     return factory.getServiceClientAsInterface(session, interfaceClass);
   }
+
+  /**
+   * Gets an asynchronous client for the service represented by the interface
+   * with a reference to the session. Each method of the async interface
+   * returns a {@code ListenableFuture} of the result of the service method
+   * with the same name and parameter types, which is called on the executor.
+   *
+   * <p>
+   * The objects returned by this method are thread-safe. To run calls in
+   * parallel, set {@code soapClientPoolSize} in {@code ads.properties} to at
+   * least the number of calls the executor runs at once.
+   * {@link ServiceExecutors#newServiceCallExecutor(int)} creates an executor
+   * that runs each call on its own virtual thread where supported.
+   * </p>
+   *
+   * @param <T> the service type
+   * @param <A> the async service type
+   * @param session your current session
+   * @param interfaceClass the service interface class. This is a class
+   *        representing a SOAP service
+   * @param asyncInterfaceClass the async twin of the service interface
+   * @param executor the executor service calls run on
+   * @return the async client for the service
+   * @see AsyncServiceInvocationHandler
+   */
+  public <T, A> A getAsync(S session, Class<T> interfaceClass, Class<A> asyncInterfaceClass,
+      Executor executor) {
+    return AsyncServiceInvocationHandler.create(
+        get(session, interfaceClass), interfaceClass, asyncInterfaceClass, executor);
+  }
 }
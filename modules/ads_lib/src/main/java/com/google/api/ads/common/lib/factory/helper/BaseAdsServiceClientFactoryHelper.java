@@ -14,16 +14,27 @@
 
 package com.google.api.ads.common.lib.factory.helper;
 
+import com.google.api.ads.common.lib.client.AdsRateLimiter;
 import com.google.api.ads.common.lib.client.AdsServiceClient;
 import com.google.api.ads.common.lib.client.AdsServiceDescriptor;
 import com.google.api.ads.common.lib.client.AdsSession;
+import com.google.api.ads.common.lib.client.ExponentialBackoffRetryPolicy;
+import com.google.api.ads.common.lib.client.RetryPolicy;
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
 import com.google.api.ads.common.lib.exception.ServiceException;
 import com.google.api.ads.common.lib.factory.FactoryModule.AdsServiceClientFactoryInterface;
 import com.google.api.ads.common.lib.factory.FactoryModule.AdsServiceDescriptorFactoryInterface;
+import com.google.api.ads.common.lib.soap.SoapClientCache;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
+import com.google.api.ads.common.lib.soap.SoapClientPool;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 
 import java.net.MalformedURLException;
+import java.util.Map;
 
 /**
  * Abstract helper for {@link AdsServiceClientFactoryHelper}.
@@ -37,9 +48,16 @@ public abstract class BaseAdsServiceClientFactoryHelper<C extends AdsServiceClie
                                                         D extends AdsServiceDescriptor>
     implements AdsServiceClientFactoryHelper<C, S, D> {
 
+  /** The scopes that may have their own maximum rate. */
+  private static final ImmutableList<String> RATE_LIMIT_SCOPES = ImmutableList.of(
+      AdsRateLimiter.DEVELOPER_TOKEN_SCOPE, AdsRateLimiter.CLIENT_CUSTOMER_ID_SCOPE,
+      AdsRateLimiter.SERVICE_SCOPE);
+
   private final AdsServiceClientFactoryInterface<C, S, D> adsServiceClientFactory;
   private final AdsServiceDescriptorFactoryInterface<D> adsServiceDescriptorFactory;
   private final SoapClientHandlerInterface<?> soapClientHandler;
+  private volatile SoapClientCache<SoapClientCacheKey, Object> soapClientCache;
+  private volatile AdsRateLimiter rateLimiter;
 
   /**
    * Constructor.
@@ -67,6 +85,25 @@ public abstract class BaseAdsServiceClientFactoryHelper<C extends AdsServiceClie
    */
   @Override
   public C createAdsServiceClient(D adsServiceDescriptor, S adsSession) throws ServiceException {
+    C adsServiceClient = getSoapClientCacheSize() > 0
+        ? createCachedAdsServiceClient(adsServiceDescriptor, adsSession)
+        : createUncachedAdsServiceClient(adsServiceDescriptor, adsSession);
+    if (isRateLimited()) {
+      adsServiceClient.setRateLimiter(getRateLimiter());
+    }
+    RetryPolicy retryPolicy = getRetryPolicy();
+    if (retryPolicy != null) {
+      adsServiceClient.setRetryPolicy(retryPolicy);
+    }
+    return adsServiceClient;
+  }
+
+  /**
+   * Creates an {@link AdsServiceClient} with its own SOAP client, or its own
+   * pool of SOAP clients if pooling is enabled.
+   */
+  private C createUncachedAdsServiceClient(D adsServiceDescriptor, S adsSession)
+      throws ServiceException {
     Object soapClient = createSoapClient(adsServiceDescriptor);
     C adsServiceClient = createServiceClient(soapClient, adsServiceDescriptor, adsSession);
     try {
@@ -75,9 +112,180 @@ public abstract class BaseAdsServiceClientFactoryHelper<C extends AdsServiceClie
     } catch (MalformedURLException e) {
       throw new ServiceException("Unexpected exception", e);
     }
+    int soapClientPoolSize = getSoapClientPoolSize();
+    if (soapClientPoolSize > 1) {
+      adsServiceClient.enableSoapClientPool(soapClientPoolSize);
+    }
     return adsServiceClient;
   }
 
+  /**
+   * Creates an {@link AdsServiceClient} whose calls are made on SOAP clients
+   * shared with every other service client for the same service, version and
+   * endpoint. The session's headers are set on the SOAP client for each call.
+   * No SOAP client is created if the pool is already cached. The endpoint of
+   * the returned service client cannot be changed, since its SOAP clients are
+   * shared; see {@link AdsServiceClient#setSoapClientPool(SoapClientPool)}.
+   */
+  private C createCachedAdsServiceClient(final D adsServiceDescriptor, S adsSession)
+      throws ServiceException {
+    final String endpointAddress;
+    try {
+      endpointAddress = adsServiceDescriptor.getEndpointAddress(adsSession.getEndpoint());
+    } catch (MalformedURLException e) {
+      throw new ServiceException("Unexpected exception", e);
+    }
+    Supplier<Object> soapClientSupplier = new Supplier<Object>() {
+      @Override
+      public Object get() {
+        Object soapClient = createSoapClient(adsServiceDescriptor);
+        setEndpointAddress(soapClient, endpointAddress);
+        return soapClient;
+      }
+    };
+    SoapClientPool<Object> soapClientPool = getSoapClientCache().getPool(
+        new SoapClientCacheKey(adsServiceDescriptor.getInterfaceClass(),
+            adsServiceDescriptor.getVersion(), endpointAddress),
+        soapClientSupplier);
+    C adsServiceClient = createServiceClient(soapClientPool.getInitialSoapClient(),
+        adsServiceDescriptor, adsSession);
+    adsServiceClient.setSoapClientPool(soapClientPool);
+    return adsServiceClient;
+  }
+
+  /**
+   * Gets the SOAP client cache, creating it on first use.
+   *
+   * @throws ServiceException if the SOAP client pool size is not positive,
+   *     since it bounds the calls in flight for each cached service
+   */
+  @VisibleForTesting
+  SoapClientCache<SoapClientCacheKey, Object> getSoapClientCache() throws ServiceException {
+    if (soapClientCache == null) {
+      synchronized (this) {
+        if (soapClientCache == null) {
+          int soapClientPoolSize = getSoapClientPoolSize();
+          if (soapClientPoolSize <= 0) {
+            throw new ServiceException("The SOAP client pool size must be positive when the "
+                + "SOAP client cache is enabled, but was: " + soapClientPoolSize);
+          }
+          soapClientCache = new SoapClientCache<SoapClientCacheKey, Object>(
+              getSoapClientCacheSize(), soapClientPoolSize);
+        }
+      }
+    }
+    return soapClientCache;
+  }
+
+  /**
+   * Gets the rate limiter shared by all service clients, creating it on first
+   * use.
+   */
+  @VisibleForTesting
+  AdsRateLimiter getRateLimiter() {
+    if (rateLimiter == null) {
+      synchronized (this) {
+        if (rateLimiter == null) {
+          rateLimiter = createRateLimiter();
+        }
+      }
+    }
+    return rateLimiter;
+  }
+
+  /**
+   * Creates the rate limiter shared by all service clients. Default
+   * implementation creates a limiter with the maximum rates of
+   * {@link #getRateLimitQps(String)}.
+   */
+  protected AdsRateLimiter createRateLimiter() {
+    Map<String, Double> maxQpsByScope = Maps.newHashMap();
+    for (String scope : RATE_LIMIT_SCOPES) {
+      maxQpsByScope.put(scope, getRateLimitQps(scope));
+    }
+    return new AdsRateLimiter(maxQpsByScope, getRateLimitQps());
+  }
+
+  /**
+   * Gets the maximum number of SOAP clients to pool per service client. Values
+   * of {@code 1} or less disable pooling. If the SOAP client cache is enabled,
+   * this instead bounds the calls in flight for each cached service, and must
+   * be positive. Default implementation returns {@code 0}.
+   */
+  protected int getSoapClientPoolSize() {
+    return 0;
+  }
+
+  /**
+   * Gets the maximum number of services whose SOAP clients are cached and
+   * shared across sessions. Values of {@code 0} or less disable the cache.
+   * Default implementation returns {@code 0}.
+   */
+  protected int getSoapClientCacheSize() {
+    return 0;
+  }
+
+  /**
+   * Gets the maximum rate, in calls per second, for each rate limit key of the
+   * service clients. Values of {@code 0} or less disable throttling. Default
+   * implementation returns {@code 0}.
+   */
+  protected double getRateLimitQps() {
+    return 0;
+  }
+
+  /**
+   * Gets the maximum rate, in calls per second, for each rate limit key of the
+   * given scope. Values of {@code 0} or less disable throttling by keys of that
+   * scope. Default implementation returns {@link #getRateLimitQps()}.
+   *
+   * @param scope the rate limit scope, such as
+   *     {@link AdsRateLimiter#CLIENT_CUSTOMER_ID_SCOPE}
+   */
+  protected double getRateLimitQps(String scope) {
+    return getRateLimitQps();
+  }
+
+  /**
+   * Returns {@code true} if calls are throttled by keys of any scope.
+   */
+  private boolean isRateLimited() {
+    if (getRateLimitQps() > 0) {
+      return true;
+    }
+    for (String scope : RATE_LIMIT_SCOPES) {
+      if (getRateLimitQps(scope) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the policy for retrying failed calls of the service clients, or
+   * {@code null} if they should not be retried. Default implementation returns
+   * {@code null}.
+   */
+  protected RetryPolicy getRetryPolicy() {
+    return null;
+  }
+
+  /**
+   * Creates the retry policy described by the lib configuration.
+   *
+   * @return an {@link ExponentialBackoffRetryPolicy}, or {@code null} if the
+   *     configuration does not allow more than one attempt
+   */
+  protected static RetryPolicy createRetryPolicy(AdsLibConfiguration adsLibConfiguration) {
+    if (adsLibConfiguration.getRetryMaxAttempts() <= 1) {
+      return null;
+    }
+    return new ExponentialBackoffRetryPolicy(adsLibConfiguration.getRetryMaxAttempts(),
+        adsLibConfiguration.getRetryInitialDelayMillis(),
+        adsLibConfiguration.getRetryMaxDelayMillis(),
+        adsLibConfiguration.getRetryDeadlineMillis());
+  }
+
   /**
    * Creates the service client from the factory, descriptor, and SOAP client.
    */
@@ -106,11 +314,49 @@ public abstract class BaseAdsServiceClientFactoryHelper<C extends AdsServiceClie
     return soapClientHandler.createSoapClient(adsServiceDescriptor);
   }
 
+  @SuppressWarnings("unchecked") // All generics of SoapClientHandlerInterface extend Object.
+  private void setEndpointAddress(Object soapClient, String endpointAddress) {
+    ((SoapClientHandlerInterface<Object>) soapClientHandler)
+        .setEndpointAddress(soapClient, endpointAddress);
+  }
+
   /**
    * Default implementation of passing service client preconditions.
    */
   @Override
   public void checkServiceClientPreconditions(S adsSession, Class<?> interfaceClass)
       throws ServiceException {}
-}
 
+  /**
+   * Identifies the SOAP clients that may be shared between service clients.
+   */
+  @VisibleForTesting
+  static final class SoapClientCacheKey {
+
+    private final Class<?> interfaceClass;
+    private final String version;
+    private final String endpointAddress;
+
+    SoapClientCacheKey(Class<?> interfaceClass, String version, String endpointAddress) {
+      this.interfaceClass = interfaceClass;
+      this.version = version;
+      this.endpointAddress = endpointAddress;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof SoapClientCacheKey)) {
+        return false;
+      }
+      SoapClientCacheKey other = (SoapClientCacheKey) obj;
+      return Objects.equal(interfaceClass, other.interfaceClass)
+          && Objects.equal(version, other.version)
+          && Objects.equal(endpointAddress, other.endpointAddress);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(interfaceClass, version, endpointAddress);
+    }
+  }
+}
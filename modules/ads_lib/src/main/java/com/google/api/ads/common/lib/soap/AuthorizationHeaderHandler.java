@@ -60,6 +60,7 @@ public class AuthorizationHeaderHandler {
     final String authorizationHeader =
         authorizationHeaderProvider.getAuthorizationHeader(adsSession,
             soapClientHandler.getEndpointAddress(soapClient));
+    SoapCallTimings.mark(SoapCallTimings.Mark.AUTHORIZED);
     soapClientHandler.putAllHttpHeaders(soapClient, new HashMap<String, String>() {
       {
         put("Authorization", authorizationHeader);
@@ -14,15 +14,22 @@
 
 package com.google.api.ads.common.lib.soap;
 
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
 /**
- * Contains information about the request that was made.
+ * Contains information about the request that was made. The SOAP request XML
+ * may be held as a supplier so that it is only serialized if it is requested.
  */
 public class RequestInfo {
 
-  private String soapRequestXml;
+  private Supplier<String> soapRequestXml = Suppliers.ofInstance(null);
   private String serviceName;
   private String methodName;
   private String url;
+  private long contentLength = -1;
+  private CompressionStats compressionStats;
 
   /**
    * Constructor.
@@ -33,7 +40,7 @@ public class RequestInfo {
    * Gets the SOAP request XML.
    */
   public String getSoapRequestXml() {
-    return soapRequestXml;
+    return soapRequestXml.get();
   }
 
   /**
@@ -58,6 +65,22 @@ public class RequestInfo {
     return url;
   }
 
+  /**
+   * Gets the size of the request in bytes, or {@code -1} if it is not known
+   * without serializing the request.
+   */
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  /**
+   * Gets the statistics of the gzip compression of the request, or {@code null}
+   * if it was not compressed by the library.
+   */
+  public CompressionStats getCompressionStats() {
+    return compressionStats;
+  }
+
   /**
    * Builder for {@link RequestInfo} objects.
    *
@@ -101,8 +124,20 @@ public class RequestInfo {
      * @param soapRequestXml the raw SOAP request XML to add to the RequestInfo
      * @return this builder
      */
-    // TODO(jdilallo): Look into copying string to dereference message context.
     public Builder withSoapRequestXml(String soapRequestXml) {
+      requestInfo.soapRequestXml = Suppliers.ofInstance(soapRequestXml);
+      return this;
+    }
+
+    /**
+     * Adds a supplier of the SOAP request XML to the RequestInfo under
+     * construction. The supplier is only called if the XML is requested.
+     *
+     * @param soapRequestXml the supplier of the raw SOAP request XML
+     * @return this builder
+     * @see SoapXmlSuppliers#lazy(Supplier, int)
+     */
+    public Builder withSoapRequestXml(Supplier<String> soapRequestXml) {
       requestInfo.soapRequestXml = soapRequestXml;
       return this;
     }
@@ -118,6 +153,30 @@ public class RequestInfo {
       return this;
     }
 
+    /**
+     * Adds the size of the request to the RequestInfo under construction.
+     *
+     * @param contentLength the size of the request in bytes, or {@code -1} if
+     *     not known
+     * @return this builder
+     */
+    public Builder withContentLength(long contentLength) {
+      requestInfo.contentLength = contentLength;
+      return this;
+    }
+
+    /**
+     * Adds the compression statistics to the RequestInfo under construction.
+     *
+     * @param compressionStats the statistics of the gzip compression of the
+     *     request, or {@code null} if it was not compressed
+     * @return this builder
+     */
+    public Builder withCompressionStats(CompressionStats compressionStats) {
+      requestInfo.compressionStats = compressionStats;
+      return this;
+    }
+
     /**
      * Returns the RequestInfo this Builder has been constructing.
      *
@@ -14,12 +14,20 @@
 
 package com.google.api.ads.common.lib.soap;
 
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
 /**
- * Contains information about the response from the request that was made.
+ * Contains information about the response from the request that was made. The
+ * SOAP response XML may be held as a supplier so that it is only serialized if
+ * it is requested.
  */
 public class ResponseInfo {
 
-  private String soapResponseXml;
+  private Supplier<String> soapResponseXml = Suppliers.ofInstance(null);
+  private long contentLength = -1;
+  private CompressionStats compressionStats;
 
   /**
    * Constructor.
@@ -30,7 +38,23 @@ public class ResponseInfo {
    * Gets the SOAP response XML.
    */
   public String getSoapResponseXml() {
-    return soapResponseXml;
+    return soapResponseXml.get();
+  }
+
+  /**
+   * Gets the size of the response in bytes, or {@code -1} if it is not known
+   * without serializing the response.
+   */
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  /**
+   * Gets the statistics of the gzip compression of the response, or {@code null}
+   * if it was not compressed by the library.
+   */
+  public CompressionStats getCompressionStats() {
+    return compressionStats;
   }
 
   /**
@@ -55,10 +79,47 @@ public class ResponseInfo {
      * @return this builder
      */
     public Builder withSoapResponseXml(String soapResponseXml) {
+      responseInfo.soapResponseXml = Suppliers.ofInstance(soapResponseXml);
+      return this;
+    }
+
+    /**
+     * Adds a supplier of the SOAP response XML to the ResponseInfo under
+     * construction. The supplier is only called if the XML is requested.
+     *
+     * @param soapResponseXml the supplier of the SOAP response XML
+     * @return this builder
+     * @see SoapXmlSuppliers#lazy(Supplier, int)
+     */
+    public Builder withSoapResponseXml(Supplier<String> soapResponseXml) {
       responseInfo.soapResponseXml = soapResponseXml;
       return this;
     }
 
+    /**
+     * Adds the size of the response to the ResponseInfo under construction.
+     *
+     * @param contentLength the size of the response in bytes, or {@code -1} if
+     *     not known
+     * @return this builder
+     */
+    public Builder withContentLength(long contentLength) {
+      responseInfo.contentLength = contentLength;
+      return this;
+    }
+
+    /**
+     * Adds the compression statistics to the ResponseInfo under construction.
+     *
+     * @param compressionStats the statistics of the gzip compression of the
+     *     response, or {@code null} if it was not compressed
+     * @return this builder
+     */
+    public Builder withCompressionStats(CompressionStats compressionStats) {
+      responseInfo.compressionStats = compressionStats;
+      return this;
+    }
+
     /**
      * Returns the ResponseInfo this Builder has been constructing.
      *
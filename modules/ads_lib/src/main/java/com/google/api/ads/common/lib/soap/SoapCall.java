@@ -29,6 +29,7 @@ public class SoapCall<T> {
   private Method soapClientMethod;
   private T soapClient;
   private Object[] soapArgs;
+  private int timeoutMillis;
 
   /**
    * Constructor.
@@ -39,9 +40,24 @@ public class SoapCall<T> {
    * @param soapArgs the arguments that will be passed into the SOAP call.
    */
   public SoapCall(Method soapClientMethod, T soapClient, Object[] soapArgs) {
+    this(soapClientMethod, soapClient, soapArgs, 0);
+  }
+
+  /**
+   * Constructor for a call that must complete within a time limit.
+   *
+   * @param soapClientMethod the SOAP client method to invoke on the underlying
+   *     SOAP client.
+   * @param soapClient the underlying SOAP client that the call will be made on
+   * @param soapArgs the arguments that will be passed into the SOAP call.
+   * @param timeoutMillis the longest the call may take, or {@code 0} to use the
+   *     timeout of the SOAP client
+   */
+  public SoapCall(Method soapClientMethod, T soapClient, Object[] soapArgs, int timeoutMillis) {
     this.soapClientMethod = soapClientMethod;
     this.soapClient = soapClient;
     this.soapArgs = soapArgs;
+    this.timeoutMillis = timeoutMillis;
   }
 
   /**
@@ -65,6 +81,14 @@ public class SoapCall<T> {
     return soapArgs;
   }
 
+  /**
+   * Returns the longest the call may take, or {@code 0} if the timeout of the
+   * SOAP client applies. SOAP client handlers use the shorter of the two.
+   */
+  public int getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
   /**
    * @see java.lang.Object#equals(java.lang.Object)
    */
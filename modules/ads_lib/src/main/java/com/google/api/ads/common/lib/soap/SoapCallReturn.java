@@ -24,6 +24,7 @@ public class SoapCallReturn {
   private RequestInfo requestInfo;
   private ResponseInfo responseInfo;
   private Throwable exception;
+  private SoapCallTimings timings;
 
   /**
    * Constructor.
@@ -67,6 +68,16 @@ public class SoapCallReturn {
     return exception;
   }
 
+  /**
+   * Gets the timing breakdown of the SOAP call that was made.
+   *
+   * @return the timings of the SOAP call, or {@code null} if the call was not
+   *     made through a {@link SoapServiceClient}
+   */
+  public SoapCallTimings getTimings() {
+    return timings;
+  }
+
   /**
    * Builder for {@link SoapCallReturn} objects.
    *
@@ -126,6 +137,17 @@ public class SoapCallReturn {
       return this;
     }
 
+    /**
+     * Adds the timings to the SoapCallReturn under construction.
+     *
+     * @param timings the timings of the SOAP call, which may be {@code null}
+     * @return this builder
+     */
+    public Builder withTimings(SoapCallTimings timings) {
+      soapCallReturn.timings = timings;
+      return this;
+    }
+
     /**
      * Returns the SoapCallReturn this Builder has been constructing.
      *
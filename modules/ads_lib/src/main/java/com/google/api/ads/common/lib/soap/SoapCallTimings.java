@@ -0,0 +1,272 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The times at which a SOAP call reached each of its phases, so that the
+ * time spent in a slow call can be attributed to header setup, serialization,
+ * the network or deserialization.
+ * <p>
+ * Timings are started by {@link SoapServiceClient#invoke} and are current on
+ * the calling thread until the call returns. The layers a call passes through
+ * record a {@link Mark} with {@link #mark(Mark)}, which does nothing if no
+ * call is being timed on the thread. Each phase lasts from the previously
+ * reached mark to the mark ending it, and phases a SOAP framework does not
+ * expose are folded into the next reached mark. If a call is retried, each
+ * mark holds the time it was last reached, so the SOAP client handlers attach
+ * a {@link #snapshot()} of the timings to the {@link SoapCallReturn} of each
+ * attempt.
+ * </p>
+ * <p>
+ * This class is not thread-safe. Timings are recorded and read on the thread
+ * making the call, except for snapshots, which are immutable and may be read
+ * on any thread, such as by an asynchronous logger.
+ * </p>
+ */
+public final class SoapCallTimings {
+
+  /**
+   * The points a SOAP call may reach, in the order they are usually reached.
+   */
+  public enum Mark {
+    /** The call was made on the service proxy. */
+    CALL_STARTED,
+    /** The call was allowed through by the rate limiter. */
+    RATE_LIMIT_ACQUIRED,
+    /** The authorization header was created, including any OAuth2 refresh. */
+    AUTHORIZED,
+    /** All headers were set on the SOAP client. */
+    HEADERS_SET,
+    /** Exclusive use of the SOAP client was obtained. */
+    SOAP_CLIENT_ACQUIRED,
+    /**
+     * The request was serialized and is about to be sent. Only reached with
+     * JAX-WS, since Axis serializes while sending.
+     */
+    REQUEST_SERIALIZED,
+    /**
+     * The response was received and parsed, but not yet deserialized. Only
+     * reached with JAX-WS.
+     */
+    RESPONSE_RECEIVED,
+    /** The response was deserialized into the return value or exception. */
+    RESPONSE_DESERIALIZED
+  }
+
+  private static final Mark[] MARKS = Mark.values();
+
+  private static final ThreadLocal<SoapCallTimings> CURRENT = new ThreadLocal<SoapCallTimings>();
+
+  /** The ticker marks are recorded with, or {@code null} for a snapshot. */
+  private final Ticker ticker;
+  private final long[] nanos;
+  private final boolean[] reached;
+  private SoapCallTimings previous;
+
+  @VisibleForTesting
+  SoapCallTimings(Ticker ticker) {
+    this.ticker = ticker;
+    this.nanos = new long[MARKS.length];
+    this.reached = new boolean[MARKS.length];
+  }
+
+  private SoapCallTimings(SoapCallTimings timings) {
+    this.ticker = null;
+    this.nanos = timings.nanos.clone();
+    this.reached = timings.reached.clone();
+  }
+
+  /**
+   * Starts timing a call on the current thread and records
+   * {@link Mark#CALL_STARTED}. Must be paired with {@link #end()}.
+   *
+   * @return the timings of the call
+   */
+  static SoapCallTimings begin() {
+    return begin(Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  static SoapCallTimings begin(Ticker ticker) {
+    SoapCallTimings timings = new SoapCallTimings(ticker);
+    timings.previous = CURRENT.get();
+    CURRENT.set(timings);
+    timings.record(Mark.CALL_STARTED);
+    return timings;
+  }
+
+  /**
+   * Stops timing the call on the current thread, restoring the timings of any
+   * enclosing call.
+   */
+  void end() {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+      previous = null;
+    }
+  }
+
+  /**
+   * Gets the timings of the call being made on the current thread, or
+   * {@code null} if none is being timed.
+   */
+  public static SoapCallTimings getCurrent() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Gets a {@link #snapshot()} of the timings of the call being made on the
+   * current thread, or {@code null} if none is being timed.
+   */
+  public static SoapCallTimings snapshotCurrent() {
+    SoapCallTimings timings = CURRENT.get();
+    return timings == null ? null : timings.snapshot();
+  }
+
+  /**
+   * Gets an immutable copy of the timings as they are now, which marks
+   * recorded later, such as by a retry of the call, do not change.
+   */
+  public SoapCallTimings snapshot() {
+    return ticker == null ? this : new SoapCallTimings(this);
+  }
+
+  /**
+   * Records that the call being made on the current thread, if any, reached
+   * {@code mark}.
+   */
+  public static void mark(Mark mark) {
+    SoapCallTimings timings = CURRENT.get();
+    if (timings != null) {
+      timings.record(mark);
+    }
+  }
+
+  /**
+   * Records that the call reached {@code mark} now.
+   *
+   * @throws IllegalStateException if these timings are a snapshot
+   */
+  public void record(Mark mark) {
+    Preconditions.checkState(ticker != null, "Cannot record a mark in a snapshot.");
+    nanos[mark.ordinal()] = ticker.read();
+    reached[mark.ordinal()] = true;
+  }
+
+  /**
+   * Determines if the call reached {@code mark}.
+   */
+  public boolean isReached(Mark mark) {
+    return reached[mark.ordinal()];
+  }
+
+  /**
+   * Gets the time the call started, in nanoseconds of {@link System#nanoTime()}.
+   */
+  public long getStartNanos() {
+    return nanos[Mark.CALL_STARTED.ordinal()];
+  }
+
+  /**
+   * Gets the time from the start of the call to {@code mark}, or {@code -1} if
+   * the call did not reach it.
+   */
+  public long getElapsedNanos(Mark mark) {
+    if (!isReached(mark)) {
+      return -1;
+    }
+    return nanos[mark.ordinal()] - getStartNanos();
+  }
+
+  /**
+   * Gets the duration of the phase ending with {@code mark}, which is the
+   * time from the latest mark reached before it, or {@code -1} if the call did
+   * not reach it.
+   */
+  public long getPhaseNanos(Mark mark) {
+    if (!isReached(mark)) {
+      return -1;
+    }
+    int[] order = getReachedOrder();
+    for (int i = 1; i < order.length; i++) {
+      if (order[i] == mark.ordinal()) {
+        return nanos[order[i]] - nanos[order[i - 1]];
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Gets the time from the start of the call to the latest mark it reached.
+   */
+  public long getTotalNanos() {
+    int[] order = getReachedOrder();
+    return nanos[order[order.length - 1]] - getStartNanos();
+  }
+
+  /**
+   * Gets the ordinals of the reached marks, ordered by the time they were
+   * reached and then by their declaration order.
+   */
+  private int[] getReachedOrder() {
+    int count = 0;
+    int[] order = new int[MARKS.length];
+    for (int i = 0; i < MARKS.length; i++) {
+      if (reached[i]) {
+        int j = count++;
+        while (j > 0 && nanos[i] - nanos[order[j - 1]] < 0) {
+          order[j] = order[j - 1];
+          j--;
+        }
+        order[j] = i;
+      }
+    }
+    int[] reachedOrder = new int[count];
+    System.arraycopy(order, 0, reachedOrder, 0, count);
+    return reachedOrder;
+  }
+
+  /**
+   * Returns the total time and the duration of each reached phase in
+   * milliseconds, in the order the phases ended.
+   */
+  @Override
+  public String toString() {
+    int[] order = getReachedOrder();
+    StringBuilder builder = new StringBuilder();
+    builder.append("total=").append(formatMillis(getTotalNanos())).append(" [");
+    for (int i = 1; i < order.length; i++) {
+      if (i > 1) {
+        builder.append(", ");
+      }
+      builder.append(MARKS[order[i]]).append('=')
+          .append(formatMillis(nanos[order[i]] - nanos[order[i - 1]]));
+    }
+    return builder.append(']').toString();
+  }
+
+  private static String formatMillis(long nanos) {
+    return String.format(Locale.US, "%.3fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
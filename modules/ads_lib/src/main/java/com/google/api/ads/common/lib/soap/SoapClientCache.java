@@ -0,0 +1,137 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of {@link SoapClientPool}s, so that service clients for the
+ * same service share SOAP clients instead of each creating their own. Once
+ * more than {@code maxSize} pools are cached, the least recently used pool is
+ * evicted. Clients checked out of an evicted pool are released back to it as
+ * usual and are garbage collected along with it.
+ *
+ * @param <K> the type of key identifying a service
+ * @param <T> the type of SOAP client
+ */
+public class SoapClientCache<K, T> {
+
+  private final Map<K, SoapClientPool<T>> pools;
+  private final int maxSize;
+  private final int poolSize;
+  private final AtomicLong hitCount;
+  private final AtomicLong missCount;
+  private final AtomicLong evictionCount;
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of pools to cache
+   * @param poolSize the maximum number of SOAP clients checked out of each pool
+   *     at once
+   */
+  public SoapClientCache(final int maxSize, int poolSize) {
+    Preconditions.checkArgument(maxSize > 0, "maxSize must be positive but was: %s", maxSize);
+    Preconditions.checkArgument(poolSize > 0, "poolSize must be positive but was: %s", poolSize);
+    this.maxSize = maxSize;
+    this.poolSize = poolSize;
+    this.hitCount = new AtomicLong();
+    this.missCount = new AtomicLong();
+    this.evictionCount = new AtomicLong();
+    this.pools = new LinkedHashMap<K, SoapClientPool<T>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, SoapClientPool<T>> eldest) {
+        if (size() > maxSize) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Gets the pool for the given key, creating it along with its initial SOAP
+   * client if it is not cached.
+   *
+   * @param key identifies the service
+   * @param soapClientSupplier creates SOAP clients for the service
+   * @return the pool shared by all callers with an equal key
+   */
+  public SoapClientPool<T> getPool(K key, Supplier<T> soapClientSupplier) {
+    synchronized (pools) {
+      SoapClientPool<T> pool = pools.get(key);
+      if (pool != null) {
+        hitCount.incrementAndGet();
+        return pool;
+      }
+    }
+    missCount.incrementAndGet();
+    // Creating a SOAP client can be slow, so it is done without holding the
+    // lock. If another thread cached a pool in the meantime, that pool wins.
+    SoapClientPool<T> newPool =
+        new SoapClientPool<T>(soapClientSupplier.get(), soapClientSupplier, poolSize);
+    synchronized (pools) {
+      SoapClientPool<T> pool = pools.get(key);
+      if (pool != null) {
+        return pool;
+      }
+      pools.put(key, newPool);
+      return newPool;
+    }
+  }
+
+  /**
+   * Returns the number of pools currently cached.
+   */
+  public int size() {
+    synchronized (pools) {
+      return pools.size();
+    }
+  }
+
+  /**
+   * Returns the maximum number of pools cached.
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of lookups that found a cached pool.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of lookups that had to create a pool.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Returns the number of pools evicted to stay within the maximum size.
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+}
@@ -14,10 +14,18 @@
 
 package com.google.api.ads.common.lib.soap;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Base class for SOAP client handlers. Calling {@link #invoke(SoapCall)} will
@@ -31,18 +39,50 @@ import java.util.List;
  */
 public abstract class SoapClientHandler<T> implements SoapClientHandlerInterface<T> {
 
+  /**
+   * Dispatch tables of interface method to SOAP client method, keyed by SOAP
+   * client class.
+   */
+  private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Method>> soapClientMethodTables =
+      new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, Method>>();
+
+  /**
+   * Locks giving exclusive use of each SOAP client, keyed by identity. SOAP
+   * clients may be shared by handlers, so the locks are too.
+   */
+  private static final LoadingCache<Object, Lock> soapClientLocks =
+      CacheBuilder.newBuilder().weakKeys().build(new CacheLoader<Object, Lock>() {
+        @Override
+        public Lock load(Object soapClient) {
+          return new ReentrantLock();
+        }
+      });
+
   /**
    * Default constructor.
    */
   protected SoapClientHandler() {}
 
+  /**
+   * Gets the lock to hold while making a call with the SOAP client. This is
+   * used instead of synchronizing on the client, so that a virtual thread
+   * waiting for the network does not pin its carrier thread.
+   *
+   * @param soapClient the SOAP client
+   * @return the lock for the SOAP client
+   */
+  protected static Lock getSoapClientLock(Object soapClient) {
+    return soapClientLocks.getUnchecked(soapClient);
+  }
+
   /**
    * Processes the arguments such that they will be ready to be passed into the
    * supplied SOAP client method. This method can be overridden in the case that
    * a particular framework must additionally process the arguments.
    * <p>
    * In the default implementation of processing arguments, if the number of
-   * arguments is too small, the argument list will be padded with {@code null}.
+   * arguments is too small, a copy of the argument list padded with
+   * {@code null} will be returned; otherwise {@code args} is returned as is.
    * If {@code args} is {@code null}, {@code null} will be returned.
    * </p>
    *
@@ -52,25 +92,23 @@ public abstract class SoapClientHandler<T> implements SoapClientHandlerInterface
    * @return the arguments ready to be passed into the {@code soapClientMethod}.
    */
   protected Object[] processSoapArguments(Method soapClientMethod, Object[] args) {
-    List<Object> argsList = new ArrayList<Object>();
-    if (args != null) {
-      Collections.addAll(argsList, args);
-    } else {
+    if (args == null) {
       return null;
     }
-    int curretNumArgs = argsList.size();
-    while (curretNumArgs < soapClientMethod.getParameterTypes().length) {
-      argsList.add(null);
-      curretNumArgs++;
+    int numParameters = soapClientMethod.getParameterTypes().length;
+    if (args.length >= numParameters) {
+      return args;
     }
-    return argsList.toArray(new Object[0]);
+    return Arrays.copyOf(args, numParameters);
   }
 
   /**
    * Gets the method from the SOAP client that matches the supplied method.
    * <p>
-   * In the default implementation, only the method name and return type
-   * will be matched.
+   * In the default implementation, a method with the same name and parameter
+   * types is preferred. If there is none, the first method with the same name
+   * and return type is used. Matches are cached per SOAP client class, so the
+   * lookup is only performed once per method.
    * </p>
    *
    * @param soapClient the SOAP client within which to search for the method
@@ -78,12 +116,82 @@ public abstract class SoapClientHandler<T> implements SoapClientHandlerInterface
    * @return the SOAP client's matching method
    * @throws NoSuchMethodException thrown if the SOAP client does not contain
    *     the requested method.
-   *
-   * TODO(api.arogal): Needs to check parameter types as well as name/return.
    */
   @Override
   public Method getSoapClientMethod(T soapClient, Method method) throws NoSuchMethodException {
-    for (Method soapClientMethod : soapClient.getClass().getMethods()) {
+    ConcurrentMap<Method, Method> methodTable = getSoapClientMethodTable(soapClient.getClass());
+    Method soapClientMethod = methodTable.get(method);
+    if (soapClientMethod == null) {
+      soapClientMethod = findSoapClientMethod(soapClient.getClass(), method);
+      methodTable.putIfAbsent(method, soapClientMethod);
+    }
+    return soapClientMethod;
+  }
+
+  /**
+   * Determines if the exception thrown by a SOAP call is a transport failure
+   * that may not recur if the call is repeated.
+   * <p>
+   * In the default implementation, only exceptions caused by a socket timeout
+   * are transient. Handlers should extend this with the way their framework
+   * reports HTTP 5xx responses.
+   * </p>
+   *
+   * @see SoapClientHandlerInterface#isTransientError(Throwable)
+   */
+  @Override
+  public boolean isTransientError(Throwable exception) {
+    for (Throwable cause : Throwables.getCausalChain(exception)) {
+      if (cause instanceof SocketTimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the dispatch table for the SOAP client class, creating it with an
+   * entry for every method of the interfaces the class implements if this is
+   * the first request for the class.
+   */
+  private ConcurrentMap<Method, Method> getSoapClientMethodTable(Class<?> soapClientClass) {
+    ConcurrentMap<Method, Method> methodTable = soapClientMethodTables.get(soapClientClass);
+    if (methodTable != null) {
+      return methodTable;
+    }
+    methodTable = new ConcurrentHashMap<Method, Method>();
+    for (Class<?> clazz = soapClientClass; clazz != null; clazz = clazz.getSuperclass()) {
+      for (Class<?> interfaceClass : clazz.getInterfaces()) {
+        for (Method interfaceMethod : interfaceClass.getMethods()) {
+          try {
+            methodTable.put(interfaceMethod, findSoapClientMethod(soapClientClass,
+                interfaceMethod));
+          } catch (NoSuchMethodException e) {
+            // Interface methods are always implemented; skip anything unexpected.
+          }
+        }
+      }
+    }
+    ConcurrentMap<Method, Method> existingTable =
+        soapClientMethodTables.putIfAbsent(soapClientClass, methodTable);
+    return existingTable == null ? methodTable : existingTable;
+  }
+
+  /**
+   * Searches the SOAP client class for the method matching {@code method}.
+   */
+  private Method findSoapClientMethod(Class<?> soapClientClass, Method method)
+      throws NoSuchMethodException {
+    try {
+      Method soapClientMethod =
+          soapClientClass.getMethod(method.getName(), method.getParameterTypes());
+      if (method.getReturnType().equals(soapClientMethod.getReturnType())) {
+        return soapClientMethod;
+      }
+    } catch (NoSuchMethodException e) {
+      // Fall back to matching on name and return type only.
+    }
+    for (Method soapClientMethod : soapClientClass.getMethods()) {
       if (method.getName().equals(soapClientMethod.getName())
           && method.getReturnType().equals(soapClientMethod.getReturnType())) {
         return soapClientMethod;
@@ -112,8 +112,8 @@ public interface SoapClientHandlerInterface<T> {
   /**
    * Gets the method from the SOAP client that matches the supplied method.
    * <p>
-   * In the default implementation, only the method name and return type
-   * will be matched.
+   * In the default implementation, a method with the same name and parameter
+   * types is preferred, falling back to the same name and return type.
    * </p>
    *
    * @param soapClient the SOAP client within which to search for the method
@@ -123,4 +123,14 @@ public interface SoapClientHandlerInterface<T> {
    *     the requested method.
    */
   Method getSoapClientMethod(T soapClient, Method method) throws NoSuchMethodException;
+
+  /**
+   * Determines if the exception thrown by a SOAP call is a transport failure
+   * that may not recur if the call is repeated, such as a socket timeout or an
+   * HTTP 5xx response without a SOAP fault.
+   *
+   * @param exception the exception in the {@link SoapCallReturn}
+   * @return {@code true} if the call may succeed if it is repeated
+   */
+  boolean isTransientError(Throwable exception);
 }
@@ -0,0 +1,133 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap;
+
+import com.google.api.ads.common.lib.exception.ServiceException;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of SOAP clients. At most {@code maxSize} clients are checked
+ * out at any time; callers beyond that block until a client is released. New
+ * clients are created lazily from the supplier, so a pool that never sees
+ * concurrent calls holds only its initial client.
+ *
+ * @param <T> the type of SOAP client
+ */
+public class SoapClientPool<T> {
+
+  private final T initialSoapClient;
+  private final Supplier<T> soapClientSupplier;
+  private final Queue<T> idleSoapClients;
+  private final Semaphore permits;
+  private final AtomicInteger createdCount;
+  private final int maxSize;
+
+  /**
+   * Constructor.
+   *
+   * @param initialSoapClient a SOAP client to seed the pool with
+   * @param soapClientSupplier creates additional SOAP clients on demand
+   * @param maxSize the maximum number of SOAP clients checked out at once
+   */
+  public SoapClientPool(T initialSoapClient, Supplier<T> soapClientSupplier, int maxSize) {
+    Preconditions.checkArgument(maxSize > 0, "maxSize must be positive but was: %s", maxSize);
+    this.initialSoapClient = initialSoapClient;
+    this.soapClientSupplier = Preconditions.checkNotNull(soapClientSupplier,
+        "Null SOAP client supplier");
+    this.maxSize = maxSize;
+    this.idleSoapClients = new ConcurrentLinkedQueue<T>();
+    this.permits = new Semaphore(maxSize, true);
+    this.createdCount = new AtomicInteger();
+    if (initialSoapClient != null) {
+      idleSoapClients.add(initialSoapClient);
+      createdCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Checks out a SOAP client, blocking until one is available. Every client
+   * checked out must be handed back through {@link #release(Object)}.
+   *
+   * @return a SOAP client for the exclusive use of the caller
+   * @throws ServiceException if the calling thread was interrupted while
+   *     waiting or a new SOAP client could not be created
+   */
+  public T checkout() throws ServiceException {
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceException("Interrupted while waiting for a SOAP client.", e);
+    }
+    T soapClient = idleSoapClients.poll();
+    if (soapClient != null) {
+      return soapClient;
+    }
+    try {
+      soapClient = soapClientSupplier.get();
+      createdCount.incrementAndGet();
+      return soapClient;
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a SOAP client obtained from {@link #checkout()} to the pool.
+   *
+   * @param soapClient the SOAP client to return
+   */
+  public void release(T soapClient) {
+    idleSoapClients.add(soapClient);
+    permits.release();
+  }
+
+  /**
+   * Returns the SOAP client the pool was seeded with, or {@code null} if it was
+   * not seeded.
+   */
+  public T getInitialSoapClient() {
+    return initialSoapClient;
+  }
+
+  /**
+   * Returns the maximum number of SOAP clients that may be checked out at once.
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of SOAP clients this pool has created, including the
+   * initial client.
+   */
+  public int getCreatedCount() {
+    return createdCount.get();
+  }
+
+  /**
+   * Returns the number of SOAP clients currently checked out.
+   */
+  public int getCheckedOutCount() {
+    return maxSize - permits.availablePermits();
+  }
+}
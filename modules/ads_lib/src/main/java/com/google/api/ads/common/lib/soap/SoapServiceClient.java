@@ -17,8 +17,14 @@ package com.google.api.ads.common.lib.soap;
 import com.google.api.ads.common.lib.exception.AuthenticationException;
 import com.google.api.ads.common.lib.exception.ServiceException;
 
+import com.google.common.base.Optional;
+
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The {@code SoapServiceClient} class pairs together the {@code soapClient} and
@@ -32,8 +38,17 @@ import java.lang.reflect.Method;
  */
 public abstract class SoapServiceClient<T> implements InvocationHandler {
 
+  /**
+   * Methods of each service client class that handle proxied calls, keyed by
+   * the proxied method. Absent values mean the call is for the SOAP client.
+   */
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<Method, Optional<Method>>>
+      serviceClientMethodTables =
+          new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, Optional<Method>>>();
+
   private final SoapClientHandlerInterface<T> soapClientHandler;
   private final T soapClient;
+  private final Lock callLock;
 
   /**
    * Protected constructor.
@@ -45,21 +60,38 @@ public abstract class SoapServiceClient<T> implements InvocationHandler {
       T soapClient) {
     this.soapClient = soapClient;
     this.soapClientHandler = soapClientHandler;
+    this.callLock = new ReentrantLock();
   }
 
   /**
    * Called from {@link #invoke(Object, Method, Object[])} if the method is
    * intended for the SOAP client. Extending classes should override this method
    * if they wish to wrap the call, such in cases of reauthentication or
-   * exception handling. The actual SOAP call is synchronized on the SOAP client
-   * so that only one request to the SOAP client can be made with without
-   * interruption, useful for logging and exception handling.
+   * exception handling. The actual SOAP call is made while holding the
+   * {@link #getCallLock() call lock} so that only one request to the SOAP
+   * client can be made without interruption, useful for logging and exception
+   * handling.
    *
    * @param soapCall the call to send to the SOAP client
    * @return the return value from the {@code soapCall}
    */
-  protected synchronized SoapCallReturn callSoapClient(SoapCall<T> soapCall) {
-    return soapClientHandler.invokeSoapCall(soapCall);
+  protected SoapCallReturn callSoapClient(SoapCall<T> soapCall) {
+    callLock.lock();
+    try {
+      return soapClientHandler.invokeSoapCall(soapCall);
+    } finally {
+      callLock.unlock();
+    }
+  }
+
+  /**
+   * Gets the reentrant lock held while calling the SOAP client. Extending
+   * classes that make several calls in {@link #callSoapClient(SoapCall)} hold it
+   * for all of them. A lock is used rather than synchronization so that a
+   * virtual thread waiting for the network does not pin its carrier thread.
+   */
+  protected final Lock getCallLock() {
+    return callLock;
   }
 
   /**
@@ -78,21 +110,86 @@ public abstract class SoapServiceClient<T> implements InvocationHandler {
    * @throws Throwable thrown if the SOAP call passed into this method results
    *     in an exception. The exception thrown will be not be wrapped - it will
    *     adhere to the "throws" clause of the passed in {@code Method}.
+   * @see SoapCallTimings
    */
   @Override
   public Object invoke(Object proxy, final Method method, final Object[] args)
       throws Throwable {
+    Optional<Method> serviceClientMethod = getServiceClientMethod(method);
+    if (serviceClientMethod.isPresent()) {
+      return serviceClientMethod.get().invoke(this, args);
+    }
+    SoapCallTimings timings = SoapCallTimings.begin();
     try {
-      return getClass().getMethod(method.getName(), method.getParameterTypes())
-          .invoke(this, args);
-    } catch (NoSuchMethodException e) {
-      // Ignore and let the SOAP client handler take over.
+      SoapCallReturn soapCallReturn = executeSoapCall(method, args);
+      logSoapCall(soapCallReturn);
+      return unwrapSoapCallReturn(soapCallReturn);
+    } finally {
+      timings.end();
+    }
+  }
+
+  /**
+   * Gets the method of this class with the same name and parameter types as
+   * {@code method}, or absent if the method is meant for the SOAP client. The
+   * result is cached per class.
+   */
+  private Optional<Method> getServiceClientMethod(Method method) {
+    ConcurrentMap<Method, Optional<Method>> methodTable = serviceClientMethodTables.get(getClass());
+    if (methodTable == null) {
+      methodTable = new ConcurrentHashMap<Method, Optional<Method>>();
+      ConcurrentMap<Method, Optional<Method>> existingTable =
+          serviceClientMethodTables.putIfAbsent(getClass(), methodTable);
+      if (existingTable != null) {
+        methodTable = existingTable;
+      }
+    }
+    Optional<Method> serviceClientMethod = methodTable.get(method);
+    if (serviceClientMethod == null) {
+      try {
+        serviceClientMethod =
+            Optional.of(getClass().getMethod(method.getName(), method.getParameterTypes()));
+      } catch (NoSuchMethodException e) {
+        serviceClientMethod = Optional.absent();
+      }
+      methodTable.putIfAbsent(method, serviceClientMethod);
     }
+    return serviceClientMethod;
+  }
+
+  /**
+   * Sets the headers and sends the call for {@code method} to the SOAP client.
+   * Extending classes may override this method to route the call to a
+   * different SOAP client, such as one checked out of a pool.
+   *
+   * @param method the interface method being invoked
+   * @param args the method arguments
+   * @return the {@link SoapCallReturn} from the SOAP client
+   * @throws Throwable if the headers could not be set or the SOAP client has no
+   *     method matching {@code method}
+   */
+  protected SoapCallReturn executeSoapCall(Method method, Object[] args) throws Throwable {
+    return executeSoapCall(method, args, 0);
+  }
+
+  /**
+   * Sets the headers and sends the call for {@code method} to the SOAP client,
+   * limiting the time the call may take.
+   *
+   * @param method the interface method being invoked
+   * @param args the method arguments
+   * @param timeoutMillis the longest the call may take, or {@code 0} to use
+   *     the timeout of the SOAP client
+   * @return the {@link SoapCallReturn} from the SOAP client
+   * @throws Throwable if the headers could not be set or the SOAP client has no
+   *     method matching {@code method}
+   */
+  protected SoapCallReturn executeSoapCall(Method method, Object[] args, int timeoutMillis)
+      throws Throwable {
     setHeaders();
-    SoapCallReturn soapCallReturn = callSoapClient(
-        createSoapCall(soapClientHandler.getSoapClientMethod(soapClient, method), args));
-    logSoapCall(soapCallReturn);
-    return unwrapSoapCallReturn(soapCallReturn);
+    SoapCallTimings.mark(SoapCallTimings.Mark.HEADERS_SET);
+    return callSoapClient(createSoapCall(
+        soapClientHandler.getSoapClientMethod(soapClient, method), args, timeoutMillis));
   }
 
   /**
@@ -100,7 +197,16 @@ public abstract class SoapServiceClient<T> implements InvocationHandler {
    * {@code args}.
    */
   protected SoapCall<T> createSoapCall(Method soapClientMethod, Object[] args) {
-    return new SoapCall<T>(soapClientMethod, soapClient, args);
+    return createSoapCall(soapClientMethod, args, 0);
+  }
+
+  /**
+   * Creates the {@link SoapCall} from the {@code soapClientMethod}, its
+   * {@code args} and the longest it may take.
+   */
+  protected SoapCall<T> createSoapCall(Method soapClientMethod, Object[] args,
+      int timeoutMillis) {
+    return new SoapCall<T>(soapClientMethod, soapClient, args, timeoutMillis);
   }
 
   /**
@@ -0,0 +1,67 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+/**
+ * Static utility methods for the suppliers of SOAP XML held by
+ * {@link RequestInfo} and {@link ResponseInfo}.
+ */
+public final class SoapXmlSuppliers {
+
+  private SoapXmlSuppliers() {}
+
+  /**
+   * Returns a supplier that serializes the SOAP XML on the first call to
+   * {@link Supplier#get()} and retains at most {@code maxLength} characters of
+   * it for subsequent calls.
+   *
+   * @param serializer serializes the SOAP message to a string
+   * @param maxLength the maximum number of characters to retain, or {@code 0}
+   *     to retain the entire message
+   * @return a lazy, memoizing supplier of the SOAP XML
+   */
+  public static Supplier<String> lazy(Supplier<String> serializer, int maxLength) {
+    if (maxLength > 0) {
+      serializer = Suppliers.compose(new TruncateFunction(maxLength), serializer);
+    }
+    return Suppliers.memoize(serializer);
+  }
+
+  /**
+   * Truncates strings longer than a maximum length, noting how many characters
+   * were dropped.
+   */
+  private static class TruncateFunction implements Function<String, String> {
+
+    private final int maxLength;
+
+    TruncateFunction(int maxLength) {
+      this.maxLength = maxLength;
+    }
+
+    @Override
+    public String apply(String soapXml) {
+      if (soapXml == null || soapXml.length() <= maxLength) {
+        return soapXml;
+      }
+      return soapXml.substring(0, maxLength) + "...[" + (soapXml.length() - maxLength)
+          + " characters truncated]";
+    }
+  }
+}
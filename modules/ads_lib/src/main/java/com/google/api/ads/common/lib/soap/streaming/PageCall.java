@@ -0,0 +1,34 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.streaming;
+
+/**
+ * A service call returning a result page, such as a {@code get} call.
+ *
+ * @param <R> the type of the page
+ * @param <E> the type of exception thrown by the call
+ * @see StreamingPages
+ */
+public interface PageCall<R, E extends Exception> {
+
+  /**
+   * Makes the service call.
+   *
+   * @return the page returned by the service
+   * @throws E if the call fails
+   */
+  R call() throws E;
+}
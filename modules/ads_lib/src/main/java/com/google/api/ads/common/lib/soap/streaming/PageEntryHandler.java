@@ -0,0 +1,33 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.streaming;
+
+/**
+ * Receives the entries of a result page one at a time.
+ *
+ * @param <T> the type of the entries
+ * @see StreamingPages
+ */
+public interface PageEntryHandler<T> {
+
+  /**
+   * Handles an entry of a result page. Exceptions thrown by this method fail
+   * the service call the entry is part of.
+   *
+   * @param entry the entry
+   */
+  void handleEntry(T entry);
+}
@@ -0,0 +1,227 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.streaming;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Splits a SOAP response holding a page of results into its entries and the
+ * rest of the response, reading the response with StAX so that only one entry
+ * is held in memory at a time.
+ * <p>
+ * Entries are the children of the returned value, which is the only child of
+ * the response wrapper in the SOAP body, with one of the given local names:
+ * </p>
+ * <pre>
+ * &lt;Envelope&gt;&lt;Body&gt;&lt;getResponse&gt;&lt;rval&gt;&lt;entries&gt;...
+ * </pre>
+ * <p>
+ * Each call to {@link #nextEntry()} copies the response up to the next entry
+ * to the remainder and returns the entry as a SOAP envelope of its own, so it
+ * can be deserialized on its own. The envelope declares every namespace in
+ * scope of the entry in the response. Once all entries have been returned,
+ * the remainder is a complete SOAP response without them. Responses that are
+ * not pages, such as SOAP faults, are copied to the remainder unchanged.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public final class SoapPageSplitter {
+
+  /** The depth of entry elements, counting the envelope as depth 1. */
+  private static final int ENTRY_DEPTH = 5;
+
+  private static final String ENTRY_ENCODING = "UTF-8";
+
+  /** StAX factories are not guaranteed to be thread-safe. */
+  private static final ThreadLocal<XMLInputFactory> INPUT_FACTORIES =
+      new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+          XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+          inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+          inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+          return inputFactory;
+        }
+      };
+
+  private static final ThreadLocal<XMLOutputFactory> OUTPUT_FACTORIES =
+      new ThreadLocal<XMLOutputFactory>() {
+        @Override
+        protected XMLOutputFactory initialValue() {
+          return XMLOutputFactory.newInstance();
+        }
+      };
+
+  private static final ThreadLocal<XMLEventFactory> EVENT_FACTORIES =
+      new ThreadLocal<XMLEventFactory>() {
+        @Override
+        protected XMLEventFactory initialValue() {
+          return XMLEventFactory.newInstance();
+        }
+      };
+
+  private final XMLEventReader reader;
+  private final XMLEventWriter remainderWriter;
+  private final Set<String> entryElements;
+
+  /** The start elements enclosing the current position, innermost first. */
+  private final Deque<StartElement> ancestors;
+
+  private boolean finished;
+
+  /**
+   * Constructor.
+   *
+   * @param response the SOAP response, which is not closed
+   * @param remainder receives the response without its entries, in the
+   *     encoding of the response
+   * @param entryElements the local names of the entry elements
+   * @throws XMLStreamException if the response cannot be read
+   */
+  public SoapPageSplitter(InputStream response, OutputStream remainder, Set<String> entryElements)
+      throws XMLStreamException {
+    this.reader = INPUT_FACTORIES.get().createXMLEventReader(response);
+    XMLEvent firstEvent = reader.peek();
+    String encoding = ENTRY_ENCODING;
+    if (firstEvent != null && firstEvent.isStartDocument()
+        && ((StartDocument) firstEvent).encodingSet()) {
+      encoding = ((StartDocument) firstEvent).getCharacterEncodingScheme();
+    }
+    this.remainderWriter = OUTPUT_FACTORIES.get().createXMLEventWriter(remainder, encoding);
+    this.entryElements = ImmutableSet.copyOf(entryElements);
+    this.ancestors = new ArrayDeque<StartElement>();
+  }
+
+  /**
+   * Copies the response to the remainder up to the next entry, and returns
+   * the entry.
+   *
+   * @return the next entry as a UTF-8 encoded SOAP envelope holding only the
+   *     entry in its body, or {@code null} if there are no more entries and
+   *     the remainder is complete
+   * @throws XMLStreamException if the response cannot be read
+   */
+  public byte[] nextEntry() throws XMLStreamException {
+    while (!finished && reader.hasNext()) {
+      XMLEvent event = reader.nextEvent();
+      if (event.isStartElement()) {
+        StartElement startElement = event.asStartElement();
+        if (isEntry(startElement)) {
+          return readEntry(startElement);
+        }
+        ancestors.push(startElement);
+      } else if (event.isEndElement()) {
+        ancestors.pop();
+      }
+      remainderWriter.add(event);
+    }
+    if (!finished) {
+      finished = true;
+      remainderWriter.flush();
+      remainderWriter.close();
+      reader.close();
+    }
+    return null;
+  }
+
+  /**
+   * Determines if an element starts an entry, which requires it to be at
+   * entry depth within a SOAP body.
+   */
+  private boolean isEntry(StartElement startElement) {
+    if (ancestors.size() != ENTRY_DEPTH - 1
+        || !entryElements.contains(startElement.getName().getLocalPart())) {
+      return false;
+    }
+    Iterator<StartElement> outermostFirst = ancestors.descendingIterator();
+    return "Envelope".equals(outermostFirst.next().getName().getLocalPart())
+        && "Body".equals(outermostFirst.next().getName().getLocalPart());
+  }
+
+  /**
+   * Reads the rest of an entry, writing it to a SOAP envelope of its own.
+   */
+  private byte[] readEntry(StartElement entryStart) throws XMLStreamException {
+    XMLEventFactory eventFactory = EVENT_FACTORIES.get();
+    ByteArrayOutputStream entry = new ByteArrayOutputStream();
+    XMLEventWriter entryWriter = OUTPUT_FACTORIES.get().createXMLEventWriter(entry,
+        ENTRY_ENCODING);
+    Iterator<StartElement> outermostFirst = ancestors.descendingIterator();
+    StartElement envelope = outermostFirst.next();
+    StartElement body = outermostFirst.next();
+    entryWriter.add(eventFactory.createStartDocument(ENTRY_ENCODING));
+    entryWriter.add(eventFactory.createStartElement(envelope.getName(), null,
+        getNamespacesInScope().iterator()));
+    entryWriter.add(eventFactory.createStartElement(body.getName(), null, null));
+    entryWriter.add(entryStart);
+    int depth = 1;
+    while (depth > 0) {
+      XMLEvent event = reader.nextEvent();
+      if (event.isStartElement()) {
+        depth++;
+      } else if (event.isEndElement()) {
+        depth--;
+      }
+      entryWriter.add(event);
+    }
+    entryWriter.add(eventFactory.createEndElement(body.getName(), null));
+    entryWriter.add(eventFactory.createEndElement(envelope.getName(), null));
+    entryWriter.add(eventFactory.createEndDocument());
+    entryWriter.close();
+    return entry.toByteArray();
+  }
+
+  /**
+   * Gets the namespaces declared by the ancestors of the current position,
+   * with inner declarations replacing outer declarations of the same prefix.
+   */
+  private Iterable<Namespace> getNamespacesInScope() {
+    Map<String, Namespace> namespaces = Maps.newLinkedHashMap();
+    Iterator<StartElement> outermostFirst = ancestors.descendingIterator();
+    while (outermostFirst.hasNext()) {
+      @SuppressWarnings("unchecked")
+      Iterator<Namespace> declared = outermostFirst.next().getNamespaces();
+      while (declared.hasNext()) {
+        Namespace namespace = declared.next();
+        namespaces.put(namespace.getPrefix(), namespace);
+      }
+    }
+    return namespaces.values();
+  }
+}
@@ -0,0 +1,244 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.streaming;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Streams the entries of result pages to a {@link PageEntryHandler} as the
+ * response is parsed, so that the memory needed for a page is bounded by its
+ * largest entry rather than by the whole page.
+ * <p>
+ * A page is streamed by making the service call within
+ * {@link #forEachEntry(Class, PageEntryHandler, PageCall)}:
+ * </p>
+ * <pre>
+ * CampaignPage page = StreamingPages.forEachEntry(Campaign.class,
+ *     new PageEntryHandler&lt;Campaign&gt;() {
+ *       public void handleEntry(Campaign campaign) { ... }
+ *     },
+ *     new PageCall&lt;CampaignPage, RemoteException&gt;() {
+ *       public CampaignPage call() throws RemoteException {
+ *         return campaignService.get(selector);
+ *       }
+ *     });
+ * </pre>
+ * <p>
+ * Streaming requires a SOAP framework that supports it and has it enabled, see
+ * {@link com.google.api.ads.common.lib.conf.AdsLibConfiguration#isSoapResponseStreamingEnabled()}.
+ * The page returned by a streamed call holds every field of the response
+ * except its entries. If the response was not streamed, the entries are
+ * delivered from the returned page after the call instead, so the handler
+ * sees the same entries either way.
+ * </p>
+ * <p>
+ * The handler is called on the thread making the call, while the SOAP client
+ * of the service is in use, so it must not call the same service. If a call is
+ * retried after some of its entries were delivered, they are delivered again.
+ * </p>
+ */
+public final class StreamingPages {
+
+  /**
+   * The local names of the elements holding the entries of AdWords pages and
+   * DFP result sets.
+   */
+  public static final Set<String> DEFAULT_ENTRY_ELEMENTS = ImmutableSet.of("entries", "results");
+
+  private static final ThreadLocal<StreamingPages> CURRENT = new ThreadLocal<StreamingPages>();
+
+  private final Class<?> entryClass;
+  private final Set<String> entryElements;
+  private final PageEntryHandler<Object> handler;
+  private StreamingPages previous;
+  private long entryCount;
+  private int streamedResponseCount;
+
+  private StreamingPages(Class<?> entryClass, Set<String> entryElements,
+      PageEntryHandler<Object> handler) {
+    this.entryClass = entryClass;
+    this.entryElements = ImmutableSet.copyOf(entryElements);
+    this.handler = handler;
+  }
+
+  /**
+   * Makes a service call, delivering the entries of the page it returns to
+   * the handler. The entries are held by the
+   * {@link #DEFAULT_ENTRY_ELEMENTS default entry elements}.
+   *
+   * @param entryClass the class of the entries
+   * @param handler the handler receiving each entry
+   * @param call the service call, which should make a single call returning
+   *     a page
+   * @return the page returned by the call, without its entries if they were
+   *     streamed
+   * @throws E if the call fails
+   */
+  public static <T, R, E extends Exception> R forEachEntry(Class<T> entryClass,
+      PageEntryHandler<? super T> handler, PageCall<R, E> call) throws E {
+    return forEachEntry(entryClass, DEFAULT_ENTRY_ELEMENTS, handler, call);
+  }
+
+  /**
+   * Makes a service call, delivering the entries of the page it returns to
+   * the handler.
+   *
+   * @param entryClass the class of the entries
+   * @param entryElements the local names of the child elements of the
+   *     returned value that hold its entries, such as {@code value} for the
+   *     return value of an AdWords {@code mutate} call
+   * @param handler the handler receiving each entry
+   * @param call the service call, which should make a single call returning
+   *     a page
+   * @return the page returned by the call, without its entries if they were
+   *     streamed
+   * @throws E if the call fails
+   */
+  @SuppressWarnings("unchecked")
+  public static <T, R, E extends Exception> R forEachEntry(Class<T> entryClass,
+      Set<String> entryElements, PageEntryHandler<? super T> handler, PageCall<R, E> call)
+      throws E {
+    StreamingPages streamingPages =
+        new StreamingPages(entryClass, entryElements, (PageEntryHandler<Object>) handler);
+    streamingPages.begin();
+    try {
+      R page = call.call();
+      if (streamingPages.streamedResponseCount == 0 && page != null) {
+        streamingPages.handleEntries(page);
+      }
+      return page;
+    } finally {
+      streamingPages.end();
+    }
+  }
+
+  /**
+   * Gets the entries being streamed on the current thread, or {@code null} if
+   * none are. Used by SOAP frameworks that support streaming.
+   */
+  public static StreamingPages getCurrent() {
+    return CURRENT.get();
+  }
+
+  private void begin() {
+    previous = CURRENT.get();
+    CURRENT.set(this);
+  }
+
+  private void end() {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+      previous = null;
+    }
+  }
+
+  public Class<?> getEntryClass() {
+    return entryClass;
+  }
+
+  /**
+   * Gets the local names of the child elements of the returned value that
+   * hold its entries.
+   */
+  public Set<String> getEntryElements() {
+    return entryElements;
+  }
+
+  /**
+   * Gets the number of entries delivered to the handler so far.
+   */
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * Delivers an entry to the handler. Calls the handler makes are not
+   * streamed.
+   *
+   * @param entry the entry
+   * @throws ClassCastException if the entry is not of the entry class
+   */
+  public void handleEntry(Object entry) {
+    entryClass.cast(entry);
+    end();
+    try {
+      handler.handleEntry(entry);
+      entryCount++;
+    } finally {
+      begin();
+    }
+  }
+
+  /**
+   * Records that the entries of a response have been delivered, so that they
+   * are not delivered again from the returned page.
+   */
+  public void recordStreamedResponse() {
+    streamedResponseCount++;
+  }
+
+  /**
+   * Delivers the entries held by a page that was not streamed. The entries
+   * are read with the getters for the entry elements, such as
+   * {@code getEntries()}, which may return an array or an {@link Iterable}.
+   */
+  private void handleEntries(Object page) {
+    for (String entryElement : entryElements) {
+      Object entries = getProperty(page, entryElement);
+      if (entries instanceof Object[]) {
+        for (Object entry : (Object[]) entries) {
+          if (entry != null) {
+            handleEntry(entry);
+          }
+        }
+      } else if (entries instanceof Iterable<?>) {
+        for (Object entry : (Iterable<?>) entries) {
+          if (entry != null) {
+            handleEntry(entry);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the value of a property of a page, or {@code null} if the page has
+   * no getter for it.
+   */
+  private static Object getProperty(Object page, String name) {
+    Method getter;
+    try {
+      getter = page.getClass().getMethod(
+          "get" + name.substring(0, 1).toUpperCase(Locale.US) + name.substring(1));
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    try {
+      return getter.invoke(page);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Could not read the entries of the page.", e);
+    } catch (InvocationTargetException e) {
+      throw new IllegalStateException("Could not read the entries of the page.", e.getCause());
+    }
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.api.ads.common.lib.utils;
 
 import com.google.api.ads.common.lib.auth.AuthorizationHeaderProvider;
+import com.google.api.ads.common.lib.auth.OAuth2CredentialRegistry;
 import com.google.api.ads.common.lib.auth.OAuth2Helper;
 import com.google.api.ads.common.lib.useragent.UserAgentCombiner;
 import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
@@ -31,6 +32,7 @@ public class Internals {
   private final HttpTransport httpTransport;
   private final AdsServiceLoggers adsServiceLoggers;
   private final OAuth2Helper oAuth2Helper;
+  private final OAuth2CredentialRegistry oAuth2CredentialRegistry;
 
   /**
    * Constructor to be injected by guice.
@@ -38,12 +40,14 @@ public class Internals {
   @Inject
   public Internals(AuthorizationHeaderProvider authorizationHeaderProvider,
       UserAgentCombiner userAgentCombiner, HttpTransport httpTransport,
-      AdsServiceLoggers adsServiceLoggers, OAuth2Helper oAuth2Helper) {
+      AdsServiceLoggers adsServiceLoggers, OAuth2Helper oAuth2Helper,
+      OAuth2CredentialRegistry oAuth2CredentialRegistry) {
     this.authorizationHeaderProvider = authorizationHeaderProvider;
     this.userAgentCombiner = userAgentCombiner;
     this.httpTransport = httpTransport;
     this.adsServiceLoggers = adsServiceLoggers;
     this.oAuth2Helper = oAuth2Helper;
+    this.oAuth2CredentialRegistry = oAuth2CredentialRegistry;
   }
 
   /**
@@ -80,4 +84,11 @@ public class Internals {
   public OAuth2Helper getOAuth2Helper() {
     return oAuth2Helper;
   }
+
+  /**
+   * Gets the registry of offline credentials shared across sessions.
+   */
+  public OAuth2CredentialRegistry getOAuth2CredentialRegistry() {
+    return oAuth2CredentialRegistry;
+  }
 }
@@ -0,0 +1,100 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.utils.compression;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The number of bytes a gzip stream compressed or decompressed, and the CPU
+ * time it spent doing so, so that the savings in bytes sent can be weighed
+ * against the cost of compression.
+ * <p>
+ * CPU time is the time of the thread using the stream, if the JVM supports
+ * measuring it, or else the elapsed time. It includes the time spent writing
+ * compressed bytes to, or reading them from, the underlying stream.
+ * </p>
+ * <p>
+ * This class is not thread-safe. It is updated by the thread using the stream.
+ * </p>
+ */
+public final class CompressionStats {
+
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+  private static final boolean CPU_TIME_SUPPORTED =
+      THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+
+  private long uncompressedBytes;
+  private long compressedBytes;
+  private long cpuNanos;
+
+  /**
+   * Gets the number of bytes before compression or after decompression.
+   */
+  public long getUncompressedBytes() {
+    return uncompressedBytes;
+  }
+
+  /**
+   * Gets the number of gzip bytes, including the gzip header and trailer.
+   */
+  public long getCompressedBytes() {
+    return compressedBytes;
+  }
+
+  public long getCpuNanos() {
+    return cpuNanos;
+  }
+
+  /**
+   * Gets the number of uncompressed bytes per compressed byte, or {@code 0} if
+   * no compressed bytes have been counted.
+   */
+  public double getRatio() {
+    return compressedBytes == 0 ? 0 : (double) uncompressedBytes / compressedBytes;
+  }
+
+  void addUncompressedBytes(long bytes) {
+    uncompressedBytes += bytes;
+  }
+
+  void addCompressedBytes(long bytes) {
+    compressedBytes += bytes;
+  }
+
+  void addCpuNanos(long nanos) {
+    cpuNanos += nanos;
+  }
+
+  /**
+   * Gets the current time to measure CPU time with.
+   */
+  static long currentCpuNanos() {
+    return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  /**
+   * Returns the byte counts, ratio and CPU time in milliseconds.
+   */
+  @Override
+  public String toString() {
+    return String.format(Locale.US, "%d->%d bytes (ratio %.2f, %.3fms CPU)", uncompressedBytes,
+        compressedBytes, getRatio(), cpuNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
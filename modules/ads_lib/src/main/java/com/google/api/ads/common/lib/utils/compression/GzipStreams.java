@@ -0,0 +1,115 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.utils.compression;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Creates gzip streams that compress with pooled {@link Deflater} and
+ * {@link Inflater} instances.
+ * <p>
+ * {@link java.util.zip.GZIPOutputStream} and
+ * {@link java.util.zip.GZIPInputStream} allocate a new native zlib state for
+ * every stream, which is costly for the many small streams of SOAP calls. The
+ * streams created here take a {@code Deflater} or {@code Inflater} from a
+ * bounded pool and return it, reset, when they are finished or closed. If the
+ * pool is empty a new one is created, and if it is full a returned one is
+ * released.
+ * </p>
+ */
+public final class GzipStreams {
+
+  /** The maximum number of idle deflaters, and of idle inflaters, to keep. */
+  static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+  private static final BlockingQueue<Deflater> DEFLATERS =
+      new ArrayBlockingQueue<Deflater>(POOL_SIZE);
+
+  private static final BlockingQueue<Inflater> INFLATERS =
+      new ArrayBlockingQueue<Inflater>(POOL_SIZE);
+
+  private GzipStreams() {}
+
+  /**
+   * Creates a stream that gzip compresses the bytes written to it, and writes
+   * the gzip header immediately.
+   *
+   * @param out the stream receiving the compressed bytes
+   * @param stats the statistics to update
+   * @return the compressing stream
+   * @throws IOException if the gzip header cannot be written
+   */
+  public static PooledGzipOutputStream newOutputStream(OutputStream out, CompressionStats stats)
+      throws IOException {
+    return new PooledGzipOutputStream(out, stats);
+  }
+
+  /**
+   * Creates a stream that decompresses gzip bytes read from another stream,
+   * and reads the gzip header immediately.
+   *
+   * @param in the stream of compressed bytes
+   * @param stats the statistics to update
+   * @return the decompressing stream
+   * @throws IOException if the gzip header cannot be read or is invalid
+   */
+  public static PooledGzipInputStream newInputStream(InputStream in, CompressionStats stats)
+      throws IOException {
+    return new PooledGzipInputStream(in, stats);
+  }
+
+  static Deflater acquireDeflater() {
+    Deflater deflater = DEFLATERS.poll();
+    return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  }
+
+  static void releaseDeflater(Deflater deflater) {
+    deflater.reset();
+    if (!DEFLATERS.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  static Inflater acquireInflater() {
+    Inflater inflater = INFLATERS.poll();
+    return inflater != null ? inflater : new Inflater(true);
+  }
+
+  static void releaseInflater(Inflater inflater) {
+    inflater.reset();
+    if (!INFLATERS.offer(inflater)) {
+      inflater.end();
+    }
+  }
+
+  @VisibleForTesting
+  static int getIdleDeflaterCount() {
+    return DEFLATERS.size();
+  }
+
+  @VisibleForTesting
+  static int getIdleInflaterCount() {
+    return INFLATERS.size();
+  }
+}
@@ -0,0 +1,179 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.utils.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A gzip decompressing stream that uses a pooled {@link Inflater}, which it
+ * returns to the pool when the end of the gzip member is read or the stream
+ * is closed. Only the first gzip member is read, and its trailer is verified.
+ * <p>
+ * Created by {@link GzipStreams#newInputStream}.
+ * </p>
+ */
+public final class PooledGzipInputStream extends InflaterInputStream {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int TRAILER_SIZE = 8;
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private final CompressionStats stats;
+  private final CRC32 crc;
+  private long headerSize;
+  private boolean eos;
+  private boolean released;
+
+  PooledGzipInputStream(InputStream in, CompressionStats stats) throws IOException {
+    super(in, GzipStreams.acquireInflater(), BUFFER_SIZE);
+    this.stats = stats;
+    this.crc = new CRC32();
+    try {
+      readHeader();
+    } catch (IOException e) {
+      release();
+      throw e;
+    }
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (eos) {
+      return -1;
+    }
+    long start = CompressionStats.currentCpuNanos();
+    int n = super.read(b, off, len);
+    if (n == -1) {
+      eos = true;
+      try {
+        readTrailer();
+        stats.addCompressedBytes(headerSize + inf.getBytesRead() + TRAILER_SIZE);
+      } finally {
+        release();
+      }
+    } else {
+      crc.update(b, off, n);
+      stats.addUncompressedBytes(n);
+    }
+    stats.addCpuNanos(CompressionStats.currentCpuNanos() - start);
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return eos ? 0 : super.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    release();
+    super.close();
+  }
+
+  private void release() {
+    if (!released) {
+      released = true;
+      GzipStreams.releaseInflater(inf);
+    }
+  }
+
+  /**
+   * Reads and checks the gzip header, skipping any optional fields.
+   */
+  private void readHeader() throws IOException {
+    CRC32 headerCrc = new CRC32();
+    if (readUShort(headerCrc) != GZIP_MAGIC) {
+      throw new ZipException("Not in GZIP format");
+    }
+    if (readUByte(headerCrc) != 8) {
+      throw new ZipException("Unsupported compression method");
+    }
+    int flags = readUByte(headerCrc);
+    for (int i = 0; i < 6; i++) {
+      readUByte(headerCrc);
+    }
+    if ((flags & FEXTRA) != 0) {
+      int extraSize = readUShort(headerCrc);
+      for (int i = 0; i < extraSize; i++) {
+        readUByte(headerCrc);
+      }
+    }
+    if ((flags & FNAME) != 0) {
+      while (readUByte(headerCrc) != 0) {}
+    }
+    if ((flags & FCOMMENT) != 0) {
+      while (readUByte(headerCrc) != 0) {}
+    }
+    if ((flags & FHCRC) != 0) {
+      int expected = (int) headerCrc.getValue() & 0xffff;
+      if (readUShort(headerCrc) != expected) {
+        throw new ZipException("Corrupt GZIP header");
+      }
+    }
+  }
+
+  /**
+   * Reads and checks the gzip trailer, which may partly be in the buffer the
+   * inflater has not consumed.
+   */
+  private void readTrailer() throws IOException {
+    byte[] trailer = new byte[TRAILER_SIZE];
+    int buffered = Math.min(inf.getRemaining(), TRAILER_SIZE);
+    System.arraycopy(buf, len - inf.getRemaining(), trailer, 0, buffered);
+    for (int i = buffered; i < TRAILER_SIZE; i++) {
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Unexpected end of GZIP trailer");
+      }
+      trailer[i] = (byte) b;
+    }
+    if (getUInt(trailer, 0) != crc.getValue()
+        || getUInt(trailer, 4) != (inf.getBytesWritten() & 0xffffffffL)) {
+      throw new ZipException("Corrupt GZIP trailer");
+    }
+  }
+
+  private static long getUInt(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xffL) | (bytes[offset + 1] & 0xffL) << 8
+        | (bytes[offset + 2] & 0xffL) << 16 | (bytes[offset + 3] & 0xffL) << 24;
+  }
+
+  private int readUShort(CRC32 headerCrc) throws IOException {
+    return readUByte(headerCrc) | readUByte(headerCrc) << 8;
+  }
+
+  private int readUByte(CRC32 headerCrc) throws IOException {
+    int b = in.read();
+    if (b == -1) {
+      throw new EOFException("Unexpected end of GZIP header");
+    }
+    headerCrc.update(b);
+    headerSize++;
+    return b;
+  }
+}
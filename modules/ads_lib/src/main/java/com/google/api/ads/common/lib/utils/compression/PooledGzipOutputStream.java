@@ -0,0 +1,108 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.utils.compression;
+
+import com.google.common.io.CountingOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A gzip compressing stream that uses a pooled {@link Deflater}, which it
+ * returns to the pool when {@link #finish() finished} or closed. It writes the
+ * same single member gzip format as {@link java.util.zip.GZIPOutputStream}.
+ * <p>
+ * Created by {@link GzipStreams#newOutputStream}.
+ * </p>
+ */
+public final class PooledGzipOutputStream extends DeflaterOutputStream {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final byte[] HEADER =
+      {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+  private final CountingOutputStream countingOut;
+  private final CompressionStats stats;
+  private final CRC32 crc;
+  private boolean finished;
+
+  PooledGzipOutputStream(OutputStream out, CompressionStats stats) throws IOException {
+    this(new CountingOutputStream(out), stats);
+  }
+
+  private PooledGzipOutputStream(CountingOutputStream countingOut, CompressionStats stats)
+      throws IOException {
+    super(countingOut, GzipStreams.acquireDeflater(), BUFFER_SIZE);
+    this.countingOut = countingOut;
+    this.stats = stats;
+    this.crc = new CRC32();
+    try {
+      countingOut.write(HEADER);
+    } catch (IOException e) {
+      finished = true;
+      GzipStreams.releaseDeflater(def);
+      throw e;
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (finished) {
+      throw new IOException("write beyond end of stream");
+    }
+    long start = CompressionStats.currentCpuNanos();
+    super.write(b, off, len);
+    crc.update(b, off, len);
+    stats.addUncompressedBytes(len);
+    stats.addCpuNanos(CompressionStats.currentCpuNanos() - start);
+  }
+
+  /**
+   * Finishes compressing and writes the gzip trailer without closing the
+   * underlying stream, and returns the deflater to the pool.
+   */
+  @Override
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    try {
+      long start = CompressionStats.currentCpuNanos();
+      super.finish();
+      writeInt((int) crc.getValue());
+      writeInt((int) def.getBytesRead());
+      stats.addCpuNanos(CompressionStats.currentCpuNanos() - start);
+      stats.addCompressedBytes(countingOut.getCount());
+    } finally {
+      GzipStreams.releaseDeflater(def);
+    }
+  }
+
+  /**
+   * Writes {@code value} in little-endian byte order.
+   */
+  private void writeInt(int value) throws IOException {
+    countingOut.write(value & 0xff);
+    countingOut.write((value >>> 8) & 0xff);
+    countingOut.write((value >>> 16) & 0xff);
+    countingOut.write((value >>> 24) & 0xff);
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.utils.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Buffers the bytes written to it as they are until they exceed a threshold,
+ * and then gzip compresses them, with a pooled deflater, as they are written.
+ * <p>
+ * This allows a message to be serialized once and sent with a known
+ * {@code Content-Length}, compressed only if it is large enough for
+ * compression to pay off, without ever holding a large message uncompressed.
+ * {@link #close()} must be called before the contents are read.
+ * </p>
+ */
+public final class ThresholdGzipOutputStream extends OutputStream {
+
+  private final int thresholdBytes;
+  private final CompressionStats stats;
+  private final ByteArrayOutputStream buffer;
+  private PooledGzipOutputStream gzipOut;
+  private boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param thresholdBytes the number of bytes the contents must exceed to be
+   *     compressed
+   * @param stats the statistics to update if the contents are compressed
+   */
+  public ThresholdGzipOutputStream(int thresholdBytes, CompressionStats stats) {
+    this.thresholdBytes = thresholdBytes;
+    this.stats = stats;
+    this.buffer = new ByteArrayOutputStream(Math.min(Math.max(thresholdBytes, 32), 8192));
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (gzipOut == null && buffer.size() + (long) len > thresholdBytes) {
+      byte[] uncompressed = buffer.toByteArray();
+      buffer.reset();
+      gzipOut = GzipStreams.newOutputStream(buffer, stats);
+      gzipOut.write(uncompressed);
+    }
+    if (gzipOut != null) {
+      gzipOut.write(b, off, len);
+    } else {
+      buffer.write(b, off, len);
+    }
+  }
+
+  /**
+   * Finishes compressing, if the threshold was exceeded, and returns the
+   * deflater to the pool.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      if (gzipOut != null) {
+        gzipOut.finish();
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the threshold was exceeded and the contents are
+   * gzip compressed.
+   */
+  public boolean isCompressed() {
+    return gzipOut != null;
+  }
+
+  /**
+   * Gets the number of bytes of the contents, after any compression.
+   */
+  public int size() {
+    return buffer.size();
+  }
+
+  /**
+   * Writes the contents, after any compression, to another stream.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the contents cannot be written
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    if (!closed) {
+      throw new IllegalStateException("The stream must be closed before it is read.");
+    }
+    buffer.writeTo(out);
+  }
+}
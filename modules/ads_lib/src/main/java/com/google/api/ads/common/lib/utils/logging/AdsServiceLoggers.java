@@ -15,8 +15,9 @@
 package com.google.api.ads.common.lib.utils.logging;
 
 import com.google.api.ads.common.lib.soap.RequestInfo;
-import com.google.api.ads.common.lib.soap.ResponseInfo;
 import com.google.api.ads.common.lib.soap.SoapCallReturn;
+import com.google.api.ads.common.lib.soap.SoapCallTimings;
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
@@ -36,6 +37,22 @@ public class AdsServiceLoggers {
 
   private final Logger soapXmlLogger;
   private final Logger requestInfoLogger;
+  private final AsyncLoggingQueue asyncLoggingQueue;
+  private final SoapXmlLogSampler soapXmlLogSampler;
+
+  /**
+   * Constructor for loggers that log the SOAP XML of every call on the thread
+   * making the call.
+   *
+   * @param prettyPrinter an object capable of pretty printing XML messages
+   * @param soapXmlLogger the SOAP XML logger
+   * @param requestInfoLogger the request info logger
+   */
+  protected AdsServiceLoggers(PrettyPrinterInterface prettyPrinter, Logger soapXmlLogger,
+      Logger requestInfoLogger) {
+    this(prettyPrinter, soapXmlLogger, requestInfoLogger, new AsyncLoggingQueue(0, false),
+        new SoapXmlLogSampler(1, 0));
+  }
 
   /**
    * Constructor.
@@ -43,14 +60,22 @@ public class AdsServiceLoggers {
    * @param prettyPrinter an object capable of pretty printing XML messages
    * @param soapXmlLogger the SOAP XML logger
    * @param requestInfoLogger the request info logger
+   * @param asyncLoggingQueue the queue SOAP XML is pretty printed and logged
+   *     from
+   * @param soapXmlLogSampler the sampler deciding which successful calls have
+   *     their SOAP XML logged
    */
   @Inject
   protected AdsServiceLoggers(PrettyPrinterInterface prettyPrinter,
       @Named("soapXmlLogger") Logger soapXmlLogger,
-      @Named("requestInfoLogger") Logger requestInfoLogger) {
+      @Named("requestInfoLogger") Logger requestInfoLogger,
+      AsyncLoggingQueue asyncLoggingQueue,
+      SoapXmlLogSampler soapXmlLogSampler) {
     this.prettyPrinter = prettyPrinter;
     this.soapXmlLogger = soapXmlLogger;
     this.requestInfoLogger = requestInfoLogger;
+    this.asyncLoggingQueue = asyncLoggingQueue;
+    this.soapXmlLogSampler = soapXmlLogSampler;
   }
 
   /**
@@ -63,29 +88,62 @@ public class AdsServiceLoggers {
   }
 
   /**
-   * Logs the XML messages from a given SOAP interaction.
+   * Logs the XML messages from a given SOAP interaction. Failed and slow calls
+   * are logged at warn level. Other calls are logged at info level if the
+   * {@link SoapXmlLogSampler} samples them. The messages are serialized on the
+   * calling thread, and are pretty printed and logged through the
+   * {@link AsyncLoggingQueue}, which may do so on a background thread.
    *
    * @param soapCallReturn information on the SOAP call to be logged
    */
   public void logSoapXml(SoapCallReturn soapCallReturn) {
+    SoapCallTimings timings = soapCallReturn.getTimings();
+    final boolean warn = soapCallReturn.getException() != null
+        || (timings != null && soapXmlLogSampler.isSlow(timings.getTotalNanos()));
+    if (warn ? soapXmlLogger.isWarnEnabled() : isSampled(soapCallReturn)) {
+      final String requestXml = soapCallReturn.getRequestInfo().getSoapRequestXml();
+      final String responseXml = soapCallReturn.getResponseInfo().getSoapResponseXml();
+      asyncLoggingQueue.execute(new Runnable() {
+        @Override
+        public void run() {
+          writeSoapXml(requestXml, responseXml, warn);
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns {@code true} if info level is enabled and the call is sampled.
+   */
+  private boolean isSampled(SoapCallReturn soapCallReturn) {
     RequestInfo request = soapCallReturn.getRequestInfo();
-    ResponseInfo response = soapCallReturn.getResponseInfo();
-    if (soapXmlLogger.isInfoEnabled() ||
-        (soapXmlLogger.isWarnEnabled() && soapCallReturn.getException() != null)) {
-      String prettyRequest = "SOAP Request:\n" +
-          prettyPrinter.prettyPrint(request.getSoapRequestXml());
-      String prettyResponse = "SOAP Response:\n" +
-          prettyPrinter.prettyPrint(response.getSoapResponseXml());
-      if (soapCallReturn.getException() == null) {
-        soapXmlLogger.info(prettyRequest);
-        soapXmlLogger.info(prettyResponse);
-      } else {
-        soapXmlLogger.warn(prettyRequest);
-        soapXmlLogger.warn(prettyResponse);
-      }
+    return soapXmlLogger.isInfoEnabled()
+        && soapXmlLogSampler.isSampled(request.getServiceName(), request.getMethodName());
+  }
+
+  /**
+   * Pretty prints and logs the XML messages of a SOAP interaction.
+   */
+  private void writeSoapXml(String requestXml, String responseXml, boolean warn) {
+    String prettyRequest = "SOAP Request:\n" + prettyPrinter.prettyPrint(requestXml);
+    String prettyResponse = "SOAP Response:\n" + prettyPrinter.prettyPrint(responseXml);
+    if (!warn) {
+      soapXmlLogger.info(prettyRequest);
+      soapXmlLogger.info(prettyResponse);
+    } else {
+      soapXmlLogger.warn(prettyRequest);
+      soapXmlLogger.warn(prettyResponse);
     }
   }
 
+  /**
+   * Gets the number of SOAP interactions that were not logged because the
+   * logging queue was full.
+   */
+  public long getDroppedSoapXmlCount() {
+    return asyncLoggingQueue.getDroppedCount();
+  }
+
   /**
    * Logs basic information on a SOAP request.
    *
@@ -95,5 +153,21 @@ public class AdsServiceLoggers {
     RequestInfo request = soapCallReturn.getRequestInfo();
     requestInfoLogger.info("Request made: Service: \"{}\" Method: \"{}\" URL: \"{}\"",
         new Object[] {request.getServiceName(), request.getMethodName(), request.getUrl()});
+    if (soapCallReturn.getTimings() != null && requestInfoLogger.isDebugEnabled()) {
+      requestInfoLogger.debug("Request timings: Service: \"{}\" Method: \"{}\" {}",
+          new Object[] {request.getServiceName(), request.getMethodName(),
+              soapCallReturn.getTimings()});
+    }
+    CompressionStats requestCompression = request.getCompressionStats();
+    CompressionStats responseCompression = soapCallReturn.getResponseInfo() == null
+        ? null : soapCallReturn.getResponseInfo().getCompressionStats();
+    if ((requestCompression != null || responseCompression != null)
+        && requestInfoLogger.isDebugEnabled()) {
+      requestInfoLogger.debug(
+          "Request compression: Service: \"{}\" Method: \"{}\" request: {} response: {}",
+          new Object[] {request.getServiceName(), request.getMethodName(),
+              requestCompression == null ? "none" : requestCompression,
+              responseCompression == null ? "none" : responseCompression});
+    }
   }
 }
@@ -0,0 +1,167 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.logging;
+
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs logging tasks, such as pretty printing and logging SOAP messages, off
+ * the thread making the call.
+ * <p>
+ * Tasks are handed to a bounded queue drained by a single daemon thread, which
+ * is started when the first task is queued. When the queue is full, a task is
+ * either dropped and counted, or the caller waits for room, depending on the
+ * configuration. If the queue size is {@code 0}, tasks run immediately on the
+ * calling thread.
+ * </p>
+ */
+public class AsyncLoggingQueue {
+
+  private static final ThreadFactory DEFAULT_THREAD_FACTORY = new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat("ads-logging-%d")
+      .build();
+
+  private final BlockingQueue<Runnable> queue;
+  private final boolean blockWhenFull;
+  private final ThreadFactory threadFactory;
+  private final AtomicBoolean started;
+  private final AtomicLong droppedCount;
+
+  /**
+   * Constructor.
+   *
+   * @param adsLibConfiguration the lib configuration providing the queue size
+   *     and the policy for a full queue
+   */
+  @Inject
+  public AsyncLoggingQueue(AdsLibConfiguration adsLibConfiguration) {
+    this(adsLibConfiguration.getSoapLoggingQueueSize(),
+        adsLibConfiguration.isSoapLoggingBlockWhenFull(), DEFAULT_THREAD_FACTORY);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param queueSize the maximum number of waiting tasks, or {@code 0} to run
+   *     tasks on the calling thread
+   * @param blockWhenFull {@code true} if callers should wait for room in a full
+   *     queue, or {@code false} if their tasks should be dropped
+   */
+  public AsyncLoggingQueue(int queueSize, boolean blockWhenFull) {
+    this(queueSize, blockWhenFull, DEFAULT_THREAD_FACTORY);
+  }
+
+  @VisibleForTesting
+  AsyncLoggingQueue(int queueSize, boolean blockWhenFull, ThreadFactory threadFactory) {
+    this.queue = queueSize > 0 ? new ArrayBlockingQueue<Runnable>(queueSize) : null;
+    this.blockWhenFull = blockWhenFull;
+    this.threadFactory = threadFactory;
+    this.started = new AtomicBoolean();
+    this.droppedCount = new AtomicLong();
+  }
+
+  /**
+   * Returns {@code true} if tasks run on a background thread.
+   */
+  public boolean isAsynchronous() {
+    return queue != null;
+  }
+
+  /**
+   * Runs the task on the background thread, or on the calling thread if the
+   * queue is synchronous. The task is dropped if the queue is full and callers
+   * should not wait, or if the calling thread is interrupted while waiting.
+   *
+   * @param task the logging task
+   */
+  public void execute(Runnable task) {
+    if (queue == null) {
+      task.run();
+      return;
+    }
+    if (!started.get() && started.compareAndSet(false, true)) {
+      threadFactory.newThread(new Drainer()).start();
+    }
+    if (blockWhenFull) {
+      try {
+        queue.put(task);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        recordDropped();
+      }
+    } else if (!queue.offer(task)) {
+      recordDropped();
+    }
+  }
+
+  /**
+   * Gets the number of tasks dropped because the queue was full.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Gets the number of tasks waiting to run.
+   */
+  public int getPendingCount() {
+    return queue == null ? 0 : queue.size();
+  }
+
+  /**
+   * Counts a dropped task, warning on the first drop and each time the count
+   * doubles.
+   */
+  private void recordDropped() {
+    long dropped = droppedCount.incrementAndGet();
+    if (Long.bitCount(dropped) == 1) {
+      AdsServiceLoggers.ADS_API_LIB_LOG.warn(
+          "Logging queue is full. {} log entries have been dropped.", dropped);
+    }
+  }
+
+  /**
+   * Runs queued tasks until interrupted.
+   */
+  private class Drainer implements Runnable {
+
+    @Override
+    public void run() {
+      while (true) {
+        Runnable task;
+        try {
+          task = queue.take();
+        } catch (InterruptedException e) {
+          return;
+        }
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          AdsServiceLoggers.ADS_API_LIB_LOG.warn("Unable to run logging task.", e);
+        }
+      }
+    }
+  }
+}
@@ -2,7 +2,12 @@
 
 package com.google.api.ads.common.lib.utils.logging;
 
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+import com.google.api.ads.common.lib.utils.metrics.InMemoryMetricsRegistry;
+import com.google.api.ads.common.lib.utils.metrics.MetricsSink;
+import com.google.api.ads.common.lib.utils.metrics.NoOpMetricsSink;
 import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.name.Names;
@@ -11,7 +16,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Module for logging.
+ * Module for logging and call metrics.
  */
 public class LoggingModule extends AbstractModule {
 
@@ -29,7 +34,10 @@ public class LoggingModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(AdsServiceLoggers.class);
+    bind(AsyncLoggingQueue.class).in(Singleton.class);
+    bind(MetricsSink.class).toProvider(MetricsSinkProvider.class);
     bind(PrettyPrinterInterface.class).to(PrettyPrinter.class).in(Singleton.class);
+    bind(SoapXmlLogSampler.class).in(Singleton.class);
     bind(Logger.class)
         .annotatedWith(Names.named("libLogger")).toInstance(AdsServiceLoggers.ADS_API_LIB_LOG);
     configureLogger(loggerPrefix, "soapXmlLogger");
@@ -41,6 +49,32 @@ public class LoggingModule extends AbstractModule {
         new LoggerProvider(prefix, name)).asEagerSingleton();
   }
 
+  /**
+   * Provider for the metrics sink. Calls are recorded in the
+   * {@link InMemoryMetricsRegistry#getDefault() default registry} only if
+   * metrics are enabled in the configuration.
+   */
+  protected static class MetricsSinkProvider implements Provider<MetricsSink> {
+
+    private final AdsLibConfiguration adsLibConfiguration;
+
+    /**
+     * Constructor.
+     *
+     * @param adsLibConfiguration the lib configuration
+     */
+    @Inject
+    public MetricsSinkProvider(AdsLibConfiguration adsLibConfiguration) {
+      this.adsLibConfiguration = adsLibConfiguration;
+    }
+
+    @Override
+    public MetricsSink get() {
+      return adsLibConfiguration.isMetricsEnabled()
+          ? InMemoryMetricsRegistry.getDefault() : NoOpMetricsSink.getInstance();
+    }
+  }
+
   /**
    * Provider for Loggers.
    */
@@ -1,4 +1,4 @@
-// Copyright 2011, Google Inc. All Rights Reserved.
+// Copyright 2015 Google Inc. All Rights Reserved.
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,82 +14,426 @@
 
 package com.google.api.ads.common.lib.utils.logging;
 
-import com.google.common.annotations.VisibleForTesting;
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
 
 import java.io.StringReader;
-import java.io.StringWriter;
-import java.util.EmptyStackException;
-
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * A utility class that pretty prints XML messages.
+ * <p>
+ * Messages are read with a StAX parser and written with indentation as they
+ * are parsed, so no document tree is built. The content of elements whose
+ * local name matches one of the redacted elements, ignoring case, is replaced
+ * with {@value #REDACTED}. Output longer than the maximum length is cut off.
+ * If the message is not well-formed, for example because it was truncated
+ * before being logged, the unparsed remainder is appended as it is, with
+ * redacted elements still redacted.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
  */
 public final class PrettyPrinter implements PrettyPrinterInterface {
 
-  private static final String INDENT_AMOUNT = "4";
-  private static Transformer transformer;
+  static final String REDACTED = "REDACTED";
+
+  private static final String INDENT = "    ";
+
+  private final Set<String> redactedElements;
+  private final Pattern redactedElementPattern;
+  private final int maxLength;
+
+  /** StAX factories are not guaranteed to be thread-safe. */
+  private final ThreadLocal<XMLInputFactory> inputFactories = new ThreadLocal<XMLInputFactory>() {
+    @Override
+    protected XMLInputFactory initialValue() {
+      XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+      inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+      inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+      return inputFactory;
+    }
+  };
 
   /**
-   * Default constructor.
+   * Constructor for a pretty printer that redacts the
+   * {@link AdsLibConfiguration#DEFAULT_REDACTED_SOAP_XML_ELEMENTS default
+   * elements} and does not limit the output length.
    */
   public PrettyPrinter() {
-    try {
-      transformer = TransformerFactory.newInstance().newTransformer();
-      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-      transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", INDENT_AMOUNT);
-    } catch (TransformerConfigurationException e) {
-      AdsServiceLoggers.ADS_API_LIB_LOG.warn("Unable to initialize XML PrettyPrinter. Error: " + e);
-    } catch (TransformerFactoryConfigurationError e) {
-      AdsServiceLoggers.ADS_API_LIB_LOG.warn("Unable to initialize XML PrettyPrinter. Error: " + e);
+    this(AdsLibConfiguration.DEFAULT_REDACTED_SOAP_XML_ELEMENTS, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param adsLibConfiguration the lib configuration providing the redacted
+   *     elements and the maximum output length
+   */
+  @Inject
+  public PrettyPrinter(AdsLibConfiguration adsLibConfiguration) {
+    this(adsLibConfiguration.getRedactedSoapXmlElements(),
+        adsLibConfiguration.getMaxPrettySoapXmlLength());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param redactedElements the local names of the elements whose content is
+   *     redacted
+   * @param maxLength the maximum number of characters of pretty-printed output,
+   *     or {@code 0} for no limit
+   */
+  public PrettyPrinter(Set<String> redactedElements, int maxLength) {
+    ImmutableSet.Builder<String> lowerCaseElements = ImmutableSet.builder();
+    for (String redactedElement : redactedElements) {
+      lowerCaseElements.add(redactedElement.toLowerCase(Locale.US));
     }
+    this.redactedElements = lowerCaseElements.build();
+    this.redactedElementPattern = createRedactedElementPattern(this.redactedElements);
+    this.maxLength = maxLength;
   }
 
   /**
-   * Testable constructor.
+   * Creates a pattern matching the start tag of a redacted element followed by
+   * its text, or {@code null} if no elements are redacted.
    */
-  @VisibleForTesting
-  PrettyPrinter(Transformer transformer) {
-    PrettyPrinter.transformer = transformer;
+  private static Pattern createRedactedElementPattern(Set<String> redactedElements) {
+    if (redactedElements.isEmpty()) {
+      return null;
+    }
+    StringBuilder names = new StringBuilder();
+    for (String redactedElement : redactedElements) {
+      names.append(names.length() == 0 ? "" : "|").append(Pattern.quote(redactedElement));
+    }
+    return Pattern.compile("(<(?:[^\\s/<>:]+:)?(?:" + names + ")(?:\\s[^<>]*)?>)[^<]*",
+        Pattern.CASE_INSENSITIVE);
   }
 
   /**
-   * Transforms XML into a pretty-printed format. If there is an error
-   * initializing the PrettyPrinter or transforming the XML message, the raw XML
-   * message will be returned.
+   * Transforms XML into a pretty-printed format. If the message cannot be
+   * parsed, the part that could not be parsed is returned as it is, apart
+   * from redaction.
    *
    * @param xml the XML message to be pretty printed
    * @return the given message in pretty-printed format
    */
   @Override
   public String prettyPrint(String xml) {
-    if (transformer != null) {
+    if (xml == null) {
+      return null;
+    }
+    Output output = new Output(maxLength);
+    int parsedLength = 0;
+    try {
+      XMLStreamReader reader =
+          inputFactories.get().createXMLStreamReader(new StringReader(xml));
       try {
-        StreamResult result = new StreamResult(new StringWriter());
-        transformer.transform(new StreamSource(new StringReader(xml)), result);
-        return result.getWriter().toString();
-      } catch (TransformerException e) {
-        AdsServiceLoggers.ADS_API_LIB_LOG.warn("Unable to pretty print XML: {}", xml);
-        return xml;
-      } catch (NullPointerException e) {
-        AdsServiceLoggers.ADS_API_LIB_LOG.warn("Unable to pretty print XML: {}", xml);
-        return xml;
-      } catch (ArrayIndexOutOfBoundsException e) {
-        AdsServiceLoggers.ADS_API_LIB_LOG.warn("Unable to pretty print XML: {}", xml);
-        return xml;
-      } catch (EmptyStackException e) {
-        AdsServiceLoggers.ADS_API_LIB_LOG.warn("Unable to pretty print XML: {}", xml);
-        return xml;
-      }
-    } else {
-      return xml;
+        writeDeclaration(reader, output);
+        while (reader.hasNext() && !output.isFull()) {
+          writeEvent(reader, output);
+          parsedLength = Math.max(parsedLength, reader.getLocation().getCharacterOffset());
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      AdsServiceLoggers.ADS_API_LIB_LOG.debug("Unable to pretty print all of the XML.", e);
+      // The rest of a redacted element cannot be told apart from what follows it.
+      if (!output.isRedacting()) {
+        output.closeStartTag();
+        output.append(redact(xml.substring(Math.min(parsedLength, xml.length()))));
+      }
+    }
+    return output.toString();
+  }
+
+  /**
+   * Writes the XML declaration, if the message has one.
+   */
+  private static void writeDeclaration(XMLStreamReader reader, Output output) {
+    if (reader.getVersion() == null) {
+      return;
+    }
+    output.append("<?xml version=\"").append(reader.getVersion()).append('"');
+    if (reader.getCharacterEncodingScheme() != null) {
+      output.append(" encoding=\"").append(reader.getCharacterEncodingScheme()).append('"');
+    }
+    if (reader.standaloneSet()) {
+      output.append(" standalone=\"").append(reader.isStandalone() ? "yes" : "no").append('"');
+    }
+    output.append("?>");
+  }
+
+  /**
+   * Reads the next event and writes it.
+   */
+  private void writeEvent(XMLStreamReader reader, Output output) throws XMLStreamException {
+    int event = reader.next();
+    if (output.isRedacting()) {
+      output.skipRedacted(event, reader);
+      return;
+    }
+    switch (event) {
+      case XMLStreamConstants.START_ELEMENT:
+        output.startElement(reader);
+        if (redactedElements.contains(reader.getLocalName().toLowerCase(Locale.US))) {
+          output.startRedacting();
+        }
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        output.endElement(reader);
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.SPACE:
+        if (!reader.isWhiteSpace()) {
+          output.text(escape(reader.getText(), false));
+        }
+        break;
+      case XMLStreamConstants.CDATA:
+        output.text("<![CDATA[" + reader.getText() + "]]>");
+        break;
+      case XMLStreamConstants.ENTITY_REFERENCE:
+        output.text("&" + reader.getLocalName() + ";");
+        break;
+      case XMLStreamConstants.COMMENT:
+        output.markup("<!--" + reader.getText() + "-->");
+        break;
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        output.markup("<?" + reader.getPITarget()
+            + (Strings.isNullOrEmpty(reader.getPIData()) ? "" : " " + reader.getPIData()) + "?>");
+        break;
+      case XMLStreamConstants.DTD:
+        output.markup(reader.getText());
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Redacts the text following the start tag of each redacted element in
+   * unparsed XML.
+   */
+  private String redact(String unparsedXml) {
+    if (redactedElementPattern == null) {
+      return unparsedXml;
+    }
+    Matcher matcher = redactedElementPattern.matcher(unparsedXml);
+    StringBuffer redacted = new StringBuffer();
+    while (matcher.find()) {
+      matcher.appendReplacement(redacted, "$1" + REDACTED);
+    }
+    return matcher.appendTail(redacted).toString();
+  }
+
+  /**
+   * Escapes the characters that must be escaped in text or attribute values.
+   */
+  private static String escape(String text, boolean attribute) {
+    StringBuilder escaped = null;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      String replacement;
+      if (c == '<') {
+        replacement = "&lt;";
+      } else if (c == '>') {
+        replacement = "&gt;";
+      } else if (c == '&') {
+        replacement = "&amp;";
+      } else if (c == '"' && attribute) {
+        replacement = "&quot;";
+      } else {
+        replacement = null;
+      }
+      if (replacement != null && escaped == null) {
+        escaped = new StringBuilder(text.length() + 16).append(text, 0, i);
+      }
+      if (escaped != null) {
+        if (replacement != null) {
+          escaped.append(replacement);
+        } else {
+          escaped.append(c);
+        }
+      }
+    }
+    return escaped == null ? text : escaped.toString();
+  }
+
+  /**
+   * The pretty-printed output, which tracks the nesting depth and whether the
+   * last start tag is still open, so that elements without content are written
+   * as empty-element tags and elements containing only text stay on one line.
+   */
+  private static final class Output {
+
+    private final StringBuilder builder = new StringBuilder();
+    private final int maxLength;
+    private int depth;
+    private boolean startTagOpen;
+    private boolean textWritten;
+    private int redactedDepth;
+    private boolean truncated;
+
+    Output(int maxLength) {
+      this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns {@code true} if the output was cut off, after which nothing more
+     * is written.
+     */
+    boolean isFull() {
+      return truncated;
+    }
+
+    /**
+     * Returns {@code true} if the content of a redacted element is being
+     * skipped.
+     */
+    boolean isRedacting() {
+      return redactedDepth > 0;
+    }
+
+    void startElement(XMLStreamReader reader) {
+      if (truncated) {
+        return;
+      }
+      closeStartTag();
+      newLine();
+      builder.append('<').append(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+      for (int i = 0; i < reader.getNamespaceCount(); i++) {
+        String prefix = reader.getNamespacePrefix(i);
+        builder.append(Strings.isNullOrEmpty(prefix) ? " xmlns" : " xmlns:" + prefix)
+            .append("=\"").append(escape(reader.getNamespaceURI(i), true)).append('"');
+      }
+      for (int i = 0; i < reader.getAttributeCount(); i++) {
+        builder.append(' ')
+            .append(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)))
+            .append("=\"").append(escape(reader.getAttributeValue(i), true)).append('"');
+      }
+      depth++;
+      startTagOpen = true;
+      textWritten = false;
+      checkLength();
+    }
+
+    void endElement(XMLStreamReader reader) {
+      depth--;
+      if (truncated) {
+        return;
+      }
+      if (startTagOpen) {
+        builder.append("/>");
+        startTagOpen = false;
+      } else {
+        if (!textWritten) {
+          newLine();
+        }
+        builder.append("</").append(qualifiedName(reader.getPrefix(), reader.getLocalName()))
+            .append('>');
+      }
+      textWritten = false;
+      checkLength();
+    }
+
+    /**
+     * Writes {@value #REDACTED} as the content of the element just started,
+     * and skips its actual content.
+     */
+    void startRedacting() {
+      text(REDACTED);
+      redactedDepth = 1;
+    }
+
+    /**
+     * Skips an event within a redacted element, writing the end tag of the
+     * redacted element when it is reached.
+     */
+    void skipRedacted(int event, XMLStreamReader reader) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        redactedDepth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT && --redactedDepth == 0) {
+        endElement(reader);
+      }
+    }
+
+    void text(String text) {
+      if (truncated) {
+        return;
+      }
+      closeStartTag();
+      builder.append(text);
+      textWritten = true;
+      checkLength();
+    }
+
+    void markup(String markup) {
+      if (truncated) {
+        return;
+      }
+      closeStartTag();
+      newLine();
+      builder.append(markup);
+      textWritten = false;
+      checkLength();
+    }
+
+    Output append(String text) {
+      if (!truncated) {
+        builder.append(text);
+        checkLength();
+      }
+      return this;
+    }
+
+    Output append(char c) {
+      return append(String.valueOf(c));
+    }
+
+    void closeStartTag() {
+      if (startTagOpen && !truncated) {
+        builder.append('>');
+        startTagOpen = false;
+      }
+    }
+
+    private void newLine() {
+      if (builder.length() > 0) {
+        builder.append('\n');
+        for (int i = 0; i < depth; i++) {
+          builder.append(INDENT);
+        }
+      }
+    }
+
+    private void checkLength() {
+      if (maxLength > 0 && builder.length() > maxLength) {
+        builder.setLength(maxLength);
+        builder.append("...[truncated after ").append(maxLength).append(" characters]");
+        truncated = true;
+      }
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+      return Strings.isNullOrEmpty(prefix) ? localName : prefix + ":" + localName;
+    }
+
+    @Override
+    public String toString() {
+      return builder.toString();
     }
   }
 }
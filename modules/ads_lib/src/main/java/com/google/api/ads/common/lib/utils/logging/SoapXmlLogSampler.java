@@ -0,0 +1,92 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.logging;
+
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+import com.google.inject.Inject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which successful SOAP calls have their XML logged, so that XML
+ * logging can stay enabled for services making many calls.
+ * <p>
+ * One in every {@code N} successful calls to each service method is sampled,
+ * starting with the first. Calls that take at least the slow call threshold
+ * are always logged, as are failed calls.
+ * </p>
+ */
+public class SoapXmlLogSampler {
+
+  private final int sampleRate;
+  private final long slowCallNanos;
+  private final ConcurrentMap<String, AtomicLong> callCounts;
+
+  /**
+   * Constructor.
+   *
+   * @param adsLibConfiguration the lib configuration providing the sample rate
+   *     and the slow call threshold
+   */
+  @Inject
+  public SoapXmlLogSampler(AdsLibConfiguration adsLibConfiguration) {
+    this(adsLibConfiguration.getSoapXmlLogSampleRate(),
+        adsLibConfiguration.getSoapXmlLogSlowCallMillis());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param sampleRate log one in this many successful calls to each service
+   *     method, or {@code 1} or less to log every call
+   * @param slowCallMillis the duration in milliseconds at or above which a
+   *     call is slow, or {@code 0} if no call is slow
+   */
+  public SoapXmlLogSampler(int sampleRate, long slowCallMillis) {
+    this.sampleRate = Math.max(sampleRate, 1);
+    this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+    this.callCounts = new ConcurrentHashMap<String, AtomicLong>();
+  }
+
+  /**
+   * Counts a successful call to the service method, and returns {@code true}
+   * if its XML should be logged.
+   */
+  public boolean isSampled(String serviceName, String methodName) {
+    if (sampleRate == 1) {
+      return true;
+    }
+    String key = serviceName + "." + methodName;
+    AtomicLong count = callCounts.get(key);
+    if (count == null) {
+      AtomicLong newCount = new AtomicLong();
+      count = callCounts.putIfAbsent(key, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+    return count.getAndIncrement() % sampleRate == 0;
+  }
+
+  /**
+   * Returns {@code true} if a call that took {@code callNanos} is slow.
+   */
+  public boolean isSlow(long callNanos) {
+    return slowCallNanos > 0 && callNanos >= slowCallNanos;
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.metrics;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * An immutable copy of the metrics an {@link InMemoryMetricsRegistry} holds
+ * for one service method and customer.
+ */
+public final class CallMetricsSnapshot {
+
+  private final String serviceName;
+  private final String methodName;
+  private final String customerId;
+  private final long callCount;
+  private final long failureCount;
+  private final long retryCount;
+  private final long requestBytes;
+  private final long sizedRequestCount;
+  private final long responseBytes;
+  private final long sizedResponseCount;
+  private final Map<String, Long> apiErrorCounts;
+  private final LatencyHistogram.Snapshot latency;
+
+  CallMetricsSnapshot(String serviceName, String methodName, String customerId, long callCount,
+      long failureCount, long retryCount, long requestBytes, long sizedRequestCount,
+      long responseBytes, long sizedResponseCount, Map<String, Long> apiErrorCounts,
+      LatencyHistogram.Snapshot latency) {
+    this.serviceName = serviceName;
+    this.methodName = methodName;
+    this.customerId = customerId;
+    this.callCount = callCount;
+    this.failureCount = failureCount;
+    this.retryCount = retryCount;
+    this.requestBytes = requestBytes;
+    this.sizedRequestCount = sizedRequestCount;
+    this.responseBytes = responseBytes;
+    this.sizedResponseCount = sizedResponseCount;
+    this.apiErrorCounts = ImmutableMap.copyOf(apiErrorCounts);
+    this.latency = latency;
+  }
+
+  public String getServiceName() {
+    return serviceName;
+  }
+
+  public String getMethodName() {
+    return methodName;
+  }
+
+  /**
+   * Gets the customer the calls were made for, or {@code null} if not known.
+   */
+  public String getCustomerId() {
+    return customerId;
+  }
+
+  /**
+   * Gets the number of calls, counting each retry as a separate call.
+   */
+  public long getCallCount() {
+    return callCount;
+  }
+
+  /**
+   * Gets the number of calls that threw an exception.
+   */
+  public long getFailureCount() {
+    return failureCount;
+  }
+
+  public long getRetryCount() {
+    return retryCount;
+  }
+
+  /**
+   * Gets the total size of the requests whose size is known.
+   */
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * Gets the number of requests whose size is known.
+   */
+  public long getSizedRequestCount() {
+    return sizedRequestCount;
+  }
+
+  /**
+   * Gets the total size of the responses whose size is known.
+   */
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * Gets the number of responses whose size is known.
+   */
+  public long getSizedResponseCount() {
+    return sizedResponseCount;
+  }
+
+  /**
+   * Gets the number of times each type of error was returned.
+   */
+  public Map<String, Long> getApiErrorCounts() {
+    return apiErrorCounts;
+  }
+
+  /**
+   * Gets the latencies of the calls.
+   */
+  public LatencyHistogram.Snapshot getLatency() {
+    return latency;
+  }
+}
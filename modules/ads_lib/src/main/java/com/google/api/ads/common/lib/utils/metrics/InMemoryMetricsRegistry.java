@@ -0,0 +1,315 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.metrics;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MetricsSink} that keeps the metrics in memory, per service, method
+ * and customer, so they can be exported by taking {@link #getSnapshots()
+ * snapshots}.
+ * <p>
+ * Once a service method has been called for a customer, recording further
+ * calls only looks up the existing counters in a {@link ConcurrentHashMap}
+ * and updates them atomically, so it does not allocate. The
+ * {@link #getDefault() default registry} receives the metrics of every service
+ * client created by the library when metrics are enabled in the
+ * configuration.
+ * </p>
+ * <p>
+ * To bound the memory used when calls are made for many customers, each
+ * service method keeps the metrics of at most
+ * {@value #DEFAULT_MAX_CUSTOMERS_PER_METHOD} customers by default. Customers
+ * that have not had a call recorded in the last
+ * {@value #DEFAULT_CUSTOMER_EXPIRY_MINUTES} minutes are discarded when room is
+ * needed for a new customer, or when snapshots are taken. Calls for customers
+ * beyond the limit are recorded as calls without a customer, so the totals of
+ * each service method stay complete.
+ * </p>
+ */
+public class InMemoryMetricsRegistry implements MetricsSink {
+
+  private static final InMemoryMetricsRegistry DEFAULT = new InMemoryMetricsRegistry();
+
+  /** The key calls without a customer are recorded under. */
+  private static final String NO_CUSTOMER = "";
+
+  /** The default maximum number of customers kept per service method. */
+  public static final int DEFAULT_MAX_CUSTOMERS_PER_METHOD = 1000;
+
+  /** The default time after its last call that a customer is discarded. */
+  public static final long DEFAULT_CUSTOMER_EXPIRY_MINUTES = 60;
+
+  private final int maxCustomersPerMethod;
+  private final long customerExpiryNanos;
+  private final Ticker ticker;
+  private final ConcurrentMap<String, ConcurrentMap<String, MethodMetrics>> metrics;
+
+  /**
+   * Constructor.
+   */
+  public InMemoryMetricsRegistry() {
+    this(DEFAULT_MAX_CUSTOMERS_PER_METHOD,
+        TimeUnit.MINUTES.toMillis(DEFAULT_CUSTOMER_EXPIRY_MINUTES));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxCustomersPerMethod the maximum number of customers whose
+   *     metrics are kept for each service method
+   * @param customerExpiryMillis the time after its last call that the
+   *     metrics of a customer may be discarded
+   */
+  public InMemoryMetricsRegistry(int maxCustomersPerMethod, long customerExpiryMillis) {
+    this(maxCustomersPerMethod, customerExpiryMillis, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  InMemoryMetricsRegistry(int maxCustomersPerMethod, long customerExpiryMillis, Ticker ticker) {
+    this.maxCustomersPerMethod = maxCustomersPerMethod;
+    this.customerExpiryNanos = TimeUnit.MILLISECONDS.toNanos(customerExpiryMillis);
+    this.ticker = ticker;
+    this.metrics = new ConcurrentHashMap<String, ConcurrentMap<String, MethodMetrics>>();
+  }
+
+  /**
+   * Gets the registry that the service clients record their metrics in unless
+   * another {@link MetricsSink} is bound.
+   */
+  public static InMemoryMetricsRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  @Override
+  public void recordCall(String serviceName, String methodName, String customerId,
+      long latencyNanos, long requestBytes, long responseBytes, boolean failed) {
+    CallMetrics callMetrics = getCallMetrics(serviceName, methodName, customerId);
+    callMetrics.calls.incrementAndGet();
+    if (failed) {
+      callMetrics.failures.incrementAndGet();
+    }
+    if (requestBytes >= 0) {
+      callMetrics.requestBytes.addAndGet(requestBytes);
+      callMetrics.sizedRequests.incrementAndGet();
+    }
+    if (responseBytes >= 0) {
+      callMetrics.responseBytes.addAndGet(responseBytes);
+      callMetrics.sizedResponses.incrementAndGet();
+    }
+    callMetrics.latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+  }
+
+  @Override
+  public void recordRetry(String serviceName, String methodName, String customerId) {
+    getCallMetrics(serviceName, methodName, customerId).retries.incrementAndGet();
+  }
+
+  @Override
+  public void recordApiError(String serviceName, String methodName, String customerId,
+      String errorType) {
+    ConcurrentMap<String, AtomicLong> apiErrors =
+        getCallMetrics(serviceName, methodName, customerId).apiErrors;
+    AtomicLong count = apiErrors.get(errorType);
+    if (count == null) {
+      AtomicLong newCount = new AtomicLong();
+      count = apiErrors.putIfAbsent(errorType, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  /**
+   * Gets a snapshot of the metrics of each service method and customer that
+   * has been called since the registry was created or last reset, and has
+   * not been discarded since. Customers whose metrics have expired are
+   * discarded.
+   */
+  public List<CallMetricsSnapshot> getSnapshots() {
+    long nowNanos = ticker.read();
+    List<CallMetricsSnapshot> snapshots = Lists.newArrayList();
+    for (Map.Entry<String, ConcurrentMap<String, MethodMetrics>> service : metrics.entrySet()) {
+      for (Map.Entry<String, MethodMetrics> method : service.getValue().entrySet()) {
+        method.getValue().removeExpired(nowNanos);
+        for (Map.Entry<String, CallMetrics> customer
+            : method.getValue().customers.entrySet()) {
+          snapshots.add(customer.getValue().getSnapshot(service.getKey(), method.getKey(),
+              Strings.emptyToNull(customer.getKey())));
+        }
+      }
+    }
+    return snapshots;
+  }
+
+  /**
+   * Discards all metrics. Calls in progress may still record into the
+   * discarded metrics.
+   */
+  public void reset() {
+    metrics.clear();
+  }
+
+  /**
+   * Gets the metrics for the service method and customer, creating them if
+   * necessary.
+   */
+  private CallMetrics getCallMetrics(String serviceName, String methodName, String customerId) {
+    String serviceKey = Strings.nullToEmpty(serviceName);
+    ConcurrentMap<String, MethodMetrics> methods = metrics.get(serviceKey);
+    if (methods == null) {
+      ConcurrentMap<String, MethodMetrics> newMethods =
+          new ConcurrentHashMap<String, MethodMetrics>();
+      methods = metrics.putIfAbsent(serviceKey, newMethods);
+      if (methods == null) {
+        methods = newMethods;
+      }
+    }
+    String methodKey = Strings.nullToEmpty(methodName);
+    MethodMetrics methodMetrics = methods.get(methodKey);
+    if (methodMetrics == null) {
+      MethodMetrics newMethodMetrics = new MethodMetrics();
+      methodMetrics = methods.putIfAbsent(methodKey, newMethodMetrics);
+      if (methodMetrics == null) {
+        methodMetrics = newMethodMetrics;
+      }
+    }
+    return methodMetrics.get(customerId == null ? NO_CUSTOMER : customerId, ticker.read());
+  }
+
+  /**
+   * The counters of each customer of one service method, of which there are
+   * at most {@link #maxCustomersPerMethod} besides those of calls without a
+   * customer.
+   */
+  private final class MethodMetrics {
+
+    private final ConcurrentMap<String, CallMetrics> customers =
+        new ConcurrentHashMap<String, CallMetrics>();
+    private final AtomicInteger customerCount = new AtomicInteger();
+
+    /**
+     * Gets the counters of the customer, creating them if there is room, and
+     * marks them as used now.
+     */
+    CallMetrics get(String customerKey, long nowNanos) {
+      CallMetrics callMetrics = customers.get(customerKey);
+      if (callMetrics == null) {
+        callMetrics = add(customerKey, nowNanos);
+      }
+      callMetrics.lastCallNanos = nowNanos;
+      return callMetrics;
+    }
+
+    /**
+     * Adds the counters of a customer, or gets those of calls without a
+     * customer if the limit of customers has been reached.
+     */
+    private CallMetrics add(String customerKey, long nowNanos) {
+      if (!NO_CUSTOMER.equals(customerKey) && !reserveCustomer(nowNanos)) {
+        return get(NO_CUSTOMER, nowNanos);
+      }
+      CallMetrics newCallMetrics = new CallMetrics();
+      CallMetrics callMetrics = customers.putIfAbsent(customerKey, newCallMetrics);
+      if (callMetrics == null) {
+        return newCallMetrics;
+      }
+      if (!NO_CUSTOMER.equals(customerKey)) {
+        customerCount.decrementAndGet();
+      }
+      return callMetrics;
+    }
+
+    /**
+     * Counts a new customer if it does not exceed the limit, discarding
+     * expired customers to make room if needed.
+     *
+     * @return {@code true} if the customer was counted
+     */
+    private boolean reserveCustomer(long nowNanos) {
+      boolean expiredRemoved = false;
+      while (true) {
+        int count = customerCount.get();
+        if (count >= maxCustomersPerMethod) {
+          if (expiredRemoved) {
+            return false;
+          }
+          removeExpired(nowNanos);
+          expiredRemoved = true;
+        } else if (customerCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Discards the counters of the customers without a call in the expiry
+     * time.
+     */
+    void removeExpired(long nowNanos) {
+      Iterator<Map.Entry<String, CallMetrics>> iterator = customers.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, CallMetrics> customer = iterator.next();
+        if (nowNanos - customer.getValue().lastCallNanos > customerExpiryNanos
+            && customers.remove(customer.getKey(), customer.getValue())
+            && !NO_CUSTOMER.equals(customer.getKey())) {
+          customerCount.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * The counters for one service method and customer.
+   */
+  private static final class CallMetrics {
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong sizedRequests = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong sizedResponses = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> apiErrors =
+        new ConcurrentHashMap<String, AtomicLong>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile long lastCallNanos;
+
+    CallMetricsSnapshot getSnapshot(String serviceName, String methodName, String customerId) {
+      Map<String, Long> apiErrorCounts = Maps.newTreeMap();
+      for (Map.Entry<String, AtomicLong> apiError : apiErrors.entrySet()) {
+        apiErrorCounts.put(apiError.getKey(), apiError.getValue().get());
+      }
+      return new CallMetricsSnapshot(serviceName, methodName, customerId, calls.get(),
+          failures.get(), retries.get(), requestBytes.get(), sizedRequests.get(),
+          responseBytes.get(), sizedResponses.get(), apiErrorCounts, latency.getSnapshot());
+    }
+  }
+}
@@ -0,0 +1,186 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of latencies in microseconds with log-linear buckets,
+ * in the style of an HDR histogram.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKETS} equal buckets, so any
+ * recorded value is reported with a relative error of at most 12.5%, from a
+ * microsecond up to about nine and a half hours. Longer latencies are recorded
+ * in the last bucket. Recording only updates atomic counters and does not
+ * allocate.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /** The number of buckets each power of two is split into. */
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** Values are tracked up to, but excluding, two to this power. */
+  private static final int MAX_EXPONENT = 35;
+
+  private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+  /** The number of buckets. */
+  static final int BUCKET_COUNT = SUB_BUCKETS * (MAX_EXPONENT - SUB_BUCKET_BITS + 1);
+
+  private final AtomicLongArray counts;
+  private final AtomicLong sumMicros;
+  private final AtomicLong maxMicros;
+
+  /**
+   * Constructor.
+   */
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(BUCKET_COUNT);
+    this.sumMicros = new AtomicLong();
+    this.maxMicros = new AtomicLong();
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param micros the latency in microseconds. Negative values are recorded
+   *     as zero.
+   */
+  public void record(long micros) {
+    long value = Math.max(micros, 0);
+    counts.incrementAndGet(getBucketIndex(value));
+    sumMicros.addAndGet(value);
+    long max = maxMicros.get();
+    while (value > max && !maxMicros.compareAndSet(max, value)) {
+      max = maxMicros.get();
+    }
+  }
+
+  /**
+   * Gets a copy of the current state of the histogram.
+   */
+  public Snapshot getSnapshot() {
+    long[] snapshotCounts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshotCounts[i] = counts.get(i);
+    }
+    return new Snapshot(snapshotCounts, sumMicros.get(), maxMicros.get());
+  }
+
+  /**
+   * Gets the index of the bucket {@code value} is recorded in.
+   */
+  static int getBucketIndex(long value) {
+    long clamped = Math.min(value, MAX_VALUE);
+    if (clamped < SUB_BUCKETS) {
+      return (int) clamped;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS;
+    return SUB_BUCKETS * (shift + 1) + (int) ((clamped >>> shift) - SUB_BUCKETS);
+  }
+
+  /**
+   * Gets the largest value recorded in the bucket at {@code index}.
+   */
+  static long getBucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * An immutable copy of the state of a {@link LatencyHistogram}.
+   */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sumMicros;
+    private final long maxMicros;
+
+    Snapshot(long[] counts, long sumMicros, long maxMicros) {
+      this.counts = counts;
+      long total = 0;
+      for (long bucketCount : counts) {
+        total += bucketCount;
+      }
+      this.count = total;
+      this.sumMicros = sumMicros;
+      this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Gets the number of recorded latencies.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Gets the sum of the recorded latencies in microseconds.
+     */
+    public long getSumMicros() {
+      return sumMicros;
+    }
+
+    /**
+     * Gets the largest recorded latency in microseconds.
+     */
+    public long getMaxMicros() {
+      return maxMicros;
+    }
+
+    /**
+     * Gets the mean of the recorded latencies in microseconds, or {@code 0} if
+     * none were recorded.
+     */
+    public double getMeanMicros() {
+      return count == 0 ? 0 : (double) sumMicros / count;
+    }
+
+    /**
+     * Gets the latency in microseconds at or below which {@code percentile}
+     * percent of the recorded latencies fall, rounded up to the bucket
+     * containing it, or {@code 0} if none were recorded.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     */
+    public long getPercentileMicros(double percentile) {
+      Preconditions.checkArgument(percentile >= 0 && percentile <= 100,
+          "percentile must be between 0 and 100");
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(getBucketUpperBound(i), maxMicros);
+        }
+      }
+      return maxMicros;
+    }
+  }
+}
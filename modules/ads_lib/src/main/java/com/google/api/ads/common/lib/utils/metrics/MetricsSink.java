@@ -0,0 +1,68 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.metrics;
+
+/**
+ * Receives metrics about the SOAP calls made by the service clients.
+ * <p>
+ * Methods are called on the thread making the call, once per attempt, so
+ * implementations must be thread-safe and should return quickly. The names and
+ * customer ID passed in are held by the library, so implementations need not
+ * copy them.
+ * </p>
+ *
+ * @see InMemoryMetricsRegistry
+ */
+public interface MetricsSink {
+
+  /**
+   * Records an attempt of a call.
+   *
+   * @param serviceName the name of the service, such as {@code CampaignService}
+   * @param methodName the name of the method, such as {@code get}
+   * @param customerId the customer the call was made for, or {@code null} if
+   *     not known
+   * @param latencyNanos the time it took to make the call
+   * @param requestBytes the size of the request, or {@code -1} if not known
+   * @param responseBytes the size of the response, or {@code -1} if not known
+   * @param failed {@code true} if the call threw an exception
+   */
+  void recordCall(String serviceName, String methodName, String customerId, long latencyNanos,
+      long requestBytes, long responseBytes, boolean failed);
+
+  /**
+   * Records that a failed call is being retried.
+   *
+   * @param serviceName the name of the service
+   * @param methodName the name of the method
+   * @param customerId the customer the call was made for, or {@code null} if
+   *     not known
+   */
+  void recordRetry(String serviceName, String methodName, String customerId);
+
+  /**
+   * Records an error returned by a failed call. A call failing with several
+   * errors records each of them.
+   *
+   * @param serviceName the name of the service
+   * @param methodName the name of the method
+   * @param customerId the customer the call was made for, or {@code null} if
+   *     not known
+   * @param errorType the type of the error, such as {@code RateExceededError},
+   *     or the type of the exception if it contains no API errors
+   */
+  void recordApiError(String serviceName, String methodName, String customerId,
+      String errorType);
+}
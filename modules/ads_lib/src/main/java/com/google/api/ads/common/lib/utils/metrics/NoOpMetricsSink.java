@@ -0,0 +1,44 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.metrics;
+
+/**
+ * A {@link MetricsSink} that discards all metrics. Used unless metrics are
+ * enabled in the configuration.
+ */
+public final class NoOpMetricsSink implements MetricsSink {
+
+  private static final NoOpMetricsSink INSTANCE = new NoOpMetricsSink();
+
+  private NoOpMetricsSink() {}
+
+  /**
+   * Gets the no-op sink.
+   */
+  public static NoOpMetricsSink getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public void recordCall(String serviceName, String methodName, String customerId,
+      long latencyNanos, long requestBytes, long responseBytes, boolean failed) {}
+
+  @Override
+  public void recordRetry(String serviceName, String methodName, String customerId) {}
+
+  @Override
+  public void recordApiError(String serviceName, String methodName, String customerId,
+      String errorType) {}
+}
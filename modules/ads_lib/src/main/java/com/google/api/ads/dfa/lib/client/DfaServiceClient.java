@@ -22,6 +22,8 @@ import com.google.api.ads.common.lib.soap.SoapCall;
 import com.google.api.ads.common.lib.soap.SoapCallReturn;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
 import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
+import com.google.api.ads.common.lib.utils.metrics.MetricsSink;
+import com.google.api.ads.common.lib.utils.metrics.NoOpMetricsSink;
 import com.google.api.ads.dfa.lib.auth.LoginTokenException;
 import com.google.api.ads.dfa.lib.auth.LoginTokens;
 import com.google.api.ads.dfa.lib.auth.TokenExpirationDetector;
@@ -37,6 +39,32 @@ public class DfaServiceClient extends AdsServiceClient<DfaSession, DfaServiceDes
   private final TokenExpirationDetector tokenExpirationDetector;
   private final LoginTokens loginTokens;
 
+  /**
+   * Constructor for a client that does not record metrics.
+   *
+   * @param soapClient the SOAP client
+   * @param dfaServiceDescriptor the DFA service descriptor
+   * @param dfaSession the DFA session
+   * @param soapClientHandler the SOAP client handler
+   * @param dfaHeaderHandler the DFA header handler
+   * @param adsServiceLoggers the ads service loggers
+   * @param tokenExpirationDetector the detector for expired DFA token errors
+   * @param loginTokens the utility for regenerating DFA tokens
+   */
+  public DfaServiceClient(Object soapClient, DfaServiceDescriptor dfaServiceDescriptor,
+      DfaSession dfaSession,
+      @SuppressWarnings("rawtypes")  /* Due to problem with guice binding */
+      SoapClientHandlerInterface soapClientHandler,
+      @SuppressWarnings("rawtypes") /* Guice binding does not support template types */
+      HeaderHandler dfaHeaderHandler,
+      AdsServiceLoggers adsServiceLoggers,
+      TokenExpirationDetector tokenExpirationDetector,
+      LoginTokens loginTokens)
+      throws ServiceException {
+    this(soapClient, dfaServiceDescriptor, dfaSession, soapClientHandler, dfaHeaderHandler,
+        adsServiceLoggers, NoOpMetricsSink.getInstance(), tokenExpirationDetector, loginTokens);
+  }
+
   /**
    * Constructor.
    *
@@ -46,6 +74,7 @@ public class DfaServiceClient extends AdsServiceClient<DfaSession, DfaServiceDes
    * @param soapClientHandler the SOAP client handler
    * @param dfaHeaderHandler the DFA header handler
    * @param adsServiceLoggers the ads service loggers
+   * @param metricsSink the metrics sink
    * @param tokenExpirationDetector the detector for expired DFA token errors
    * @param loginTokens the utility for regenerating DFA tokens
    */
@@ -60,11 +89,12 @@ public class DfaServiceClient extends AdsServiceClient<DfaSession, DfaServiceDes
       @SuppressWarnings("rawtypes") /* Guice binding does not support template types */
       HeaderHandler dfaHeaderHandler,
       AdsServiceLoggers adsServiceLoggers,
+      MetricsSink metricsSink,
       TokenExpirationDetector tokenExpirationDetector,
       LoginTokens loginTokens)
       throws ServiceException {
     super(soapClient, dfaSession, dfaServiceDescriptor, soapClientHandler, dfaHeaderHandler,
-        adsServiceLoggers);
+        adsServiceLoggers, metricsSink);
     this.tokenExpirationDetector = tokenExpirationDetector;
     this.loginTokens = loginTokens;
   }
@@ -72,13 +102,26 @@ public class DfaServiceClient extends AdsServiceClient<DfaSession, DfaServiceDes
   /**
    * Wraps calls to the SOAP client and listens for errors stating that the DFA token has expired.
    * In the event that the DFA token has expired, this method will refresh the token and retry the
-   * SOAP call.
+   * SOAP call. Both calls are made while holding the call lock.
    *
    * @param soapCall the call to send to the SOAP client
    * @return the return value from the {@code soapCall}
    */
   @Override
-  protected synchronized SoapCallReturn callSoapClient(SoapCall<Object> soapCall) {
+  protected SoapCallReturn callSoapClient(SoapCall<Object> soapCall) {
+    getCallLock().lock();
+    try {
+      return callSoapClientRefreshingToken(soapCall);
+    } finally {
+      getCallLock().unlock();
+    }
+  }
+
+  /**
+   * Makes the SOAP call, and makes it again with a new token if the token has
+   * expired.
+   */
+  private SoapCallReturn callSoapClientRefreshingToken(SoapCall<Object> soapCall) {
     SoapCallReturn soapCallReturn = super.callSoapClient(soapCall);
     if (tokenExpirationDetector.isTokenExpiredException(soapCallReturn.getException())) {
       try {
@@ -19,6 +19,8 @@ import com.google.api.ads.common.lib.client.HeaderHandler;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
 import com.google.api.ads.common.lib.soap.SoapServiceClient;
 import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
+import com.google.api.ads.common.lib.utils.metrics.MetricsSink;
+import com.google.api.ads.common.lib.utils.metrics.NoOpMetricsSink;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 
@@ -29,6 +31,27 @@ import com.google.inject.assistedinject.Assisted;
 public class DfpServiceClient extends AdsServiceClient<DfpSession,
                                                        DfpServiceDescriptor> {
 
+  /**
+   * Constructor for a client that does not record metrics.
+   *
+   * @param soapClient the SOAP client
+   * @param dfpServiceDescriptor the DFP service descriptor
+   * @param dfpSession the DFP session
+   * @param soapClientHandler the SOAP client handler
+   * @param dfpHeaderHandler the DFP header handler
+   * @param adsServiceLoggers the ads service loggers
+   */
+  public DfpServiceClient(Object soapClient, DfpServiceDescriptor dfpServiceDescriptor,
+      DfpSession dfpSession,
+      @SuppressWarnings({"rawtypes", "unchecked"})  /* Due to problem with guice binding */
+      SoapClientHandlerInterface soapClientHandler,
+      @SuppressWarnings("rawtypes") /* Guice binding does not support template types */
+      HeaderHandler dfpHeaderHandler,
+      AdsServiceLoggers adsServiceLoggers) {
+    this(soapClient, dfpServiceDescriptor, dfpSession, soapClientHandler, dfpHeaderHandler,
+        adsServiceLoggers, NoOpMetricsSink.getInstance());
+  }
+
   /**
    * Constructor.
    *
@@ -38,6 +61,7 @@ public class DfpServiceClient extends AdsServiceClient<DfpSession,
    * @param soapClientHandler the SOAP client handler
    * @param dfpHeaderHandler the DFP header handler
    * @param adsServiceLoggers the ads service loggers
+   * @param metricsSink the metrics sink
    */
   @SuppressWarnings("unchecked") // All generics of SoapClientHandlerInterface
                                  // extend Object.
@@ -49,9 +73,20 @@ public class DfpServiceClient extends AdsServiceClient<DfpSession,
       SoapClientHandlerInterface soapClientHandler,
       @SuppressWarnings("rawtypes") /* Guice binding does not support template types */
       HeaderHandler dfpHeaderHandler,
-      AdsServiceLoggers adsServiceLoggers) {
+      AdsServiceLoggers adsServiceLoggers,
+      MetricsSink metricsSink) {
     super(soapClient, dfpSession, dfpServiceDescriptor, soapClientHandler,
-        dfpHeaderHandler, adsServiceLoggers);
+        dfpHeaderHandler, adsServiceLoggers, metricsSink);
+  }
+
+  /**
+   * Records metrics under the network code of the session.
+   *
+   * @see AdsServiceClient#getCustomerId()
+   */
+  @Override
+  protected String getCustomerId() {
+    return getAdsSession().getNetworkCode();
   }
 
   /**
@@ -20,6 +20,8 @@ import com.google.inject.name.Named;
 
 import org.apache.commons.configuration.Configuration;
 
+import java.util.Set;
+
 /**
  * Configuration information for DFP library.
  */
@@ -50,4 +52,120 @@ public class DfpLibConfiguration extends AdsLibConfiguration {
   public boolean isCompressionEnabled() {
     return config.getBoolean(KEY_PREFIX + "." + USE_COMPRESSION_POSTFIX, false);
   }
+
+  @Override
+  public int getSoapClientPoolSize() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_CLIENT_POOL_SIZE_POSTFIX, 0);
+  }
+
+  @Override
+  public int getSoapClientCacheSize() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_CLIENT_CACHE_SIZE_POSTFIX, 0);
+  }
+
+  @Override
+  public int getMaxSoapXmlLength() {
+    return config.getInt(KEY_PREFIX + "." + MAX_SOAP_XML_LENGTH_POSTFIX, 0);
+  }
+
+  @Override
+  public int getRetryMaxAttempts() {
+    return config.getInt(KEY_PREFIX + "." + RETRY_MAX_ATTEMPTS_POSTFIX, 0);
+  }
+
+  @Override
+  public long getRetryInitialDelayMillis() {
+    return config.getLong(KEY_PREFIX + "." + RETRY_INITIAL_DELAY_MILLIS_POSTFIX,
+        DEFAULT_RETRY_INITIAL_DELAY_MILLIS);
+  }
+
+  @Override
+  public long getRetryMaxDelayMillis() {
+    return config.getLong(KEY_PREFIX + "." + RETRY_MAX_DELAY_MILLIS_POSTFIX,
+        DEFAULT_RETRY_MAX_DELAY_MILLIS);
+  }
+
+  @Override
+  public long getRetryDeadlineMillis() {
+    return config.getLong(KEY_PREFIX + "." + RETRY_DEADLINE_MILLIS_POSTFIX, 0L);
+  }
+
+  @Override
+  public int getSoapLoggingQueueSize() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_LOGGING_QUEUE_SIZE_POSTFIX, 0);
+  }
+
+  @Override
+  public boolean isSoapLoggingBlockWhenFull() {
+    return config.getBoolean(KEY_PREFIX + "." + SOAP_LOGGING_BLOCK_WHEN_FULL_POSTFIX, false);
+  }
+
+  @Override
+  public Set<String> getRedactedSoapXmlElements() {
+    return getStringSet(KEY_PREFIX + "." + REDACTED_SOAP_XML_ELEMENTS_POSTFIX,
+        DEFAULT_REDACTED_SOAP_XML_ELEMENTS);
+  }
+
+  @Override
+  public int getMaxPrettySoapXmlLength() {
+    return config.getInt(KEY_PREFIX + "." + MAX_PRETTY_SOAP_XML_LENGTH_POSTFIX, 0);
+  }
+
+  @Override
+  public int getSoapXmlLogSampleRate() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_XML_LOG_SAMPLE_RATE_POSTFIX, 1);
+  }
+
+  @Override
+  public long getSoapXmlLogSlowCallMillis() {
+    return config.getLong(KEY_PREFIX + "." + SOAP_XML_LOG_SLOW_CALL_MILLIS_POSTFIX, 0L);
+  }
+
+  @Override
+  public boolean isMetricsEnabled() {
+    return config.getBoolean(KEY_PREFIX + "." + METRICS_ENABLED_POSTFIX, false);
+  }
+
+  @Override
+  public int getSoapHttpMaxConnectionsPerHost() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_HTTP_MAX_CONNECTIONS_PER_HOST_POSTFIX, 0);
+  }
+
+  @Override
+  public int getSoapHttpMaxTotalConnections() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_HTTP_MAX_TOTAL_CONNECTIONS_POSTFIX, 0);
+  }
+
+  @Override
+  public long getSoapHttpIdleTimeoutMillis() {
+    return config.getLong(KEY_PREFIX + "." + SOAP_HTTP_IDLE_TIMEOUT_MILLIS_POSTFIX,
+        DEFAULT_SOAP_HTTP_IDLE_TIMEOUT_MILLIS);
+  }
+
+  @Override
+  public int getSoapHttpConnectTimeoutMillis() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_HTTP_CONNECT_TIMEOUT_MILLIS_POSTFIX, 0);
+  }
+
+  @Override
+  public int getSoapHttpReadTimeoutMillis() {
+    return config.getInt(KEY_PREFIX + "." + SOAP_HTTP_READ_TIMEOUT_MILLIS_POSTFIX, 0);
+  }
+
+  @Override
+  public long getSoapHttpPoolTimeoutMillis() {
+    return config.getLong(KEY_PREFIX + "." + SOAP_HTTP_POOL_TIMEOUT_MILLIS_POSTFIX,
+        DEFAULT_SOAP_HTTP_POOL_TIMEOUT_MILLIS);
+  }
+
+  @Override
+  public boolean isSoapResponseStreamingEnabled() {
+    return config.getBoolean(KEY_PREFIX + "." + SOAP_RESPONSE_STREAMING_ENABLED_POSTFIX, false);
+  }
+
+  @Override
+  public int getCompressionThresholdBytes() {
+    return config.getInt(KEY_PREFIX + "." + COMPRESSION_THRESHOLD_BYTES_POSTFIX,
+        DEFAULT_COMPRESSION_THRESHOLD_BYTES);
+  }
 }
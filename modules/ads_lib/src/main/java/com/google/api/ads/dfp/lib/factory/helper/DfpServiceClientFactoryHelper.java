@@ -14,6 +14,7 @@
 
 package com.google.api.ads.dfp.lib.factory.helper;
 
+import com.google.api.ads.common.lib.client.RetryPolicy;
 import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
 import com.google.api.ads.common.lib.factory.FactoryModule.AdsServiceClientFactoryInterface;
 import com.google.api.ads.common.lib.factory.FactoryModule.AdsServiceDescriptorFactoryInterface;
@@ -39,6 +40,7 @@ public class DfpServiceClientFactoryHelper extends
   private static final Pattern VERSION_PATTERN = Pattern.compile("^.*(v[0-9][^\\.]*).*$");
 
   private final AdsLibConfiguration adsLibConfiguration;
+  private final RetryPolicy retryPolicy;
 
   /**
    * Constructor.
@@ -61,6 +63,7 @@ public class DfpServiceClientFactoryHelper extends
       AdsLibConfiguration adsLibConfiguration) {
     super(adsServiceClientFactory, adsServiceDescriptorFactory, soapClientHandler);
     this.adsLibConfiguration = adsLibConfiguration;
+    this.retryPolicy = createRetryPolicy(adsLibConfiguration);
   }
 
   /**
@@ -76,4 +79,28 @@ public class DfpServiceClientFactoryHelper extends
       return adsLibConfiguration.getDuckTypedVersion();
     }
   }
+
+  /**
+   * @see BaseAdsServiceClientFactoryHelper#getSoapClientPoolSize()
+   */
+  @Override
+  protected int getSoapClientPoolSize() {
+    return adsLibConfiguration.getSoapClientPoolSize();
+  }
+
+  /**
+   * @see BaseAdsServiceClientFactoryHelper#getSoapClientCacheSize()
+   */
+  @Override
+  protected int getSoapClientCacheSize() {
+    return adsLibConfiguration.getSoapClientCacheSize();
+  }
+
+  /**
+   * @see BaseAdsServiceClientFactoryHelper#getRetryPolicy()
+   */
+  @Override
+  protected RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
 }
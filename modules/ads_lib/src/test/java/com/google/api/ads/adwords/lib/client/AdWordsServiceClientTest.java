@@ -0,0 +1,193 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.lib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
+
+import com.google.api.ads.common.lib.client.AdsRateLimiter.RateExceeded;
+import com.google.api.ads.common.lib.client.HeaderHandler;
+import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
+import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
+import com.google.api.ads.common.lib.utils.metrics.MetricsSink;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link AdWordsServiceClient}.
+ */
+@RunWith(JUnit4.class)
+public class AdWordsServiceClientTest {
+
+  private AdWordsServiceClient adWordsServiceClient;
+
+  @Mock private AdWordsSession adWordsSession;
+  @Mock private AdWordsServiceDescriptor adWordsServiceDescriptor;
+  @Mock private SoapClientHandlerInterface<Object> soapClientHandler;
+  @Mock private HeaderHandler<AdWordsSession, AdWordsServiceDescriptor> headerHandler;
+  @Mock private AdsServiceLoggers adsServiceLoggers;
+  @Mock private MetricsSink metricsSink;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    when(adWordsSession.getDeveloperToken()).thenReturn("devToken");
+    when(adWordsSession.getClientCustomerId()).thenReturn("123-456-7890");
+    doReturn(Runnable.class).when(adWordsServiceDescriptor).getInterfaceClass();
+    adWordsServiceClient = new AdWordsServiceClient(new Object(), adWordsServiceDescriptor,
+        adWordsSession, soapClientHandler, headerHandler, adsServiceLoggers, metricsSink);
+  }
+
+  @Test
+  public void testGetRateLimitKeys() {
+    assertEquals(
+        ImmutableList.of("developerToken:devToken", "clientCustomerId:1234567890",
+            "service:java.lang.Runnable"),
+        adWordsServiceClient.getRateLimitKeys());
+  }
+
+  @Test
+  public void testGetRateLimitKeys_noClientCustomerId() {
+    when(adWordsSession.getClientCustomerId()).thenReturn(null);
+
+    assertEquals(ImmutableList.of("developerToken:devToken", "service:java.lang.Runnable"),
+        adWordsServiceClient.getRateLimitKeys());
+  }
+
+  @Test
+  public void testGetCustomerId() {
+    assertEquals("123-456-7890", adWordsServiceClient.getCustomerId());
+  }
+
+  @Test
+  public void testGetRateExceeded_accountScope() {
+    RateExceeded rateExceeded = adWordsServiceClient.getRateExceeded(
+        new ApiException(new InternalApiError(), new RateExceededError("ACCOUNT", 30))).get();
+
+    assertEquals(ImmutableList.of("clientCustomerId:1234567890"), rateExceeded.getKeys());
+    assertEquals(30, rateExceeded.getRetryAfterSeconds());
+  }
+
+  @Test
+  public void testGetRateExceeded_developerScope() {
+    RateExceeded rateExceeded = adWordsServiceClient.getRateExceeded(
+        new ApiException(new RateExceededError("DEVELOPER", null))).get();
+
+    assertEquals(ImmutableList.of("developerToken:devToken"), rateExceeded.getKeys());
+    assertEquals(0, rateExceeded.getRetryAfterSeconds());
+  }
+
+  @Test
+  public void testGetRateExceeded_faultInfo() {
+    RateExceeded rateExceeded = adWordsServiceClient.getRateExceeded(
+        new ApiException_Exception(new RateExceededError("UNKNOWN", 5))).get();
+
+    assertEquals(adWordsServiceClient.getRateLimitKeys(), rateExceeded.getKeys());
+    assertEquals(5, rateExceeded.getRetryAfterSeconds());
+  }
+
+  @Test
+  public void testGetRateExceeded_otherErrors() {
+    assertFalse(adWordsServiceClient.getRateExceeded(
+        new ApiException(new InternalApiError())).isPresent());
+    assertFalse(adWordsServiceClient.getRateExceeded(new RuntimeException()).isPresent());
+  }
+
+  /**
+   * Has the shape of a generated Axis {@code ApiException}.
+   */
+  public static class ApiException extends Exception {
+
+    private final Object[] errors;
+
+    ApiException(Object... errors) {
+      this.errors = errors;
+    }
+
+    public Object[] getErrors() {
+      return errors;
+    }
+  }
+
+  /**
+   * Has the shape of a generated JAX-WS {@code ApiException_Exception}.
+   */
+  public static class ApiException_Exception extends Exception {
+
+    private final JaxWsApiException faultInfo;
+
+    ApiException_Exception(Object... errors) {
+      this.faultInfo = new JaxWsApiException(Arrays.asList(errors));
+    }
+
+    public JaxWsApiException getFaultInfo() {
+      return faultInfo;
+    }
+  }
+
+  /**
+   * Has the shape of a generated JAX-WS {@code ApiException}.
+   */
+  public static class JaxWsApiException {
+
+    private final List<Object> errors;
+
+    JaxWsApiException(List<Object> errors) {
+      this.errors = errors;
+    }
+
+    public List<Object> getErrors() {
+      return errors;
+    }
+  }
+
+  /**
+   * Has the shape of a generated {@code RateExceededError}.
+   */
+  public static class RateExceededError {
+
+    private final String rateScope;
+    private final Integer retryAfterSeconds;
+
+    RateExceededError(String rateScope, Integer retryAfterSeconds) {
+      this.rateScope = rateScope;
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getRateScope() {
+      return rateScope;
+    }
+
+    public Integer getRetryAfterSeconds() {
+      return retryAfterSeconds;
+    }
+  }
+
+  /**
+   * Has the shape of a generated {@code InternalApiError}.
+   */
+  public static class InternalApiError {}
+}
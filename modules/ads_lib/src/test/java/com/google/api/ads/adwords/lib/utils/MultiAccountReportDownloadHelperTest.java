@@ -0,0 +1,283 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.conf.AdWordsLibConfiguration;
+import com.google.api.ads.adwords.lib.utils.MultiAccountReportDownloadHelper.AccountReportDownload;
+import com.google.api.ads.adwords.lib.utils.v201506.DetailedReportDownloadResponseException;
+import com.google.api.ads.common.lib.client.AdsRateLimiter;
+import com.google.api.ads.common.lib.client.AdsRateLimiter.RateExceeded;
+import com.google.api.ads.common.lib.client.ExponentialBackoffRetryPolicy;
+import com.google.api.ads.common.lib.utils.Streams;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link MultiAccountReportDownloadHelper}.
+ */
+@RunWith(JUnit4.class)
+public class MultiAccountReportDownloadHelperTest {
+
+  private static final List<String> CLIENT_CUSTOMER_IDS =
+      ImmutableList.of("111-111-1111", "222-222-2222", "333-333-3333", "444-444-4444");
+
+  private MultiAccountReportDownloadHelper helper;
+  private ConcurrentMap<String, String> reports;
+  private ReportDownloadHandler handler;
+
+  @Before
+  public void setUp() throws Exception {
+    AdWordsSession session = new AdWordsSession.Builder()
+        .withUserAgent("TEST_APP")
+        .withOAuth2Credential(new GoogleCredential())
+        .withDeveloperToken("TEST_DEVELOPER_TOKEN")
+        .withClientCustomerId("TEMPLATE_CLIENT_CUSTOMER_ID")
+        .build();
+    AdWordsLibConfiguration configuration = mock(AdWordsLibConfiguration.class);
+    when(configuration.getReportDownloadTimeout()).thenReturn(1234);
+    helper = new MultiAccountReportDownloadHelper(session, configuration, null);
+    helper.setRetryPolicy(new ExponentialBackoffRetryPolicy(3, 0, 0, 0));
+    helper.setMaxConcurrentDownloads(2);
+
+    reports = Maps.newConcurrentMap();
+    handler = new ReportDownloadHandler() {
+      @Override
+      public void handleReport(String clientCustomerId, ReportDownloadResponse response)
+          throws IOException {
+        reports.put(clientCustomerId, response.getAsString());
+      }
+    };
+  }
+
+  private static ReportDownloadResponse createResponse(String contents) {
+    return new ReportDownloadResponse(new RawReportDownloadResponse(HttpURLConnection.HTTP_OK,
+        new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)),
+        StandardCharsets.UTF_8, "CSV"));
+  }
+
+  /**
+   * Tests that each account's report is downloaded with its own session and
+   * passed to the handler.
+   */
+  @Test
+  public void testDownloadReports() throws Exception {
+    final AtomicInteger timeout = new AtomicInteger();
+    MultiAccountReportSummary summary = helper.downloadReports(new AccountReportDownload() {
+      @Override
+      public ReportDownloadResponse downloadReport(AdWordsSession session,
+          int reportDownloadTimeout) {
+        assertEquals("TEST_DEVELOPER_TOKEN", session.getDeveloperToken());
+        timeout.set(reportDownloadTimeout);
+        return createResponse("report " + session.getClientCustomerId());
+      }
+    }, CLIENT_CUSTOMER_IDS, handler);
+
+    assertEquals(ImmutableSet.copyOf(CLIENT_CUSTOMER_IDS), reports.keySet());
+    assertEquals("report 222-222-2222", reports.get("222-222-2222"));
+    assertEquals(1234, timeout.get());
+    assertEquals(4, summary.getAccountCount());
+    assertEquals(4, summary.getSuccessCount());
+    assertEquals(0, summary.getFailureCount());
+    assertEquals(4, summary.getAttemptCount());
+    assertEquals(4 * "report 111-111-1111".length(), summary.getByteCount());
+  }
+
+  /**
+   * Tests that server errors are retried and that errors in the request are
+   * not.
+   */
+  @Test
+  public void testDownloadReports_retries() throws Exception {
+    final Map<String, AtomicInteger> attempts = Maps.newConcurrentMap();
+    for (String clientCustomerId : CLIENT_CUSTOMER_IDS) {
+      attempts.put(clientCustomerId, new AtomicInteger());
+    }
+    MultiAccountReportSummary summary = helper.downloadReports(new AccountReportDownload() {
+      @Override
+      public ReportDownloadResponse downloadReport(AdWordsSession session,
+          int reportDownloadTimeout) throws ReportException, ReportDownloadResponseException {
+        String clientCustomerId = session.getClientCustomerId();
+        int attempt = attempts.get(clientCustomerId).incrementAndGet();
+        if ("111-111-1111".equals(clientCustomerId) && attempt == 1) {
+          throw new ReportDownloadResponseException(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        } else if ("222-222-2222".equals(clientCustomerId) && attempt == 1) {
+          throw new ReportException("Connection reset");
+        } else if ("333-333-3333".equals(clientCustomerId)) {
+          throw new ReportDownloadResponseException(HttpURLConnection.HTTP_BAD_REQUEST);
+        } else if ("444-444-4444".equals(clientCustomerId)) {
+          throw new ReportException("Connection refused");
+        }
+        return createResponse("report");
+      }
+    }, CLIENT_CUSTOMER_IDS, handler);
+
+    assertEquals(2, attempts.get("111-111-1111").get());
+    assertEquals(2, attempts.get("222-222-2222").get());
+    assertEquals(1, attempts.get("333-333-3333").get());
+    assertEquals(3, attempts.get("444-444-4444").get());
+    assertEquals(2, summary.getSuccessCount());
+    assertEquals(ImmutableSet.of("333-333-3333", "444-444-4444"),
+        summary.getFailures().keySet());
+    assertTrue(summary.getFailures().get("444-444-4444") instanceof ReportException);
+    assertEquals(8, summary.getAttemptCount());
+  }
+
+  /**
+   * Tests that a handler failure is retried with a new response and that the
+   * response stream is closed.
+   */
+  @Test
+  public void testDownloadReports_handlerFailure() throws Exception {
+    final AtomicInteger handled = new AtomicInteger();
+    MultiAccountReportSummary summary = helper.downloadReports(new AccountReportDownload() {
+      @Override
+      public ReportDownloadResponse downloadReport(AdWordsSession session,
+          int reportDownloadTimeout) {
+        return createResponse("report");
+      }
+    }, ImmutableList.of("111-111-1111"), new ReportDownloadHandler() {
+      @Override
+      public void handleReport(String clientCustomerId, ReportDownloadResponse response)
+          throws IOException {
+        if (handled.incrementAndGet() == 1) {
+          throw new IOException("Connection reset");
+        }
+        Streams.readAll(response.getInputStream(), StandardCharsets.UTF_8);
+      }
+    });
+
+    assertEquals(2, handled.get());
+    assertEquals(1, summary.getSuccessCount());
+    assertEquals(2, summary.getAttemptCount());
+  }
+
+  /**
+   * Tests that downloads are throttled and that rate exceeded errors slow the
+   * rate limiter down.
+   */
+  @Test
+  public void testDownloadReports_rateExceeded() throws Exception {
+    AdsRateLimiter rateLimiter = mock(AdsRateLimiter.class);
+    helper.setRateLimiter(rateLimiter);
+    final AtomicInteger attempts = new AtomicInteger();
+    MultiAccountReportSummary summary = helper.downloadReports(new AccountReportDownload() {
+      @Override
+      public ReportDownloadResponse downloadReport(AdWordsSession session,
+          int reportDownloadTimeout) throws ReportDownloadResponseException {
+        if (attempts.incrementAndGet() == 1) {
+          throw new ReportDownloadResponseException(429);
+        }
+        return createResponse("report");
+      }
+    }, ImmutableList.of("111-111-1111"), handler);
+
+    assertEquals(1, summary.getSuccessCount());
+    verify(rateLimiter, times(2)).acquire(ImmutableList.of(
+        AdsRateLimiter.createKey(AdsRateLimiter.DEVELOPER_TOKEN_SCOPE, "TEST_DEVELOPER_TOKEN"),
+        AdsRateLimiter.createKey(AdsRateLimiter.CLIENT_CUSTOMER_ID_SCOPE, "1111111111")));
+    verify(rateLimiter).recordRateExceeded(any(RateExceeded.class));
+  }
+
+  /**
+   * Tests that failed downloads are not retried without a retry policy.
+   */
+  @Test
+  public void testDownloadReports_noRetryPolicy() throws Exception {
+    helper.setRetryPolicy(null);
+    final ReportException exception = new ReportException("Connection reset");
+    MultiAccountReportSummary summary = helper.downloadReports(new AccountReportDownload() {
+      @Override
+      public ReportDownloadResponse downloadReport(AdWordsSession session,
+          int reportDownloadTimeout) throws ReportException {
+        throw exception;
+      }
+    }, CLIENT_CUSTOMER_IDS, handler);
+
+    assertEquals(4, summary.getAttemptCount());
+    assertSame(exception, summary.getFailures().get("111-111-1111"));
+  }
+
+  /**
+   * Tests that an empty run returns an empty summary.
+   */
+  @Test
+  public void testDownloadReports_noAccounts() throws Exception {
+    MultiAccountReportSummary summary = helper.downloadReports(
+        mock(AccountReportDownload.class), ImmutableList.<String>of(), handler);
+
+    assertEquals(0, summary.getAccountCount());
+    assertEquals(0, summary.getAttemptCount());
+  }
+
+  /**
+   * Tests which errors are retried.
+   */
+  @Test
+  public void testIsRetryable() {
+    assertTrue(MultiAccountReportDownloadHelper.isRetryable(
+        new ReportDownloadResponseException(HttpURLConnection.HTTP_UNAVAILABLE)));
+    assertTrue(MultiAccountReportDownloadHelper.isRetryable(
+        new ReportDownloadResponseException(429)));
+    assertFalse(MultiAccountReportDownloadHelper.isRetryable(
+        new ReportDownloadResponseException(HttpURLConnection.HTTP_BAD_REQUEST)));
+    DetailedReportDownloadResponseException rateExceeded =
+        new DetailedReportDownloadResponseException(HttpURLConnection.HTTP_BAD_REQUEST, "");
+    rateExceeded.setType("RateExceededError.RATE_EXCEEDED");
+    assertTrue(MultiAccountReportDownloadHelper.isRateExceeded(rateExceeded));
+    assertTrue(MultiAccountReportDownloadHelper.isRetryable(rateExceeded));
+    DetailedReportDownloadResponseException invalidPredicate =
+        new DetailedReportDownloadResponseException(HttpURLConnection.HTTP_BAD_REQUEST,
+            "RATE_EXCEEDED");
+    invalidPredicate.setType("ReportDefinitionError.INVALID_PREDICATE");
+    assertFalse(MultiAccountReportDownloadHelper.isRateExceeded(invalidPredicate));
+  }
+
+  /**
+   * Tests that downloads are not throttled unless a rate limit is configured.
+   */
+  @Test
+  public void testGetRateLimiter_notConfigured() {
+    assertNull(helper.getRateLimiter());
+  }
+}
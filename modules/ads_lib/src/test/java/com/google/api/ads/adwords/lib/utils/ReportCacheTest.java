@@ -0,0 +1,415 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
+import com.google.api.ads.adwords.lib.utils.ReportRequest.RequestType;
+import com.google.api.ads.common.lib.utils.Streams;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.common.base.Suppliers;
+import com.google.common.io.ByteStreams;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests for {@link ReportCache}.
+ */
+@RunWith(JUnit4.class)
+public class ReportCacheTest {
+
+  /** Enum of download formats that's not version-specific. */
+  enum TestDownloadFormat {
+    CSV, GZIPPED_CSV
+  }
+
+  private static final LocalDate TODAY = new LocalDate(2015, 6, 15);
+  private static final String CLOSED_QUERY =
+      "SELECT CampaignId, Clicks FROM CAMPAIGN_PERFORMANCE_REPORT DURING 20150501,20150531";
+  private static final String CONTENTS = "CampaignId,Clicks\n1,2\n3,4\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AdWordsSession session;
+  private File directory;
+  private ReportCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    session = new AdWordsSession.Builder()
+        .withUserAgent("TEST_APP")
+        .withOAuth2Credential(new GoogleCredential())
+        .withDeveloperToken("TEST_DEVELOPER_TOKEN")
+        .withClientCustomerId("123-456-7890")
+        .build();
+    directory = folder.newFolder("cache");
+    cache = newCache(1024 * 1024);
+  }
+
+  private ReportCache newCache(long maxBytes) {
+    return new ReportCache(directory, maxBytes, 3, Suppliers.ofInstance(TODAY));
+  }
+
+  private static ReportRequest createRequest(RequestType type, String request,
+      Enum<?> downloadFormat) {
+    ReportRequest reportRequest = mock(ReportRequest.class);
+    when(reportRequest.getRequestType()).thenReturn(type);
+    when(reportRequest.getReportRequestString()).thenReturn(request);
+    Mockito.<Enum<?>>when(reportRequest.getDownloadFormat()).thenReturn(downloadFormat);
+    return reportRequest;
+  }
+
+  private static ReportRequest createAwqlRequest(String query) {
+    return createRequest(RequestType.AWQL, query, TestDownloadFormat.CSV);
+  }
+
+  private static RawReportDownloadResponse createResponse(int status, String contents) {
+    return new RawReportDownloadResponse(status,
+        new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)),
+        StandardCharsets.UTF_8, "CSV");
+  }
+
+  private static RawReportDownloadResponse createGzippedResponse(byte[] gzipped) {
+    return new RawReportDownloadResponse(HttpURLConnection.HTTP_OK,
+        new ByteArrayInputStream(gzipped), StandardCharsets.UTF_8, "GZIPPED_CSV");
+  }
+
+  private static byte[] gzip(String contents) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bytes);
+    gzipOutputStream.write(contents.getBytes(StandardCharsets.UTF_8));
+    gzipOutputStream.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Downloads a report through the cache the way {@link AdHocReportDownloadHelper} does.
+   */
+  private String download(ReportRequest request, String contents) throws IOException {
+    String key = cache.getCacheKey(session, "v201506", request);
+    RawReportDownloadResponse response = cache.get(key, request);
+    if (response == null) {
+      response =
+          cache.put(key, request, createResponse(HttpURLConnection.HTTP_OK, contents));
+    }
+    return Streams.readAll(response.getInputStream(), response.getCharset());
+  }
+
+  /**
+   * Tests that only custom ranges and {@code LAST_MONTH} that ended before the
+   * settle period are eligible.
+   */
+  @Test
+  public void testGetClosedDateRange() {
+    assertArrayEquals(new LocalDate[] {new LocalDate(2015, 5, 1), new LocalDate(2015, 5, 31)},
+        cache.getClosedDateRange(createAwqlRequest(CLOSED_QUERY)));
+    assertArrayEquals(new LocalDate[] {new LocalDate(2015, 5, 1), new LocalDate(2015, 5, 31)},
+        cache.getClosedDateRange(
+            createAwqlRequest("SELECT Clicks FROM ACCOUNT_PERFORMANCE_REPORT during LAST_MONTH")));
+    assertNull(cache.getClosedDateRange(
+        createAwqlRequest("SELECT Clicks FROM ACCOUNT_PERFORMANCE_REPORT DURING LAST_7_DAYS")));
+    assertNull(cache.getClosedDateRange(
+        createAwqlRequest("SELECT Clicks FROM ACCOUNT_PERFORMANCE_REPORT")));
+    // Ends within the settle period.
+    assertNull(cache.getClosedDateRange(createAwqlRequest(
+        "SELECT Clicks FROM ACCOUNT_PERFORMANCE_REPORT DURING 20150601,20150612")));
+    assertArrayEquals(new LocalDate[] {new LocalDate(2015, 6, 1), new LocalDate(2015, 6, 11)},
+        cache.getClosedDateRange(createAwqlRequest(
+            "SELECT Clicks FROM ACCOUNT_PERFORMANCE_REPORT DURING 20150601, 20150611")));
+
+    String definition = "<reportDefinition><selector><fields>Clicks</fields>"
+        + "<dateRange><min>20150401</min><max>20150430</max></dateRange></selector>"
+        + "<reportName>test</reportName><reportType>ACCOUNT_PERFORMANCE_REPORT</reportType>"
+        + "<dateRangeType>%s</dateRangeType><downloadFormat>CSV</downloadFormat>"
+        + "</reportDefinition>";
+    assertArrayEquals(new LocalDate[] {new LocalDate(2015, 4, 1), new LocalDate(2015, 4, 30)},
+        cache.getClosedDateRange(createRequest(RequestType.XML,
+            String.format(definition, "CUSTOM_DATE"), TestDownloadFormat.CSV)));
+    assertNull(cache.getClosedDateRange(createRequest(RequestType.XML,
+        String.format(definition, "YESTERDAY"), TestDownloadFormat.CSV)));
+  }
+
+  /**
+   * Tests that the cache key ignores whitespace outside of quoted strings but
+   * depends on the rest of the request.
+   */
+  @Test
+  public void testGetCacheKey() {
+    String key = cache.getCacheKey(session, "v201506", createAwqlRequest(CLOSED_QUERY));
+    assertNotNull(key);
+    assertEquals(key, cache.getCacheKey(session, "v201506",
+        createAwqlRequest("  " + CLOSED_QUERY.replace(" ", "\n  ") + "\t")));
+    assertFalse(key.equals(cache.getCacheKey(session, "v201502",
+        createAwqlRequest(CLOSED_QUERY))));
+    assertFalse(key.equals(cache.getCacheKey(session, "v201506",
+        createRequest(RequestType.AWQL, CLOSED_QUERY, TestDownloadFormat.GZIPPED_CSV))));
+    assertFalse(cache.getCacheKey(session, "v201506",
+        createAwqlRequest("SELECT Clicks FROM A WHERE Name = 'a  b' DURING LAST_MONTH"))
+        .equals(cache.getCacheKey(session, "v201506",
+            createAwqlRequest("SELECT Clicks FROM A WHERE Name = 'a b' DURING LAST_MONTH"))));
+
+    assertNull(cache.getCacheKey(session, "v201506",
+        createAwqlRequest("SELECT Clicks FROM ACCOUNT_PERFORMANCE_REPORT DURING TODAY")));
+    assertEquals(1, cache.getBypassCount());
+  }
+
+  /**
+   * Tests that a report read to the end is returned from the cache afterwards,
+   * including by a new cache over the same directory.
+   */
+  @Test
+  public void testPutAndGet() throws IOException {
+    ReportRequest request = createAwqlRequest(CLOSED_QUERY);
+    assertEquals(CONTENTS, download(request, CONTENTS));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getEntryCount());
+
+    assertEquals(CONTENTS, download(request, "not cached"));
+    assertEquals(1, cache.getHitCount());
+
+    cache = newCache(1024 * 1024);
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(CONTENTS, download(request, "not cached"));
+    assertEquals(1, cache.getHitCount());
+  }
+
+  /**
+   * Tests that gzipped reports are stored and returned as is.
+   */
+  @Test
+  public void testPutAndGet_gzipped() throws IOException {
+    ReportRequest request =
+        createRequest(RequestType.AWQL, CLOSED_QUERY, TestDownloadFormat.GZIPPED_CSV);
+    String key = cache.getCacheKey(session, "v201506", request);
+    byte[] gzipped = {31, -117, 8, 0, 0, 0, 0, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    InputStream inputStream = cache.put(key, request, new RawReportDownloadResponse(
+        HttpURLConnection.HTTP_OK, new ByteArrayInputStream(gzipped), StandardCharsets.UTF_8,
+        "GZIPPED_CSV")).getInputStream();
+    assertArrayEquals(gzipped, ByteStreams.toByteArray(inputStream));
+    assertEquals(gzipped.length, cache.getSizeBytes());
+    assertArrayEquals(gzipped,
+        ByteStreams.toByteArray(cache.get(key, request).getInputStream()));
+  }
+
+  /**
+   * Tests that gzipped reports are cached when they are read with
+   * {@link ReportDownloadResponse#getAsString()}, which stops at the end of
+   * the gzip data.
+   */
+  @Test
+  public void testPut_gzippedAsString() throws IOException {
+    ReportRequest request =
+        createRequest(RequestType.AWQL, CLOSED_QUERY, TestDownloadFormat.GZIPPED_CSV);
+    String key = cache.getCacheKey(session, "v201506", request);
+    byte[] gzipped = gzip(CONTENTS);
+
+    ReportDownloadResponse response = new ReportDownloadResponse(
+        cache.put(key, request, createGzippedResponse(gzipped)));
+    assertEquals(CONTENTS, response.getAsString());
+
+    assertEquals(1, cache.getEntryCount());
+    assertArrayEquals(gzipped,
+        ByteStreams.toByteArray(cache.get(key, request).getInputStream()));
+  }
+
+  /**
+   * Tests that gzipped reports are cached when they are read with
+   * {@link ReportDownloadResponse#getRowReader()}, which stops at the end of
+   * the gzip data.
+   */
+  @Test
+  public void testPut_gzippedRowReader() throws IOException {
+    ReportRequest request =
+        createRequest(RequestType.AWQL, CLOSED_QUERY, TestDownloadFormat.GZIPPED_CSV);
+    String key = cache.getCacheKey(session, "v201506", request);
+    byte[] gzipped = gzip(CONTENTS);
+    ReportingConfiguration reportingConfiguration = new ReportingConfiguration.Builder()
+        .skipReportHeader(true)
+        .skipReportSummary(true)
+        .build();
+
+    ReportRowReader rows = new ReportDownloadResponse(
+        cache.put(key, request, createGzippedResponse(gzipped)), reportingConfiguration)
+            .getRowReader();
+    try {
+      while (rows.next()) {
+        // Reads all rows.
+      }
+    } finally {
+      rows.close();
+    }
+
+    assertEquals(2, rows.getRowCount());
+    assertEquals(1, cache.getEntryCount());
+    assertArrayEquals(gzipped,
+        ByteStreams.toByteArray(cache.get(key, request).getInputStream()));
+  }
+
+  /**
+   * Tests that reports closed just before they were read to the end are
+   * cached once the rest of the response was read.
+   */
+  @Test
+  public void testPut_closedEarly() throws IOException {
+    ReportRequest request = createAwqlRequest(CLOSED_QUERY);
+    String key = cache.getCacheKey(session, "v201506", request);
+
+    InputStream inputStream =
+        cache.put(key, request, createResponse(HttpURLConnection.HTTP_OK, CONTENTS))
+            .getInputStream();
+    inputStream.read(new byte[4]);
+    inputStream.close();
+
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(CONTENTS, download(request, "not cached"));
+  }
+
+  /**
+   * Tests that reports closed well before they were read to the end are not
+   * read to the end, and not cached.
+   */
+  @Test
+  public void testPut_closedFarFromEnd() throws IOException {
+    ReportRequest request = createAwqlRequest(CLOSED_QUERY);
+    String key = cache.getCacheKey(session, "v201506", request);
+    StringBuilder contents = new StringBuilder(CONTENTS);
+    while (contents.length() <= 4 * ReportCache.MAX_DRAIN_BYTES) {
+      contents.append("5,6\n");
+    }
+    ByteArrayInputStream source =
+        new ByteArrayInputStream(contents.toString().getBytes(StandardCharsets.UTF_8));
+
+    InputStream inputStream = cache.put(key, request, new RawReportDownloadResponse(
+        HttpURLConnection.HTTP_OK, source, StandardCharsets.UTF_8, "CSV")).getInputStream();
+    inputStream.read(new byte[4]);
+    inputStream.close();
+
+    assertTrue(source.available() > 2 * ReportCache.MAX_DRAIN_BYTES);
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, directory.list().length);
+  }
+
+  /**
+   * Tests that replacing an entry with a response in another charset deletes
+   * the file of the previous entry.
+   */
+  @Test
+  public void testPut_charsetChanged() throws IOException {
+    ReportRequest request = createAwqlRequest(CLOSED_QUERY);
+    String key = cache.getCacheKey(session, "v201506", request);
+    download(request, CONTENTS);
+
+    InputStream inputStream = cache.put(key, request, new RawReportDownloadResponse(
+        HttpURLConnection.HTTP_OK,
+        new ByteArrayInputStream(CONTENTS.getBytes(StandardCharsets.ISO_8859_1)),
+        StandardCharsets.ISO_8859_1, "CSV")).getInputStream();
+    inputStream.close();
+
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(1, directory.list().length);
+    assertEquals(StandardCharsets.ISO_8859_1, cache.get(key, request).getCharset());
+  }
+
+  /**
+   * Tests that reports that could not be read to the end, and failed
+   * responses, are not cached.
+   */
+  @Test
+  public void testPut_notCached() throws IOException {
+    ReportRequest request = createAwqlRequest(CLOSED_QUERY);
+    String key = cache.getCacheKey(session, "v201506", request);
+
+    InputStream failingStream = new FilterInputStream(
+        new ByteArrayInputStream(CONTENTS.getBytes(StandardCharsets.UTF_8))) {
+      private boolean read;
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (read) {
+          throw new IOException("Connection reset");
+        }
+        read = true;
+        return super.read(b, off, 4);
+      }
+    };
+    InputStream inputStream = cache.put(key, request, new RawReportDownloadResponse(
+        HttpURLConnection.HTTP_OK, failingStream, StandardCharsets.UTF_8, "CSV"))
+            .getInputStream();
+    inputStream.read(new byte[4]);
+    inputStream.close();
+
+    RawReportDownloadResponse failed =
+        createResponse(HttpURLConnection.HTTP_BAD_REQUEST, "RATE_EXCEEDED");
+    assertEquals(failed, cache.put(key, request, failed));
+
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, directory.list().length);
+    assertNull(cache.get(key, request));
+  }
+
+  /**
+   * Tests that the least recently used reports are evicted once the cache is
+   * too large.
+   */
+  @Test
+  public void testEviction() throws IOException {
+    ReportRequest first = createAwqlRequest(CLOSED_QUERY);
+    download(first, CONTENTS);
+    long entryBytes = cache.getSizeBytes();
+    cache = newCache(entryBytes * 2);
+
+    ReportRequest second = createAwqlRequest(CLOSED_QUERY.replace("0501", "0502"));
+    ReportRequest third = createAwqlRequest(CLOSED_QUERY.replace("0501", "0503"));
+    download(second, CONTENTS);
+    // Uses the first report, so the second is the least recently used.
+    download(first, "not cached");
+    download(third, CONTENTS);
+
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2, cache.getEntryCount());
+    assertEquals(CONTENTS, download(first, "not cached"));
+    assertEquals(CONTENTS, download(third, "not cached"));
+    assertEquals("evicted", download(second, "evicted"));
+  }
+}
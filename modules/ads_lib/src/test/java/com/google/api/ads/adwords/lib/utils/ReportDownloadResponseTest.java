@@ -15,7 +15,11 @@
 package com.google.api.ads.adwords.lib.utils;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
 import com.google.api.ads.common.lib.utils.Streams;
 
 import org.junit.Rule;
@@ -28,10 +32,13 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -111,6 +118,139 @@ public class ReportDownloadResponseTest {
         Streams.readAll(new FileInputStream(outputFile), StandardCharsets.UTF_8));
   }
 
+  /**
+   * Test method for
+   * {@link com.google.api.ads.adwords.lib.utils.ReportDownloadResponse#saveToFile(File, boolean)}
+   * when a gzipped response is inflated while it is saved.
+   */
+  @Test
+  public void testSaveToFile_decompress() throws IOException {
+    File outputFile = File.createTempFile("ReportOutput", ".csv");
+    String expectedContents = "a,b,c\nd,e,f";
+    CloseTrackingInputStream inputStream = new CloseTrackingInputStream(gzip(expectedContents));
+    RawReportDownloadResponse rawResponse = new RawReportDownloadResponse(HttpURLConnection.HTTP_OK,
+        inputStream, StandardCharsets.UTF_8, "GZIPPED_CSV");
+    ReportDownloadResponse response = new ReportDownloadResponse(rawResponse);
+    SavedReportFile savedFile = response.saveToFile(outputFile, true);
+
+    assertEquals("contents saved to file are incorrect", expectedContents,
+        Streams.readAll(new FileInputStream(outputFile), StandardCharsets.UTF_8));
+    CRC32 checksum = new CRC32();
+    checksum.update(expectedContents.getBytes(StandardCharsets.UTF_8));
+    assertEquals("checksum is incorrect", checksum.getValue(), savedFile.getChecksum());
+    assertEquals("byte count is incorrect", expectedContents.length(), savedFile.getByteCount());
+    assertEquals("line count is incorrect", 2, savedFile.getLineCount());
+    assertTrue("contents should be decompressed", savedFile.isDecompressed());
+    assertTrue("response stream should be closed", inputStream.closed);
+  }
+
+  /**
+   * Test method for
+   * {@link com.google.api.ads.adwords.lib.utils.ReportDownloadResponse#saveToFile(File, boolean)}
+   * when a gzipped response is saved as downloaded.
+   */
+  @Test
+  public void testSaveToFile_compressed() throws IOException {
+    File outputFile = File.createTempFile("ReportOutput", ".csv.gz");
+    byte[] zippedBytes = gzip("a,b,c\nd,e,f\n");
+    RawReportDownloadResponse rawResponse = new RawReportDownloadResponse(HttpURLConnection.HTTP_OK,
+        new ByteArrayInputStream(zippedBytes), StandardCharsets.UTF_8, "GZIPPED_CSV");
+    ReportDownloadResponse response = new ReportDownloadResponse(rawResponse);
+    SavedReportFile savedFile = response.saveToFile(outputFile, false);
+
+    assertEquals("byte count is incorrect", zippedBytes.length, savedFile.getByteCount());
+    assertEquals("byte count is incorrect", zippedBytes.length, outputFile.length());
+    assertEquals("lines of compressed contents should not be counted", -1,
+        savedFile.getLineCount());
+    assertFalse("contents should not be decompressed", savedFile.isDecompressed());
+  }
+
+  /**
+   * Test method for
+   * {@link com.google.api.ads.adwords.lib.utils.ReportDownloadResponse#saveToFile(File, boolean)}
+   * when reading the response fails, which should leave an existing file untouched.
+   */
+  @Test
+  public void testSaveToFile_readFailure() throws IOException {
+    File outputFile = File.createTempFile("ReportOutput", ".csv");
+    Streams.write("previous", new FileOutputStream(outputFile), StandardCharsets.UTF_8);
+    InputStream inputStream = new CloseTrackingInputStream("a,b,c\n".getBytes()) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        if (pos > 0) {
+          throw new IllegalStateException("Connection reset");
+        }
+        return super.read(b, off, 2);
+      }
+    };
+    RawReportDownloadResponse rawResponse = new RawReportDownloadResponse(HttpURLConnection.HTTP_OK,
+        inputStream, StandardCharsets.UTF_8, "CSV");
+    ReportDownloadResponse response = new ReportDownloadResponse(rawResponse);
+    try {
+      response.saveToFile(outputFile, false);
+      fail("Expected the save to fail");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+
+    assertEquals("existing file should be untouched", "previous",
+        Streams.readAll(new FileInputStream(outputFile), StandardCharsets.UTF_8));
+    assertTrue("response stream should be closed",
+        ((CloseTrackingInputStream) inputStream).closed);
+    File[] tempFiles = outputFile.getAbsoluteFile().getParentFile().listFiles();
+    for (File file : tempFiles) {
+      assertFalse("temporary file should be deleted",
+          file.getName().startsWith(outputFile.getName() + "."));
+    }
+  }
+
+  private static byte[] gzip(String contents) throws IOException {
+    ByteArrayOutputStream zippedBytesOut = new ByteArrayOutputStream();
+    GZIPOutputStream gzipOut = new GZIPOutputStream(zippedBytesOut);
+    gzipOut.write(contents.getBytes(StandardCharsets.UTF_8));
+    gzipOut.close();
+    return zippedBytesOut.toByteArray();
+  }
+
+  /**
+   * Input stream that records whether it was closed.
+   */
+  private static class CloseTrackingInputStream extends ByteArrayInputStream {
+    private boolean closed;
+
+    CloseTrackingInputStream(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      super.close();
+    }
+  }
+
+  /**
+   * Test method for
+   * {@link com.google.api.ads.adwords.lib.utils.ReportDownloadResponse#getRowReader()}
+   * when the report header was skipped by the server.
+   */
+  @Test
+  public void testGetRowReader() throws IOException {
+    String contents = "a,b,c\nd,e,f\nTotal,--,--\n";
+    RawReportDownloadResponse rawResponse = new RawReportDownloadResponse(HttpURLConnection.HTTP_OK,
+        new ByteArrayInputStream(contents.getBytes()), StandardCharsets.UTF_8, "CSV");
+    ReportDownloadResponse response = new ReportDownloadResponse(rawResponse,
+        new ReportingConfiguration.Builder().skipReportHeader(true).build());
+    ReportRowReader reader = response.getRowReader();
+
+    assertEquals("column names are incorrect", Arrays.asList("a", "b", "c"),
+        reader.getColumnNames());
+    assertTrue("expected a row", reader.next());
+    assertEquals("row contents are incorrect", "e", reader.getString(1));
+    assertFalse("summary row should be skipped", reader.next());
+    reader.close();
+  }
+
   @Test
   public void testFailedResponse_fails() {
     RawReportDownloadResponse rawResponse = new RawReportDownloadResponse(
@@ -0,0 +1,128 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.lib.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for {@link ReportFiles}.
+ */
+@RunWith(JUnit4.class)
+public class ReportFilesTest {
+
+  private File directory;
+
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  /**
+   * Tests that replacing a file leaves only the new contents behind.
+   */
+  @Test
+  public void testReplace() throws IOException {
+    File source = new File(directory, "report.csv.tmp");
+    File target = new File(directory, "report.csv");
+    Files.write("new", source, StandardCharsets.UTF_8);
+    Files.write("previous", target, StandardCharsets.UTF_8);
+
+    ReportFiles.replace(source, target);
+
+    assertEquals("new", Files.toString(target, StandardCharsets.UTF_8));
+    assertArrayEquals(new String[] {"report.csv"}, directory.list());
+  }
+
+  /**
+   * Tests that an existing file is restored if the source cannot be renamed
+   * over it.
+   */
+  @Test
+  public void testReplace_failureKeepsTarget() throws IOException {
+    File source = new File(directory, "missing.tmp");
+    File target = new File(directory, "report.csv");
+    Files.write("previous", target, StandardCharsets.UTF_8);
+
+    try {
+      ReportFiles.replace(source, target);
+      fail("Expected the replace to fail");
+    } catch (IOException e) {
+      // Expected.
+    }
+
+    assertEquals("previous", Files.toString(target, StandardCharsets.UTF_8));
+    assertArrayEquals(new String[] {"report.csv"}, directory.list());
+  }
+
+  /**
+   * Tests that a missing target is not created if the rename fails.
+   */
+  @Test
+  public void testReplace_failureWithoutTarget() throws IOException {
+    File target = new File(directory, "report.csv");
+
+    try {
+      ReportFiles.replace(new File(directory, "missing.tmp"), target);
+      fail("Expected the replace to fail");
+    } catch (IOException e) {
+      // Expected.
+    }
+
+    assertFalse(target.exists());
+  }
+
+  /**
+   * Tests that a file whose name is shorter than a temporary file prefix can
+   * be saved.
+   */
+  @Test
+  public void testSave_shortFileName() throws IOException {
+    File outputFile = new File(directory, "a");
+
+    SavedReportFile savedFile = ReportFiles.save(
+        new ByteArrayInputStream("a,b\nc,d\n".getBytes(StandardCharsets.UTF_8)), outputFile,
+        false, true);
+
+    assertEquals(outputFile, savedFile.getFile());
+    assertEquals(8, savedFile.getByteCount());
+    assertEquals(2, savedFile.getLineCount());
+    assertEquals("a,b\nc,d\n", Files.toString(outputFile, StandardCharsets.UTF_8));
+    assertArrayEquals(new String[] {"a"}, directory.list());
+  }
+}
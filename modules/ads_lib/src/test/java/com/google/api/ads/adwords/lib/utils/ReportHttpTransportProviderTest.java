@@ -0,0 +1,99 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.google.api.ads.adwords.lib.conf.AdWordsLibConfiguration;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpParams;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link ReportHttpTransportProvider}.
+ */
+@RunWith(JUnit4.class)
+public class ReportHttpTransportProviderTest {
+
+  @Mock
+  private AdWordsLibConfiguration adWordsLibConfiguration;
+
+  private ReportHttpTransportProvider provider;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    provider = new ReportHttpTransportProvider(adWordsLibConfiguration);
+  }
+
+  /**
+   * Tests that the default transport is used unless pooling is configured.
+   */
+  @Test
+  public void testGet_notPooled() {
+    when(adWordsLibConfiguration.getReportHttpMaxConnectionsPerHost()).thenReturn(0);
+
+    assertTrue(provider.get() instanceof NetHttpTransport);
+  }
+
+  /**
+   * Tests that a pooled transport is used if pooling is configured.
+   */
+  @Test
+  public void testGet_pooled() throws IOException {
+    when(adWordsLibConfiguration.getReportHttpMaxConnectionsPerHost()).thenReturn(4);
+    when(adWordsLibConfiguration.getReportHttpMaxTotalConnections()).thenReturn(16);
+    when(adWordsLibConfiguration.getReportHttpIdleTimeoutMillis()).thenReturn(60000L);
+
+    HttpTransport transport = provider.get();
+
+    assertTrue(transport instanceof ApacheHttpTransport);
+    assertTrue(((ApacheHttpTransport) transport).getHttpClient().getConnectionManager()
+        instanceof ThreadSafeClientConnManager);
+    transport.shutdown();
+  }
+
+  /**
+   * Tests that the connection pool is limited to the configured number of
+   * connections.
+   */
+  @Test
+  public void testCreateConnectionManagerParams() {
+    HttpParams params = ReportHttpTransportProvider.createConnectionManagerParams(4, 16);
+
+    ConnPerRoute connectionsPerRoute = ConnManagerParams.getMaxConnectionsPerRoute(params);
+    assertEquals(4, connectionsPerRoute.getMaxForRoute(
+        new HttpRoute(new HttpHost("adwords.google.com", 443, "https"))));
+    assertEquals(16, ConnManagerParams.getMaxTotalConnections(params));
+  }
+}
@@ -34,9 +34,9 @@ import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequest;
-import com.google.api.client.http.HttpRequestFactory;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.javanet.NetHttpTransport;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -135,6 +135,7 @@ public class ReportRequestFactoryHelperTest {
     when(internals.getAdWordsLibConfiguration()).thenReturn(adWordsLibConfiguration);
     when(internals.getAdWordsServiceLoggers()).thenReturn(adWordsServiceLoggers);
     when(adWordsServiceLoggers.getReportServiceLogger()).thenReturn(reportServiceLogger);
+    when(internals.getReportHttpTransport()).thenReturn(new NetHttpTransport());
   }
 
   /**
@@ -146,17 +147,18 @@ public class ReportRequestFactoryHelperTest {
 
     verify(internals).getAuthorizationHeaderProvider();
     verify(internals).getUserAgentCombiner();
+    verify(internals).getReportHttpTransport();
   }
 
   /**
-   * Tests the factory builds the request properly for this test's attributes.
+   * Tests the helper builds the request properly for this test's attributes.
    */
   @Test
-  public void testGetHttpRequestFactory()
+  public void testBuildPostRequest()
       throws ValidationException, AuthenticationException, IOException {
     LowLevelHttpRequest lowLevelRequest = Mockito.mock(LowLevelHttpRequest.class);
     HttpTransport transport = createTransport(lowLevelRequest);
-    when(internals.getHttpTransport()).thenReturn(transport);
+    when(internals.getReportHttpTransport()).thenReturn(transport);
     when(adWordsLibConfiguration.getReportDownloadTimeout()).thenReturn(42);
     AdWordsSession session = new AdWordsSession.Builder()
         .withDeveloperToken("foodevtoken")
@@ -169,10 +171,8 @@ public class ReportRequestFactoryHelperTest {
         .thenReturn("fooauthheader");
     when(userAgentCombiner.getUserAgent(anyString())).thenReturn("foouseragent");
     ReportRequestFactoryHelper helper = new ReportRequestFactoryHelper(session, internals);
-    HttpRequestFactory requestFactory = helper.getHttpRequestFactory(ENDPOINT_URL.build(), version);
-
-    HttpRequest request = requestFactory.buildPostRequest(
-        ENDPOINT_URL, new AwqlReportBodyProvider("select 1", "csv").getHttpContent());
+    HttpRequest request = helper.buildPostRequest(ENDPOINT_URL.build(), version,
+        new AwqlReportBodyProvider("select 1", "csv").getHttpContent());
     assertEquals(42, request.getConnectTimeout());
     assertEquals(42, request.getReadTimeout());
     HttpHeaders headers = request.getHeaders();
@@ -0,0 +1,278 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.lib.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.lib.client.reporting.ReportingConfiguration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests for {@link ReportRowReader}.
+ */
+@RunWith(JUnit4.class)
+public class ReportRowReaderTest {
+
+  private static final String CSV_REPORT =
+      "\"KEYWORDS_PERFORMANCE_REPORT (Jun 1, 2015-Jun 30, 2015)\"\n"
+      + "Campaign ID,Keyword,Impressions\n"
+      + "123,\"shoes, red\",45\n"
+      + "456,\"say \"\"hi\"\"\",-9223372036854775808\n"
+      + "Total, --,9\n";
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static InputStream toStream(String contents, Charset charset) {
+    return new ByteArrayInputStream(contents.getBytes(charset));
+  }
+
+  private static List<List<String>> readAll(ReportRowReader reader) throws IOException {
+    List<List<String>> rows = Lists.newArrayList();
+    while (reader.next()) {
+      List<String> row = Lists.newArrayList();
+      for (int i = 0; i < reader.getColumnCount(); i++) {
+        row.add(reader.getString(i));
+      }
+      rows.add(row);
+    }
+    reader.close();
+    return rows;
+  }
+
+  /**
+   * Tests that the report header and summary are skipped and quoted values are unescaped when the
+   * server defaults were used.
+   */
+  @Test
+  public void testCsv_defaultConfiguration() throws IOException {
+    ReportRowReader reader = new ReportRowReader(
+        toStream(CSV_REPORT, StandardCharsets.UTF_8), StandardCharsets.UTF_8, "CSV", null);
+
+    assertEquals(ImmutableList.of("Campaign ID", "Keyword", "Impressions"),
+        reader.getColumnNames());
+    assertEquals(2, reader.getColumnIndex("Impressions"));
+    assertTrue(reader.next());
+    assertEquals(123L, reader.getLong(0));
+    assertEquals("shoes, red", reader.getString(1));
+    assertEquals(45L, reader.getLong(2));
+    assertTrue(reader.next());
+    assertEquals("say \"hi\"", reader.getString(1));
+    assertEquals(Long.MIN_VALUE, reader.getLong(2));
+    assertFalse(reader.next());
+    assertEquals(2, reader.getRowCount());
+    assertEquals(0, reader.getColumnCount());
+    reader.close();
+  }
+
+  /**
+   * Tests that no rows are skipped when the configuration skipped all of them on the server.
+   */
+  @Test
+  public void testCsv_allSkippedByServer() throws IOException {
+    ReportingConfiguration config = new ReportingConfiguration.Builder()
+        .skipReportHeader(true)
+        .skipColumnHeader(true)
+        .skipReportSummary(true)
+        .build();
+    ReportRowReader reader = new ReportRowReader(
+        toStream("1,a\r\n2,b\r\n", StandardCharsets.UTF_8), StandardCharsets.UTF_8, "CSV",
+        config);
+
+    assertEquals(ImmutableList.of(), reader.getColumnNames());
+    assertEquals(ImmutableList.of(ImmutableList.of("1", "a"), ImmutableList.of("2", "b")),
+        readAll(reader));
+  }
+
+  /**
+   * Tests that a report with only a header and summary has no rows.
+   */
+  @Test
+  public void testCsv_noRows() throws IOException {
+    ReportingConfiguration config = new ReportingConfiguration.Builder()
+        .skipReportHeader(true)
+        .build();
+    ReportRowReader reader = new ReportRowReader(
+        toStream("Campaign ID,Impressions\nTotal,0\n", StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8, "CSV", config);
+
+    assertEquals(ImmutableList.of("Campaign ID", "Impressions"), reader.getColumnNames());
+    assertFalse(reader.next());
+    assertEquals(0, reader.getRowCount());
+  }
+
+  /**
+   * Tests that the column buffers are reused from row to row.
+   */
+  @Test
+  public void testCsv_reusesColumnBuffers() throws IOException {
+    ReportingConfiguration config = new ReportingConfiguration.Builder()
+        .skipReportHeader(true)
+        .skipColumnHeader(true)
+        .skipReportSummary(true)
+        .build();
+    ReportRowReader reader = new ReportRowReader(
+        toStream("1\n2\n3\n", StandardCharsets.UTF_8), StandardCharsets.UTF_8, "CSV", config);
+
+    assertTrue(reader.next());
+    CharSequence first = reader.getColumn(0);
+    assertTrue(reader.next());
+    assertTrue(reader.next());
+    assertSame(first, reader.getColumn(0));
+    assertEquals("3", first.toString());
+    reader.close();
+  }
+
+  /**
+   * Tests that a gzipped report is inflated.
+   */
+  @Test
+  public void testGzippedCsv() throws IOException {
+    ByteArrayOutputStream zippedBytesOut = new ByteArrayOutputStream();
+    GZIPOutputStream gzipOut = new GZIPOutputStream(zippedBytesOut);
+    gzipOut.write(CSV_REPORT.getBytes(StandardCharsets.UTF_8));
+    gzipOut.close();
+
+    ReportRowReader reader = new ReportRowReader(
+        new ByteArrayInputStream(zippedBytesOut.toByteArray()), StandardCharsets.UTF_8,
+        "GZIPPED_CSV", null);
+
+    assertEquals(2, readAll(reader).size());
+  }
+
+  /**
+   * Tests that tab separated values are not unquoted.
+   */
+  @Test
+  public void testTsv() throws IOException {
+    ReportRowReader reader = new ReportRowReader(
+        toStream("REPORT\nA\tB\n\"x\"\t, y\nTotal\t1\n", StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8, "TSV", null);
+
+    assertEquals(ImmutableList.of("A", "B"), reader.getColumnNames());
+    assertEquals(ImmutableList.of(ImmutableList.of("\"x\"", ", y")), readAll(reader));
+  }
+
+  /**
+   * Tests that the byte order mark of a report for Excel is skipped.
+   */
+  @Test
+  public void testCsvForExcel() throws IOException {
+    ReportingConfiguration config = new ReportingConfiguration.Builder()
+        .skipReportHeader(true)
+        .skipReportSummary(true)
+        .build();
+    ReportRowReader reader = new ReportRowReader(
+        toStream("\uFEFFA\tB\n\"1\t2\"\t3\n", StandardCharsets.UTF_16LE),
+        StandardCharsets.UTF_16LE, "CSVFOREXCEL", config);
+
+    assertEquals(ImmutableList.of("A", "B"), reader.getColumnNames());
+    assertEquals(ImmutableList.of(ImmutableList.of("1\t2", "3")), readAll(reader));
+  }
+
+  /**
+   * Tests that the rows of an XML report are read in the order of its columns.
+   */
+  @Test
+  public void testXml() throws IOException {
+    String report = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+        + "<report><report-name name='KEYWORDS_PERFORMANCE_REPORT'/>"
+        + "<date-range date='Jun 1, 2015-Jun 30, 2015'/>"
+        + "<table><columns><column name='campaignID' display='Campaign ID'/>"
+        + "<column name='impressions' display='Impressions'/></columns>"
+        + "<row impressions='45' campaignID='123'/>"
+        + "<row campaignID='456' impressions='0'/>"
+        + "</table></report>";
+    ReportRowReader reader = new ReportRowReader(
+        toStream(report, StandardCharsets.UTF_8), StandardCharsets.UTF_8, "XML", null);
+
+    assertEquals(ImmutableList.of("Campaign ID", "Impressions"), reader.getColumnNames());
+    assertEquals(ImmutableList.of(ImmutableList.of("123", "45"), ImmutableList.of("456", "0")),
+        readAll(reader));
+  }
+
+  /**
+   * Tests that external entities of an XML report are not resolved.
+   */
+  @Test
+  public void testXml_externalEntityNotResolved() throws IOException {
+    File secret = File.createTempFile("secret", ".txt");
+    secret.deleteOnExit();
+    Files.write("SECRET", secret, StandardCharsets.UTF_8);
+    String report = "<?xml version='1.0' encoding='UTF-8'?>"
+        + "<!DOCTYPE report [<!ENTITY xxe SYSTEM '" + secret.toURI() + "'>]>"
+        + "<report><table><columns><column name='campaignID' display='Campaign ID'/></columns>"
+        + "<row campaignID='&xxe;'/></table></report>";
+
+    List<List<String>> rows;
+    try {
+      rows = readAll(new ReportRowReader(
+          toStream(report, StandardCharsets.UTF_8), StandardCharsets.UTF_8, "XML", null));
+    } catch (IOException e) {
+      // Rejecting the undeclared entity is also safe.
+      return;
+    }
+    assertFalse(rows.toString().contains("SECRET"));
+  }
+
+  /**
+   * Tests that an invalid number fails to parse.
+   */
+  @Test
+  public void testGetLong_invalid() throws IOException {
+    ReportingConfiguration config = new ReportingConfiguration.Builder()
+        .skipReportHeader(true)
+        .skipColumnHeader(true)
+        .skipReportSummary(true)
+        .build();
+    ReportRowReader reader = new ReportRowReader(
+        toStream(" --\n", StandardCharsets.UTF_8), StandardCharsets.UTF_8, "CSV", config);
+    assertTrue(reader.next());
+
+    thrown.expect(NumberFormatException.class);
+    reader.getLong(0);
+  }
+
+  /**
+   * Tests that an unsupported format fails.
+   */
+  @Test
+  public void testUnsupportedFormat_fails() throws IOException {
+    thrown.expect(UnsupportedOperationException.class);
+    new ReportRowReader(toStream("", StandardCharsets.UTF_8), StandardCharsets.UTF_8, "PDF", null);
+  }
+}
@@ -14,8 +14,15 @@
 
 package com.google.api.ads.common.lib.auth;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import com.google.api.client.auth.oauth2.BearerToken;
@@ -34,9 +41,13 @@ import org.junit.runners.JUnit4;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link OAuth2Helper}.
@@ -55,17 +66,22 @@ public class OAuth2HelperTest {
   private static final GenericUrl TOKEN_SERVER_URL = new GenericUrl("http://example.com/token");
   private static final String REFRESH_TOKEN = "refreshToken";
   private static final Long REFRESH_WINDOW_SECS = 60L;
+  private static final Long BACKGROUND_REFRESH_WINDOW_SECS = 300L;
 
   @Before
   public void setUp() {
     MockitoAnnotations.initMocks(this);
-    credential =
-        new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
-            .setTransport(new NetHttpTransport())
-            .setJsonFactory(Mockito.mock(JsonFactory.class))
-            .setClientAuthentication(Mockito.mock(HttpExecuteInterceptor.class))
-            .setTokenServerUrl(TOKEN_SERVER_URL).build();
-    oAuth2Helper = spy(new OAuth2Helper(libLogger, REFRESH_WINDOW_SECS));
+    credential = createCredential();
+    oAuth2Helper = spy(new OAuth2Helper(libLogger, REFRESH_WINDOW_SECS, REFRESH_WINDOW_SECS,
+        new OAuth2Helper.RefreshState()));
+  }
+
+  private static Credential createCredential() {
+    return new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
+        .setTransport(new NetHttpTransport())
+        .setJsonFactory(Mockito.mock(JsonFactory.class))
+        .setClientAuthentication(Mockito.mock(HttpExecuteInterceptor.class))
+        .setTokenServerUrl(TOKEN_SERVER_URL).build();
   }
 
   @Test
@@ -97,6 +113,30 @@ public class OAuth2HelperTest {
     oAuth2Helper.refreshCredential(credential);
 
     verify(oAuth2Helper).callRefreshToken(credential);
+    assertEquals(1, oAuth2Helper.getRefreshCount());
+    assertEquals(0, oAuth2Helper.getRefreshFailureCount());
+  }
+
+  /**
+   * Tests that instances sharing their refresh state, such as those of
+   * different injectors, report each other's refreshes.
+   */
+  @Test
+  public void testRefreshCredential_statisticsShared() throws Exception {
+    OAuth2Helper.RefreshState refreshState = new OAuth2Helper.RefreshState();
+    OAuth2Helper serviceHelper = spy(new OAuth2Helper(libLogger, REFRESH_WINDOW_SECS,
+        REFRESH_WINDOW_SECS, refreshState));
+    OAuth2Helper internalsHelper = new OAuth2Helper(libLogger, REFRESH_WINDOW_SECS,
+        REFRESH_WINDOW_SECS, refreshState);
+    credential.setAccessToken(ACCESS_TOKEN);
+    credential.setRefreshToken(REFRESH_TOKEN);
+    credential.setExpiresInSeconds(REFRESH_WINDOW_SECS - 10L);
+    Mockito.doReturn(true).when(serviceHelper).callRefreshToken(credential);
+
+    serviceHelper.refreshCredential(credential);
+
+    assertEquals(1, internalsHelper.getRefreshCount());
+    assertEquals(0, internalsHelper.getRefreshFailureCount());
   }
 
   @Test
@@ -108,6 +148,8 @@ public class OAuth2HelperTest {
     Mockito.doReturn(false).when(oAuth2Helper).callRefreshToken(credential);
 
     oAuth2Helper.refreshCredential(credential);
+
+    assertEquals(1, oAuth2Helper.getRefreshFailureCount());
   }
 
   @Test
@@ -121,4 +163,114 @@ public class OAuth2HelperTest {
     thrown.expect(IOException.class);
     oAuth2Helper.refreshCredential(credential);
   }
+
+  @Test
+  public void testRefreshCredential_refreshedBeforeClaimingSlot() throws Exception {
+    credential.setAccessToken(ACCESS_TOKEN);
+    credential.setRefreshToken(REFRESH_TOKEN);
+    credential.setExpiresInSeconds(REFRESH_WINDOW_SECS - 10L);
+
+    // Another refresh completes between the caller's check and the re-check.
+    Mockito.doReturn(true).doReturn(false).when(oAuth2Helper).isCredentialRefreshable(credential);
+
+    assertSame(credential, oAuth2Helper.refreshCredential(credential));
+
+    verify(oAuth2Helper, never()).callRefreshToken(any(Credential.class));
+    assertEquals(0, oAuth2Helper.getRefreshCount());
+  }
+
+  @Test
+  public void testRefreshCredential_concurrentRefreshesCollapsed() throws Exception {
+    credential.setAccessToken(ACCESS_TOKEN);
+    credential.setRefreshToken(REFRESH_TOKEN);
+    credential.setExpiresInSeconds(REFRESH_WINDOW_SECS - 10L);
+    final Credential otherCredential = createCredential();
+    otherCredential.setRefreshToken(REFRESH_TOKEN);
+
+    final CountDownLatch refreshStarted = new CountDownLatch(1);
+    final CountDownLatch refreshAllowed = new CountDownLatch(1);
+    Mockito.doAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) throws Throwable {
+        refreshStarted.countDown();
+        refreshAllowed.await(5, TimeUnit.SECONDS);
+        Credential refreshing = (Credential) invocation.getArguments()[0];
+        refreshing.setAccessToken("newAccessToken");
+        refreshing.setExpiresInSeconds(3600L);
+        return true;
+      }
+    }).when(oAuth2Helper).callRefreshToken(any(Credential.class));
+
+    Thread refreshThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          oAuth2Helper.refreshCredential(credential);
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    refreshThread.start();
+    assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+    Thread waitingThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          oAuth2Helper.refreshCredential(otherCredential);
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    waitingThread.start();
+    // Let the first refresh finish only once the second caller is waiting on it.
+    while (waitingThread.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+    refreshAllowed.countDown();
+    refreshThread.join(5000);
+    waitingThread.join(5000);
+
+    verify(oAuth2Helper, times(1)).callRefreshToken(any(Credential.class));
+    assertEquals("newAccessToken", otherCredential.getAccessToken());
+    assertEquals(credential.getExpirationTimeMilliseconds(),
+        otherCredential.getExpirationTimeMilliseconds());
+  }
+
+  @Test
+  public void testRefreshCredential_backgroundRefresh() throws Exception {
+    oAuth2Helper = spy(new OAuth2Helper(libLogger, REFRESH_WINDOW_SECS,
+        BACKGROUND_REFRESH_WINDOW_SECS, new OAuth2Helper.RefreshState()));
+    credential.setAccessToken(ACCESS_TOKEN);
+    credential.setRefreshToken(REFRESH_TOKEN);
+    credential.setExpiresInSeconds(REFRESH_WINDOW_SECS * 2L);
+
+    assertFalse(oAuth2Helper.isCredentialRefreshable(credential));
+    assertTrue(oAuth2Helper.isCredentialRenewable(credential));
+
+    final CountDownLatch refreshAllowed = new CountDownLatch(1);
+    Mockito.doAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) throws Throwable {
+        refreshAllowed.await(5, TimeUnit.SECONDS);
+        return true;
+      }
+    }).when(oAuth2Helper).callRefreshToken(credential);
+
+    assertSame(credential, oAuth2Helper.refreshCredential(credential));
+    refreshAllowed.countDown();
+
+    verify(oAuth2Helper, timeout(5000)).callRefreshToken(credential);
+  }
+
+  @Test
+  public void testIsCredentialRenewable_noBackgroundWindow() {
+    credential.setAccessToken(ACCESS_TOKEN);
+    credential.setRefreshToken(REFRESH_TOKEN);
+    credential.setExpiresInSeconds(REFRESH_WINDOW_SECS * 2L);
+
+    assertFalse(oAuth2Helper.isCredentialRenewable(credential));
+  }
 }
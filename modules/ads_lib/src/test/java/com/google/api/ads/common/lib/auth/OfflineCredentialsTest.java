@@ -15,7 +15,9 @@
 package com.google.api.ads.common.lib.auth;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
 import com.google.api.ads.common.lib.auth.OfflineCredentials.ForApiBuilder;
@@ -459,4 +461,69 @@ public class OfflineCredentialsTest {
     thrown.expect(OAuthException.class);
     offlineCredentials.generateCredential();
   }
+
+  /**
+   * Tests that offline credentials for the same grant share one credential and
+   * refresh it once.
+   */
+  @Test
+  public void testGenerateSharedCredential() throws Exception {
+    OAuth2CredentialRegistry credentialRegistry = new OAuth2CredentialRegistry();
+    OfflineCredentials offlineCredentials1 =
+        new OfflineCredentials.Builder(oAuth2Helper, credentialRegistry)
+            .forApi(OfflineCredentials.Api.DFP)
+            .withClientSecrets("clientId", "clientSecret")
+            .withRefreshToken("refreshToken")
+            .build();
+    OfflineCredentials offlineCredentials2 =
+        new OfflineCredentials.Builder(oAuth2Helper, credentialRegistry)
+            .forApi(OfflineCredentials.Api.DFP)
+            .withClientSecrets("clientId", "clientSecret")
+            .withRefreshToken("refreshToken")
+            .build();
+    OfflineCredentials otherGrant =
+        new OfflineCredentials.Builder(oAuth2Helper, credentialRegistry)
+            .forApi(OfflineCredentials.Api.DFP)
+            .withClientSecrets("clientId", "clientSecret")
+            .withRefreshToken("otherRefreshToken")
+            .build();
+
+    when(oAuth2Helper.callRefreshToken(Mockito.<Credential>anyObject())).thenReturn(true);
+
+    Credential credential = offlineCredentials1.generateSharedCredential();
+
+    assertSame(credential, offlineCredentials2.generateSharedCredential());
+    assertNotSame(credential, otherGrant.generateSharedCredential());
+    assertEquals("otherRefreshToken", otherGrant.generateSharedCredential().getRefreshToken());
+    assertEquals(2, credentialRegistry.size());
+    Mockito.verify(oAuth2Helper, Mockito.times(2))
+        .callRefreshToken(Mockito.<Credential>anyObject());
+  }
+
+  /**
+   * Tests that a shared credential which could not be refreshed is not
+   * registered.
+   */
+  @Test
+  public void testGenerateSharedCredential_cantRefresh() throws Exception {
+    OAuth2CredentialRegistry credentialRegistry = new OAuth2CredentialRegistry();
+    OfflineCredentials offlineCredentials =
+        new OfflineCredentials.Builder(oAuth2Helper, credentialRegistry)
+            .forApi(OfflineCredentials.Api.DFP)
+            .withClientSecrets("clientId", "clientSecret")
+            .withRefreshToken("refreshToken")
+            .build();
+
+    when(oAuth2Helper.callRefreshToken(Mockito.<Credential>anyObject()))
+        .thenReturn(false).thenReturn(true);
+
+    try {
+      offlineCredentials.generateSharedCredential();
+      fail("Expected OAuthException");
+    } catch (OAuthException e) {
+      assertEquals(0, credentialRegistry.size());
+    }
+    assertEquals("refreshToken", offlineCredentials.generateSharedCredential().getRefreshToken());
+    assertEquals(1, credentialRegistry.size());
+  }
 }
@@ -0,0 +1,128 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Ticker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link AdaptiveRateLimiter}.
+ */
+@RunWith(JUnit4.class)
+public class AdaptiveRateLimiterTest {
+
+  private static final double DELTA = 1e-9;
+
+  private FakeTicker ticker;
+  private long sleptNanos;
+  private AdaptiveRateLimiter rateLimiter;
+
+  @Before
+  public void setUp() {
+    ticker = new FakeTicker();
+    rateLimiter = new AdaptiveRateLimiter(100, ticker) {
+      @Override
+      void sleep(long nanos) {
+        sleptNanos += nanos;
+      }
+    };
+  }
+
+  @Test
+  public void testRecordRateExceeded_halvesRateOncePerHold() {
+    rateLimiter.recordRateExceeded(0);
+    assertEquals(50, rateLimiter.getRate(), DELTA);
+
+    // Errors from calls already in flight do not reduce the rate again.
+    rateLimiter.recordRateExceeded(0);
+    assertEquals(50, rateLimiter.getRate(), DELTA);
+
+    ticker.advance(1, TimeUnit.SECONDS);
+    rateLimiter.recordRateExceeded(0);
+    assertEquals((50 + 99 / 60.0) / 2, rateLimiter.getRate(), DELTA);
+  }
+
+  @Test
+  public void testRecordRateExceeded_minimumRate() {
+    for (int i = 0; i < 10; i++) {
+      rateLimiter.recordRateExceeded(100);
+      // The rate does not recover while the penalty lasts.
+      ticker.advance(100, TimeUnit.SECONDS);
+    }
+    assertEquals(1, rateLimiter.getRate(), DELTA);
+  }
+
+  @Test
+  public void testAcquire_waitsForPenalty() throws Exception {
+    rateLimiter.recordRateExceeded(30);
+    ticker.advance(10, TimeUnit.SECONDS);
+
+    rateLimiter.acquire();
+
+    assertEquals(TimeUnit.SECONDS.toNanos(20), sleptNanos);
+  }
+
+  @Test
+  public void testAcquire_interruptedDuringPenalty() throws Exception {
+    AdaptiveRateLimiter sleepingRateLimiter = new AdaptiveRateLimiter(100);
+    sleepingRateLimiter.recordRateExceeded(30);
+
+    Thread.currentThread().interrupt();
+    try {
+      sleepingRateLimiter.acquire();
+      fail("Expected InterruptedException");
+    } catch (InterruptedException e) {
+      // Expected.
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  public void testGetRate_recoversAfterPenalty() {
+    rateLimiter.recordRateExceeded(30);
+    ticker.advance(30, TimeUnit.SECONDS);
+    assertEquals(50, rateLimiter.getRate(), DELTA);
+
+    ticker.advance(30, TimeUnit.SECONDS);
+    assertEquals(50 + 99 * 30 / 60.0, rateLimiter.getRate(), DELTA);
+
+    ticker.advance(60, TimeUnit.SECONDS);
+    assertEquals(100, rateLimiter.getRate(), DELTA);
+  }
+
+  private static class FakeTicker extends Ticker {
+
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+}
@@ -14,20 +14,43 @@
 
 package com.google.api.ads.common.lib.client;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
+import com.google.api.ads.common.lib.client.AdsRateLimiter.RateExceeded;
+import com.google.api.ads.common.lib.soap.SoapCall;
 import com.google.api.ads.common.lib.soap.SoapCallReturn;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
+import com.google.api.ads.common.lib.soap.SoapClientPool;
+import com.google.api.ads.common.lib.soap.RequestInfo;
+import com.google.api.ads.common.lib.soap.ResponseInfo;
 import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
+import com.google.api.ads.common.lib.utils.metrics.MetricsSink;
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.lang.reflect.Method;
+import java.net.SocketTimeoutException;
+import java.util.List;
+
 /**
  * Test for the {@link AdsServiceClient} class.
  */
@@ -42,6 +65,7 @@ public class AdsServiceClientTest {
   @Mock private AdsServiceLoggers adsServiceLoggers;
   @Mock private AdsServiceDescriptor adsServiceDescriptor;
   @Mock private HeaderHandler<AdsSession, AdsServiceDescriptor> headerHandler;
+  @Mock private MetricsSink metricsSink;
 
   public AdsServiceClientTest() {}
 
@@ -51,7 +75,8 @@ public class AdsServiceClientTest {
 
     adsServiceClient =
         new AdsServiceClient<AdsSession, AdsServiceDescriptor>(soapClient, adsSession,
-            adsServiceDescriptor, soapClientHandler, headerHandler, adsServiceLoggers) {};
+            adsServiceDescriptor, soapClientHandler, headerHandler, adsServiceLoggers,
+            metricsSink) {};
   }
 
   @Test
@@ -71,4 +96,265 @@ public class AdsServiceClientTest {
     verify(soapClientHandler).clearHeaders(soapClient);
     verify(headerHandler).setHeaders(soapClient, adsSession, adsServiceDescriptor);
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExecuteSoapCall_pooled() throws Throwable {
+    Method method = Object.class.getMethod("toString");
+    SoapCallReturn expectedSoapCallReturn = new SoapCallReturn();
+    when(soapClientHandler.getSoapClientMethod(soapClient, method)).thenReturn(method);
+    when(soapClientHandler.invokeSoapCall(any(SoapCall.class)))
+        .thenReturn(expectedSoapCallReturn);
+
+    adsServiceClient.enableSoapClientPool(2);
+    SoapCallReturn soapCallReturn = adsServiceClient.executeSoapCall(method, null);
+
+    assertSame(expectedSoapCallReturn, soapCallReturn);
+    verify(soapClientHandler).clearHeaders(soapClient);
+    verify(headerHandler).setHeaders(soapClient, adsSession, adsServiceDescriptor);
+    verify(soapClientHandler).invokeSoapCall(new SoapCall<Object>(method, soapClient, null));
+    verify(soapClientHandler, never()).createSoapClient(adsServiceDescriptor);
+    assertEquals(0, adsServiceClient.getSoapClientPool().getCheckedOutCount());
+  }
+
+  /**
+   * Tests that a client created without a metrics sink can make calls.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExecuteSoapCall_withoutMetricsSink() throws Throwable {
+    adsServiceClient =
+        new AdsServiceClient<AdsSession, AdsServiceDescriptor>(soapClient, adsSession,
+            adsServiceDescriptor, soapClientHandler, headerHandler, adsServiceLoggers) {};
+    Method method = Object.class.getMethod("toString");
+    SoapCallReturn expectedSoapCallReturn = new SoapCallReturn();
+    when(soapClientHandler.getSoapClientMethod(soapClient, method)).thenReturn(method);
+    when(soapClientHandler.invokeSoapCall(any(SoapCall.class)))
+        .thenReturn(expectedSoapCallReturn);
+
+    SoapCallReturn soapCallReturn = adsServiceClient.executeSoapCall(method, null);
+
+    assertSame(expectedSoapCallReturn, soapCallReturn);
+    verifyZeroInteractions(metricsSink);
+  }
+
+  @Test
+  public void testEnableSoapClientPool_createsClientWithEndpoint() {
+    Object newSoapClient = new Object();
+    when(soapClientHandler.createSoapClient(adsServiceDescriptor)).thenReturn(newSoapClient);
+    when(soapClientHandler.getEndpointAddress(soapClient)).thenReturn("http://test.com");
+
+    adsServiceClient.enableSoapClientPool(2);
+    adsServiceClient.getSoapClientPool().checkout();
+
+    assertSame(newSoapClient, adsServiceClient.getSoapClientPool().checkout());
+    verify(soapClientHandler).setEndpointAddress(newSoapClient, "http://test.com");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSetEndpointAddress_sharedPool() {
+    adsServiceClient.setSoapClientPool(
+        new SoapClientPool<Object>(soapClient, Mockito.mock(Supplier.class), 2));
+
+    try {
+      adsServiceClient.setEndpointAddress("http://other.com");
+      fail("Expected the endpoint change to be rejected");
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+    verify(soapClientHandler, never()).setEndpointAddress(soapClient, "http://other.com");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExecuteSoapCall_rateLimited() throws Throwable {
+    final Exception rateExceededException = new Exception();
+    final List<String> keys = ImmutableList.of("key1", "key2");
+    final RateExceeded rateExceeded = new RateExceeded(ImmutableList.of("key2"), 30);
+    AdsRateLimiter rateLimiter = Mockito.mock(AdsRateLimiter.class);
+    adsServiceClient =
+        new AdsServiceClient<AdsSession, AdsServiceDescriptor>(soapClient, adsSession,
+            adsServiceDescriptor, soapClientHandler, headerHandler, adsServiceLoggers,
+            metricsSink) {
+          @Override
+          protected List<String> getRateLimitKeys() {
+            return keys;
+          }
+
+          @Override
+          protected Optional<RateExceeded> getRateExceeded(Throwable exception) {
+            return exception == rateExceededException
+                ? Optional.of(rateExceeded) : Optional.<RateExceeded>absent();
+          }
+        };
+    adsServiceClient.setRateLimiter(rateLimiter);
+    Method method = Object.class.getMethod("toString");
+    SoapCallReturn successfulReturn = new SoapCallReturn();
+    SoapCallReturn rateExceededReturn =
+        new SoapCallReturn.Builder().withException(rateExceededException).build();
+    when(soapClientHandler.getSoapClientMethod(soapClient, method)).thenReturn(method);
+    when(soapClientHandler.invokeSoapCall(any(SoapCall.class)))
+        .thenReturn(successfulReturn, rateExceededReturn);
+
+    assertSame(successfulReturn, adsServiceClient.executeSoapCall(method, null));
+    verify(rateLimiter).acquire(keys);
+    verify(rateLimiter, never()).recordRateExceeded(any(RateExceeded.class));
+
+    assertSame(rateExceededReturn, adsServiceClient.executeSoapCall(method, null));
+    verify(rateLimiter, Mockito.times(2)).acquire(keys);
+    verify(rateLimiter).recordRateExceeded(rateExceeded);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExecuteSoapCall_retriesIdempotentCall() throws Throwable {
+    Method method = MockService.class.getMethod("get");
+    SoapCallReturn failedReturn =
+        new SoapCallReturn.Builder().withException(new SocketTimeoutException()).build();
+    SoapCallReturn successfulReturn = new SoapCallReturn();
+    RetryPolicy retryPolicy = Mockito.mock(RetryPolicy.class);
+    when(retryPolicy.getRetryDelayMillis(Mockito.eq(1), Mockito.anyLong())).thenReturn(0L);
+    when(soapClientHandler.getSoapClientMethod(soapClient, method)).thenReturn(method);
+    when(soapClientHandler.isTransientError(failedReturn.getException())).thenReturn(true);
+    when(soapClientHandler.invokeSoapCall(any(SoapCall.class)))
+        .thenReturn(failedReturn, successfulReturn);
+
+    adsServiceClient.setRetryPolicy(retryPolicy);
+
+    assertSame(successfulReturn, adsServiceClient.executeSoapCall(method, null));
+    verify(soapClientHandler, Mockito.times(2)).invokeSoapCall(any(SoapCall.class));
+    verify(adsServiceLoggers).logRequest(failedReturn);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExecuteSoapCall_retriesUntilPolicyStops() throws Throwable {
+    Method method = MockService.class.getMethod("query");
+    SoapCallReturn failedReturn = new SoapCallReturn.Builder()
+        .withException(new MockApiException(new InternalApiError())).build();
+    RetryPolicy retryPolicy = Mockito.mock(RetryPolicy.class);
+    when(retryPolicy.getRetryDelayMillis(Mockito.anyInt(), Mockito.anyLong()))
+        .thenReturn(0L, 0L, -1L);
+    when(soapClientHandler.getSoapClientMethod(soapClient, method)).thenReturn(method);
+    when(soapClientHandler.invokeSoapCall(any(SoapCall.class))).thenReturn(failedReturn);
+
+    adsServiceClient.setRetryPolicy(retryPolicy);
+
+    assertSame(failedReturn, adsServiceClient.executeSoapCall(method, null));
+    verify(soapClientHandler, Mockito.times(3)).invokeSoapCall(any(SoapCall.class));
+    verify(retryPolicy).getRetryDelayMillis(Mockito.eq(3), Mockito.anyLong());
+  }
+
+  @Test
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public void testExecuteSoapCall_attemptLimitedToDeadline() throws Throwable {
+    Method method = MockService.class.getMethod("get");
+    SoapCallReturn failedReturn =
+        new SoapCallReturn.Builder().withException(new SocketTimeoutException()).build();
+    SoapCallReturn successfulReturn = new SoapCallReturn();
+    RetryPolicy retryPolicy = Mockito.mock(RetryPolicy.class);
+    when(retryPolicy.getRetryDelayMillis(Mockito.eq(1), Mockito.anyLong())).thenReturn(0L);
+    when(retryPolicy.getAttemptTimeoutMillis(Mockito.anyLong())).thenReturn(5000L, 1200L);
+    when(soapClientHandler.getSoapClientMethod(soapClient, method)).thenReturn(method);
+    when(soapClientHandler.isTransientError(failedReturn.getException())).thenReturn(true);
+    when(soapClientHandler.invokeSoapCall(any(SoapCall.class)))
+        .thenReturn(failedReturn, successfulReturn);
+
+    adsServiceClient.setRetryPolicy(retryPolicy);
+
+    assertSame(successfulReturn, adsServiceClient.executeSoapCall(method, null));
+    ArgumentCaptor<SoapCall> soapCall = ArgumentCaptor.forClass(SoapCall.class);
+    verify(soapClientHandler, Mockito.times(2)).invokeSoapCall(soapCall.capture());
+    assertEquals(5000, soapCall.getAllValues().get(0).getTimeoutMillis());
+    assertEquals(1200, soapCall.getAllValues().get(1).getTimeoutMillis());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExecuteSoapCall_doesNotRetryMutate() throws Throwable {
+    Method method = MockService.class.getMethod("mutate");
+    SoapCallReturn failedReturn =
+        new SoapCallReturn.Builder().withException(new SocketTimeoutException()).build();
+    RetryPolicy retryPolicy = Mockito.mock(RetryPolicy.class);
+    when(soapClientHandler.getSoapClientMethod(soapClient, method)).thenReturn(method);
+    when(soapClientHandler.isTransientError(failedReturn.getException())).thenReturn(true);
+    when(soapClientHandler.invokeSoapCall(any(SoapCall.class))).thenReturn(failedReturn);
+
+    adsServiceClient.setRetryPolicy(retryPolicy);
+
+    assertSame(failedReturn, adsServiceClient.executeSoapCall(method, null));
+    verify(soapClientHandler).invokeSoapCall(any(SoapCall.class));
+    verify(retryPolicy, never()).getRetryDelayMillis(Mockito.anyInt(), Mockito.anyLong());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testExecuteSoapCall_recordsMetrics() throws Throwable {
+    Method method = MockService.class.getMethod("query");
+    SoapCallReturn failedReturn = new SoapCallReturn.Builder()
+        .withException(new MockApiException(new InternalApiError(), new Object()))
+        .withRequestInfo(new RequestInfo.Builder().withContentLength(100).build())
+        .withResponseInfo(new ResponseInfo.Builder().withContentLength(200).build())
+        .build();
+    SoapCallReturn successfulReturn = new SoapCallReturn();
+    RetryPolicy retryPolicy = Mockito.mock(RetryPolicy.class);
+    when(retryPolicy.getRetryDelayMillis(Mockito.eq(1), Mockito.anyLong())).thenReturn(0L);
+    Mockito.doReturn(MockService.class).when(adsServiceDescriptor).getInterfaceClass();
+    when(soapClientHandler.getSoapClientMethod(soapClient, method)).thenReturn(method);
+    when(soapClientHandler.invokeSoapCall(any(SoapCall.class)))
+        .thenReturn(failedReturn, successfulReturn);
+
+    adsServiceClient.setRetryPolicy(retryPolicy);
+    adsServiceClient.executeSoapCall(method, null);
+
+    verify(metricsSink).recordCall(Mockito.eq("MockService"), Mockito.eq("query"),
+        (String) Mockito.isNull(), Mockito.anyLong(), Mockito.eq(100L), Mockito.eq(200L),
+        Mockito.eq(true));
+    verify(metricsSink).recordApiError("MockService", "query", null, "InternalApiError");
+    verify(metricsSink).recordApiError("MockService", "query", null, "Object");
+    verify(metricsSink).recordRetry("MockService", "query", null);
+    verify(metricsSink).recordCall(Mockito.eq("MockService"), Mockito.eq("query"),
+        (String) Mockito.isNull(), Mockito.anyLong(), Mockito.eq(-1L), Mockito.eq(-1L),
+        Mockito.eq(false));
+  }
+
+  @Test
+  public void testIsRetryable() {
+    assertTrue(adsServiceClient.isRetryable(new MockApiException(new InternalApiError())));
+    assertFalse(adsServiceClient.isRetryable(new MockApiException(new Object())));
+    assertFalse(adsServiceClient.isRetryable(new RuntimeException()));
+  }
+
+  /**
+   * A service with idempotent and non-idempotent methods.
+   */
+  public interface MockService {
+    Object get();
+
+    Object query();
+
+    Object mutate();
+  }
+
+  /**
+   * Has the shape of a generated Axis {@code ApiException}.
+   */
+  public static class MockApiException extends Exception {
+
+    private final Object[] errors;
+
+    MockApiException(Object... errors) {
+      this.errors = errors;
+    }
+
+    public Object[] getErrors() {
+      return errors;
+    }
+  }
+
+  /**
+   * Has the name of a generated {@code InternalApiError}.
+   */
+  public static class InternalApiError {}
 }
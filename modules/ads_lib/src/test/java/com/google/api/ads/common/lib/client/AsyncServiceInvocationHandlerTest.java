@@ -0,0 +1,142 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Tests for {@link AsyncServiceInvocationHandler}.
+ */
+@RunWith(JUnit4.class)
+public class AsyncServiceInvocationHandlerTest {
+
+  /** A blocking service. */
+  public interface MockServiceInterface {
+    String get(String selector) throws RemoteException;
+
+    void mutate(String[] operations) throws RemoteException;
+  }
+
+  /** The async twin of {@link MockServiceInterface}. */
+  public interface AsyncMockService {
+    ListenableFuture<String> get(String selector);
+
+    ListenableFuture<Void> mutate(String[] operations);
+  }
+
+  /** An async interface with a method missing from the service. */
+  public interface AsyncMissingMethodService {
+    ListenableFuture<String> get(Integer selector);
+  }
+
+  /** An async interface with a method that does not return a future. */
+  public interface AsyncBlockingService {
+    String get(String selector);
+  }
+
+  private static final RemoteException API_EXCEPTION = new RemoteException("ApiException");
+
+  private static final MockServiceInterface SERVICE = new MockServiceInterface() {
+    @Override
+    public String get(String selector) throws RemoteException {
+      if (selector == null) {
+        throw API_EXCEPTION;
+      }
+      return "page for " + selector;
+    }
+
+    @Override
+    public void mutate(String[] operations) {}
+  };
+
+  @Test
+  public void testCall_runsOnExecutor() throws Exception {
+    final List<Runnable> tasks = Lists.newArrayList();
+    Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        tasks.add(task);
+      }
+    };
+    AsyncMockService asyncService = AsyncServiceInvocationHandler.create(
+        SERVICE, MockServiceInterface.class, AsyncMockService.class, executor);
+
+    ListenableFuture<String> page = asyncService.get("selector");
+    ListenableFuture<Void> mutate = asyncService.mutate(new String[] {"operation"});
+
+    assertEquals(2, tasks.size());
+    assertFalse(page.isDone());
+    tasks.get(0).run();
+    tasks.get(1).run();
+    assertEquals("page for selector", page.get());
+    assertTrue(mutate.isDone());
+  }
+
+  @Test
+  public void testCall_fails() throws Exception {
+    AsyncMockService asyncService = AsyncServiceInvocationHandler.create(SERVICE,
+        MockServiceInterface.class, AsyncMockService.class, MoreExecutors.directExecutor());
+
+    try {
+      asyncService.get(null).get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertSame(API_EXCEPTION, e.getCause());
+    }
+  }
+
+  @Test
+  public void testObjectMethods() {
+    AsyncMockService asyncService = AsyncServiceInvocationHandler.create(SERVICE,
+        MockServiceInterface.class, AsyncMockService.class, MoreExecutors.directExecutor());
+    AsyncMockService otherAsyncService = AsyncServiceInvocationHandler.create(SERVICE,
+        MockServiceInterface.class, AsyncMockService.class, MoreExecutors.directExecutor());
+
+    assertTrue(asyncService.equals(asyncService));
+    assertFalse(asyncService.equals(otherAsyncService));
+    assertFalse(asyncService.equals(null));
+    assertEquals(asyncService.hashCode(), asyncService.hashCode());
+    assertEquals("Async " + SERVICE, asyncService.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreate_missingMethod() {
+    AsyncServiceInvocationHandler.create(SERVICE, MockServiceInterface.class,
+        AsyncMissingMethodService.class, MoreExecutors.directExecutor());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreate_notFuture() {
+    AsyncServiceInvocationHandler.create(SERVICE, MockServiceInterface.class,
+        AsyncBlockingService.class, MoreExecutors.directExecutor());
+  }
+}
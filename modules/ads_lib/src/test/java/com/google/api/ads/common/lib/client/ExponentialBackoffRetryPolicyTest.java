@@ -0,0 +1,104 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.client;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Random;
+
+/**
+ * Tests for {@link ExponentialBackoffRetryPolicy}.
+ */
+@RunWith(JUnit4.class)
+public class ExponentialBackoffRetryPolicyTest {
+
+  /**
+   * Always draws the largest delay allowed.
+   */
+  private static class MaxRandom extends Random {
+    @Override
+    public double nextDouble() {
+      return 1.0;
+    }
+  }
+
+  @Test
+  public void testGetRetryDelayMillis_doublesUpToMax() {
+    RetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy(10, 100, 500, 0, new MaxRandom());
+
+    assertEquals(100, retryPolicy.getRetryDelayMillis(1, 0));
+    assertEquals(200, retryPolicy.getRetryDelayMillis(2, 0));
+    assertEquals(400, retryPolicy.getRetryDelayMillis(3, 0));
+    assertEquals(500, retryPolicy.getRetryDelayMillis(4, 0));
+    assertEquals(500, retryPolicy.getRetryDelayMillis(9, 0));
+  }
+
+  @Test
+  public void testGetRetryDelayMillis_jitter() {
+    Random random = new Random() {
+      @Override
+      public double nextDouble() {
+        return 0.25;
+      }
+    };
+    RetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy(10, 100, 500, 0, random);
+
+    assertEquals(50, retryPolicy.getRetryDelayMillis(2, 0));
+  }
+
+  @Test
+  public void testGetRetryDelayMillis_maxAttempts() {
+    RetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy(3, 100, 500, 0, new MaxRandom());
+
+    assertEquals(200, retryPolicy.getRetryDelayMillis(2, 0));
+    assertEquals(-1, retryPolicy.getRetryDelayMillis(3, 0));
+  }
+
+  @Test
+  public void testGetRetryDelayMillis_deadline() {
+    RetryPolicy retryPolicy =
+        new ExponentialBackoffRetryPolicy(10, 100, 500, 1000, new MaxRandom());
+
+    assertEquals(100, retryPolicy.getRetryDelayMillis(1, 899));
+    assertEquals(-1, retryPolicy.getRetryDelayMillis(1, 900));
+  }
+
+  @Test
+  public void testGetAttemptTimeoutMillis_deadline() {
+    RetryPolicy retryPolicy =
+        new ExponentialBackoffRetryPolicy(10, 100, 500, 1000, new MaxRandom());
+
+    assertEquals(1000, retryPolicy.getAttemptTimeoutMillis(0));
+    assertEquals(250, retryPolicy.getAttemptTimeoutMillis(750));
+    assertEquals(1, retryPolicy.getAttemptTimeoutMillis(1200));
+  }
+
+  @Test
+  public void testGetAttemptTimeoutMillis_noDeadline() {
+    RetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy(10, 100, 500, 0, new MaxRandom());
+
+    assertEquals(0, retryPolicy.getAttemptTimeoutMillis(750));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_maxDelayLessThanInitialDelay() {
+    new ExponentialBackoffRetryPolicy(3, 500, 100, 0);
+  }
+}
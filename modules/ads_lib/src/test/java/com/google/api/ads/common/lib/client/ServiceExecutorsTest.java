@@ -0,0 +1,69 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Tests for {@link ServiceExecutors}.
+ */
+@RunWith(JUnit4.class)
+public class ServiceExecutorsTest {
+
+  private static final Callable<Thread> CURRENT_THREAD = new Callable<Thread>() {
+    @Override
+    public Thread call() {
+      return Thread.currentThread();
+    }
+  };
+
+  @Test
+  public void testNewServiceCallExecutor() throws Exception {
+    ExecutorService executor = ServiceExecutors.newServiceCallExecutor(2);
+    try {
+      Thread thread = executor.submit(CURRENT_THREAD).get();
+      assertTrue(thread.isDaemon());
+      assertEquals(ServiceExecutors.isVirtualThreadSupported(),
+          !thread.getName().startsWith("ads-service-call-"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testNewPlatformThreadExecutor() throws Exception {
+    ExecutorService executor = ServiceExecutors.newPlatformThreadExecutor(2);
+    try {
+      Thread thread = executor.submit(CURRENT_THREAD).get();
+      assertTrue(thread.isDaemon());
+      assertTrue(thread.getName().startsWith("ads-service-call-"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNewServiceCallExecutor_noPlatformThreads() {
+    ServiceExecutors.newServiceCallExecutor(0);
+  }
+}
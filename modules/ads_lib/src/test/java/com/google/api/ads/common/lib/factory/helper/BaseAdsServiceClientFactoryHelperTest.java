@@ -14,21 +14,32 @@
 
 package com.google.api.ads.common.lib.factory.helper;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.api.ads.common.lib.client.AdsRateLimiter;
 import com.google.api.ads.common.lib.client.AdsServiceClient;
 import com.google.api.ads.common.lib.client.AdsServiceDescriptor;
 import com.google.api.ads.common.lib.client.AdsSession;
+import com.google.api.ads.common.lib.exception.ServiceException;
 import com.google.api.ads.common.lib.factory.FactoryModule.AdsServiceClientFactoryInterface;
 import com.google.api.ads.common.lib.factory.FactoryModule.AdsServiceDescriptorFactoryInterface;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
+import com.google.api.ads.common.lib.soap.SoapClientPool;
 import com.google.api.ads.common.lib.soap.testing.MockSoapClientInterface;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -90,6 +101,160 @@ public class BaseAdsServiceClientFactoryHelperTest {
     assertSame(adsServiceClient, testAdsServiceClient);
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testCreateAdsServiceClient_cached() throws Exception {
+    BaseAdsServiceClientFactoryHelper<AdsServiceClient<AdsSession, AdsServiceDescriptor>,
+        AdsSession, AdsServiceDescriptor> cachingHelper = new BaseAdsServiceClientFactoryHelper<
+        AdsServiceClient<AdsSession, AdsServiceDescriptor>, AdsSession, AdsServiceDescriptor>(
+        adsServiceClientFactory, adsServiceDescriptorFactory, soapClientHandler) {
+      @Override
+      @SuppressWarnings("rawtypes")
+      public String determineVersion(Class interfaceClass) {
+        return VERSION;
+      }
+
+      @Override
+      protected int getSoapClientCacheSize() {
+        return 10;
+      }
+
+      @Override
+      protected int getSoapClientPoolSize() {
+        return 4;
+      }
+    };
+    AdsSession otherAdsSession = mock(AdsSession.class);
+    when(adsSession.getEndpoint()).thenReturn("testServer");
+    when(otherAdsSession.getEndpoint()).thenReturn("testServer");
+    when(adsServiceDescriptor.getEndpointAddress("testServer")).thenReturn("testAddress");
+    when(adsServiceDescriptor.getVersion()).thenReturn(VERSION);
+    when(adsServiceDescriptor.getInterfaceClass())
+        .thenReturn((Class) MockSoapClientInterface.class);
+    when(soapClientHandler.createSoapClient(adsServiceDescriptor)).thenReturn(soapClient);
+    when(adsServiceClientFactory.create(soapClient, adsServiceDescriptor, adsSession))
+        .thenReturn(adsServiceClient);
+    when(adsServiceClientFactory.create(soapClient, adsServiceDescriptor, otherAdsSession))
+        .thenReturn(adsServiceClient);
+
+    cachingHelper.createAdsServiceClient(adsServiceDescriptor, adsSession);
+    cachingHelper.createAdsServiceClient(adsServiceDescriptor, otherAdsSession);
+
+    // Only the pool's initial SOAP client is created; the cache hit creates none.
+    verify(soapClientHandler, times(1)).createSoapClient(adsServiceDescriptor);
+    verify(soapClientHandler).setEndpointAddress(soapClient, "testAddress");
+    ArgumentCaptor<SoapClientPool> poolCaptor = ArgumentCaptor.forClass(SoapClientPool.class);
+    verify(adsServiceClient, times(2)).setSoapClientPool(poolCaptor.capture());
+    assertSame(poolCaptor.getAllValues().get(0), poolCaptor.getAllValues().get(1));
+    assertSame(soapClient, poolCaptor.getValue().getInitialSoapClient());
+    assertEquals(4, poolCaptor.getValue().getMaxSize());
+    verify(adsServiceClient, times(0)).setEndpointAddress(any(String.class));
+    assertEquals(1, cachingHelper.getSoapClientCache().getHitCount());
+    assertEquals(1, cachingHelper.getSoapClientCache().getMissCount());
+  }
+
+  @Test(expected = ServiceException.class)
+  public void testCreateAdsServiceClient_cachedWithoutPoolSize() {
+    BaseAdsServiceClientFactoryHelper<AdsServiceClient<AdsSession, AdsServiceDescriptor>,
+        AdsSession, AdsServiceDescriptor> cachingHelper = new BaseAdsServiceClientFactoryHelper<
+        AdsServiceClient<AdsSession, AdsServiceDescriptor>, AdsSession, AdsServiceDescriptor>(
+        adsServiceClientFactory, adsServiceDescriptorFactory, soapClientHandler) {
+      @Override
+      @SuppressWarnings("rawtypes")
+      public String determineVersion(Class interfaceClass) {
+        return VERSION;
+      }
+
+      @Override
+      protected int getSoapClientCacheSize() {
+        return 10;
+      }
+    };
+    when(adsSession.getEndpoint()).thenReturn("testServer");
+    when(adsServiceDescriptor.getEndpointAddress("testServer")).thenReturn("testAddress");
+
+    cachingHelper.createAdsServiceClient(adsServiceDescriptor, adsSession);
+  }
+
+  @Test
+  public void testCreateAdsServiceClient_rateLimited() {
+    BaseAdsServiceClientFactoryHelper<AdsServiceClient<AdsSession, AdsServiceDescriptor>,
+        AdsSession, AdsServiceDescriptor> rateLimitingHelper =
+        new BaseAdsServiceClientFactoryHelper<AdsServiceClient<AdsSession, AdsServiceDescriptor>,
+            AdsSession, AdsServiceDescriptor>(
+        adsServiceClientFactory, adsServiceDescriptorFactory, soapClientHandler) {
+      @Override
+      @SuppressWarnings("rawtypes")
+      public String determineVersion(Class interfaceClass) {
+        return VERSION;
+      }
+
+      @Override
+      protected double getRateLimitQps() {
+        return 5;
+      }
+    };
+    when(soapClientHandler.createSoapClient(adsServiceDescriptor)).thenReturn(soapClient);
+    when(adsServiceClientFactory.create(soapClient, adsServiceDescriptor, adsSession))
+        .thenReturn(adsServiceClient);
+
+    rateLimitingHelper.createAdsServiceClient(adsServiceDescriptor, adsSession);
+    rateLimitingHelper.createAdsServiceClient(adsServiceDescriptor, adsSession);
+
+    verify(adsServiceClient, times(2)).setRateLimiter(rateLimitingHelper.getRateLimiter());
+    assertEquals(5, rateLimitingHelper.getRateLimiter().getRateLimiter("key").getMaxRate(), 0);
+  }
+
+  @Test
+  public void testCreateAdsServiceClient_rateLimitedByScope() {
+    BaseAdsServiceClientFactoryHelper<AdsServiceClient<AdsSession, AdsServiceDescriptor>,
+        AdsSession, AdsServiceDescriptor> rateLimitingHelper =
+        new BaseAdsServiceClientFactoryHelper<AdsServiceClient<AdsSession, AdsServiceDescriptor>,
+            AdsSession, AdsServiceDescriptor>(
+        adsServiceClientFactory, adsServiceDescriptorFactory, soapClientHandler) {
+      @Override
+      @SuppressWarnings("rawtypes")
+      public String determineVersion(Class interfaceClass) {
+        return VERSION;
+      }
+
+      @Override
+      protected double getRateLimitQps(String scope) {
+        if (AdsRateLimiter.DEVELOPER_TOKEN_SCOPE.equals(scope)) {
+          return 50;
+        } else if (AdsRateLimiter.CLIENT_CUSTOMER_ID_SCOPE.equals(scope)) {
+          return 2;
+        }
+        return 0;
+      }
+    };
+    when(soapClientHandler.createSoapClient(adsServiceDescriptor)).thenReturn(soapClient);
+    when(adsServiceClientFactory.create(soapClient, adsServiceDescriptor, adsSession))
+        .thenReturn(adsServiceClient);
+
+    rateLimitingHelper.createAdsServiceClient(adsServiceDescriptor, adsSession);
+
+    AdsRateLimiter rateLimiter = rateLimitingHelper.getRateLimiter();
+    verify(adsServiceClient).setRateLimiter(rateLimiter);
+    assertEquals(50, rateLimiter.getRateLimiter(AdsRateLimiter.createKey(
+        AdsRateLimiter.DEVELOPER_TOKEN_SCOPE, "devToken")).getMaxRate(), 0);
+    assertEquals(2, rateLimiter.getRateLimiter(AdsRateLimiter.createKey(
+        AdsRateLimiter.CLIENT_CUSTOMER_ID_SCOPE, "1234567890")).getMaxRate(), 0);
+    assertNull(rateLimiter.getRateLimiter(AdsRateLimiter.createKey(
+        AdsRateLimiter.SERVICE_SCOPE, "java.lang.Runnable")));
+  }
+
+  @Test
+  public void testCreateAdsServiceClient_notRateLimited() {
+    when(soapClientHandler.createSoapClient(adsServiceDescriptor)).thenReturn(soapClient);
+    when(adsServiceClientFactory.create(soapClient, adsServiceDescriptor, adsSession))
+        .thenReturn(adsServiceClient);
+
+    abstractAdsServiceClientFactoryHelper.createAdsServiceClient(adsServiceDescriptor, adsSession);
+
+    verify(adsServiceClient, never()).setRateLimiter(any(AdsRateLimiter.class));
+  }
+
   @Test
   public void testCreateServiceClient() {
     when(adsServiceClientFactory.create(
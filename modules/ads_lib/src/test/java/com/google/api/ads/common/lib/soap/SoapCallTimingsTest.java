@@ -0,0 +1,160 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.common.lib.soap.SoapCallTimings.Mark;
+import com.google.common.base.Ticker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link SoapCallTimings}.
+ */
+@RunWith(JUnit4.class)
+public class SoapCallTimingsTest {
+
+  private FakeTicker ticker;
+
+  @Before
+  public void setUp() {
+    ticker = new FakeTicker();
+  }
+
+  @After
+  public void tearDown() {
+    while (SoapCallTimings.getCurrent() != null) {
+      SoapCallTimings.getCurrent().end();
+    }
+  }
+
+  @Test
+  public void testPhases() {
+    SoapCallTimings timings = SoapCallTimings.begin(ticker);
+    ticker.advanceMillis(5);
+    SoapCallTimings.mark(Mark.AUTHORIZED);
+    ticker.advanceMillis(1);
+    SoapCallTimings.mark(Mark.HEADERS_SET);
+    ticker.advanceMillis(100);
+    SoapCallTimings.mark(Mark.RESPONSE_DESERIALIZED);
+
+    assertTrue(timings.isReached(Mark.AUTHORIZED));
+    assertFalse(timings.isReached(Mark.REQUEST_SERIALIZED));
+    assertEquals(-1, timings.getPhaseNanos(Mark.REQUEST_SERIALIZED));
+    assertEquals(0, timings.getPhaseNanos(Mark.CALL_STARTED));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(5), timings.getPhaseNanos(Mark.AUTHORIZED));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), timings.getPhaseNanos(Mark.HEADERS_SET));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(100),
+        timings.getPhaseNanos(Mark.RESPONSE_DESERIALIZED));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(6), timings.getElapsedNanos(Mark.HEADERS_SET));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(106), timings.getTotalNanos());
+    assertEquals("total=106.000ms [AUTHORIZED=5.000ms, HEADERS_SET=1.000ms, "
+        + "RESPONSE_DESERIALIZED=100.000ms]", timings.toString());
+  }
+
+  @Test
+  public void testPhases_outOfDeclarationOrder() {
+    SoapCallTimings timings = SoapCallTimings.begin(ticker);
+    ticker.advanceMillis(10);
+    SoapCallTimings.mark(Mark.SOAP_CLIENT_ACQUIRED);
+    ticker.advanceMillis(3);
+    SoapCallTimings.mark(Mark.HEADERS_SET);
+
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10),
+        timings.getPhaseNanos(Mark.SOAP_CLIENT_ACQUIRED));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(3), timings.getPhaseNanos(Mark.HEADERS_SET));
+  }
+
+  @Test
+  public void testMark_noCurrentTimings() {
+    assertNull(SoapCallTimings.getCurrent());
+
+    SoapCallTimings.mark(Mark.HEADERS_SET);
+
+    assertNull(SoapCallTimings.getCurrent());
+  }
+
+  @Test
+  public void testSnapshot_unchangedByLaterMarks() {
+    SoapCallTimings timings = SoapCallTimings.begin(ticker);
+    ticker.advanceMillis(20);
+    SoapCallTimings.mark(Mark.RESPONSE_DESERIALIZED);
+
+    SoapCallTimings snapshot = SoapCallTimings.snapshotCurrent();
+    ticker.advanceMillis(30);
+    SoapCallTimings.mark(Mark.RATE_LIMIT_ACQUIRED);
+    ticker.advanceMillis(50);
+    SoapCallTimings.mark(Mark.RESPONSE_DESERIALIZED);
+
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(100), timings.getTotalNanos());
+    assertTrue(timings.isReached(Mark.RATE_LIMIT_ACQUIRED));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(20), snapshot.getTotalNanos());
+    assertFalse(snapshot.isReached(Mark.RATE_LIMIT_ACQUIRED));
+    assertSame(snapshot, snapshot.snapshot());
+    try {
+      snapshot.record(Mark.HEADERS_SET);
+      fail("Expected a snapshot to reject marks");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testSnapshotCurrent_noCurrentTimings() {
+    assertNull(SoapCallTimings.snapshotCurrent());
+  }
+
+  @Test
+  public void testEnd_restoresEnclosingTimings() {
+    SoapCallTimings outer = SoapCallTimings.begin(ticker);
+    SoapCallTimings inner = SoapCallTimings.begin(ticker);
+    assertSame(inner, SoapCallTimings.getCurrent());
+
+    inner.end();
+    assertSame(outer, SoapCallTimings.getCurrent());
+
+    outer.end();
+    assertNull(SoapCallTimings.getCurrent());
+  }
+
+  /**
+   * A ticker advanced manually.
+   */
+  private static class FakeTicker extends Ticker {
+
+    private long nanos = 1000;
+
+    void advanceMillis(long millis) {
+      nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.base.Supplier;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link SoapClientCache}.
+ */
+@RunWith(JUnit4.class)
+public class SoapClientCacheTest {
+
+  private Supplier<Object> soapClientSupplier;
+
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void setUp() {
+    soapClientSupplier = new Supplier<Object>() {
+      @Override
+      public Object get() {
+        return new Object();
+      }
+    };
+  }
+
+  @Test
+  public void testGetPool_sharedForEqualKeys() {
+    SoapClientCache<String, Object> cache = new SoapClientCache<String, Object>(2, 5);
+
+    SoapClientPool<Object> pool = cache.getPool("CampaignService", soapClientSupplier);
+
+    assertSame(pool, cache.getPool("CampaignService", soapClientSupplier));
+    assertEquals(5, pool.getMaxSize());
+    assertEquals(1, pool.getCreatedCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void testGetPool_evictsLeastRecentlyUsed() {
+    SoapClientCache<String, Object> cache = new SoapClientCache<String, Object>(2, 5);
+
+    SoapClientPool<Object> campaignPool = cache.getPool("CampaignService", soapClientSupplier);
+    SoapClientPool<Object> adGroupPool = cache.getPool("AdGroupService", soapClientSupplier);
+    cache.getPool("CampaignService", soapClientSupplier);
+    cache.getPool("BudgetService", soapClientSupplier);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertSame(campaignPool, cache.getPool("CampaignService", soapClientSupplier));
+    assertNotSame(adGroupPool, cache.getPool("AdGroupService", soapClientSupplier));
+  }
+
+  @Test
+  public void testConstructor_invalidMaxSize() {
+    thrown.expect(IllegalArgumentException.class);
+    new SoapClientCache<String, Object>(0, 5);
+  }
+}
@@ -15,12 +15,16 @@
 package com.google.api.ads.common.lib.soap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import com.google.api.ads.common.lib.exception.ServiceException;
 import com.google.api.ads.common.lib.soap.testing.MockSoapClient;
+import com.google.api.ads.common.lib.soap.testing.MockSoapClientInterface;
 
 import org.hamcrest.Matchers;
 import org.junit.Before;
@@ -34,6 +38,9 @@ import org.mockito.MockitoAnnotations;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.rmi.RemoteException;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
@@ -61,6 +68,14 @@ public class SoapClientHandlerTest {
     soapClientHandler = new SoapClientHandlerImpl();
   }
 
+  @Test
+  public void testGetSoapClientLock() {
+    assertSame(SoapClientHandler.getSoapClientLock(soapClient),
+        SoapClientHandler.getSoapClientLock(soapClient));
+    assertNotSame(SoapClientHandler.getSoapClientLock(soapClient),
+        SoapClientHandler.getSoapClientLock(new MockSoapClient()));
+  }
+
   @Test
   public void testProcessArgs() throws Exception {
     Object[] args =
@@ -99,6 +114,14 @@ public class SoapClientHandlerTest {
     assertEquals(0, processedArgs.length);
   }
 
+  @Test
+  public void testProcessArgs_exactCountNotCopied() throws Exception {
+    Object[] args = new Object[] {new Object[] {"1"}};
+    Object[] processedArgs = soapClientHandler.processSoapArguments(
+        MockSoapClient.class.getMethod("identityCall", Object[].class), args);
+    assertSame(args, processedArgs);
+  }
+
   @Test
   public void testProcessArgs_null() throws Exception {
     Object[] args = null;
@@ -127,6 +150,16 @@ public class SoapClientHandlerTest {
     assertEquals(MockSoapClient.class.getMethod("identityCall", Object[].class), method);
   }
 
+  @Test
+  public void testGetSoapClientMethod_overloaded() throws Exception {
+    Method method = soapClientHandler.getSoapClientMethod(soapClient,
+        MockSoapClientInterface.class.getMethod("testOverloaded", int.class));
+
+    assertEquals(MockSoapClient.class.getMethod("testOverloaded", int.class), method);
+    assertSame(method, soapClientHandler.getSoapClientMethod(soapClient,
+        MockSoapClientInterface.class.getMethod("testOverloaded", int.class)));
+  }
+
   @Test
   public void testGetSoapClientMethod_noMethod() throws Exception {
     thrown.expect(NoSuchMethodException.class);
@@ -284,6 +317,15 @@ public class SoapClientHandlerTest {
     }
   }
 
+  @Test
+  public void testIsTransientError() {
+    assertTrue(soapClientHandler.isTransientError(new SocketTimeoutException()));
+    assertTrue(soapClientHandler.isTransientError(
+        new RemoteException("Wrapped", new SocketTimeoutException())));
+    assertFalse(soapClientHandler.isTransientError(new SocketException()));
+    assertFalse(soapClientHandler.isTransientError(new RemoteException("Fault")));
+  }
+
   /**
    * Bare-bones implementation of {@link SoapClientHandler} for testing.
    *
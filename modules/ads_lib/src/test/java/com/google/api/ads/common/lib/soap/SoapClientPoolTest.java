@@ -0,0 +1,128 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Supplier;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link SoapClientPool}.
+ */
+@RunWith(JUnit4.class)
+public class SoapClientPoolTest {
+
+  private Object initialSoapClient;
+  private Supplier<Object> soapClientSupplier;
+
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void setUp() {
+    initialSoapClient = new Object();
+    soapClientSupplier = new Supplier<Object>() {
+      @Override
+      public Object get() {
+        return new Object();
+      }
+    };
+  }
+
+  @Test
+  public void testCheckout_reusesInitialClient() {
+    SoapClientPool<Object> pool = new SoapClientPool<Object>(initialSoapClient,
+        soapClientSupplier, 2);
+
+    Object soapClient = pool.checkout();
+    assertSame(initialSoapClient, soapClient);
+    pool.release(soapClient);
+
+    assertSame(initialSoapClient, pool.checkout());
+    assertEquals(1, pool.getCreatedCount());
+  }
+
+  @Test
+  public void testCheckout_createsClientWhenAllCheckedOut() {
+    SoapClientPool<Object> pool = new SoapClientPool<Object>(initialSoapClient,
+        soapClientSupplier, 2);
+
+    Object first = pool.checkout();
+    Object second = pool.checkout();
+
+    assertNotSame(first, second);
+    assertEquals(2, pool.getCreatedCount());
+    assertEquals(2, pool.getCheckedOutCount());
+  }
+
+  @Test
+  public void testCheckout_blocksAtMaxSize() throws Exception {
+    final SoapClientPool<Object> pool = new SoapClientPool<Object>(initialSoapClient,
+        soapClientSupplier, 1);
+    Object soapClient = pool.checkout();
+
+    final CountDownLatch checkedOut = new CountDownLatch(1);
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        pool.release(pool.checkout());
+        checkedOut.countDown();
+      }
+    });
+    waiter.start();
+
+    assertFalse(checkedOut.await(100, TimeUnit.MILLISECONDS));
+    pool.release(soapClient);
+    assertTrue(checkedOut.await(5, TimeUnit.SECONDS));
+    assertEquals(1, pool.getCreatedCount());
+    assertEquals(0, pool.getCheckedOutCount());
+  }
+
+  @Test
+  public void testCheckout_supplierFailureReleasesPermit() {
+    SoapClientPool<Object> pool = new SoapClientPool<Object>(null, new Supplier<Object>() {
+      @Override
+      public Object get() {
+        throw new IllegalStateException();
+      }
+    }, 1);
+
+    try {
+      pool.checkout();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    assertEquals(0, pool.getCheckedOutCount());
+  }
+
+  @Test
+  public void testConstructor_invalidMaxSize() {
+    thrown.expect(IllegalArgumentException.class);
+    new SoapClientPool<Object>(initialSoapClient, soapClientSupplier, 0);
+  }
+}
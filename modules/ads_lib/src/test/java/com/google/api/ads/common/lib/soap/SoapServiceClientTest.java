@@ -15,7 +15,11 @@
 package com.google.api.ads.common.lib.soap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,8 +36,11 @@ import org.junit.runners.JUnit4;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Tests for {@link SoapServiceClient}.
@@ -70,6 +77,26 @@ public class SoapServiceClientTest {
     assertSame(expectedSoapCallReturn, soapCallReturn);
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCallSoapClient_holdsCallLock() {
+    SoapCall<Object> soapCall = Mockito.mock(SoapCall.class);
+    final ReentrantLock callLock = (ReentrantLock) soapServiceClient.getCallLock();
+
+    when(soapClientHandler.invokeSoapCall(soapCall)).thenAnswer(new Answer<SoapCallReturn>() {
+      @Override
+      public SoapCallReturn answer(InvocationOnMock invocation) {
+        assertTrue(callLock.isHeldByCurrentThread());
+        return new SoapCallReturn();
+      }
+    });
+
+    soapServiceClient.callSoapClient(soapCall);
+
+    verify(soapClientHandler).invokeSoapCall(soapCall);
+    assertFalse(callLock.isLocked());
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void testCallSoapClient_exception() {
@@ -123,6 +150,30 @@ public class SoapServiceClientTest {
     assertEquals(returnValue, result);
   }
 
+  @Test
+  public void testInvoke_timesCall() throws Throwable {
+    Method identityCallMethod = MockSoapClient.class.getMethod("identityCall", Object[].class);
+    Object[] args = new Object[] {new String[] {"arg1"}};
+    final SoapCallTimings[] currentTimings = new SoapCallTimings[1];
+    when(soapClientHandler.getSoapClientMethod(soapClient, identityCallMethod))
+        .thenReturn(identityCallMethod);
+    when(soapClientHandler.invokeSoapCall(new SoapCall<Object>(identityCallMethod, soapClient,
+        args))).thenAnswer(new Answer<SoapCallReturn>() {
+          @Override
+          public SoapCallReturn answer(InvocationOnMock invocation) {
+            currentTimings[0] = SoapCallTimings.getCurrent();
+            return new SoapCallReturn();
+          }
+        });
+
+    soapServiceClient.invoke(null, identityCallMethod, args);
+
+    assertNotNull(currentTimings[0]);
+    assertTrue(currentTimings[0].isReached(SoapCallTimings.Mark.CALL_STARTED));
+    assertTrue(currentTimings[0].isReached(SoapCallTimings.Mark.HEADERS_SET));
+    assertNull(SoapCallTimings.getCurrent());
+  }
+
   @Test
   public void testInvoke_soapClientMethodAuthenticationException() throws Throwable {
     Method indentityCallMethod = MockSoapClient.class.getMethod("identityCall", Object[].class);
@@ -0,0 +1,88 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.base.Supplier;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link SoapXmlSuppliers}.
+ */
+@RunWith(JUnit4.class)
+public class SoapXmlSuppliersTest {
+
+  private static final String SOAP_XML = "<Envelope><Body/></Envelope>";
+
+  @Test
+  public void testLazy_notSerializedUntilRequested() {
+    CountingSupplier serializer = new CountingSupplier(SOAP_XML);
+    RequestInfo requestInfo = new RequestInfo.Builder()
+        .withSoapRequestXml(SoapXmlSuppliers.lazy(serializer, 0))
+        .build();
+
+    assertEquals(0, serializer.count);
+    assertEquals(SOAP_XML, requestInfo.getSoapRequestXml());
+    assertEquals(SOAP_XML, requestInfo.getSoapRequestXml());
+    assertEquals(1, serializer.count);
+  }
+
+  @Test
+  public void testLazy_truncated() {
+    Supplier<String> supplier = SoapXmlSuppliers.lazy(new CountingSupplier(SOAP_XML), 10);
+
+    assertEquals("<Envelope>...[18 characters truncated]", supplier.get());
+  }
+
+  @Test
+  public void testLazy_underMaxLength() {
+    Supplier<String> supplier = SoapXmlSuppliers.lazy(new CountingSupplier(SOAP_XML), 100);
+
+    assertEquals(SOAP_XML, supplier.get());
+  }
+
+  @Test
+  public void testLazy_null() {
+    ResponseInfo responseInfo = new ResponseInfo.Builder()
+        .withSoapResponseXml(SoapXmlSuppliers.lazy(new CountingSupplier(null), 10))
+        .build();
+
+    assertNull(responseInfo.getSoapResponseXml());
+  }
+
+  /**
+   * Supplier that counts how many times it was called.
+   */
+  private static class CountingSupplier implements Supplier<String> {
+
+    private final String value;
+    private int count;
+
+    CountingSupplier(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String get() {
+      count++;
+      return value;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.streaming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Tests for {@link SoapPageSplitter}.
+ */
+@RunWith(JUnit4.class)
+public class SoapPageSplitterTest {
+
+  private static final String ENVELOPE_START =
+      "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+      + "<soap:Header><ResponseHeader xmlns=\"urn:test\"><requestId>1</requestId>"
+      + "</ResponseHeader></soap:Header><soap:Body>";
+
+  private static final String ENVELOPE_END = "</soap:Body></soap:Envelope>";
+
+  /**
+   * Tests that entries are returned one at a time as envelopes of their own,
+   * declaring the namespaces in scope, and that the remainder keeps every other
+   * element.
+   */
+  @Test
+  public void testNextEntry() throws Exception {
+    String response = ENVELOPE_START
+        + "<getResponse xmlns=\"urn:test\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+        + "<rval><totalNumEntries>2</totalNumEntries>"
+        + "<entries><id>1</id><name>First</name></entries>"
+        + "<entries xsi:type=\"SubThing\"><id>2</id><extra>x</extra></entries>"
+        + "</rval></getResponse>" + ENVELOPE_END;
+    ByteArrayOutputStream remainder = new ByteArrayOutputStream();
+
+    List<String> entries = split(response, remainder, StreamingPages.DEFAULT_ENTRY_ELEMENTS);
+
+    assertEquals(2, entries.size());
+    String entryEnvelopeStart =
+        "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\""
+        + " xmlns=\"urn:test\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+        + "<soap:Body>";
+    assertXmlEquals(entryEnvelopeStart + "<entries><id>1</id><name>First</name></entries>"
+        + ENVELOPE_END, entries.get(0));
+    assertXmlEquals(entryEnvelopeStart
+        + "<entries xsi:type=\"SubThing\"><id>2</id><extra>x</extra></entries>"
+        + ENVELOPE_END, entries.get(1));
+    assertXmlEquals(ENVELOPE_START
+        + "<getResponse xmlns=\"urn:test\""
+        + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+        + "<rval><totalNumEntries>2</totalNumEntries></rval></getResponse>" + ENVELOPE_END,
+        remainder.toString("UTF-8"));
+  }
+
+  /**
+   * Tests that only elements at entry depth within the body are entries.
+   */
+  @Test
+  public void testNextEntry_onlyReturnedValueChildren() throws Exception {
+    String response = ENVELOPE_START
+        + "<getResponse xmlns=\"urn:test\"><rval><results><results>1</results></results>"
+        + "<other><results>2</results></other></rval>"
+        + "<results>3</results></getResponse>" + ENVELOPE_END;
+    ByteArrayOutputStream remainder = new ByteArrayOutputStream();
+
+    List<String> entries = split(response, remainder, ImmutableSet.of("results"));
+
+    assertEquals(1, entries.size());
+    assertTrue(entries.get(0).contains("<results>1</results>"));
+    assertXmlEquals(ENVELOPE_START
+        + "<getResponse xmlns=\"urn:test\"><rval><other><results>2</results></other></rval>"
+        + "<results>3</results></getResponse>" + ENVELOPE_END, remainder.toString("UTF-8"));
+  }
+
+  /**
+   * Tests that a SOAP fault is copied to the remainder unchanged.
+   */
+  @Test
+  public void testNextEntry_fault() throws Exception {
+    String response = ENVELOPE_START
+        + "<soap:Fault><faultcode>soap:Server</faultcode><faultstring>Error</faultstring>"
+        + "<detail><ApiExceptionFault xmlns=\"urn:test\"><errors><reason>X</reason></errors>"
+        + "</ApiExceptionFault></detail></soap:Fault>" + ENVELOPE_END;
+    ByteArrayOutputStream remainder = new ByteArrayOutputStream();
+
+    List<String> entries = split(response, remainder, ImmutableSet.of("errors", "detail"));
+
+    assertEquals(0, entries.size());
+    assertXmlEquals(response, remainder.toString("UTF-8"));
+  }
+
+  /**
+   * Tests that the remainder is written in the encoding of the response.
+   */
+  @Test
+  public void testNextEntry_encoding() throws Exception {
+    String response = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" + ENVELOPE_START
+        + "<getResponse xmlns=\"urn:test\"><rval><name>Café</name>"
+        + "<entries><name>Crème</name></entries></rval></getResponse>" + ENVELOPE_END;
+    ByteArrayOutputStream remainder = new ByteArrayOutputStream();
+    SoapPageSplitter splitter = new SoapPageSplitter(
+        new ByteArrayInputStream(response.getBytes(Charsets.ISO_8859_1)), remainder,
+        StreamingPages.DEFAULT_ENTRY_ELEMENTS);
+
+    assertTrue(new String(splitter.nextEntry(), Charsets.UTF_8).contains("Crème"));
+    assertNull(splitter.nextEntry());
+    assertNull(splitter.nextEntry());
+    assertTrue(new String(remainder.toByteArray(), Charsets.ISO_8859_1).contains("Café"));
+  }
+
+  /**
+   * Asserts that the XML is as expected, ignoring any XML declaration.
+   */
+  private static void assertXmlEquals(String expected, String actual) {
+    assertEquals(expected, actual.replaceFirst("^<\\?xml[^>]*\\?>", ""));
+  }
+
+  private static List<String> split(String response, ByteArrayOutputStream remainder,
+      java.util.Set<String> entryElements) throws Exception {
+    SoapPageSplitter splitter = new SoapPageSplitter(
+        new ByteArrayInputStream(response.getBytes(Charsets.UTF_8)), remainder, entryElements);
+    List<String> entries = Lists.newArrayList();
+    byte[] entry;
+    while ((entry = splitter.nextEntry()) != null) {
+      entries.add(new String(entry, Charsets.UTF_8));
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,183 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.streaming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Tests for {@link StreamingPages}.
+ */
+@RunWith(JUnit4.class)
+public class StreamingPagesTest {
+
+  /**
+   * A page holding its entries in an array.
+   */
+  public static class ArrayPage {
+    private final String[] entries;
+
+    public ArrayPage(String... entries) {
+      this.entries = entries;
+    }
+
+    public String[] getEntries() {
+      return entries;
+    }
+  }
+
+  /**
+   * A page holding its entries in a list.
+   */
+  public static class ListPage {
+    private final List<String> results;
+
+    public ListPage(String... results) {
+      this.results = Lists.newArrayList(results);
+    }
+
+    public List<String> getResults() {
+      return results;
+    }
+  }
+
+  /**
+   * Tests that the entries of a page that was not streamed are delivered from
+   * the returned page, skipping null entries.
+   */
+  @Test
+  public void testForEachEntry_notStreamed() throws Exception {
+    final List<String> handled = Lists.newArrayList();
+    PageEntryHandler<String> handler = new PageEntryHandler<String>() {
+      @Override
+      public void handleEntry(String entry) {
+        handled.add(entry);
+      }
+    };
+    final ArrayPage arrayPage = new ArrayPage("a", null, "b");
+
+    ArrayPage returnedPage = StreamingPages.forEachEntry(String.class, handler,
+        new PageCall<ArrayPage, RuntimeException>() {
+          @Override
+          public ArrayPage call() {
+            return arrayPage;
+          }
+        });
+
+    assertSame(arrayPage, returnedPage);
+    assertEquals(Lists.newArrayList("a", "b"), handled);
+
+    handled.clear();
+    StreamingPages.forEachEntry(String.class, handler, new PageCall<ListPage, RuntimeException>() {
+      @Override
+      public ListPage call() {
+        return new ListPage("c", "d");
+      }
+    });
+
+    assertEquals(Lists.newArrayList("c", "d"), handled);
+    assertNull(StreamingPages.getCurrent());
+  }
+
+  /**
+   * Tests that entries streamed by the SOAP framework are delivered once.
+   */
+  @Test
+  public void testForEachEntry_streamed() throws Exception {
+    final List<String> handled = Lists.newArrayList();
+    final List<StreamingPages> currentInHandler = Lists.newArrayList();
+    PageEntryHandler<String> handler = new PageEntryHandler<String>() {
+      @Override
+      public void handleEntry(String entry) {
+        handled.add(entry);
+        currentInHandler.add(StreamingPages.getCurrent());
+      }
+    };
+
+    StreamingPages.forEachEntry(String.class, ImmutableSet.of("entries"), handler,
+        new PageCall<ArrayPage, RuntimeException>() {
+          @Override
+          public ArrayPage call() {
+            StreamingPages streamingPages = StreamingPages.getCurrent();
+            assertSame(String.class, streamingPages.getEntryClass());
+            assertEquals(ImmutableSet.of("entries"), streamingPages.getEntryElements());
+            streamingPages.handleEntry("a");
+            streamingPages.handleEntry("b");
+            streamingPages.recordStreamedResponse();
+            assertSame(streamingPages, StreamingPages.getCurrent());
+            assertEquals(2, streamingPages.getEntryCount());
+            return new ArrayPage("c");
+          }
+        });
+
+    assertEquals(Lists.newArrayList("a", "b"), handled);
+    assertEquals("Calls made by the handler should not be streamed",
+        Lists.newArrayList(null, null), currentInHandler);
+    assertNull(StreamingPages.getCurrent());
+  }
+
+  /**
+   * Tests that an entry of the wrong class is rejected.
+   */
+  @Test(expected = ClassCastException.class)
+  public void testForEachEntry_wrongEntryClass() throws Exception {
+    StreamingPages.forEachEntry(Integer.class, new PageEntryHandler<Integer>() {
+      @Override
+      public void handleEntry(Integer entry) {}
+    }, new PageCall<ArrayPage, RuntimeException>() {
+      @Override
+      public ArrayPage call() {
+        return new ArrayPage("a");
+      }
+    });
+  }
+
+  /**
+   * Tests that the exception thrown by the call is propagated and the thread
+   * is no longer streaming.
+   */
+  @Test
+  public void testForEachEntry_callFails() throws Exception {
+    final IOException exception = new IOException();
+    try {
+      StreamingPages.forEachEntry(String.class, new PageEntryHandler<String>() {
+        @Override
+        public void handleEntry(String entry) {}
+      }, new PageCall<ArrayPage, IOException>() {
+        @Override
+        public ArrayPage call() throws IOException {
+          throw exception;
+        }
+      });
+      fail("Expected exception not thrown");
+    } catch (IOException e) {
+      assertSame(exception, e);
+    }
+    assertNull(StreamingPages.getCurrent());
+  }
+}
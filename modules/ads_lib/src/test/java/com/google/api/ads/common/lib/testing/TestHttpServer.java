@@ -34,8 +34,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * HTTP server used to verify requests and send mocked responses.
@@ -114,16 +117,33 @@ public class TestHttpServer {
    * Sets the response body to return on the next request.
    */
   public void setMockResponseBody(String mockResponseBody) {
-    server.mockResponseBodies = Lists.newArrayList(mockResponseBody);
+    setMockResponseBodies(Lists.newArrayList(mockResponseBody));
   }
 
   /**
    * Sets the response body to return on subsequent requests.
    */
   public void setMockResponseBodies(List<String> mockResponseBodies) {
+    server.repeatedMockResponseBody = null;
     server.mockResponseBodies = Lists.newArrayList(mockResponseBodies);
   }
 
+  /**
+   * Sets the response body to return on every subsequent request, which may be
+   * made concurrently.
+   */
+  public void setRepeatedMockResponseBody(String mockResponseBody) {
+    server.repeatedMockResponseBody = mockResponseBody;
+  }
+
+  /**
+   * Sets whether response bodies are gzip compressed for requests that accept
+   * gzip.
+   */
+  public void setCompressResponses(boolean compressResponses) {
+    server.compressResponses = compressResponses;
+  }
+
   /**
    * Gets the server URL with port.
    */
@@ -137,11 +157,16 @@ public class TestHttpServer {
   private class InternalHttpServer extends Server {
 
     private int port;
-    private int numInteractions = 0;
-    private List<String> requestBodies = Lists.newArrayList();
-    private List<Boolean> requestBodiesCompressionStates = Lists.newArrayList();
-    private List<String> authorizationHttpHeaders = Lists.newArrayList();
-    private List<String> mockResponseBodies = Lists.newArrayList();
+    private final AtomicInteger numInteractions = new AtomicInteger();
+    private final List<String> requestBodies =
+        Collections.synchronizedList(Lists.<String>newArrayList());
+    private final List<Boolean> requestBodiesCompressionStates =
+        Collections.synchronizedList(Lists.<Boolean>newArrayList());
+    private final List<String> authorizationHttpHeaders =
+        Collections.synchronizedList(Lists.<String>newArrayList());
+    private volatile List<String> mockResponseBodies = Lists.newArrayList();
+    private volatile String repeatedMockResponseBody;
+    private volatile boolean compressResponses;
 
     /**
      * Default constructor.
@@ -195,12 +220,23 @@ public class TestHttpServer {
           ByteSource.wrap(requestBytes).asCharSource(Charset.forName(UTF_8)).read());
       this.requestBodiesCompressionStates.add(isGzipFormat);
 
+      String acceptEncoding = request.getHeader().get("Accept-Encoding");
+      final boolean compressResponse =
+          compressResponses && acceptEncoding != null && acceptEncoding.contains("gzip");
+      if (compressResponse) {
+        response.setField(HttpFields.__ContentEncoding, "gzip");
+      }
+      String mockResponseBody = repeatedMockResponseBody;
+      if (mockResponseBody == null) {
+        mockResponseBody = mockResponseBodies.get(numInteractions.getAndIncrement());
+      }
       new ByteSink() {
         @Override
-        public OutputStream openStream() {
-          return response.getOutputStream();
+        public OutputStream openStream() throws IOException {
+          return compressResponse
+              ? new GZIPOutputStream(response.getOutputStream()) : response.getOutputStream();
         }
-      }.asCharSink(Charset.forName(UTF_8)).write(mockResponseBodies.get(numInteractions++));
+      }.asCharSink(Charset.forName(UTF_8)).write(mockResponseBody);
 
       return getContext(getServerUrl());
     }
@@ -209,14 +245,18 @@ public class TestHttpServer {
      * Gets the body of the last request made to the server.
      */
     private String getLastRequestBody() {
-      return requestBodies.get(requestBodies.size() - 1);
+      synchronized (requestBodies) {
+        return requestBodies.get(requestBodies.size() - 1);
+      }
     }
 
     /**
      * Returns if the last request body was compressed.
      */
     private boolean wasLastRequestBodyCompressed() {
-      return requestBodiesCompressionStates.get(requestBodiesCompressionStates.size() - 1);
+      synchronized (requestBodiesCompressionStates) {
+        return requestBodiesCompressionStates.get(requestBodiesCompressionStates.size() - 1);
+      }
     }
 
     /**
@@ -224,7 +264,9 @@ public class TestHttpServer {
      * {@code null} if none.
      */
     private String getLastAuthorizationHttpHeader() {
-      return authorizationHttpHeaders.get(authorizationHttpHeaders.size() - 1);
+      synchronized (authorizationHttpHeaders) {
+        return authorizationHttpHeaders.get(authorizationHttpHeaders.size() - 1);
+      }
     }
   }
 }
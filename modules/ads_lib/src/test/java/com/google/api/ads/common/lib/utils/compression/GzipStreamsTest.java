@@ -0,0 +1,183 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.utils.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Tests for {@link GzipStreams}, {@link PooledGzipOutputStream} and
+ * {@link PooledGzipInputStream}.
+ */
+@RunWith(JUnit4.class)
+public class GzipStreamsTest {
+
+  @Test
+  public void testOutputStream_readableByGzipInputStream() throws IOException {
+    byte[] content = createContent(100000);
+    CompressionStats stats = new CompressionStats();
+
+    byte[] compressed = compress(content, stats);
+
+    assertArrayEquals(content,
+        ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    assertEquals(content.length, stats.getUncompressedBytes());
+    assertEquals(compressed.length, stats.getCompressedBytes());
+    assertTrue("Content should compress", stats.getRatio() > 1);
+    assertTrue(stats.getCpuNanos() >= 0);
+  }
+
+  @Test
+  public void testInputStream_readsGzipOutputStream() throws IOException {
+    byte[] content = createContent(100000);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    GZIPOutputStream gzipOut = new GZIPOutputStream(compressed);
+    gzipOut.write(content);
+    gzipOut.close();
+    CompressionStats stats = new CompressionStats();
+
+    InputStream in = GzipStreams.newInputStream(
+        new ByteArrayInputStream(compressed.toByteArray()), stats);
+
+    assertArrayEquals(content, ByteStreams.toByteArray(in));
+    assertEquals(-1, in.read());
+    assertEquals(content.length, stats.getUncompressedBytes());
+    assertEquals(compressed.size(), stats.getCompressedBytes());
+  }
+
+  @Test
+  public void testInputStream_optionalHeaderFields() throws IOException {
+    byte[] content = "content".getBytes("UTF-8");
+    byte[] compressed = compress(content, new CompressionStats());
+    ByteArrayOutputStream withFields = new ByteArrayOutputStream();
+    withFields.write(compressed, 0, 3);
+    // FEXTRA, FNAME and FCOMMENT.
+    withFields.write(4 | 8 | 16);
+    withFields.write(compressed, 4, 6);
+    withFields.write(new byte[] {2, 0, 'x', 'y'});
+    withFields.write(new byte[] {'n', 'a', 'm', 'e', 0});
+    withFields.write(new byte[] {'c', 0});
+    withFields.write(compressed, 10, compressed.length - 10);
+
+    InputStream in = GzipStreams.newInputStream(
+        new ByteArrayInputStream(withFields.toByteArray()), new CompressionStats());
+
+    assertArrayEquals(content, ByteStreams.toByteArray(in));
+  }
+
+  @Test
+  public void testInputStream_corruptTrailer() throws IOException {
+    byte[] compressed = compress(createContent(1000), new CompressionStats());
+    compressed[compressed.length - 5]++;
+    InputStream in =
+        GzipStreams.newInputStream(new ByteArrayInputStream(compressed), new CompressionStats());
+
+    try {
+      ByteStreams.toByteArray(in);
+      fail("A corrupt trailer should fail");
+    } catch (ZipException e) {
+      assertEquals("Corrupt GZIP trailer", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testInputStream_notGzip() throws IOException {
+    try {
+      GzipStreams.newInputStream(
+          new ByteArrayInputStream("<xml/>".getBytes("UTF-8")), new CompressionStats());
+      fail("Content that is not gzip should fail");
+    } catch (ZipException e) {
+      assertEquals("Not in GZIP format", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testStreams_reuseDeflatersAndInflaters() throws IOException {
+    byte[] content = createContent(1000);
+    byte[] compressed = compress(content, new CompressionStats());
+    ByteStreams.toByteArray(
+        GzipStreams.newInputStream(new ByteArrayInputStream(compressed), new CompressionStats()));
+    int idleDeflaters = GzipStreams.getIdleDeflaterCount();
+    int idleInflaters = GzipStreams.getIdleInflaterCount();
+    assertTrue(idleDeflaters > 0);
+    assertTrue(idleInflaters > 0);
+
+    for (int i = 0; i < 10; i++) {
+      byte[] recompressed = compress(content, new CompressionStats());
+      InputStream in = GzipStreams.newInputStream(
+          new ByteArrayInputStream(recompressed), new CompressionStats());
+      assertArrayEquals(content, ByteStreams.toByteArray(in));
+      in.close();
+    }
+
+    assertEquals(idleDeflaters, GzipStreams.getIdleDeflaterCount());
+    assertEquals(idleInflaters, GzipStreams.getIdleInflaterCount());
+  }
+
+  @Test
+  public void testOutputStream_writeAfterFinish() throws IOException {
+    PooledGzipOutputStream out =
+        GzipStreams.newOutputStream(new ByteArrayOutputStream(), new CompressionStats());
+    out.finish();
+
+    try {
+      out.write(1);
+      fail("Writing after finish should fail");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  private static byte[] compress(byte[] content, CompressionStats stats) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    PooledGzipOutputStream out = GzipStreams.newOutputStream(compressed, stats);
+    // Writes in uneven pieces to exercise the deflater buffer.
+    for (int offset = 0; offset < content.length; offset += 777) {
+      out.write(content, offset, Math.min(777, content.length - offset));
+    }
+    out.close();
+    return compressed.toByteArray();
+  }
+
+  /**
+   * Creates repetitive, but not trivially compressible, content.
+   */
+  private static byte[] createContent(int size) {
+    Random random = new Random(size);
+    byte[] content = new byte[size];
+    for (int i = 0; i < size; i++) {
+      content[i] = (byte) ('a' + random.nextInt(8));
+    }
+    return content;
+  }
+}
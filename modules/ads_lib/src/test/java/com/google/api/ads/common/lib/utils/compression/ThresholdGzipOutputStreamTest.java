@@ -0,0 +1,92 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.utils.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests for {@link ThresholdGzipOutputStream}.
+ */
+@RunWith(JUnit4.class)
+public class ThresholdGzipOutputStreamTest {
+
+  @Test
+  public void testWrite_atThreshold() throws IOException {
+    byte[] content = new byte[100];
+    Arrays.fill(content, (byte) 'a');
+    CompressionStats stats = new CompressionStats();
+    ThresholdGzipOutputStream out = new ThresholdGzipOutputStream(100, stats);
+
+    out.write(content, 0, 60);
+    out.write(content, 60, 40);
+    out.close();
+
+    assertFalse(out.isCompressed());
+    assertEquals(100, out.size());
+    assertArrayEquals(content, toByteArray(out));
+    assertEquals(0, stats.getUncompressedBytes());
+  }
+
+  @Test
+  public void testWrite_aboveThreshold() throws IOException {
+    byte[] content = new byte[10000];
+    Arrays.fill(content, (byte) 'a');
+    CompressionStats stats = new CompressionStats();
+    ThresholdGzipOutputStream out = new ThresholdGzipOutputStream(100, stats);
+
+    out.write(content, 0, 60);
+    out.write(content[60]);
+    out.write(content, 61, content.length - 61);
+    out.close();
+
+    assertTrue(out.isCompressed());
+    byte[] compressed = toByteArray(out);
+    assertEquals(compressed.length, out.size());
+    assertArrayEquals(content,
+        ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    assertEquals(content.length, stats.getUncompressedBytes());
+    assertEquals(compressed.length, stats.getCompressedBytes());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testWriteTo_notClosed() throws IOException {
+    ThresholdGzipOutputStream out = new ThresholdGzipOutputStream(100, new CompressionStats());
+    out.write(1);
+
+    out.writeTo(new ByteArrayOutputStream());
+  }
+
+  private static byte[] toByteArray(ThresholdGzipOutputStream out) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    out.writeTo(bytes);
+    return bytes.toByteArray();
+  }
+}
@@ -16,6 +16,7 @@ package com.google.api.ads.common.lib.utils.logging;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -96,6 +97,29 @@ public class AdsServiceLoggersTest {
     verify(soapXmlLogger).info("SOAP Response:\n" + prettyResponse);
   }
 
+  @Test
+  public void testLogSoapXml_asynchronous() {
+    String requestXml = "<request>xml</request>";
+    String responseXml = "<response>xml</response>";
+    String prettyRequest = "<request>\n  xml\n</request>";
+    String prettyResponse = "<response>\n  xml\n</response>";
+    adsServiceLoggers = new AdsServiceLoggers(prettyPrinter, soapXmlLogger, requestInfoLogger,
+        new AsyncLoggingQueue(10, false), new SoapXmlLogSampler(1, 0));
+
+    when(soapCallReturn.getRequestInfo()).thenReturn(requestInfo);
+    when(soapCallReturn.getResponseInfo()).thenReturn(responseInfo);
+    when(soapXmlLogger.isInfoEnabled()).thenReturn(true);
+    when(requestInfo.getSoapRequestXml()).thenReturn(requestXml);
+    when(prettyPrinter.prettyPrint(requestXml)).thenReturn(prettyRequest);
+    when(responseInfo.getSoapResponseXml()).thenReturn(responseXml);
+    when(prettyPrinter.prettyPrint(responseXml)).thenReturn(prettyResponse);
+
+    adsServiceLoggers.logSoapXml(soapCallReturn);
+
+    verify(soapXmlLogger, timeout(10000)).info("SOAP Request:\n" + prettyRequest);
+    verify(soapXmlLogger, timeout(10000)).info("SOAP Response:\n" + prettyResponse);
+  }
+
   @Test
   public void testLogSoapXml_WarnLevelWithException() {
     Throwable returnedException = new Throwable();
@@ -134,4 +158,28 @@ public class AdsServiceLoggersTest {
     verify(soapXmlLogger, times(0)).info(any(String.class));
     verify(soapXmlLogger, times(0)).warn(any(String.class));
   }
+
+  @Test
+  public void testLogSoapXml_sampled() {
+    adsServiceLoggers = new AdsServiceLoggers(prettyPrinter, soapXmlLogger, requestInfoLogger,
+        new AsyncLoggingQueue(0, false), new SoapXmlLogSampler(3, 0));
+
+    when(soapCallReturn.getRequestInfo()).thenReturn(requestInfo);
+    when(soapCallReturn.getResponseInfo()).thenReturn(responseInfo);
+    when(soapXmlLogger.isInfoEnabled()).thenReturn(true);
+    when(soapXmlLogger.isWarnEnabled()).thenReturn(true);
+    when(requestInfo.getServiceName()).thenReturn("service");
+    when(requestInfo.getMethodName()).thenReturn("method");
+    when(requestInfo.getSoapRequestXml()).thenReturn("<request/>");
+    when(prettyPrinter.prettyPrint("<request/>")).thenReturn("<request/>");
+
+    for (int i = 0; i < 5; i++) {
+      adsServiceLoggers.logSoapXml(soapCallReturn);
+    }
+    verify(soapXmlLogger, times(2)).info("SOAP Request:\n<request/>");
+
+    when(soapCallReturn.getException()).thenReturn(new Throwable());
+    adsServiceLoggers.logSoapXml(soapCallReturn);
+    verify(soapXmlLogger).warn("SOAP Request:\n<request/>");
+  }
 }
@@ -0,0 +1,133 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link AsyncLoggingQueue}.
+ */
+@RunWith(JUnit4.class)
+public class AsyncLoggingQueueTest {
+
+  /** Creates threads that are never run, so queued tasks stay queued. */
+  private static final ThreadFactory IDLE_THREAD_FACTORY = new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      return new Thread() {
+        @Override
+        public synchronized void start() {}
+      };
+    }
+  };
+
+  @Test
+  public void testExecute_synchronous() {
+    AsyncLoggingQueue queue = new AsyncLoggingQueue(0, false);
+    final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+    queue.execute(new Runnable() {
+      @Override
+      public void run() {
+        thread.set(Thread.currentThread());
+      }
+    });
+
+    assertFalse(queue.isAsynchronous());
+    assertSame(Thread.currentThread(), thread.get());
+  }
+
+  @Test
+  public void testExecute_asynchronous() throws InterruptedException {
+    AsyncLoggingQueue queue = new AsyncLoggingQueue(10, false);
+    final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+    final CountDownLatch latch = new CountDownLatch(2);
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        thread.set(Thread.currentThread());
+        latch.countDown();
+      }
+    };
+
+    queue.execute(task);
+    queue.execute(task);
+
+    assertTrue(queue.isAsynchronous());
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    assertNotSame(Thread.currentThread(), thread.get());
+    assertTrue(thread.get().isDaemon());
+  }
+
+  @Test
+  public void testExecute_dropsWhenFull() {
+    AsyncLoggingQueue queue = new AsyncLoggingQueue(2, false, IDLE_THREAD_FACTORY);
+    final AtomicInteger runCount = new AtomicInteger();
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        runCount.incrementAndGet();
+      }
+    };
+
+    for (int i = 0; i < 5; i++) {
+      queue.execute(task);
+    }
+
+    assertEquals(2, queue.getPendingCount());
+    assertEquals(3, queue.getDroppedCount());
+    assertEquals(0, runCount.get());
+  }
+
+  @Test
+  public void testExecute_blocksWhenFull() throws InterruptedException {
+    final AsyncLoggingQueue queue = new AsyncLoggingQueue(1, true, IDLE_THREAD_FACTORY);
+    final Runnable task = new Runnable() {
+      @Override
+      public void run() {}
+    };
+    queue.execute(task);
+    Thread caller = new Thread() {
+      @Override
+      public void run() {
+        queue.execute(task);
+      }
+    };
+
+    caller.start();
+    caller.join(100);
+    assertTrue(caller.isAlive());
+    caller.interrupt();
+    caller.join(10000);
+
+    assertFalse(caller.isAlive());
+    assertEquals(1, queue.getPendingCount());
+    assertEquals(1, queue.getDroppedCount());
+  }
+}
@@ -15,19 +15,20 @@
 package com.google.api.ads.common.lib.utils.logging;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
-import org.mockito.Mockito;
-
-import java.io.StringReader;
 
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamSource;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Test for the {@link PrettyPrinter} class.
@@ -37,18 +38,100 @@ public class PrettyPrinterTest {
 
   public PrettyPrinterTest() {}
 
-  /**
-   * Tests that unexpected exceptions get logged correctly.
-   */
   @Test
-  public void testException() throws TransformerException {
-    Transformer transformer = Mockito.mock(Transformer.class);
+  public void testPrettyPrint() {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+        + "<soap:Body><get xmlns=\"https://example.com\"><id a=\"1 &amp; &quot;2&quot;\">"
+        + "1 &lt; 2</id><empty/>  <!--note--></get></soap:Body></soap:Envelope>";
+
+    assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">\n"
+        + "    <soap:Body>\n"
+        + "        <get xmlns=\"https://example.com\">\n"
+        + "            <id a=\"1 &amp; &quot;2&quot;\">1 &lt; 2</id>\n"
+        + "            <empty/>\n"
+        + "            <!--note-->\n"
+        + "        </get>\n"
+        + "    </soap:Body>\n"
+        + "</soap:Envelope>", new PrettyPrinter().prettyPrint(xml));
+  }
+
+  @Test
+  public void testPrettyPrint_redacts() {
+    String xml = "<Header><ns1:DeveloperToken xmlns:ns1=\"urn:a\">secret</ns1:DeveloperToken>"
+        + "<authToken><value>secret</value></authToken><userAgent>agent</userAgent></Header>";
+
+    assertEquals("<Header>\n"
+        + "    <ns1:DeveloperToken xmlns:ns1=\"urn:a\">REDACTED</ns1:DeveloperToken>\n"
+        + "    <authToken>REDACTED</authToken>\n"
+        + "    <userAgent>agent</userAgent>\n"
+        + "</Header>", new PrettyPrinter().prettyPrint(xml));
+    assertEquals("<Header>\n"
+        + "    <ns1:DeveloperToken xmlns:ns1=\"urn:a\">secret</ns1:DeveloperToken>\n"
+        + "    <authToken>\n"
+        + "        <value>secret</value>\n"
+        + "    </authToken>\n"
+        + "    <userAgent>REDACTED</userAgent>\n"
+        + "</Header>",
+        new PrettyPrinter(ImmutableSet.of("userAgent"), 0).prettyPrint(xml));
+  }
+
+  @Test
+  public void testPrettyPrint_truncatesOutput() {
+    String xml = "<a><b>text</b><c/></a>";
+
+    assertEquals("<a>\n    <b>te...[truncated after 13 characters]",
+        new PrettyPrinter(ImmutableSet.<String>of(), 13).prettyPrint(xml));
+    assertEquals("<a>\n    <b>text</b>\n    <c/>\n</a>",
+        new PrettyPrinter(ImmutableSet.<String>of(), 100).prettyPrint(xml));
+  }
+
+  @Test
+  public void testPrettyPrint_truncatedXml() {
+    PrettyPrinter prettyPrinter = new PrettyPrinter();
+
+    assertEquals("<a>\n    <b>text</b>\n    <c>tex...[12 characters truncated]",
+        prettyPrinter.prettyPrint("<a><b>text</b><c>tex...[12 characters truncated]"));
+    assertEquals("<a>\n    <developerToken>REDACTED",
+        prettyPrinter.prettyPrint("<a><developerToken>sec"));
+    assertEquals("<a>\n    <developerToken>REDACTED</developerToken>\n    <b>te",
+        prettyPrinter.prettyPrint("<a><developerToken>secret</developerToken><b>te"));
+  }
+
+  @Test
+  public void testPrettyPrint_notXml() {
+    PrettyPrinter prettyPrinter = new PrettyPrinter();
     String html =
         "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\n<html><a></a></html>";
-    StreamSource source = new StreamSource(new StringReader(html));
-    Mockito.doThrow(new ArrayIndexOutOfBoundsException())
-        .when(transformer).transform((Source) Mockito.anyObject(), (Result) Mockito.anyObject());
 
-    assertEquals(html, new PrettyPrinter(transformer).prettyPrint(html));
+    assertEquals(html, prettyPrinter.prettyPrint(html));
+    assertEquals("Exception logging SOAP message: <authToken>REDACTED</authToken>",
+        prettyPrinter.prettyPrint("Exception logging SOAP message: <authToken>x</authToken>"));
+    assertNull(prettyPrinter.prettyPrint(null));
+  }
+
+  @Test
+  public void testPrettyPrint_concurrent() throws Exception {
+    final PrettyPrinter prettyPrinter = new PrettyPrinter();
+    final String xml = "<a><b>text</b><c/></a>";
+    final String expected = prettyPrinter.prettyPrint(xml);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = Lists.newArrayList();
+      for (int i = 0; i < 100; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            return prettyPrinter.prettyPrint(xml);
+          }
+        }));
+      }
+      for (Future<String> result : results) {
+        assertEquals(expected, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
   }
 }
@@ -0,0 +1,61 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.logging;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link SoapXmlLogSampler}.
+ */
+@RunWith(JUnit4.class)
+public class SoapXmlLogSamplerTest {
+
+  @Test
+  public void testIsSampled_everyCall() {
+    SoapXmlLogSampler sampler = new SoapXmlLogSampler(1, 0);
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(sampler.isSampled("service", "method"));
+    }
+  }
+
+  @Test
+  public void testIsSampled_perServiceMethod() {
+    SoapXmlLogSampler sampler = new SoapXmlLogSampler(2, 0);
+
+    assertTrue(sampler.isSampled("service", "get"));
+    assertFalse(sampler.isSampled("service", "get"));
+    assertTrue(sampler.isSampled("service", "mutate"));
+    assertTrue(sampler.isSampled("other", "get"));
+    assertTrue(sampler.isSampled("service", "get"));
+    assertFalse(sampler.isSampled("service", "mutate"));
+  }
+
+  @Test
+  public void testIsSlow() {
+    SoapXmlLogSampler sampler = new SoapXmlLogSampler(10, 500);
+
+    assertFalse(sampler.isSlow(TimeUnit.MILLISECONDS.toNanos(499)));
+    assertTrue(sampler.isSlow(TimeUnit.MILLISECONDS.toNanos(500)));
+    assertFalse(new SoapXmlLogSampler(10, 0).isSlow(TimeUnit.HOURS.toNanos(1)));
+  }
+}
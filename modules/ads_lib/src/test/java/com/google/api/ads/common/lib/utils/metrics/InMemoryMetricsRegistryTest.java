@@ -0,0 +1,168 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link InMemoryMetricsRegistry}.
+ */
+@RunWith(JUnit4.class)
+public class InMemoryMetricsRegistryTest {
+
+  private InMemoryMetricsRegistry registry;
+
+  @Before
+  public void setUp() {
+    registry = new InMemoryMetricsRegistry();
+  }
+
+  @Test
+  public void testRecord() {
+    registry.recordCall("CampaignService", "get", "123", TimeUnit.MILLISECONDS.toNanos(20),
+        100, 2000, false);
+    registry.recordCall("CampaignService", "get", "123", TimeUnit.MILLISECONDS.toNanos(40),
+        -1, 500, true);
+    registry.recordRetry("CampaignService", "get", "123");
+    registry.recordApiError("CampaignService", "get", "123", "RateExceededError");
+    registry.recordApiError("CampaignService", "get", "123", "RateExceededError");
+    registry.recordApiError("CampaignService", "get", "123", "AuthorizationError");
+
+    List<CallMetricsSnapshot> snapshots = registry.getSnapshots();
+
+    assertEquals(1, snapshots.size());
+    CallMetricsSnapshot snapshot = snapshots.get(0);
+    assertEquals("CampaignService", snapshot.getServiceName());
+    assertEquals("get", snapshot.getMethodName());
+    assertEquals("123", snapshot.getCustomerId());
+    assertEquals(2, snapshot.getCallCount());
+    assertEquals(1, snapshot.getFailureCount());
+    assertEquals(1, snapshot.getRetryCount());
+    assertEquals(100, snapshot.getRequestBytes());
+    assertEquals(1, snapshot.getSizedRequestCount());
+    assertEquals(2500, snapshot.getResponseBytes());
+    assertEquals(2, snapshot.getSizedResponseCount());
+    assertEquals(ImmutableMap.of("AuthorizationError", 1L, "RateExceededError", 2L),
+        snapshot.getApiErrorCounts());
+    assertEquals(2, snapshot.getLatency().getCount());
+    assertEquals(40000, snapshot.getLatency().getMaxMicros());
+  }
+
+  @Test
+  public void testRecord_separatesMethodsAndCustomers() {
+    registry.recordCall("CampaignService", "get", "123", 0, -1, -1, false);
+    registry.recordCall("CampaignService", "mutate", "123", 0, -1, -1, false);
+    registry.recordCall("CampaignService", "get", "456", 0, -1, -1, false);
+    registry.recordCall("CampaignService", "get", null, 0, -1, -1, false);
+    registry.recordCall("AdGroupService", "get", "123", 0, -1, -1, false);
+
+    List<CallMetricsSnapshot> snapshots = registry.getSnapshots();
+
+    assertEquals(5, snapshots.size());
+    int withoutCustomer = 0;
+    for (CallMetricsSnapshot snapshot : snapshots) {
+      assertEquals(1, snapshot.getCallCount());
+      if (snapshot.getCustomerId() == null) {
+        withoutCustomer++;
+        assertEquals("CampaignService", snapshot.getServiceName());
+      }
+    }
+    assertEquals(1, withoutCustomer);
+  }
+
+  @Test
+  public void testRecord_boundsCustomersPerMethod() {
+    registry = new InMemoryMetricsRegistry(2, TimeUnit.HOURS.toMillis(1));
+    for (int i = 0; i < 10; i++) {
+      registry.recordCall("CampaignService", "get", String.valueOf(i), 0, -1, -1, false);
+    }
+    registry.recordCall("CampaignService", "mutate", "1", 0, -1, -1, false);
+
+    List<CallMetricsSnapshot> snapshots = registry.getSnapshots();
+
+    long getCalls = 0;
+    int getSnapshots = 0;
+    for (CallMetricsSnapshot snapshot : snapshots) {
+      if ("get".equals(snapshot.getMethodName())) {
+        getCalls += snapshot.getCallCount();
+        getSnapshots++;
+        if (snapshot.getCustomerId() == null) {
+          assertEquals(8, snapshot.getCallCount());
+        }
+      }
+    }
+    assertEquals(3, getSnapshots);
+    assertEquals(10, getCalls);
+    assertEquals(4, snapshots.size());
+  }
+
+  @Test
+  public void testRecord_discardsExpiredCustomers() {
+    FakeTicker ticker = new FakeTicker();
+    registry = new InMemoryMetricsRegistry(2, TimeUnit.MINUTES.toMillis(1), ticker);
+    registry.recordCall("CampaignService", "get", "1", 0, -1, -1, false);
+    registry.recordCall("CampaignService", "get", "2", 0, -1, -1, false);
+    ticker.advance(50, TimeUnit.SECONDS);
+    registry.recordCall("CampaignService", "get", "2", 0, -1, -1, false);
+    ticker.advance(20, TimeUnit.SECONDS);
+
+    registry.recordCall("CampaignService", "get", "3", 0, -1, -1, false);
+
+    List<CallMetricsSnapshot> snapshots = registry.getSnapshots();
+    assertEquals(2, snapshots.size());
+    for (CallMetricsSnapshot snapshot : snapshots) {
+      assertTrue("2".equals(snapshot.getCustomerId()) || "3".equals(snapshot.getCustomerId()));
+    }
+
+    ticker.advance(2, TimeUnit.MINUTES);
+
+    assertTrue(registry.getSnapshots().isEmpty());
+  }
+
+  @Test
+  public void testReset() {
+    registry.recordCall("CampaignService", "get", "123", 0, -1, -1, false);
+
+    registry.reset();
+
+    assertTrue(registry.getSnapshots().isEmpty());
+  }
+
+  private static class FakeTicker extends Ticker {
+
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+}
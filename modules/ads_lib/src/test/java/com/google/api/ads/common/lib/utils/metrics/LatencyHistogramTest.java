@@ -0,0 +1,87 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.utils.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketBounds() {
+    for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789L}) {
+      int index = LatencyHistogram.getBucketIndex(value);
+      assertTrue(value <= LatencyHistogram.getBucketUpperBound(index));
+      if (index > 0) {
+        assertTrue(value > LatencyHistogram.getBucketUpperBound(index - 1));
+      }
+    }
+    assertEquals(LatencyHistogram.BUCKET_COUNT - 1,
+        LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testRelativeError() {
+    for (long value = LatencyHistogram.SUB_BUCKETS; value < 1L << 30; value = value * 3 + 1) {
+      long upperBound =
+          LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucketIndex(value));
+      assertTrue(upperBound - value <= value / LatencyHistogram.SUB_BUCKETS);
+    }
+  }
+
+  @Test
+  public void testSnapshot() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1000);
+    }
+    histogram.record(-5);
+
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+
+    assertEquals(101, snapshot.getCount());
+    assertEquals(5050000, snapshot.getSumMicros());
+    assertEquals(100000, snapshot.getMaxMicros());
+    assertEquals(5050000 / 101.0, snapshot.getMeanMicros(), 0.001);
+    assertEquals(0, snapshot.getPercentileMicros(0));
+    assertEquals(100000, snapshot.getPercentileMicros(100));
+    long median = snapshot.getPercentileMicros(50);
+    assertTrue(median >= 50000 && median <= 50000 * 9 / 8);
+    long p99 = snapshot.getPercentileMicros(99);
+    assertTrue(p99 >= 99000 && p99 <= 100000);
+  }
+
+  @Test
+  public void testSnapshot_empty() {
+    LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getPercentileMicros(99));
+    assertEquals(0, snapshot.getMeanMicros(), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSnapshot_invalidPercentile() {
+    new LatencyHistogram().getSnapshot().getPercentileMicros(101);
+  }
+}
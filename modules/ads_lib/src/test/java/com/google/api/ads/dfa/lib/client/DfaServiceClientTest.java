@@ -29,6 +29,7 @@ import com.google.api.ads.common.lib.soap.SoapCall;
 import com.google.api.ads.common.lib.soap.SoapCallReturn;
 import com.google.api.ads.common.lib.soap.SoapClientHandler;
 import com.google.api.ads.common.lib.utils.logging.AdsServiceLoggers;
+import com.google.api.ads.common.lib.utils.metrics.MetricsSink;
 import com.google.api.ads.dfa.lib.auth.LoginTokenException;
 import com.google.api.ads.dfa.lib.auth.LoginTokens;
 import com.google.api.ads.dfa.lib.auth.TokenExpirationDetector;
@@ -55,6 +56,7 @@ public class DfaServiceClientTest {
   @Mock SoapClientHandler<Object> soapClientHandler;
   @Mock HeaderHandler<DfaSession, DfaServiceDescriptor> dfaHeaderHandler;
   @Mock AdsServiceLoggers adsServiceLoggers;
+  @Mock MetricsSink metricsSink;
   @Mock TokenExpirationDetector tokenExpirationDetector;
   @Mock LoginTokens loginTokens;
   @Mock SoapCallReturn soapCallReturn;
@@ -65,8 +67,8 @@ public class DfaServiceClientTest {
     MockitoAnnotations.initMocks(this);
 
     dfaServiceClient = new DfaServiceClient(soapClient, dfaServiceDescriptor, dfaSession,
-        soapClientHandler, dfaHeaderHandler, adsServiceLoggers, tokenExpirationDetector,
-        loginTokens);
+        soapClientHandler, dfaHeaderHandler, adsServiceLoggers, metricsSink,
+        tokenExpirationDetector, loginTokens);
   }
 
   @Test
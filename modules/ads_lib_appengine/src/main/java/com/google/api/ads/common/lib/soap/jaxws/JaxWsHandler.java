@@ -14,16 +14,23 @@
 
 package com.google.api.ads.common.lib.soap.jaxws;
 
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
 import com.google.api.ads.common.lib.exception.ServiceException;
 import com.google.api.ads.common.lib.soap.RequestInfo;
 import com.google.api.ads.common.lib.soap.ResponseInfo;
 import com.google.api.ads.common.lib.soap.SoapCall;
 import com.google.api.ads.common.lib.soap.SoapCallReturn;
+import com.google.api.ads.common.lib.soap.SoapCallTimings;
 import com.google.api.ads.common.lib.soap.SoapClientHandler;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
 import com.google.api.ads.common.lib.soap.SoapServiceDescriptor;
+import com.google.api.ads.common.lib.soap.SoapXmlSuppliers;
 import com.google.api.ads.common.lib.soap.compatability.JaxWsCompatible;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -32,11 +39,15 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.xml.namespace.QName;
 import javax.xml.soap.SOAPElement;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPHeaderElement;
+import javax.xml.soap.SOAPMessage;
 import javax.xml.ws.BindingProvider;
 import javax.xml.ws.handler.Handler;
 import javax.xml.ws.handler.MessageContext;
@@ -55,17 +66,46 @@ public class JaxWsHandler extends SoapClientHandler<BindingProvider> {
   private static final String DEVEL_REQUEST_TIMEOUT_KEY = "com.sun.xml.internal.ws.request.timeout";
   private static final String DEVEL_CONNECT_TIMEOUT_KEY = "com.sun.xml.internal.ws.connect.timeout";
 
+  private static final List<String> TIMEOUT_KEYS = ImmutableList.of(
+      PRODUCTION_REQUEST_TIMEOUT_KEY, PRODUCTION_CONNECT_TIMEOUT_KEY, DEVEL_REQUEST_TIMEOUT_KEY,
+      DEVEL_CONNECT_TIMEOUT_KEY);
+
+  /**
+   * Simple name of the exception JAX-WS throws for an HTTP error response
+   * without a SOAP fault. The exception class differs between the JDK and
+   * reference implementations, so it is inspected reflectively.
+   */
+  private static final String CLIENT_TRANSPORT_EXCEPTION = "ClientTransportException";
+
+  /**
+   * Resource key of a {@code ClientTransportException} for an HTTP error
+   * response. The exception's first argument is the HTTP status code.
+   */
+  private static final String HTTP_STATUS_CODE_KEY = "http.status.code";
+
+  /**
+   * Matches the status code in the message of a {@code ClientTransportException}
+   * for an HTTP error response, such as
+   * {@code The server sent HTTP status code 503: Service Unavailable}.
+   */
+  private static final Pattern HTTP_STATUS_CODE_PATTERN =
+      Pattern.compile("HTTP status code (\\d{3})");
+
   private JaxWsSoapContextHandlerFactory contextHandlerFactory;
+  private final AdsLibConfiguration adsLibConfiguration;
 
   /**
    * Constructor.
    *
    * @param contextHandlerFactory a factory which produces context handlers
+   * @param adsLibConfiguration the lib configuration
    */
   @Inject
-  protected JaxWsHandler(JaxWsSoapContextHandlerFactory contextHandlerFactory) {
+  protected JaxWsHandler(JaxWsSoapContextHandlerFactory contextHandlerFactory,
+      AdsLibConfiguration adsLibConfiguration) {
     super();
     this.contextHandlerFactory = contextHandlerFactory;
+    this.adsLibConfiguration = adsLibConfiguration;
   }
 
   /**
@@ -172,13 +212,17 @@ public class JaxWsHandler extends SoapClientHandler<BindingProvider> {
   }
 
   /**
-   * Set whether SOAP requests should use compression.
+   * Set whether SOAP requests should use compression. Requests of at most
+   * {@link AdsLibConfiguration#getCompressionThresholdBytes()} bytes are sent
+   * uncompressed.
    *
    * @param soapClient the client to set compression settings for
    * @param compress whether or not to use compression
    */
   @Override
   public void setCompression(BindingProvider soapClient, boolean compress) {
+    getContextHandlerFromClient(soapClient).setCompressionThresholdBytes(
+        compress ? adsLibConfiguration.getCompressionThresholdBytes() : 0);
     Map<String, String> headersMap = Maps.newHashMap();
     if (compress) {
       headersMap.put("Accept-Encoding", "gzip");
@@ -256,6 +300,41 @@ public class JaxWsHandler extends SoapClientHandler<BindingProvider> {
     bindingProvider.getRequestContext().put(DEVEL_CONNECT_TIMEOUT_KEY, REQUEST_TIMEOUT);
   }
 
+  /**
+   * Limits the request and connect timeouts of the SOAP client to
+   * {@code timeoutMillis} for one call.
+   *
+   * @return the timeouts to restore after the call
+   */
+  private static Map<String, Object> limitTimeouts(BindingProvider bindingProvider,
+      int timeoutMillis) {
+    Map<String, Object> requestContext = bindingProvider.getRequestContext();
+    Map<String, Object> previousTimeouts = Maps.newHashMap();
+    for (String key : TIMEOUT_KEYS) {
+      Object previousTimeout = requestContext.get(key);
+      previousTimeouts.put(key, previousTimeout);
+      requestContext.put(key, previousTimeout instanceof Integer
+          && (Integer) previousTimeout > 0
+          ? Math.min((Integer) previousTimeout, timeoutMillis) : timeoutMillis);
+    }
+    return previousTimeouts;
+  }
+
+  /**
+   * Restores the timeouts returned by {@link #limitTimeouts}.
+   */
+  private static void restoreTimeouts(BindingProvider bindingProvider,
+      Map<String, Object> previousTimeouts) {
+    Map<String, Object> requestContext = bindingProvider.getRequestContext();
+    for (Map.Entry<String, Object> previousTimeout : previousTimeouts.entrySet()) {
+      if (previousTimeout.getValue() == null) {
+        requestContext.remove(previousTimeout.getKey());
+      } else {
+        requestContext.put(previousTimeout.getKey(), previousTimeout.getValue());
+      }
+    }
+  }
+
   /**
    * Invoke a SOAP call.
    *
@@ -266,7 +345,14 @@ public class JaxWsHandler extends SoapClientHandler<BindingProvider> {
   public SoapCallReturn invokeSoapCall(SoapCall<BindingProvider> soapCall) {
     BindingProvider webService = soapCall.getSoapClient();
     SoapCallReturn.Builder builder = new SoapCallReturn.Builder();
-    synchronized (webService) {
+    Lock lock = getSoapClientLock(webService);
+    lock.lock();
+    try {
+      SoapCallTimings.mark(SoapCallTimings.Mark.SOAP_CLIENT_ACQUIRED);
+      Map<String, Object> previousTimeouts = null;
+      if (soapCall.getTimeoutMillis() > 0) {
+        previousTimeouts = limitTimeouts(webService, soapCall.getTimeoutMillis());
+      }
       Object result = null;
       try {
         result = invoke(soapCall);
@@ -275,19 +361,107 @@ public class JaxWsHandler extends SoapClientHandler<BindingProvider> {
       } catch (Exception e) {
         builder.withException(e);
       } finally {
+        if (previousTimeouts != null) {
+          restoreTimeouts(webService, previousTimeouts);
+        }
+        SoapCallTimings.mark(SoapCallTimings.Mark.RESPONSE_DESERIALIZED);
+        builder.withTimings(SoapCallTimings.snapshotCurrent());
         JaxWsSoapContextHandler contextHandler = getContextHandlerFromClient(webService);
         builder.withRequestInfo(new RequestInfo.Builder()
-            .withSoapRequestXml(contextHandler.getLastRequestXml())
+            .withSoapRequestXml(createSoapXmlSupplier(contextHandler.getLastRequestMessage()))
             .withMethodName(contextHandler.getLastOperationCalled())
             .withServiceName(contextHandler.getLastServiceCalled())
             .withUrl((String) webService.getRequestContext().get(
                 BindingProvider.ENDPOINT_ADDRESS_PROPERTY))
             .build());
-        builder.withResponseInfo(new ResponseInfo.Builder().withSoapResponseXml(
-            contextHandler.getLastResponseXml()).build());
+        builder.withResponseInfo(new ResponseInfo.Builder()
+            .withSoapResponseXml(createSoapXmlSupplier(contextHandler.getLastResponseMessage()))
+            .withContentLength(contextHandler.getLastResponseContentLength())
+            .build());
       }
       return builder.withReturnValue(result).build();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Creates a supplier which serializes the SOAP message only if its XML is
+   * requested.
+   *
+   * @param message the request or response message, which may be {@code null}
+   * @return a lazy supplier of the message XML
+   */
+  private Supplier<String> createSoapXmlSupplier(final SOAPMessage message) {
+    return SoapXmlSuppliers.lazy(new Supplier<String>() {
+      @Override
+      public String get() {
+        return JaxWsSoapContextHandler.toSoapXml(message);
+      }
+    }, adsLibConfiguration.getMaxSoapXmlLength());
+  }
+
+  /**
+   * Also treats exceptions JAX-WS throws for HTTP 5xx responses without a SOAP
+   * fault as transient.
+   *
+   * @see SoapClientHandlerInterface#isTransientError(Throwable)
+   */
+  @Override
+  public boolean isTransientError(Throwable exception) {
+    if (super.isTransientError(exception)) {
+      return true;
+    }
+    for (Throwable cause : Throwables.getCausalChain(exception)) {
+      if (getHttpStatusCode(cause) / 100 == 5) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the HTTP status code of a JAX-WS {@code ClientTransportException}
+   * for an HTTP error response, or {@code 0} if {@code exception} is not one.
+   * The status code is the first argument of the exception's localizable
+   * message. If that cannot be read, as for the JDK's internal exception on
+   * Java 9 and later, the status code is parsed from the exception message.
+   */
+  @VisibleForTesting
+  static int getHttpStatusCode(Throwable exception) {
+    if (!CLIENT_TRANSPORT_EXCEPTION.equals(exception.getClass().getSimpleName())) {
+      return 0;
+    }
+    try {
+      Object key = exception.getClass().getMethod("getKey").invoke(exception);
+      if (!HTTP_STATUS_CODE_KEY.equals(key)) {
+        return 0;
+      }
+      Object arguments = exception.getClass().getMethod("getArguments").invoke(exception);
+      if (arguments instanceof Object[] && ((Object[]) arguments).length > 0
+          && ((Object[]) arguments)[0] instanceof Number) {
+        return ((Number) ((Object[]) arguments)[0]).intValue();
+      }
+    } catch (NoSuchMethodException e) {
+      // Fall back to the message.
+    } catch (IllegalAccessException e) {
+      // The exception class is not accessible, so fall back to the message.
+    } catch (InvocationTargetException e) {
+      // Fall back to the message.
+    }
+    return parseHttpStatusCode(exception.getMessage());
+  }
+
+  /**
+   * Parses the HTTP status code from the message of a
+   * {@code ClientTransportException}, or returns {@code 0} if it has none.
+   */
+  private static int parseHttpStatusCode(String message) {
+    if (message == null) {
+      return 0;
     }
+    Matcher matcher = HTTP_STATUS_CODE_PATTERN.matcher(message);
+    return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
   }
 
   /**
@@ -15,12 +15,16 @@
 package com.google.api.ads.common.lib.soap.jaxws;
 
 import com.google.api.ads.common.lib.exception.ServiceException;
+import com.google.api.ads.common.lib.soap.SoapCallTimings;
 import com.google.common.annotations.VisibleForTesting;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
@@ -34,7 +38,10 @@ import javax.xml.ws.handler.soap.SOAPMessageContext;
 
 /**
  * SOAP Context Handler for use with JAX-WS. Responsible for logging SOAP XML
- * messages and attaching implicit headers to the outgoing messages.
+ * messages, attaching implicit headers to the outgoing messages, sending
+ * requests below the compression threshold uncompressed and marking when the
+ * request was serialized and the response received in the
+ * {@link SoapCallTimings} of the call.
  *
  * This class is not thread-safe. Every SOAP client is expected to have its own
  * instance of this class and each SOAP call made by those clients has to be
@@ -42,11 +49,16 @@ import javax.xml.ws.handler.soap.SOAPMessageContext;
  */
 public class JaxWsSoapContextHandler implements SOAPHandler<SOAPMessageContext> {
 
-  private String lastSoapRequest;
-  private String lastSoapResponse;
+  private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+
+  private SOAPMessage lastSoapRequest;
+  private SOAPMessage lastSoapResponse;
+  private long lastResponseContentLength = -1;
   private String lastServiceCalled;
   private String lastOperationCalled;
   private Set<SOAPElement> soapHeaders = new HashSet<SOAPElement>();
+  private int compressionThresholdBytes;
 
   /**
    * Default constructor.
@@ -79,11 +91,58 @@ public class JaxWsSoapContextHandler implements SOAPHandler<SOAPMessageContext>
         throw new ServiceException("Error setting SOAP headers on outbound message.", e);
       }
       captureServiceAndOperationNames(context);
+      skipCompressionBelowThreshold(context);
+      SoapCallTimings.mark(SoapCallTimings.Mark.REQUEST_SERIALIZED);
+    } else {
+      SoapCallTimings.mark(SoapCallTimings.Mark.RESPONSE_RECEIVED);
     }
     captureSoapXml(context);
     return true;
   }
 
+  /**
+   * Removes the {@code Content-Encoding} header from a request of at most
+   * {@link #getCompressionThresholdBytes()} bytes, so that the SOAP framework
+   * sends it uncompressed. The headers are replaced rather than modified,
+   * since they are shared by every request of the SOAP client.
+   *
+   * @param context the context of the outbound SOAP message
+   */
+  @VisibleForTesting
+  void skipCompressionBelowThreshold(SOAPMessageContext context) {
+    if (compressionThresholdBytes <= 0) {
+      return;
+    }
+    @SuppressWarnings("unchecked") // HTTP Headers in JAXWS are always a map of
+                                   // String to List of String.
+    Map<String, List<String>> httpHeaders =
+        (Map<String, List<String>>) context.get(MessageContext.HTTP_REQUEST_HEADERS);
+    if (httpHeaders == null || !httpHeaders.containsKey(CONTENT_ENCODING_HEADER)
+        || exceedsCompressionThreshold(context.getMessage())) {
+      return;
+    }
+    Map<String, List<String>> uncompressedHeaders = new HashMap<String, List<String>>(httpHeaders);
+    uncompressedHeaders.remove(CONTENT_ENCODING_HEADER);
+    context.put(MessageContext.HTTP_REQUEST_HEADERS, uncompressedHeaders);
+  }
+
+  /**
+   * Determines if the message is larger than the compression threshold,
+   * serializing no more of it than needed to tell.
+   */
+  private boolean exceedsCompressionThreshold(SOAPMessage message) {
+    try {
+      message.writeTo(new ThresholdOutputStream(compressionThresholdBytes));
+      return false;
+    } catch (ThresholdExceededException e) {
+      return true;
+    } catch (IOException e) {
+      return true;
+    } catch (SOAPException e) {
+      return true;
+    }
+  }
+
   /**
    * Extracts the name of the web service and SOAP operation from a message.
    *
@@ -123,32 +182,73 @@ public class JaxWsSoapContextHandler implements SOAPHandler<SOAPMessageContext>
    */
   @Override
   public boolean handleFault(SOAPMessageContext context) {
+      SoapCallTimings.mark(SoapCallTimings.Mark.RESPONSE_RECEIVED);
       captureSoapXml(context);
       return true;
   }
 
   /**
-   * Captures the raw XML message behind a SOAP interaction.
+   * Captures the message behind a SOAP interaction, and the length of a
+   * response. The message is only serialized to XML if it is requested.
    *
    * @param context the context of the SOAP message passing through this handler
    */
   private void captureSoapXml(SOAPMessageContext context) {
-    SOAPMessage message = context.getMessage();
-    String soapXml = "";
+    if ((Boolean) context.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)) {
+      lastSoapRequest = context.getMessage();
+      lastResponseContentLength = -1;
+    } else {
+      lastSoapResponse = context.getMessage();
+      lastResponseContentLength = getContentLength(context);
+    }
+  }
+
+  /**
+   * Gets the {@code Content-Length} of an inbound message from its HTTP
+   * response headers.
+   *
+   * @return the length in bytes, or {@code -1} if the response was chunked or
+   *     its headers are not available
+   */
+  private static long getContentLength(SOAPMessageContext context) {
+    @SuppressWarnings("unchecked") // HTTP Headers in JAXWS are always a map of
+                                   // String to List of String.
+    Map<String, List<String>> httpHeaders =
+        (Map<String, List<String>>) context.get(MessageContext.HTTP_RESPONSE_HEADERS);
+    if (httpHeaders == null) {
+      return -1;
+    }
+    for (Map.Entry<String, List<String>> header : httpHeaders.entrySet()) {
+      if (CONTENT_LENGTH_HEADER.equalsIgnoreCase(header.getKey())
+          && header.getValue() != null && !header.getValue().isEmpty()) {
+        try {
+          return Long.parseLong(header.getValue().get(0).trim());
+        } catch (NumberFormatException e) {
+          return -1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Serializes a SOAP message to its raw XML.
+   *
+   * @param message the SOAP message, which may be {@code null}
+   * @return the XML of the message, or {@code null} if there is no message
+   */
+  static String toSoapXml(SOAPMessage message) {
+    if (message == null) {
+      return null;
+    }
     try {
       OutputStream outputStream = new ByteArrayOutputStream();
       message.writeTo(outputStream);
-      soapXml = outputStream.toString();
+      return outputStream.toString();
     } catch (IOException e) {
-      soapXml = "Exception logging SOAP message: " + e;
+      return "Exception logging SOAP message: " + e;
     } catch (SOAPException e) {
-      soapXml = "Exception logging SOAP message: " + e;
-    }
-
-    if ((Boolean) context.get (MessageContext.MESSAGE_OUTBOUND_PROPERTY)) {
-      lastSoapRequest = soapXml;
-    } else {
-      lastSoapResponse = soapXml;
+      return "Exception logging SOAP message: " + e;
     }
   }
 
@@ -156,16 +256,38 @@ public class JaxWsSoapContextHandler implements SOAPHandler<SOAPMessageContext>
    * Returns the last SOAP request XML message handled by this object.
    */
   public String getLastRequestXml() {
-    return lastSoapRequest;
+    return toSoapXml(lastSoapRequest);
   }
 
   /**
    * Returns the last SOAP response XML message handled by this object.
    */
   public String getLastResponseXml() {
+    return toSoapXml(lastSoapResponse);
+  }
+
+  /**
+   * Returns the last SOAP request message handled by this object.
+   */
+  public SOAPMessage getLastRequestMessage() {
+    return lastSoapRequest;
+  }
+
+  /**
+   * Returns the last SOAP response message handled by this object.
+   */
+  public SOAPMessage getLastResponseMessage() {
     return lastSoapResponse;
   }
 
+  /**
+   * Returns the {@code Content-Length} of the last SOAP response handled by
+   * this object, or {@code -1} if it is not known.
+   */
+  public long getLastResponseContentLength() {
+    return lastResponseContentLength;
+  }
+
   /**
    * Adds a header to the list of SOAP request headers.
    *
@@ -191,6 +313,25 @@ public class JaxWsSoapContextHandler implements SOAPHandler<SOAPMessageContext>
     return soapHeaders;
   }
 
+  /**
+   * Gets the size in bytes a request must exceed to be sent compressed, or
+   * {@code 0} if every request is sent as configured.
+   */
+  public int getCompressionThresholdBytes() {
+    return compressionThresholdBytes;
+  }
+
+  /**
+   * Sets the size in bytes a request must exceed to be sent compressed, if
+   * its headers ask for compression.
+   *
+   * @param compressionThresholdBytes the threshold, or {@code 0} to send every
+   *     request as configured
+   */
+  public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+    this.compressionThresholdBytes = compressionThresholdBytes;
+  }
+
   /**
    * @see SOAPHandler#getHeaders()
    */
@@ -204,4 +345,36 @@ public class JaxWsSoapContextHandler implements SOAPHandler<SOAPMessageContext>
    */
   @Override
   public void close(MessageContext messageContext) {}
+
+  /**
+   * Discards the bytes written to it, throwing once more than a given number
+   * of bytes have been written.
+   */
+  private static class ThresholdOutputStream extends OutputStream {
+
+    private final int thresholdBytes;
+    private long count;
+
+    ThresholdOutputStream(int thresholdBytes) {
+      this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      count += len;
+      if (count > thresholdBytes) {
+        throw new ThresholdExceededException();
+      }
+    }
+  }
+
+  /**
+   * Thrown to stop serializing a message once it exceeds the threshold.
+   */
+  private static class ThresholdExceededException extends IOException {}
 }
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
 import com.google.api.ads.common.lib.exception.ServiceException;
 import com.google.api.ads.common.lib.soap.SoapCall;
 import com.google.api.ads.common.lib.soap.SoapCallReturn;
@@ -28,6 +29,7 @@ import com.google.api.ads.common.lib.soap.jaxws.testing.mocks.CampaignServiceInt
 import com.google.api.ads.common.lib.soap.jaxws.testing.mocks.CampaignServiceInterfaceImpl;
 import com.google.api.ads.common.lib.soap.jaxws.testing.mocks.MockJaxWsCompatibleDescriptor;
 import com.google.common.collect.Lists;
+import com.sun.xml.ws.resources.ClientMessages;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -40,6 +42,7 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 import java.lang.reflect.Method;
+import java.net.SocketTimeoutException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -51,6 +54,7 @@ import javax.xml.soap.SOAPElement;
 import javax.xml.soap.SOAPFactory;
 import javax.xml.ws.Binding;
 import javax.xml.ws.BindingProvider;
+import javax.xml.ws.WebServiceException;
 import javax.xml.ws.handler.Handler;
 import javax.xml.ws.handler.MessageContext;
 
@@ -67,6 +71,7 @@ public class JaxWsHandlerTest {
   private List<Handler> handlerChain;
   private JaxWsSoapContextHandler contextHandler;
   @Mock private JaxWsSoapContextHandlerFactory handlerFactory;
+  @Mock private AdsLibConfiguration adsLibConfiguration;
   @Mock private BindingProvider mockSoapClient;
   @Mock private Binding mockBinding;
   @Mock private Map<String, Object> mockRequestContext;
@@ -84,7 +89,7 @@ public class JaxWsHandlerTest {
     when(handlerFactory.getJaxWsSoapContextHandler()).thenReturn(contextHandler);
     handlerChain = new LinkedList<Handler>();
     handlerChain.add(contextHandler);
-    jaxWsHandler = new JaxWsHandler(handlerFactory);
+    jaxWsHandler = new JaxWsHandler(handlerFactory, adsLibConfiguration);
   }
 
   @Test
@@ -248,11 +253,15 @@ public class JaxWsHandlerTest {
         .thenReturn(httpHeaders);
     when(mockRequestContext.put(MessageContext.HTTP_REQUEST_HEADERS, httpHeaders))
         .thenReturn(null);
+    when(mockSoapClient.getBinding()).thenReturn(mockBinding);
+    when(mockBinding.getHandlerChain()).thenReturn(handlerChain);
+    when(adsLibConfiguration.getCompressionThresholdBytes()).thenReturn(1024);
 
     jaxWsHandler.setCompression(mockSoapClient, true);
 
     assertEquals(Lists.newArrayList("gzip"), httpHeaders.get("Accept-Encoding"));
     assertEquals(Lists.newArrayList("gzip"), httpHeaders.get("Content-Encoding"));
+    assertEquals(1024, contextHandler.getCompressionThresholdBytes());
   }
 
   @Test
@@ -266,10 +275,15 @@ public class JaxWsHandlerTest {
     when(mockRequestContext.get(MessageContext.HTTP_REQUEST_HEADERS))
         .thenReturn(httpHeaders);
 
+    when(mockSoapClient.getBinding()).thenReturn(mockBinding);
+    when(mockBinding.getHandlerChain()).thenReturn(handlerChain);
+    contextHandler.setCompressionThresholdBytes(1024);
+
     jaxWsHandler.setCompression(mockSoapClient, false);
 
     assertEquals(null, httpHeaders.get("Accept-Encoding"));
     assertEquals(null, httpHeaders.get("Content-Encoding"));
+    assertEquals(0, contextHandler.getCompressionThresholdBytes());
   }
 
   @Test
@@ -326,4 +340,96 @@ public class JaxWsHandlerTest {
     thrown.expect(UnsupportedOperationException.class);
     jaxWsHandler.createSoapHeaderElement(new QName("website", "name"));
   }
+
+  @Test
+  public void testInvokeSoapCall_timeout() throws SecurityException, NoSuchMethodException {
+    CampaignServiceInterface soapClient = new CampaignServiceInterfaceImpl();
+    soapClient.getRequestContext().put("com.sun.xml.ws.request.timeout", 60000);
+    Method soapCallMethod = CampaignServiceInterface.class.getMethod(
+        "getTestMessage", new Class<?>[0]);
+    SoapCall<BindingProvider> soapCall = new SoapCall<BindingProvider>(
+        soapCallMethod, soapClient, new Object[0], 1000);
+
+    SoapCallReturn returnedValue = jaxWsHandler.invokeSoapCall(soapCall);
+
+    assertEquals("Here!", returnedValue.getReturnValue());
+    assertEquals(60000, soapClient.getRequestContext().get("com.sun.xml.ws.request.timeout"));
+    assertFalse(soapClient.getRequestContext().containsKey("com.sun.xml.ws.connect.timeout"));
+  }
+
+  @Test
+  public void testIsTransientError_httpStatusCode() {
+    assertTrue(jaxWsHandler.isTransientError(new ClientTransportException(503)));
+    assertFalse(jaxWsHandler.isTransientError(new ClientTransportException(404)));
+    assertTrue(jaxWsHandler.isTransientError(
+        new WebServiceException(new ClientTransportException(500))));
+    assertFalse(jaxWsHandler.isTransientError(new WebServiceException(
+        "The server sent HTTP status code 503: Service Unavailable")));
+    assertTrue(jaxWsHandler.isTransientError(
+        new WebServiceException(new SocketTimeoutException("Read timed out"))));
+  }
+
+  /**
+   * Tests the status code of the exception the JAX-WS reference implementation
+   * throws for an HTTP error response.
+   */
+  @Test
+  public void testGetHttpStatusCode_referenceImplementation() {
+    assertEquals(503, JaxWsHandler.getHttpStatusCode(
+        new com.sun.xml.ws.client.ClientTransportException(
+            ClientMessages.localizableHTTP_STATUS_CODE(503, "Service Unavailable"))));
+    assertEquals(0, JaxWsHandler.getHttpStatusCode(
+        new com.sun.xml.ws.client.ClientTransportException(
+            ClientMessages.localizableHTTP_CLIENT_FAILED("Connection refused"))));
+  }
+
+  /**
+   * Tests that the status code is parsed from the message if the localizable
+   * message of the exception cannot be read.
+   */
+  @Test
+  public void testGetHttpStatusCode_messageFallback() {
+    assertEquals(500, JaxWsHandler.getHttpStatusCode(new JdkInternal.ClientTransportException(
+        "The server sent HTTP status code 500: Internal Server Error")));
+    assertEquals(0, JaxWsHandler.getHttpStatusCode(
+        new JdkInternal.ClientTransportException("HTTP transport error")));
+    assertTrue(jaxWsHandler.isTransientError(new WebServiceException(
+        new JdkInternal.ClientTransportException(
+            "The server sent HTTP status code 502: Bad Gateway"))));
+  }
+
+  /**
+   * Mimics the localizable exception JAX-WS throws for an HTTP error response.
+   */
+  public static class ClientTransportException extends WebServiceException {
+
+    private final int statusCode;
+
+    public ClientTransportException(int statusCode) {
+      super("The server sent HTTP status code " + statusCode);
+      this.statusCode = statusCode;
+    }
+
+    public String getKey() {
+      return "http.status.code";
+    }
+
+    public Object[] getArguments() {
+      return new Object[] {statusCode, "Error"};
+    }
+  }
+
+  /**
+   * Mimics the JDK's internal exception on Java 9 and later, whose localizable
+   * message cannot be read reflectively.
+   */
+  public static class JdkInternal {
+
+    public static class ClientTransportException extends WebServiceException {
+
+      public ClientTransportException(String message) {
+        super(message);
+      }
+    }
+  }
 }
@@ -16,8 +16,12 @@ package com.google.api.ads.common.lib.soap.jaxws;
 
 import static org.apache.commons.lang.CharEncoding.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,7 +39,11 @@ import org.mockito.stubbing.Answer;
 
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
@@ -100,6 +108,24 @@ public class JaxWsSoapContextHandlerTest {
     assertEquals(mockSoapXml, jaxWsSoapContextHandler.getLastResponseXml());
   }
 
+  @Test
+  public void testHandleMessage_inboundContentLength() throws Exception {
+    Map<String, List<String>> httpHeaders = new HashMap<String, List<String>>();
+    httpHeaders.put("content-length", Arrays.asList("1234"));
+    when(mockSoapMessageContext.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY))
+        .thenReturn(Boolean.FALSE);
+    when(mockSoapMessageContext.get(MessageContext.HTTP_RESPONSE_HEADERS))
+        .thenReturn(httpHeaders);
+    when(mockSoapMessageContext.getMessage()).thenReturn(mockMessage);
+
+    assertTrue(jaxWsSoapContextHandler.handleMessage(mockSoapMessageContext));
+    assertEquals(1234, jaxWsSoapContextHandler.getLastResponseContentLength());
+
+    httpHeaders.clear();
+    assertTrue(jaxWsSoapContextHandler.handleMessage(mockSoapMessageContext));
+    assertEquals(-1, jaxWsSoapContextHandler.getLastResponseContentLength());
+  }
+
   @Test
   public void testHandleMessage_outboundNoHeaders() throws Exception {
     final String mockSoapXml = "<Hi>Hello world!</Hi>";
@@ -252,4 +278,69 @@ public class JaxWsSoapContextHandlerTest {
     expectedSet.clear();
     assertEquals(expectedSet, jaxWsSoapContextHandler.getAddedHeaders());
   }
+
+  @Test
+  public void testSkipCompressionBelowThreshold_smallRequest() throws Exception {
+    Map<String, List<String>> httpHeaders = createCompressionHeaders();
+    when(mockSoapMessageContext.get(MessageContext.HTTP_REQUEST_HEADERS)).thenReturn(httpHeaders);
+    when(mockSoapMessageContext.getMessage()).thenReturn(mockMessage);
+    Mockito.doAnswer(writeBytes(100)).when(mockMessage).writeTo(any(OutputStream.class));
+    jaxWsSoapContextHandler.setCompressionThresholdBytes(100);
+
+    jaxWsSoapContextHandler.skipCompressionBelowThreshold(mockSoapMessageContext);
+
+    Map<String, List<String>> expectedHeaders = createCompressionHeaders();
+    expectedHeaders.remove("Content-Encoding");
+    verify(mockSoapMessageContext).put(MessageContext.HTTP_REQUEST_HEADERS, expectedHeaders);
+    assertTrue("Shared headers should not be modified",
+        httpHeaders.containsKey("Content-Encoding"));
+  }
+
+  @Test
+  public void testSkipCompressionBelowThreshold_largeRequest() throws Exception {
+    when(mockSoapMessageContext.get(MessageContext.HTTP_REQUEST_HEADERS))
+        .thenReturn(createCompressionHeaders());
+    when(mockSoapMessageContext.getMessage()).thenReturn(mockMessage);
+    Mockito.doAnswer(writeBytes(101)).when(mockMessage).writeTo(any(OutputStream.class));
+    jaxWsSoapContextHandler.setCompressionThresholdBytes(100);
+
+    jaxWsSoapContextHandler.skipCompressionBelowThreshold(mockSoapMessageContext);
+
+    verify(mockSoapMessageContext, never()).put(eq(MessageContext.HTTP_REQUEST_HEADERS), any());
+  }
+
+  @Test
+  public void testSkipCompressionBelowThreshold_noThreshold() throws Exception {
+    when(mockSoapMessageContext.get(MessageContext.HTTP_REQUEST_HEADERS))
+        .thenReturn(createCompressionHeaders());
+
+    jaxWsSoapContextHandler.skipCompressionBelowThreshold(mockSoapMessageContext);
+
+    verify(mockSoapMessageContext, never()).getMessage();
+    verify(mockSoapMessageContext, never()).put(anyString(), any());
+    assertFalse(jaxWsSoapContextHandler.getCompressionThresholdBytes() > 0);
+  }
+
+  private static Map<String, List<String>> createCompressionHeaders() {
+    Map<String, List<String>> httpHeaders = new HashMap<String, List<String>>();
+    httpHeaders.put("Accept-Encoding", Arrays.asList("gzip"));
+    httpHeaders.put("Content-Encoding", Arrays.asList("gzip"));
+    return httpHeaders;
+  }
+
+  /**
+   * Writes {@code size} bytes a few at a time, like a serializer.
+   */
+  private static Answer<Object> writeBytes(final int size) {
+    return new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        OutputStream stream = (OutputStream) invocation.getArguments()[0];
+        for (int i = 0; i < size; i += 10) {
+          stream.write(new byte[Math.min(10, size - i)]);
+        }
+        return null;
+      }
+    };
+  }
 }
@@ -14,31 +14,50 @@
 
 package com.google.api.ads.common.lib.soap.axis;
 
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
 import com.google.api.ads.common.lib.exception.ServiceException;
 import com.google.api.ads.common.lib.soap.RequestInfo;
 import com.google.api.ads.common.lib.soap.ResponseInfo;
 import com.google.api.ads.common.lib.soap.SoapCall;
 import com.google.api.ads.common.lib.soap.SoapCallReturn;
+import com.google.api.ads.common.lib.soap.SoapCallTimings;
 import com.google.api.ads.common.lib.soap.SoapClientHandler;
 import com.google.api.ads.common.lib.soap.SoapClientHandlerInterface;
 import com.google.api.ads.common.lib.soap.SoapServiceDescriptor;
+import com.google.api.ads.common.lib.soap.SoapXmlSuppliers;
+import com.google.api.ads.common.lib.soap.axis.conf.GzipCommonsHTTPSender;
 import com.google.api.ads.common.lib.soap.compatability.AxisCompatible;
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
+import org.apache.axis.AxisEngine;
 import org.apache.axis.AxisFault;
+import org.apache.axis.Constants;
 import org.apache.axis.EngineConfiguration;
 import org.apache.axis.EngineConfigurationFactory;
+import org.apache.axis.Message;
 import org.apache.axis.MessageContext;
+import org.apache.axis.SOAPPart;
 import org.apache.axis.client.Service;
 import org.apache.axis.client.Stub;
+import org.apache.axis.configuration.SimpleProvider;
 import org.apache.axis.message.SOAPHeaderElement;
 import org.apache.axis.transport.http.HTTPConstants;
+import org.apache.axis.utils.XMLUtils;
 import org.apache.commons.beanutils.BeanUtils;
+import org.w3c.dom.Element;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import javax.xml.namespace.QName;
 import javax.xml.soap.SOAPException;
@@ -48,11 +67,30 @@ import javax.xml.soap.SOAPException;
  */
 public class AxisHandler extends SoapClientHandler<Stub> {
 
+  /**
+   * The private flag Axis uses to make a stub register its type mappings on
+   * its first call, or {@code null} if it is not accessible.
+   */
+  private static final Field STUB_FIRST_CALL_FIELD = getStubFirstCallField();
+
   private final EngineConfigurationFactory engineConfigurationFactory;
-  
+  private final AdsLibConfiguration adsLibConfiguration;
+
+  /**
+   * Engines keyed by locator class. Each engine's type mapping registry is
+   * populated once, when the first stub of that locator class is created.
+   * Generated stub constructors still call {@code setTypeMappingVersion} on
+   * the registry, so later stubs are constructed while holding the engine's
+   * monitor.
+   */
+  private final ConcurrentMap<Class<?>, AxisEngine> sharedEngines;
+
   @Inject
-  public AxisHandler(EngineConfigurationFactory engineConfigurationFactory) {
+  public AxisHandler(EngineConfigurationFactory engineConfigurationFactory,
+      AdsLibConfiguration adsLibConfiguration) {
     this.engineConfigurationFactory = engineConfigurationFactory;
+    this.adsLibConfiguration = adsLibConfiguration;
+    this.sharedEngines = Maps.newConcurrentMap();
   }
   
   /**
@@ -152,7 +190,10 @@ public class AxisHandler extends SoapClientHandler<Stub> {
   }
 
   /**
-   * Set whether SOAP requests should use compression.
+   * Set whether SOAP requests should use compression. With the
+   * {@link GzipCommonsHTTPSender}, requests of at most
+   * {@link AdsLibConfiguration#getCompressionThresholdBytes()} bytes are sent
+   * uncompressed.
    * 
    * @param soapClient the client to set compression settings for
    * @param compress whether or not to use compression
@@ -161,11 +202,18 @@ public class AxisHandler extends SoapClientHandler<Stub> {
   public void setCompression(Stub soapClient, boolean compress) {
     soapClient._setProperty(HTTPConstants.MC_ACCEPT_GZIP, compress);
     soapClient._setProperty(HTTPConstants.MC_GZIP_REQUEST, compress);
+    soapClient._setProperty(GzipCommonsHTTPSender.COMPRESSION_THRESHOLD_BYTES_PROPERTY,
+        adsLibConfiguration.getCompressionThresholdBytes());
   }
 
   /**
    * Creates a SOAP client using a SOAP service descriptor.
    *
+   * <p>All clients created for the same locator class share one Axis engine,
+   * and therefore one type mapping registry. The serializer and deserializer
+   * factories of the generated stub are registered in it only once, instead of
+   * on the first call of every new stub.
+   *
    * @param soapServiceDescriptor the descriptor to use for creating a client
    * @return the SOAP client for this descriptor
    * @throws ServiceException thrown if the SOAP client cannot be created
@@ -176,13 +224,22 @@ public class AxisHandler extends SoapClientHandler<Stub> {
     try {
       if (soapServiceDescriptor instanceof AxisCompatible) {
         AxisCompatible axisCompatibleService = (AxisCompatible) soapServiceDescriptor;
-        EngineConfiguration engineConfiguration =
-            engineConfigurationFactory.getClientEngineConfig();
-        Service locator = (Service) axisCompatibleService.getLocatorClass()
-            .getConstructor(new Class[] {EngineConfiguration.class})
-            .newInstance(new Object[] {engineConfiguration});
-        return (Stub) locator.getClass().getMethod("getPort", Class.class)
-            .invoke(locator, soapServiceDescriptor.getInterfaceClass());
+        Class<?> locatorClass = axisCompatibleService.getLocatorClass();
+        Class<?> interfaceClass = soapServiceDescriptor.getInterfaceClass();
+        AxisEngine sharedEngine = getSharedEngine(locatorClass, interfaceClass);
+        // The locator builds a throwaway engine from an empty configuration
+        // before it is pointed at the shared one.
+        Service locator = createLocator(locatorClass, new SimpleProvider());
+        locator.setEngineConfiguration(sharedEngine.getConfig());
+        locator.setEngine(sharedEngine);
+        Stub stub;
+        // The stub constructor re-registers the default type mappings in the
+        // shared registry, which is backed by a HashMap.
+        synchronized (sharedEngine) {
+          stub = getPort(locator, interfaceClass);
+        }
+        skipTypeMappingRegistration(stub);
+        return stub;
       }
       throw new ServiceException("Service [" + soapServiceDescriptor +
           "] not compatible with Axis", null);
@@ -203,6 +260,84 @@ public class AxisHandler extends SoapClientHandler<Stub> {
     }
   }
 
+  /**
+   * Gets the engine shared by all locators of the given class, creating it and
+   * registering the type mappings of the service's stub if this is the first
+   * client created for the locator class.
+   */
+  private AxisEngine getSharedEngine(Class<?> locatorClass, Class<?> interfaceClass)
+      throws NoSuchMethodException, IllegalAccessException, InvocationTargetException,
+      InstantiationException {
+    AxisEngine sharedEngine = sharedEngines.get(locatorClass);
+    if (sharedEngine == null) {
+      synchronized (sharedEngines) {
+        sharedEngine = sharedEngines.get(locatorClass);
+        if (sharedEngine == null) {
+          Service locator =
+              createLocator(locatorClass, engineConfigurationFactory.getClientEngineConfig());
+          registerTypeMappings(getPort(locator, interfaceClass));
+          sharedEngine = locator.getEngine();
+          sharedEngines.put(locatorClass, sharedEngine);
+        }
+      }
+    }
+    return sharedEngine;
+  }
+
+  private Service createLocator(Class<?> locatorClass, EngineConfiguration engineConfiguration)
+      throws NoSuchMethodException, IllegalAccessException, InvocationTargetException,
+      InstantiationException {
+    return (Service) locatorClass.getConstructor(new Class[] {EngineConfiguration.class})
+        .newInstance(new Object[] {engineConfiguration});
+  }
+
+  private Stub getPort(Service locator, Class<?> interfaceClass)
+      throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+    return (Stub) locator.getClass().getMethod("getPort", Class.class)
+        .invoke(locator, interfaceClass);
+  }
+
+  /**
+   * Registers the type mappings of a generated stub with its service by making
+   * the stub create its first call. Stubs that do not override
+   * {@code createCall} have no type mappings of their own.
+   */
+  private void registerTypeMappings(Stub stub)
+      throws IllegalAccessException, InvocationTargetException {
+    Method createCall;
+    try {
+      createCall = stub.getClass().getDeclaredMethod("createCall");
+    } catch (NoSuchMethodException e) {
+      return;
+    }
+    createCall.setAccessible(true);
+    createCall.invoke(stub);
+  }
+
+  /**
+   * Marks a stub as having already made its first call, so that it does not
+   * create and register its serializer factories again. If the flag is not
+   * accessible the stub registers them as usual, which leaves the shared
+   * registry unchanged since every mapping is already present.
+   */
+  private void skipTypeMappingRegistration(Stub stub) throws IllegalAccessException {
+    if (STUB_FIRST_CALL_FIELD != null) {
+      STUB_FIRST_CALL_FIELD.setBoolean(stub, false);
+    }
+  }
+
+  private static Field getStubFirstCallField() {
+    try {
+      Field field = Stub.class.getDeclaredField("firstCall");
+      field.setAccessible(true);
+      return field;
+    } catch (NoSuchFieldException e) {
+      return null;
+    } catch (SecurityException e) {
+      return null;
+    }
+  }
+
   /**
    * Invoke a SOAP call.
    *
@@ -213,7 +348,14 @@ public class AxisHandler extends SoapClientHandler<Stub> {
   public SoapCallReturn invokeSoapCall(SoapCall<Stub> soapCall) {
     Stub stub = soapCall.getSoapClient();
     SoapCallReturn.Builder builder = new SoapCallReturn.Builder();
-    synchronized (stub) {
+    Lock lock = getSoapClientLock(stub);
+    lock.lock();
+    try {
+      SoapCallTimings.mark(SoapCallTimings.Mark.SOAP_CLIENT_ACQUIRED);
+      int stubTimeoutMillis = stub.getTimeout();
+      if (soapCall.getTimeoutMillis() > 0) {
+        stub.setTimeout(getCallTimeoutMillis(stubTimeoutMillis, soapCall.getTimeoutMillis()));
+      }
       Object result = null;
       try {
         result = invoke(soapCall);
@@ -222,27 +364,152 @@ public class AxisHandler extends SoapClientHandler<Stub> {
       } catch (Exception e) {
         builder.withException(e);
       } finally {
+        if (soapCall.getTimeoutMillis() > 0) {
+          // A stub without a timeout of its own uses the Axis default.
+          stub.setTimeout(stubTimeoutMillis > 0
+              ? stubTimeoutMillis : Constants.DEFAULT_MESSAGE_TIMEOUT);
+        }
+        SoapCallTimings.mark(SoapCallTimings.Mark.RESPONSE_DESERIALIZED);
+        builder.withTimings(SoapCallTimings.snapshotCurrent());
         MessageContext messageContext = stub._getCall().getMessageContext();
-        try {
-          builder.withRequestInfo(new RequestInfo.Builder().withSoapRequestXml(
-              messageContext.getRequestMessage().getSOAPPartAsString())
-                  .withMethodName(stub._getCall().getOperationName().getLocalPart())
-                  .withServiceName(stub.getPortName().getLocalPart())
-                  .withUrl(stub._getCall().getTargetEndpointAddress())
-                  .build());
-        } catch (AxisFault e) {
-          builder.withException(e);
+        builder.withRequestInfo(new RequestInfo.Builder()
+            .withSoapRequestXml(createSoapXmlSupplier(messageContext.getRequestMessage()))
+            .withMethodName(stub._getCall().getOperationName().getLocalPart())
+            .withServiceName(stub.getPortName().getLocalPart())
+            .withUrl(stub._getCall().getTargetEndpointAddress())
+            .withContentLength(getRequestContentLength(messageContext))
+            .withCompressionStats(getCompressionStats(messageContext,
+                GzipCommonsHTTPSender.REQUEST_COMPRESSION_STATS_PROPERTY))
+            .build());
+        builder.withResponseInfo(new ResponseInfo.Builder()
+            .withSoapResponseXml(createSoapXmlSupplier(messageContext.getResponseMessage()))
+            .withContentLength(getContentLength(messageContext.getResponseMessage()))
+            .withCompressionStats(getCompressionStats(messageContext,
+                GzipCommonsHTTPSender.RESPONSE_COMPRESSION_STATS_PROPERTY))
+            .build());
+      }
+
+      return builder.withReturnValue(result).build();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the timeout of a call limited to {@code callTimeoutMillis}, which is
+   * the shorter of that limit and the stub's own timeout, if set.
+   */
+  private static int getCallTimeoutMillis(int stubTimeoutMillis, int callTimeoutMillis) {
+    return stubTimeoutMillis > 0 ? Math.min(stubTimeoutMillis, callTimeoutMillis)
+        : callTimeoutMillis;
+  }
+
+  /**
+   * Gets the size of the SOAP message if it is known without serializing the
+   * message, either because the message is held as bytes or because the
+   * transport recorded a {@code Content-Length} header for it.
+   *
+   * @param message the request or response message, which may be {@code null}
+   * @return the size of the message in bytes, or {@code -1} if not known
+   */
+  @VisibleForTesting
+  static long getContentLength(Message message) {
+    if (message == null) {
+      return -1;
+    }
+    int form = ((SOAPPart) message.getSOAPPart()).getCurrentForm();
+    if (form == SOAPPart.FORM_BYTES || form == SOAPPart.FORM_OPTIMIZED) {
+      try {
+        return message.getContentLength();
+      } catch (AxisFault e) {
+        return -1;
+      }
+    }
+    String[] contentLength =
+        message.getMimeHeaders().getHeader(HTTPConstants.HEADER_CONTENT_LENGTH);
+    if (contentLength != null && contentLength.length > 0) {
+      try {
+        return Long.parseLong(contentLength[0].trim());
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the number of bytes the {@link GzipCommonsHTTPSender} sent for the
+   * request, or else the size of the request message if it is known.
+   */
+  @VisibleForTesting
+  static long getRequestContentLength(MessageContext messageContext) {
+    Object contentLength = messageContext.getProperty(
+        GzipCommonsHTTPSender.REQUEST_CONTENT_LENGTH_PROPERTY);
+    if (contentLength instanceof Long && (Long) contentLength >= 0) {
+      return (Long) contentLength;
+    }
+    return getContentLength(messageContext.getRequestMessage());
+  }
+
+  /**
+   * Gets the compression statistics the {@link GzipCommonsHTTPSender} set on
+   * the message context, or {@code null} if the message was not compressed or
+   * was sent by another sender.
+   */
+  private static CompressionStats getCompressionStats(MessageContext messageContext,
+      String propertyName) {
+    Object compressionStats = messageContext.getProperty(propertyName);
+    return compressionStats instanceof CompressionStats
+        ? (CompressionStats) compressionStats : null;
+  }
+
+  /**
+   * Creates a supplier which serializes the SOAP message only if its XML is
+   * requested. The message itself is captured rather than the message context,
+   * since the context is reused by the next call on the stub.
+   *
+   * @param message the request or response message, which may be {@code null}
+   * @return a lazy supplier of the message XML
+   */
+  private Supplier<String> createSoapXmlSupplier(final Message message) {
+    return SoapXmlSuppliers.lazy(new Supplier<String>() {
+      @Override
+      public String get() {
+        if (message == null) {
+          return null;
         }
         try {
-          builder.withResponseInfo(new ResponseInfo.Builder().withSoapResponseXml(
-              messageContext.getResponseMessage().getSOAPPartAsString()).build());
+          return message.getSOAPPartAsString();
         } catch (AxisFault e) {
-          builder.withException(e);
+          return "Exception logging SOAP message: " + e;
         }
       }
+    }, adsLibConfiguration.getMaxSoapXmlLength());
+  }
 
-      return builder.withReturnValue(result).build();
+  /**
+   * Also treats faults Axis raises for HTTP 5xx responses without a SOAP
+   * fault as transient.
+   *
+   * @see SoapClientHandlerInterface#isTransientError(Throwable)
+   */
+  @Override
+  public boolean isTransientError(Throwable exception) {
+    if (super.isTransientError(exception)) {
+      return true;
+    }
+    if (exception instanceof AxisFault) {
+      Element httpErrorCode =
+          ((AxisFault) exception).lookupFaultDetail(Constants.QNAME_FAULTDETAIL_HTTPERRORCODE);
+      if (httpErrorCode != null) {
+        try {
+          return Integer.parseInt(XMLUtils.getChildCharacterData(httpErrorCode).trim()) >= 500;
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
     }
+    return false;
   }
 
   /**
@@ -0,0 +1,146 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.axis;
+
+import com.google.api.ads.common.lib.soap.streaming.SoapPageSplitter;
+import com.google.api.ads.common.lib.soap.streaming.StreamingPages;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.SOAPPart;
+import org.apache.axis.handlers.BasicHandler;
+import org.apache.axis.message.MessageElement;
+import org.apache.axis.transport.http.HTTPConstants;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+
+import javax.xml.namespace.QName;
+import javax.xml.soap.MimeHeader;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Axis transport response handler that streams the entries of a result page
+ * to the {@link StreamingPages} of the calling thread, if there are any.
+ * <p>
+ * The raw response is split with a {@link SoapPageSplitter} before Axis parses
+ * it. Each entry is deserialized on its own with the type mappings of the
+ * engine and delivered, and the response message is replaced by the response
+ * without its entries, which Axis then deserializes as usual. Responses of
+ * calls that are not streamed are left untouched.
+ * </p>
+ */
+public class StreamingResponseHandler extends BasicHandler {
+
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  public void invoke(MessageContext msgContext) throws AxisFault {
+    StreamingPages streamingPages = StreamingPages.getCurrent();
+    Message response = msgContext.getResponseMessage();
+    if (streamingPages == null || response == null) {
+      return;
+    }
+    String contentType = getMimeHeader(response, HTTPConstants.HEADER_CONTENT_TYPE);
+    if (contentType != null && contentType.toLowerCase(Locale.US).startsWith("multipart/")) {
+      return;
+    }
+    InputStream responseStream = getResponseStream((SOAPPart) response.getSOAPPart());
+    if (responseStream == null) {
+      return;
+    }
+    MessageContext entryContext = new MessageContext(msgContext.getAxisEngine());
+    entryContext.setEncodingStyle(msgContext.getEncodingStyle());
+    entryContext.setSOAPConstants(msgContext.getSOAPConstants());
+    ByteArrayOutputStream remainder = new ByteArrayOutputStream();
+    try {
+      try {
+        SoapPageSplitter splitter = new SoapPageSplitter(responseStream, remainder,
+            streamingPages.getEntryElements());
+        byte[] entry;
+        while ((entry = splitter.nextEntry()) != null) {
+          streamingPages.handleEntry(deserialize(entry, entryContext,
+              streamingPages.getEntryClass()));
+        }
+      } finally {
+        responseStream.close();
+      }
+    } catch (XMLStreamException e) {
+      throw AxisFault.makeFault(e);
+    } catch (IOException e) {
+      throw AxisFault.makeFault(e);
+    }
+
+    Message remainderMessage = new Message(remainder.toByteArray(), false, contentType,
+        getMimeHeader(response, HTTPConstants.HEADER_CONTENT_LOCATION));
+    remainderMessage.setMessageType(Message.RESPONSE);
+    @SuppressWarnings("unchecked")
+    Iterator<MimeHeader> mimeHeaders = response.getMimeHeaders().getAllHeaders();
+    while (mimeHeaders.hasNext()) {
+      MimeHeader mimeHeader = mimeHeaders.next();
+      if (!HTTPConstants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(mimeHeader.getName())) {
+        remainderMessage.getMimeHeaders().addHeader(mimeHeader.getName(), mimeHeader.getValue());
+      }
+    }
+    msgContext.setResponseMessage(remainderMessage);
+    streamingPages.recordStreamedResponse();
+  }
+
+  /**
+   * Gets the unparsed response, or {@code null} if it has already been parsed.
+   */
+  private static InputStream getResponseStream(SOAPPart soapPart) throws AxisFault {
+    switch (soapPart.getCurrentForm()) {
+      case SOAPPart.FORM_INPUTSTREAM:
+        return (InputStream) soapPart.getCurrentMessage();
+      case SOAPPart.FORM_BYTES:
+      case SOAPPart.FORM_STRING:
+        return new ByteArrayInputStream(soapPart.getAsBytes());
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Deserializes an entry held in a SOAP envelope of its own, using the type
+   * named by its {@code xsi:type} attribute, if any, or else the entry class.
+   */
+  private static Object deserialize(byte[] entry, MessageContext entryContext,
+      Class<?> entryClass) throws AxisFault {
+    Message entryMessage = new Message(entry, false);
+    entryMessage.setMessageType(Message.RESPONSE);
+    entryMessage.setMessageContext(entryContext);
+    try {
+      MessageElement element = (MessageElement) entryMessage.getSOAPEnvelope().getFirstBody();
+      QName type = element.getType();
+      return type != null ? element.getValueAsType(type) : element.getObjectValue(entryClass);
+    } catch (AxisFault e) {
+      throw e;
+    } catch (Exception e) {
+      throw AxisFault.makeFault(e);
+    }
+  }
+
+  private static String getMimeHeader(Message message, String name) {
+    String[] values = message.getMimeHeaders().getHeader(name);
+    return values == null || values.length == 0 ? null : values[0];
+  }
+}
@@ -15,20 +15,32 @@
 package com.google.api.ads.common.lib.soap.axis.conf;
 
 import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+import com.google.api.ads.common.lib.soap.axis.StreamingResponseHandler;
 import com.google.inject.Inject;
 
+import org.apache.axis.AxisFault;
 import org.apache.axis.EngineConfiguration;
 import org.apache.axis.EngineConfigurationFactory;
+import org.apache.axis.Handler;
+import org.apache.axis.SimpleChain;
+import org.apache.axis.SimpleTargetedChain;
+import org.apache.axis.TargetedChain;
+import org.apache.axis.client.AxisClient;
 import org.apache.axis.configuration.EngineConfigurationFactoryDefault;
 import org.apache.axis.configuration.FileProvider;
+import org.apache.axis.configuration.SimpleProvider;
 
 /**
  * EngineConfigurationFactory implementation that configures Axis clients using a custom
  * configuration file if compression is enabled and no client customization has been specified
- * in the environment.
+ * in the environment. If HTTP connection pooling is enabled, the HTTP transport also sends requests
+ * over the connections of a shared {@link AxisHttpConnectionPool}, and if response streaming is
+ * enabled, it ends with a {@link StreamingResponseHandler}.
  */
 public class AdsAxisEngineConfigurationFactory implements EngineConfigurationFactory {
 
+  private static final String HTTP_TRANSPORT_NAME = "http";
+
   private final AdsLibConfiguration adsLibConfiguration;
   private final EngineConfigurationFactory wrappedFactory;
   
@@ -42,16 +54,69 @@ public class AdsAxisEngineConfigurationFactory implements EngineConfigurationFac
 
   @Override
   public EngineConfiguration getClientEngineConfig() {
-    // Only return the custom configuration for compression if the client config has not
-    // been overridden.
-    if (System.getProperty(EngineConfigurationFactoryDefault.OPTION_CLIENT_CONFIG_FILE) == null
-        && adsLibConfiguration.isCompressionEnabled()) {
+    // Only return the custom configuration if the client config has not been overridden.
+    if (System.getProperty(EngineConfigurationFactoryDefault.OPTION_CLIENT_CONFIG_FILE) != null) {
+      return wrappedFactory.getClientEngineConfig();
+    }
+    boolean pooled = adsLibConfiguration.getSoapHttpMaxConnectionsPerHost() > 0;
+    boolean streaming = adsLibConfiguration.isSoapResponseStreamingEnabled();
+    if (!pooled && !streaming) {
+      return createClientEngineConfig();
+    }
+    Handler requestHandler = null;
+    Handler pivotHandler;
+    Handler responseHandler = null;
+    if (pooled) {
+      pivotHandler =
+          new PooledCommonsHTTPSender(AxisHttpConnectionPool.getPool(adsLibConfiguration));
+    } else {
+      // Keeps the configured sender, loaded by an engine of its own since a
+      // configuration can only be read by configuring an engine.
+      TargetedChain httpTransport = getHttpTransport(createClientEngineConfig());
+      requestHandler = httpTransport.getRequestHandler();
+      pivotHandler = httpTransport.getPivotHandler();
+      responseHandler = httpTransport.getResponseHandler();
+    }
+    if (streaming) {
+      if (responseHandler == null) {
+        responseHandler = new StreamingResponseHandler();
+      } else {
+        SimpleChain responseChain = new SimpleChain();
+        responseChain.addHandler(responseHandler);
+        responseChain.addHandler(new StreamingResponseHandler());
+        responseHandler = responseChain;
+      }
+    }
+    // Transports not deployed here are looked up in the wrapped configuration.
+    SimpleProvider clientEngineConfig = new SimpleProvider(createClientEngineConfig());
+    clientEngineConfig.deployTransport(HTTP_TRANSPORT_NAME,
+        new SimpleTargetedChain(requestHandler, pivotHandler, responseHandler));
+    return clientEngineConfig;
+  }
+
+  /**
+   * Creates the client configuration to use as it is, or to customize.
+   */
+  private EngineConfiguration createClientEngineConfig() {
+    if (adsLibConfiguration.isCompressionEnabled()) {
       return new FileProvider(
           this.getClass().getResourceAsStream("wsdd/ads-axis-client-config.wsdd"));
     }
     return wrappedFactory.getClientEngineConfig();
   }
 
+  private static TargetedChain getHttpTransport(EngineConfiguration clientEngineConfig) {
+    try {
+      Handler transport = new AxisClient(clientEngineConfig).getTransport(HTTP_TRANSPORT_NAME);
+      if (transport instanceof TargetedChain) {
+        return (TargetedChain) transport;
+      }
+      throw new IllegalStateException("No " + HTTP_TRANSPORT_NAME + " transport is configured.");
+    } catch (AxisFault e) {
+      throw new IllegalStateException("Could not load the client configuration.", e);
+    }
+  }
+
   @Override
   public EngineConfiguration getServerEngineConfig() {
     return wrappedFactory.getServerEngineConfig();
@@ -0,0 +1,166 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap.axis.conf;
+
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+import com.google.common.collect.ImmutableList;
+
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A pool of keep-alive HTTP connections shared by the Axis engines of all
+ * services configured with the same connection settings, so that calls reuse
+ * TCP connections and TLS sessions instead of opening new ones.
+ * <p>
+ * Connections idle for longer than the idle timeout are closed by a daemon
+ * thread of each pool. The connect and read timeouts of the pool apply to
+ * every call; the senders never change them, and only lower the read timeout
+ * of a single request to its SOAP client timeout. The pools created so far
+ * can be inspected with {@link #getPools()}.
+ * </p>
+ */
+public final class AxisHttpConnectionPool {
+
+  private static final ConcurrentMap<List<Long>, AxisHttpConnectionPool> POOLS =
+      new ConcurrentHashMap<List<Long>, AxisHttpConnectionPool>();
+
+  private final MultiThreadedHttpConnectionManager connectionManager;
+  private final long idleTimeoutMillis;
+  private final long poolTimeoutMillis;
+
+  private AxisHttpConnectionPool(int maxConnectionsPerHost, int maxTotalConnections,
+      long idleTimeoutMillis, int connectTimeoutMillis, int readTimeoutMillis,
+      long poolTimeoutMillis) {
+    this.connectionManager = new MultiThreadedHttpConnectionManager();
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.poolTimeoutMillis = poolTimeoutMillis;
+    HttpConnectionManagerParams params = connectionManager.getParams();
+    params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+    params.setMaxTotalConnections(
+        maxTotalConnections > 0 ? maxTotalConnections : maxConnectionsPerHost);
+    params.setConnectionTimeout(connectTimeoutMillis);
+    params.setSoTimeout(readTimeoutMillis);
+    params.setStaleCheckingEnabled(true);
+  }
+
+  /**
+   * Gets the pool for the connection settings of the configuration, creating
+   * it if necessary.
+   *
+   * @param adsLibConfiguration the lib configuration, whose
+   *     {@link AdsLibConfiguration#getSoapHttpMaxConnectionsPerHost()} must be
+   *     positive
+   * @return the pool
+   */
+  public static AxisHttpConnectionPool getPool(AdsLibConfiguration adsLibConfiguration) {
+    int maxConnectionsPerHost = adsLibConfiguration.getSoapHttpMaxConnectionsPerHost();
+    int maxTotalConnections = adsLibConfiguration.getSoapHttpMaxTotalConnections();
+    long idleTimeoutMillis = adsLibConfiguration.getSoapHttpIdleTimeoutMillis();
+    int connectTimeoutMillis = adsLibConfiguration.getSoapHttpConnectTimeoutMillis();
+    int readTimeoutMillis = adsLibConfiguration.getSoapHttpReadTimeoutMillis();
+    long poolTimeoutMillis = adsLibConfiguration.getSoapHttpPoolTimeoutMillis();
+    if (maxConnectionsPerHost <= 0) {
+      throw new IllegalArgumentException("Pooling is disabled in the configuration.");
+    }
+    List<Long> settings = ImmutableList.<Long>of((long) maxConnectionsPerHost,
+        (long) maxTotalConnections, idleTimeoutMillis, (long) connectTimeoutMillis,
+        (long) readTimeoutMillis, poolTimeoutMillis);
+    AxisHttpConnectionPool pool = POOLS.get(settings);
+    if (pool == null) {
+      AxisHttpConnectionPool newPool = new AxisHttpConnectionPool(maxConnectionsPerHost,
+          maxTotalConnections, idleTimeoutMillis, connectTimeoutMillis, readTimeoutMillis,
+          poolTimeoutMillis);
+      pool = POOLS.putIfAbsent(settings, newPool);
+      if (pool == null) {
+        pool = newPool;
+        pool.startClosingIdleConnections();
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Starts a daemon thread closing connections idle for longer than the idle
+   * timeout, if there is one.
+   */
+  private void startClosingIdleConnections() {
+    if (idleTimeoutMillis <= 0) {
+      return;
+    }
+    IdleConnectionTimeoutThread idleConnectionCloser = new IdleConnectionTimeoutThread();
+    idleConnectionCloser.setName("ads-axis-idle-connection-closer");
+    idleConnectionCloser.setDaemon(true);
+    idleConnectionCloser.setConnectionTimeout(idleTimeoutMillis);
+    idleConnectionCloser.setTimeoutInterval(Math.max(idleTimeoutMillis / 2, 1));
+    idleConnectionCloser.addConnectionManager(connectionManager);
+    idleConnectionCloser.start();
+  }
+
+  /**
+   * Gets the pools created so far.
+   */
+  public static Collection<AxisHttpConnectionPool> getPools() {
+    return ImmutableList.copyOf(POOLS.values());
+  }
+
+  /**
+   * Gets the connection manager the pooled HTTP transport sends requests with.
+   */
+  public HttpConnectionManager getConnectionManager() {
+    return connectionManager;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return connectionManager.getParams().getDefaultMaxConnectionsPerHost();
+  }
+
+  public int getMaxTotalConnections() {
+    return connectionManager.getParams().getMaxTotalConnections();
+  }
+
+  public long getIdleTimeoutMillis() {
+    return idleTimeoutMillis;
+  }
+
+  /**
+   * Gets the time in milliseconds a call waits for a connection when all are
+   * in use, or {@code 0} if it waits indefinitely.
+   */
+  public long getPoolTimeoutMillis() {
+    return poolTimeoutMillis;
+  }
+
+  /**
+   * Gets the number of open connections, whether idle or in use.
+   */
+  public int getConnectionsInPool() {
+    return connectionManager.getConnectionsInPool();
+  }
+
+  /**
+   * Gets the number of connections in use by calls.
+   */
+  public int getConnectionsInUse() {
+    return connectionManager.getConnectionsInUse();
+  }
+}
@@ -0,0 +1,541 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.axis.conf;
+
+import com.google.api.ads.common.lib.utils.compression.CompressionStats;
+import com.google.api.ads.common.lib.utils.compression.GzipStreams;
+import com.google.api.ads.common.lib.utils.compression.ThresholdGzipOutputStream;
+import com.google.common.io.CountingOutputStream;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.Constants;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.soap.SOAP12Constants;
+import org.apache.axis.soap.SOAPConstants;
+import org.apache.axis.transport.http.CommonsHTTPSender;
+import org.apache.axis.transport.http.HTTPConstants;
+import org.apache.axis.utils.JavaUtils;
+import org.apache.axis.utils.Messages;
+import org.apache.axis.utils.NetworkUtils;
+import org.apache.commons.httpclient.Cookie;
+import org.apache.commons.httpclient.Credentials;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.HttpVersion;
+import org.apache.commons.httpclient.NTCredentials;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.cookie.CookiePolicy;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.xml.soap.MimeHeader;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPException;
+
+/**
+ * A {@link CommonsHTTPSender} that compresses requests and decompresses
+ * responses with pooled {@link java.util.zip.Deflater} and
+ * {@link java.util.zip.Inflater} instances, and records how well they
+ * compressed.
+ * <p>
+ * A request is compressed if {@link HTTPConstants#MC_GZIP_REQUEST} is set and
+ * it is larger than {@link #COMPRESSION_THRESHOLD_BYTES_PROPERTY}. It is
+ * serialized once, straight into the deflater once it exceeds the threshold,
+ * and sent with its compressed length, so the uncompressed request is never
+ * held in memory as a whole. A gzip response is decompressed as it is parsed.
+ * The {@link CompressionStats} of each are set on the message context as
+ * {@link #REQUEST_COMPRESSION_STATS_PROPERTY} and
+ * {@link #RESPONSE_COMPRESSION_STATS_PROPERTY}. The statistics of the
+ * response are complete once it has been deserialized. The number of bytes
+ * sent for the request is set as {@link #REQUEST_CONTENT_LENGTH_PROPERTY}.
+ * </p>
+ * <p>
+ * Apart from compression, requests are sent as {@link CommonsHTTPSender}
+ * sends them, since its methods for doing so cannot be reused.
+ * </p>
+ */
+public class GzipCommonsHTTPSender extends CommonsHTTPSender {
+
+  /**
+   * The message context property holding the number of bytes a request must
+   * exceed to be compressed. Requests are always compressed if it is not set.
+   */
+  public static final String COMPRESSION_THRESHOLD_BYTES_PROPERTY =
+      "com.google.api.ads.compressionThresholdBytes";
+
+  /**
+   * The message context property holding the {@link CompressionStats} of the
+   * request, if it was compressed.
+   */
+  public static final String REQUEST_COMPRESSION_STATS_PROPERTY =
+      "com.google.api.ads.requestCompressionStats";
+
+  /**
+   * The message context property holding the {@link CompressionStats} of the
+   * response, if it was compressed.
+   */
+  public static final String RESPONSE_COMPRESSION_STATS_PROPERTY =
+      "com.google.api.ads.responseCompressionStats";
+
+  /**
+   * The message context property holding the number of bytes sent for the
+   * request body, as a {@link Long}.
+   */
+  public static final String REQUEST_CONTENT_LENGTH_PROPERTY =
+      "com.google.api.ads.requestContentLength";
+
+  @Override
+  public void invoke(MessageContext msgContext) throws AxisFault {
+    msgContext.removeProperty(REQUEST_CONTENT_LENGTH_PROPERTY);
+    msgContext.removeProperty(REQUEST_COMPRESSION_STATS_PROPERTY);
+    msgContext.removeProperty(RESPONSE_COMPRESSION_STATS_PROPERTY);
+    try {
+      URL targetUrl = new URL(msgContext.getStrProp(MessageContext.TRANS_URL));
+      HttpClient httpClient = new HttpClient(connectionManager);
+      httpClient.getParams().setConnectionManagerTimeout(getConnectionPoolTimeoutMillis());
+      HostConfiguration hostConfiguration =
+          getHostConfiguration(httpClient, msgContext, targetUrl);
+
+      HttpMethodBase method;
+      RequestEntity requestEntity = null;
+      if (isPosting(msgContext)) {
+        method = new PostMethod(targetUrl.toString());
+        method.getParams().setBooleanParameter(HttpMethodParams.USE_EXPECT_CONTINUE, false);
+        boolean chunked = addContextInfo(method, httpClient, msgContext, targetUrl);
+        requestEntity = createRequestEntity(method, msgContext, chunked);
+        ((PostMethod) method).setRequestEntity(requestEntity);
+      } else {
+        method = new GetMethod(targetUrl.toString());
+        addContextInfo(method, httpClient, msgContext, targetUrl);
+      }
+      if (HTTPConstants.HEADER_PROTOCOL_V10.equals(
+          msgContext.getStrProp(MessageContext.HTTP_TRANSPORT_VERSION))) {
+        method.getParams().setVersion(HttpVersion.HTTP_1_0);
+      }
+
+      // Cookies are set on the state, since the method overwrites its own
+      // cookies with those of the state.
+      if (msgContext.getMaintainSession()) {
+        HttpState state = httpClient.getState();
+        method.getParams().setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
+        String host = hostConfiguration.getHost();
+        String path = targetUrl.getPath();
+        boolean secure = hostConfiguration.getProtocol().isSecure();
+        addCookies(msgContext, state, HTTPConstants.HEADER_COOKIE, host, path, secure);
+        addCookies(msgContext, state, HTTPConstants.HEADER_COOKIE2, host, path, secure);
+        httpClient.setState(state);
+      }
+
+      int returnCode = httpClient.executeMethod(hostConfiguration, method, null);
+      if (requestEntity != null) {
+        msgContext.setProperty(REQUEST_CONTENT_LENGTH_PROPERTY, getBytesSent(requestEntity));
+      }
+      String contentType = getResponseHeader(method, HTTPConstants.HEADER_CONTENT_TYPE);
+      String contentLocation = getResponseHeader(method, HTTPConstants.HEADER_CONTENT_LOCATION);
+      checkReturnCode(msgContext, method, returnCode, contentType);
+
+      Message responseMessage = new Message(createResponseStream(msgContext, method), false,
+          contentType, contentLocation);
+      MimeHeaders responseMimeHeaders = responseMessage.getMimeHeaders();
+      for (Header responseHeader : method.getResponseHeaders()) {
+        responseMimeHeaders.addHeader(responseHeader.getName(), responseHeader.getValue());
+      }
+      responseMessage.setMessageType(Message.RESPONSE);
+      msgContext.setResponseMessage(responseMessage);
+
+      if (msgContext.getMaintainSession()) {
+        for (Header responseHeader : method.getResponseHeaders()) {
+          if (responseHeader.getName().equalsIgnoreCase(HTTPConstants.HEADER_SET_COOKIE)) {
+            handleCookie(HTTPConstants.HEADER_COOKIE, responseHeader.getValue(), msgContext);
+          } else if (responseHeader.getName().equalsIgnoreCase(
+              HTTPConstants.HEADER_SET_COOKIE2)) {
+            handleCookie(HTTPConstants.HEADER_COOKIE2, responseHeader.getValue(), msgContext);
+          }
+        }
+      }
+      if (msgContext.isPropertyTrue("axis.one.way")) {
+        method.releaseConnection();
+      }
+    } catch (Exception e) {
+      log.debug(e);
+      throw AxisFault.makeFault(e);
+    }
+  }
+
+  /**
+   * Gives the connection manager of this sender the Axis default message
+   * timeout as connect timeout, unless the client properties set one. The
+   * manager is shared by every call through this sender, so its timeouts are
+   * not changed per call.
+   */
+  @Override
+  protected void initialize() {
+    super.initialize();
+    if (connectionManager.getParams().getConnectionTimeout() == 0) {
+      connectionManager.getParams().setConnectionTimeout(Constants.DEFAULT_MESSAGE_TIMEOUT);
+    }
+  }
+
+  /**
+   * Gets the time in milliseconds a call waits for a connection when all are
+   * in use, or {@code 0} to wait indefinitely.
+   */
+  protected long getConnectionPoolTimeoutMillis() {
+    return clientProperties.getConnectionPoolTimeout();
+  }
+
+  /**
+   * Returns {@code true} unless a SOAP 1.2 call asks for another HTTP method
+   * than POST.
+   */
+  private static boolean isPosting(MessageContext msgContext) {
+    if (msgContext.getSOAPConstants() == SOAPConstants.SOAP12_CONSTANTS) {
+      String webMethod = msgContext.getStrProp(SOAP12Constants.PROP_WEBMETHOD);
+      return webMethod == null || webMethod.equals(HTTPConstants.HEADER_POST);
+    }
+    return true;
+  }
+
+  /**
+   * Creates the entity sending the request message, compressing it if it is
+   * larger than the threshold.
+   */
+  private RequestEntity createRequestEntity(HttpMethodBase method, MessageContext msgContext,
+      boolean chunked) throws IOException, SOAPException {
+    Message requestMessage = msgContext.getRequestMessage();
+    if (!msgContext.isPropertyTrue(HTTPConstants.MC_GZIP_REQUEST)) {
+      return new MessageRequestEntity(method, requestMessage, chunked);
+    }
+    CompressionStats stats = new CompressionStats();
+    ThresholdGzipOutputStream body =
+        new ThresholdGzipOutputStream(getCompressionThresholdBytes(msgContext), stats);
+    try {
+      requestMessage.writeTo(body);
+    } finally {
+      body.close();
+    }
+    if (body.isCompressed()) {
+      method.addRequestHeader(HTTPConstants.HEADER_CONTENT_ENCODING,
+          HTTPConstants.COMPRESSION_GZIP);
+      msgContext.setProperty(REQUEST_COMPRESSION_STATS_PROPERTY, stats);
+    }
+    return new BufferedRequestEntity(body);
+  }
+
+  /**
+   * Gets the number of bytes the entity wrote for the request, or {@code -1}
+   * if not known.
+   */
+  private static long getBytesSent(RequestEntity requestEntity) {
+    if (requestEntity instanceof MessageRequestEntity) {
+      return ((MessageRequestEntity) requestEntity).bytesWritten;
+    }
+    return requestEntity.getContentLength();
+  }
+
+  private static int getCompressionThresholdBytes(MessageContext msgContext) {
+    Object thresholdBytes = msgContext.getProperty(COMPRESSION_THRESHOLD_BYTES_PROPERTY);
+    return thresholdBytes instanceof Number ? ((Number) thresholdBytes).intValue() : 0;
+  }
+
+  /**
+   * Throws a fault for a response that cannot hold a SOAP message or fault.
+   */
+  private static void checkReturnCode(MessageContext msgContext, HttpMethodBase method,
+      int returnCode, String contentType) throws IOException {
+    if ((returnCode > 199 && returnCode < 300)
+        || msgContext.getSOAPConstants() == SOAPConstants.SOAP12_CONSTANTS
+        || (contentType != null && !contentType.equals("text/html")
+            && returnCode > 499 && returnCode < 600)) {
+      return;
+    }
+    AxisFault fault = new AxisFault("HTTP", "(" + returnCode + ")" + method.getStatusText(),
+        null, null);
+    try {
+      fault.setFaultDetailString(Messages.getMessage("return01", "" + returnCode,
+          method.getResponseBodyAsString()));
+      fault.addFaultDetail(Constants.QNAME_FAULTDETAIL_HTTPERRORCODE,
+          Integer.toString(returnCode));
+      throw fault;
+    } finally {
+      method.releaseConnection();
+    }
+  }
+
+  /**
+   * Creates the stream of the response body, decompressing it if needed, which
+   * releases the connection when closed.
+   */
+  private static InputStream createResponseStream(MessageContext msgContext,
+      final HttpMethodBase method) throws IOException {
+    InputStream responseStream = new FilterInputStream(method.getResponseBodyAsStream()) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          method.releaseConnection();
+        }
+      }
+    };
+    Header contentEncoding = method.getResponseHeader(HTTPConstants.HEADER_CONTENT_ENCODING);
+    if (contentEncoding == null) {
+      return responseStream;
+    }
+    if (!contentEncoding.getValue().equalsIgnoreCase(HTTPConstants.COMPRESSION_GZIP)) {
+      throw new AxisFault("HTTP", "unsupported content-encoding of '"
+          + contentEncoding.getValue() + "' found", null, null);
+    }
+    CompressionStats stats = new CompressionStats();
+    msgContext.setProperty(RESPONSE_COMPRESSION_STATS_PROPERTY, stats);
+    return GzipStreams.newInputStream(responseStream, stats);
+  }
+
+  private static String getResponseHeader(HttpMethodBase method, String headerName) {
+    Header header = method.getResponseHeader(headerName);
+    return header == null ? null : header.getValue().trim();
+  }
+
+  /**
+   * Sets the timeouts, credentials and headers of the request.
+   * <p>
+   * The read timeout of the message context is set on the request only, as
+   * the connection manager may be shared with other calls. The read timeout of
+   * the connection manager, if any, still applies if it is shorter. Commons
+   * HttpClient 3 has no per-request connect timeout, so connections are opened
+   * with the connect timeout of the connection manager.
+   * </p>
+   *
+   * @return {@code false} if the request headers turn off chunking
+   */
+  private static boolean addContextInfo(HttpMethodBase method, HttpClient httpClient,
+      MessageContext msgContext, URL targetUrl) throws AxisFault {
+    if (msgContext.getTimeout() != 0) {
+      int managerTimeout = httpClient.getHttpConnectionManager().getParams().getSoTimeout();
+      method.getParams().setSoTimeout(managerTimeout > 0
+          ? Math.min(managerTimeout, msgContext.getTimeout()) : msgContext.getTimeout());
+    }
+
+    String action = msgContext.useSOAPAction() ? msgContext.getSOAPActionURI() : "";
+    if (action == null) {
+      action = "";
+    }
+    Message requestMessage = msgContext.getRequestMessage();
+    if (requestMessage != null) {
+      method.setRequestHeader(new Header(HTTPConstants.HEADER_CONTENT_TYPE,
+          requestMessage.getContentType(msgContext.getSOAPConstants())));
+    }
+    method.setRequestHeader(new Header(HTTPConstants.HEADER_SOAP_ACTION, "\"" + action + "\""));
+    method.setRequestHeader(new Header(HTTPConstants.HEADER_USER_AGENT,
+        Messages.getMessage("axisUserAgent")));
+
+    addCredentials(httpClient, msgContext, targetUrl);
+
+    if (msgContext.isPropertyTrue(HTTPConstants.MC_ACCEPT_GZIP)) {
+      method.addRequestHeader(HTTPConstants.HEADER_ACCEPT_ENCODING,
+          HTTPConstants.COMPRESSION_GZIP);
+    }
+
+    if (requestMessage != null && requestMessage.getMimeHeaders() != null) {
+      for (Iterator<?> i = requestMessage.getMimeHeaders().getAllHeaders(); i.hasNext();) {
+        MimeHeader mimeHeader = (MimeHeader) i.next();
+        String headerName = mimeHeader.getName();
+        if (!headerName.equals(HTTPConstants.HEADER_CONTENT_TYPE)
+            && !headerName.equals(HTTPConstants.HEADER_SOAP_ACTION)) {
+          method.addRequestHeader(headerName, mimeHeader.getValue());
+        }
+      }
+    }
+
+    boolean chunked = true;
+    Map<?, ?> userHeaders = (Map<?, ?>) msgContext.getProperty(HTTPConstants.REQUEST_HEADERS);
+    if (userHeaders != null) {
+      for (Map.Entry<?, ?> userHeader : userHeaders.entrySet()) {
+        if (userHeader.getKey() == null) {
+          continue;
+        }
+        String key = userHeader.getKey().toString().trim();
+        String value = userHeader.getValue().toString().trim();
+        if (key.equalsIgnoreCase(HTTPConstants.HEADER_EXPECT)
+            && value.equalsIgnoreCase(HTTPConstants.HEADER_EXPECT_100_Continue)) {
+          method.getParams().setBooleanParameter(HttpMethodParams.USE_EXPECT_CONTINUE, true);
+        } else if (key.equalsIgnoreCase(HTTPConstants.HEADER_TRANSFER_ENCODING_CHUNKED)) {
+          chunked = JavaUtils.isTrue(value);
+        } else {
+          method.addRequestHeader(key, value);
+        }
+      }
+    }
+    return chunked;
+  }
+
+  /**
+   * Sets the credentials of the message context, or else of the URL, if any.
+   * A user name of the form {@code domain\name} is sent as NT credentials.
+   */
+  private static void addCredentials(HttpClient httpClient, MessageContext msgContext,
+      URL targetUrl) {
+    String userId = msgContext.getUsername();
+    String password = msgContext.getPassword();
+    if (userId == null && targetUrl.getUserInfo() != null) {
+      String info = targetUrl.getUserInfo();
+      int separator = info.indexOf(':');
+      if (separator >= 0 && separator + 1 < info.length()) {
+        userId = info.substring(0, separator);
+        password = info.substring(separator + 1);
+      } else {
+        userId = info;
+      }
+    }
+    if (userId == null) {
+      return;
+    }
+    Credentials credentials = new UsernamePasswordCredentials(userId, password);
+    int domainIndex = userId.indexOf('\\');
+    if (domainIndex > 0 && userId.length() > domainIndex + 1) {
+      credentials = new NTCredentials(userId.substring(domainIndex + 1), password,
+          NetworkUtils.getLocalHostname(), userId.substring(0, domainIndex));
+    }
+    httpClient.getState().setCredentials(AuthScope.ANY, credentials);
+  }
+
+  /**
+   * Adds the cookies the message context holds under {@code header} to the
+   * state.
+   */
+  private static void addCookies(MessageContext msgContext, HttpState state, String header,
+      String host, String path, boolean secure) {
+    Object cookies = msgContext.getProperty(header);
+    if (cookies instanceof String[]) {
+      for (String cookie : (String[]) cookies) {
+        addCookie(state, cookie, host, path, secure);
+      }
+    } else if (cookies != null) {
+      addCookie(state, (String) cookies, host, path, secure);
+    }
+  }
+
+  private static void addCookie(HttpState state, String cookie, String host, String path,
+      boolean secure) {
+    int index = cookie.indexOf('=');
+    state.addCookie(new Cookie(host, cookie.substring(0, index), cookie.substring(index + 1),
+        path, null, secure));
+  }
+
+  /**
+   * Sends the request message as it is serialized.
+   */
+  private static class MessageRequestEntity implements RequestEntity {
+
+    private final HttpMethodBase method;
+    private final Message message;
+    private final boolean chunked;
+    private volatile long bytesWritten = -1;
+
+    MessageRequestEntity(HttpMethodBase method, Message message, boolean chunked) {
+      this.method = method;
+      this.message = message;
+      this.chunked = chunked;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return true;
+    }
+
+    @Override
+    public void writeRequest(OutputStream out) throws IOException {
+      CountingOutputStream countingOut = new CountingOutputStream(out);
+      try {
+        message.writeTo(countingOut);
+      } catch (SOAPException e) {
+        throw new IOException(e.getMessage());
+      }
+      bytesWritten = countingOut.getCount();
+    }
+
+    /**
+     * Gets the length of the message, which serializes it, if chunking is off
+     * or not supported, or else {@code -1} to send it in chunks.
+     */
+    @Override
+    public long getContentLength() {
+      if (method.getParams().getVersion() == HttpVersion.HTTP_1_0 || !chunked) {
+        try {
+          return message.getContentLength();
+        } catch (AxisFault e) {
+          return -1;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public String getContentType() {
+      // Set as a header by addContextInfo.
+      return null;
+    }
+  }
+
+  /**
+   * Sends a request message that was serialized, and possibly compressed, in
+   * advance.
+   */
+  private static class BufferedRequestEntity implements RequestEntity {
+
+    private final ThresholdGzipOutputStream body;
+
+    BufferedRequestEntity(ThresholdGzipOutputStream body) {
+      this.body = body;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return true;
+    }
+
+    @Override
+    public void writeRequest(OutputStream out) throws IOException {
+      body.writeTo(out);
+    }
+
+    @Override
+    public long getContentLength() {
+      return body.size();
+    }
+
+    @Override
+    public String getContentType() {
+      // Set as a header by addContextInfo.
+      return null;
+    }
+  }
+}
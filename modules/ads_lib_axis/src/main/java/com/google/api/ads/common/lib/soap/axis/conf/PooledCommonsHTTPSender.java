@@ -0,0 +1,64 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap.axis.conf;
+
+import org.apache.axis.components.net.CommonsHTTPClientPropertiesFactory;
+import org.apache.commons.httpclient.HttpConnectionManager;
+
+/**
+ * A {@link GzipCommonsHTTPSender} that sends requests over the connections of
+ * an {@link AxisHttpConnectionPool}, instead of a connection manager of its
+ * own.
+ */
+public class PooledCommonsHTTPSender extends GzipCommonsHTTPSender {
+
+  private final long poolTimeoutMillis;
+
+  /**
+   * Constructor.
+   *
+   * @param pool the shared connection pool
+   */
+  public PooledCommonsHTTPSender(AxisHttpConnectionPool pool) {
+    this(pool.getConnectionManager(), pool.getPoolTimeoutMillis());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param connectionManager the shared connection manager
+   * @param poolTimeoutMillis the time a call waits for a connection when all
+   *     are in use, or {@code 0} to wait indefinitely
+   */
+  public PooledCommonsHTTPSender(HttpConnectionManager connectionManager,
+      long poolTimeoutMillis) {
+    this.connectionManager = connectionManager;
+    this.poolTimeoutMillis = poolTimeoutMillis;
+  }
+
+  /**
+   * Loads the client properties without creating a connection manager, which
+   * is supplied to the constructor instead.
+   */
+  @Override
+  protected void initialize() {
+    this.clientProperties = CommonsHTTPClientPropertiesFactory.create();
+  }
+
+  @Override
+  protected long getConnectionPoolTimeoutMillis() {
+    return poolTimeoutMillis;
+  }
+}
@@ -36,6 +36,7 @@ public class MockAxisServiceLocator extends Service implements MockAxisService {
   @SuppressWarnings("unused")
   public MockAxisServiceLocator(EngineConfiguration engineConfiguration) {
     // Required for reflective call to this constructor made by AxisHandler.createSoapClient.
+    super(engineConfiguration);
   }
   
   @Override
@@ -14,18 +14,77 @@
 
 package com.google.api.ads.common.lib.soap.axis.testing.mocks.v201408;
 
+import org.apache.axis.AxisFault;
+import org.apache.axis.client.Call;
+import org.apache.axis.client.Service;
 import org.apache.axis.client.Stub;
+import org.apache.axis.encoding.ser.BeanDeserializerFactory;
+import org.apache.axis.encoding.ser.BeanSerializerFactory;
+
+import java.rmi.RemoteException;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
 
 /**
  * Mock Stub that implements MockAxisServiceInterface. Mirrors the structure of SoapBindingStub
- * types generated by WSDL2Java.
+ * types generated by WSDL2Java, including the registration of type mappings on the first call.
  */
 public class MockAxisServiceSoapBindingStub extends Stub implements MockAxisServiceInterface {
 
+  public static final QName MOCK_BEAN_QNAME =
+      new QName("https://ads.google.com/api/mock/v201408", "MockBean");
+
+  /** The number of times any instance has registered its type mappings. */
+  public static final AtomicInteger TYPE_MAPPING_REGISTRATIONS = new AtomicInteger();
+
+  private final Vector<Class<?>> cachedSerClasses = new Vector<Class<?>>();
+  private final Vector<QName> cachedSerQNames = new Vector<QName>();
+  private final Vector<Class<?>> cachedSerFactories = new Vector<Class<?>>();
+  private final Vector<Class<?>> cachedDeserFactories = new Vector<Class<?>>();
+
   /**
-   * @param service ignored - here only for consistency with WSDL2Java-generated stubs
+   * @param service the locator that created this stub
    */
   public MockAxisServiceSoapBindingStub(javax.xml.rpc.Service service) {
+    if (service == null) {
+      super.service = new Service();
+    } else {
+      super.service = service;
+    }
+    ((Service) super.service).setTypeMappingVersion("1.2");
+    cachedSerQNames.add(MOCK_BEAN_QNAME);
+    cachedSerClasses.add(MockBean.class);
+    cachedSerFactories.add(BeanSerializerFactory.class);
+    cachedDeserFactories.add(BeanDeserializerFactory.class);
+  }
+
+  protected Call createCall() throws RemoteException {
+    try {
+      Call call = super._createCall();
+      synchronized (this) {
+        if (firstCall()) {
+          call.setEncodingStyle(null);
+          for (int i = 0; i < cachedSerFactories.size(); ++i) {
+            call.registerTypeMapping(cachedSerClasses.get(i), cachedSerQNames.get(i),
+                cachedSerFactories.get(i), cachedDeserFactories.get(i), false);
+          }
+          TYPE_MAPPING_REGISTRATIONS.incrementAndGet();
+        }
+      }
+      return call;
+    } catch (Throwable t) {
+      throw new AxisFault("Failure trying to get the Call object", t);
+    }
+  }
+
+  /**
+   * Makes a call to the service, returning the call that would have been
+   * invoked.
+   */
+  public Call makeCall() throws RemoteException {
+    return createCall();
   }
 
   @Override
@@ -37,4 +96,20 @@ public class MockAxisServiceSoapBindingStub extends Stub implements MockAxisServ
   public String getTestMessageWithPrefix(String prefix) {
     return prefix + MockAxisServiceInterface.TEST_MESSAGE;
   }
+
+  /**
+   * Bean type serialized by the mock service.
+   */
+  public static class MockBean {
+
+    private String value;
+
+    public String getValue() {
+      return value;
+    }
+
+    public void setValue(String value) {
+      this.value = value;
+    }
+  }
 }
@@ -0,0 +1,122 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap.axis;
+
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+import com.google.api.ads.common.lib.soap.SoapServiceDescriptor;
+import com.google.api.ads.common.lib.soap.axis.conf.AdsAxisEngineConfigurationFactory;
+import com.google.api.ads.common.lib.soap.axis.testing.mocks.v201408.MockAxisCompatibleServiceDescriptor;
+import com.google.api.ads.common.lib.soap.compatability.AxisCompatible;
+
+import org.apache.axis.EngineConfiguration;
+import org.apache.axis.EngineConfigurationFactory;
+import org.apache.axis.client.Service;
+import org.apache.axis.client.Stub;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of creating a SOAP client and making its first call, with
+ * a fresh engine and type mapping registry per client as the generated
+ * locators do by default, and with the engine shared by {@link AxisHandler}.
+ *
+ * <p>Run with the number of clients to create and, optionally, the name of an
+ * {@link AxisCompatible} service descriptor class on the classpath, such as a
+ * generated AdWords or DFP service descriptor. The mock service is used if no
+ * descriptor is given.
+ */
+public class AxisHandlerStartupBenchmark {
+
+  private final SoapServiceDescriptor serviceDescriptor;
+  private final EngineConfigurationFactory engineConfigurationFactory;
+  private final AxisHandler axisHandler;
+
+  public AxisHandlerStartupBenchmark(SoapServiceDescriptor serviceDescriptor) {
+    AdsLibConfiguration adsLibConfiguration = Mockito.mock(AdsLibConfiguration.class);
+    Mockito.when(adsLibConfiguration.isCompressionEnabled()).thenReturn(true);
+    this.serviceDescriptor = serviceDescriptor;
+    this.engineConfigurationFactory = new AdsAxisEngineConfigurationFactory(adsLibConfiguration);
+    this.axisHandler = new AxisHandler(engineConfigurationFactory, adsLibConfiguration);
+  }
+
+  /**
+   * Creates a client the way the generated locators do by default, with its
+   * own engine, and makes its first call.
+   */
+  private void createUnsharedClient() throws Exception {
+    Service locator = (Service) ((AxisCompatible) serviceDescriptor).getLocatorClass()
+        .getConstructor(EngineConfiguration.class)
+        .newInstance(engineConfigurationFactory.getClientEngineConfig());
+    Stub stub = (Stub) locator.getClass().getMethod("getPort", Class.class)
+        .invoke(locator, serviceDescriptor.getInterfaceClass());
+    makeFirstCall(stub);
+  }
+
+  /**
+   * Creates a client through {@link AxisHandler}, sharing its engine, and makes
+   * its first call.
+   */
+  private void createSharedClient() throws Exception {
+    makeFirstCall(axisHandler.createSoapClient(serviceDescriptor));
+  }
+
+  /**
+   * Creates the call a stub would make for its first operation without sending
+   * it.
+   */
+  private static void makeFirstCall(Stub stub) throws Exception {
+    Method createCall = stub.getClass().getDeclaredMethod("createCall");
+    createCall.setAccessible(true);
+    createCall.invoke(stub);
+  }
+
+  private long timeUnsharedClients(int count) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      createUnsharedClient();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private long timeSharedClients(int count) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      createSharedClient();
+    }
+    return System.nanoTime() - start;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    SoapServiceDescriptor serviceDescriptor = args.length > 1
+        ? (SoapServiceDescriptor) Class.forName(args[1]).newInstance()
+        : new MockAxisCompatibleServiceDescriptor();
+    AxisHandlerStartupBenchmark benchmark = new AxisHandlerStartupBenchmark(serviceDescriptor);
+
+    // Warm up class loading and the JIT before measuring.
+    benchmark.timeUnsharedClients(Math.min(count, 100));
+    benchmark.timeSharedClients(Math.min(count, 100));
+
+    long unsharedNanos = benchmark.timeUnsharedClients(count);
+    long sharedNanos = benchmark.timeSharedClients(count);
+    System.out.printf("Created %d clients of %s%n", count, serviceDescriptor.getClass().getName());
+    System.out.printf("  Engine per client:   %d ms (%.1f us per client)%n",
+        TimeUnit.NANOSECONDS.toMillis(unsharedNanos), unsharedNanos / 1000.0 / count);
+    System.out.printf("  Shared engine:       %d ms (%.1f us per client)%n",
+        TimeUnit.NANOSECONDS.toMillis(sharedNanos), sharedNanos / 1000.0 / count);
+  }
+}
@@ -17,17 +17,29 @@ package com.google.api.ads.common.lib.soap.axis;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
 
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
 import com.google.api.ads.common.lib.exception.ServiceException;
 import com.google.api.ads.common.lib.soap.SoapServiceDescriptor;
+import com.google.api.ads.common.lib.soap.axis.conf.GzipCommonsHTTPSender;
 import com.google.api.ads.common.lib.soap.axis.testing.mocks.v201408.MockAxisCompatibleServiceDescriptor;
 import com.google.api.ads.common.lib.soap.axis.testing.mocks.v201408.MockAxisServiceInterface;
+import com.google.api.ads.common.lib.soap.axis.testing.mocks.v201408.MockAxisServiceSoapBindingStub;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+import org.apache.axis.AxisFault;
+import org.apache.axis.Constants;
 import org.apache.axis.EngineConfigurationFactory;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.client.Call;
+import org.apache.axis.client.Service;
 import org.apache.axis.client.Stub;
 import org.apache.axis.message.SOAPHeaderElement;
 import org.apache.axis.transport.http.HTTPConstants;
@@ -41,6 +53,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.net.SocketTimeoutException;
 import java.util.Map;
 
 /**
@@ -54,6 +67,9 @@ public class AxisHandlerTest {
   
   @Mock
   private EngineConfigurationFactory engineConfigurationFactory;
+
+  @Mock
+  private AdsLibConfiguration adsLibConfiguration;
   
   @Rule
   public ExpectedException thrown = ExpectedException.none();
@@ -61,7 +77,7 @@ public class AxisHandlerTest {
   @Before
   public void setUp() throws Exception {
     MockitoAnnotations.initMocks(this);
-    axisHandler = new AxisHandler(engineConfigurationFactory);
+    axisHandler = new AxisHandler(engineConfigurationFactory, adsLibConfiguration);
     stub = axisHandler.createSoapClient(new MockAxisCompatibleServiceDescriptor());
   }
 
@@ -146,9 +162,12 @@ public class AxisHandlerTest {
   
   @Test
   public void testSetCompression_true() {
+    when(adsLibConfiguration.getCompressionThresholdBytes()).thenReturn(1024);
     axisHandler.setCompression(stub, true);
     assertTrue((Boolean) stub._getProperty(HTTPConstants.MC_ACCEPT_GZIP));
     assertTrue((Boolean) stub._getProperty(HTTPConstants.MC_GZIP_REQUEST));
+    assertEquals(1024,
+        stub._getProperty(GzipCommonsHTTPSender.COMPRESSION_THRESHOLD_BYTES_PROPERTY));
   }
 
   @Test
@@ -157,4 +176,77 @@ public class AxisHandlerTest {
     assertFalse((Boolean) stub._getProperty(HTTPConstants.MC_ACCEPT_GZIP));
     assertFalse((Boolean) stub._getProperty(HTTPConstants.MC_GZIP_REQUEST));
   }
+
+  @Test
+  public void testCreateSoapClient_sharesEngine() {
+    Stub otherStub = axisHandler.createSoapClient(new MockAxisCompatibleServiceDescriptor());
+
+    assertNotSame(stub, otherStub);
+    assertSame("Stubs of the same service should share an engine",
+        ((Service) stub._getService()).getEngine(),
+        ((Service) otherStub._getService()).getEngine());
+  }
+
+  @Test
+  public void testCreateSoapClient_typeMappingsRegisteredOnce() throws Exception {
+    AxisHandler otherAxisHandler = new AxisHandler(engineConfigurationFactory, adsLibConfiguration);
+    int registrations = MockAxisServiceSoapBindingStub.TYPE_MAPPING_REGISTRATIONS.get();
+
+    MockAxisServiceSoapBindingStub firstStub = (MockAxisServiceSoapBindingStub)
+        otherAxisHandler.createSoapClient(new MockAxisCompatibleServiceDescriptor());
+    MockAxisServiceSoapBindingStub secondStub = (MockAxisServiceSoapBindingStub)
+        otherAxisHandler.createSoapClient(new MockAxisCompatibleServiceDescriptor());
+    firstStub.makeCall();
+    Call call = secondStub.makeCall();
+    call.setEncodingStyle(null);
+
+    assertEquals("Type mappings should only be registered for the first stub", registrations + 1,
+        MockAxisServiceSoapBindingStub.TYPE_MAPPING_REGISTRATIONS.get());
+    assertTrue("Type mapping missing from the shared registry", call.getTypeMapping().isRegistered(
+        MockAxisServiceSoapBindingStub.MockBean.class,
+        MockAxisServiceSoapBindingStub.MOCK_BEAN_QNAME));
+  }
+
+  @Test
+  public void testIsTransientError_httpErrorCode() {
+    AxisFault serverError = new AxisFault("HTTP", "(503)Service Unavailable", null, null);
+    serverError.addFaultDetail(Constants.QNAME_FAULTDETAIL_HTTPERRORCODE, "503");
+    AxisFault clientError = new AxisFault("HTTP", "(404)Not Found", null, null);
+    clientError.addFaultDetail(Constants.QNAME_FAULTDETAIL_HTTPERRORCODE, "404");
+
+    assertTrue(axisHandler.isTransientError(serverError));
+    assertFalse(axisHandler.isTransientError(clientError));
+    assertFalse(axisHandler.isTransientError(new AxisFault("SOAP fault")));
+    assertTrue(axisHandler.isTransientError(AxisFault.makeFault(new SocketTimeoutException())));
+  }
+
+  @Test
+  public void testGetContentLength() throws Exception {
+    String xml = "<soapenv:Envelope xmlns:soapenv=\"" + Constants.URI_SOAP11_ENV
+        + "\"><soapenv:Body/></soapenv:Envelope>";
+    Message bytesMessage = new Message(xml.getBytes("UTF-8"));
+    Message stringMessage = new Message(xml);
+    Message headerMessage = new Message(xml);
+    headerMessage.getMimeHeaders().addHeader(HTTPConstants.HEADER_CONTENT_LENGTH, "123");
+
+    assertEquals(xml.length(), AxisHandler.getContentLength(bytesMessage));
+    assertEquals(-1, AxisHandler.getContentLength(stringMessage));
+    assertEquals(123, AxisHandler.getContentLength(headerMessage));
+    assertEquals(-1, AxisHandler.getContentLength(null));
+  }
+
+  @Test
+  public void testGetRequestContentLength() throws Exception {
+    String xml = "<soapenv:Envelope xmlns:soapenv=\"" + Constants.URI_SOAP11_ENV
+        + "\"><soapenv:Body/></soapenv:Envelope>";
+    MessageContext messageContext = Mockito.mock(MessageContext.class);
+    when(messageContext.getRequestMessage()).thenReturn(new Message(xml.getBytes("UTF-8")));
+
+    assertEquals(xml.length(), AxisHandler.getRequestContentLength(messageContext));
+
+    when(messageContext.getProperty(GzipCommonsHTTPSender.REQUEST_CONTENT_LENGTH_PROPERTY))
+        .thenReturn(42L);
+
+    assertEquals(42, AxisHandler.getRequestContentLength(messageContext));
+  }
 }
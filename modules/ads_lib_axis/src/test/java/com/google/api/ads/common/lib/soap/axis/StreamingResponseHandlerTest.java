@@ -0,0 +1,207 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.axis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.common.lib.soap.streaming.PageCall;
+import com.google.api.ads.common.lib.soap.streaming.PageEntryHandler;
+import com.google.api.ads.common.lib.soap.streaming.StreamingPages;
+import com.google.common.collect.Lists;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.client.AxisClient;
+import org.apache.axis.configuration.SimpleProvider;
+import org.apache.axis.encoding.TypeMapping;
+import org.apache.axis.encoding.ser.BeanDeserializerFactory;
+import org.apache.axis.encoding.ser.BeanSerializerFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Tests for {@link StreamingResponseHandler}.
+ */
+@RunWith(JUnit4.class)
+public class StreamingResponseHandlerTest {
+
+  private static final String NAMESPACE = "urn:test";
+
+  private static final String RESPONSE =
+      "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+      + "<getResponse xmlns=\"urn:test\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+      + "<rval><totalNumEntries>2</totalNumEntries>"
+      + "<entries><id>1</id><name>First</name></entries>"
+      + "<entries xsi:type=\"SpecialThing\"><id>2</id><name>Second</name><extra>x</extra>"
+      + "</entries></rval></getResponse></soap:Body></soap:Envelope>";
+
+  /**
+   * An entry.
+   */
+  public static class Thing {
+    private Long id;
+    private String name;
+
+    public Long getId() {
+      return id;
+    }
+
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * A subtype of entry.
+   */
+  public static class SpecialThing extends Thing {
+    private String extra;
+
+    public String getExtra() {
+      return extra;
+    }
+
+    public void setExtra(String extra) {
+      this.extra = extra;
+    }
+  }
+
+  private StreamingResponseHandler streamingResponseHandler;
+  private MessageContext msgContext;
+  private List<Thing> handled;
+  private PageEntryHandler<Thing> entryHandler;
+
+  @Before
+  public void setUp() throws Exception {
+    AxisClient engine = new AxisClient(new SimpleProvider());
+    TypeMapping typeMapping =
+        (TypeMapping) engine.getTypeMappingRegistry().getOrMakeTypeMapping("");
+    registerBean(typeMapping, Thing.class);
+    registerBean(typeMapping, SpecialThing.class);
+
+    msgContext = new MessageContext(engine);
+    msgContext.setEncodingStyle("");
+    Message response = new Message(new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")), false,
+        "text/xml; charset=utf-8", null);
+    response.getMimeHeaders().addHeader("Content-Type", "text/xml; charset=utf-8");
+    response.getMimeHeaders().addHeader("Content-Length", String.valueOf(RESPONSE.length()));
+    msgContext.setResponseMessage(response);
+
+    streamingResponseHandler = new StreamingResponseHandler();
+    handled = Lists.newArrayList();
+    entryHandler = new PageEntryHandler<Thing>() {
+      @Override
+      public void handleEntry(Thing entry) {
+        handled.add(entry);
+      }
+    };
+  }
+
+  private static void registerBean(TypeMapping typeMapping, Class<?> beanClass) {
+    QName xmlType = new QName(NAMESPACE, beanClass.getSimpleName());
+    typeMapping.register(beanClass, xmlType, new BeanSerializerFactory(beanClass, xmlType),
+        new BeanDeserializerFactory(beanClass, xmlType));
+  }
+
+  /**
+   * Tests that entries are deserialized and delivered one at a time, by their
+   * {@code xsi:type} if present, and removed from the response.
+   */
+  @Test
+  public void testInvoke_streaming() throws Exception {
+    String remainder = StreamingPages.forEachEntry(Thing.class, entryHandler,
+        new PageCall<String, AxisFault>() {
+          @Override
+          public String call() throws AxisFault {
+            streamingResponseHandler.invoke(msgContext);
+            return null;
+          }
+        });
+    assertNull(remainder);
+
+    assertEquals(2, handled.size());
+    assertEquals(Long.valueOf(1), handled.get(0).getId());
+    assertEquals("First", handled.get(0).getName());
+    assertEquals(SpecialThing.class, handled.get(1).getClass());
+    assertEquals("x", ((SpecialThing) handled.get(1)).getExtra());
+
+    Message response = msgContext.getResponseMessage();
+    String responseXml = response.getSOAPPartAsString();
+    assertTrue(responseXml, responseXml.contains("<totalNumEntries>2</totalNumEntries>"));
+    assertTrue(responseXml, !responseXml.contains("entries"));
+    assertEquals(Message.RESPONSE, response.getMessageType());
+    assertNull("The stale content length should not be kept",
+        response.getMimeHeaders().getHeader("Content-Length"));
+  }
+
+  /**
+   * Tests that responses are not changed if the call is not streamed.
+   */
+  @Test
+  public void testInvoke_notStreaming() throws Exception {
+    Message response = msgContext.getResponseMessage();
+
+    streamingResponseHandler.invoke(msgContext);
+
+    assertSame(response, msgContext.getResponseMessage());
+    assertEquals(RESPONSE, response.getSOAPPartAsString());
+  }
+
+  /**
+   * Tests that an exception thrown by the entry handler fails the call.
+   */
+  @Test
+  public void testInvoke_handlerFails() throws Exception {
+    final IllegalStateException exception = new IllegalStateException();
+    try {
+      StreamingPages.forEachEntry(Thing.class, new PageEntryHandler<Thing>() {
+        @Override
+        public void handleEntry(Thing entry) {
+          throw exception;
+        }
+      }, new PageCall<Object, AxisFault>() {
+        @Override
+        public Object call() throws AxisFault {
+          streamingResponseHandler.invoke(msgContext);
+          return null;
+        }
+      });
+      fail("Expected exception not thrown");
+    } catch (IllegalStateException e) {
+      assertSame(exception, e);
+    }
+  }
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+import com.google.api.ads.common.lib.soap.axis.StreamingResponseHandler;
 import com.google.common.collect.Lists;
 
 import org.apache.axis.AxisEngine;
@@ -115,7 +116,7 @@ public class AdsAxisEngineConfigurationFactoryTest {
 
     AxisClient axisClient = new AxisClient(clientEngineConfig);
 
-    assertEquals(org.apache.axis.transport.http.CommonsHTTPSender.class,
+    assertEquals(GzipCommonsHTTPSender.class,
         getTransport(axisClient, "http").getPivotHandler().getClass());
 
     assertEquals(org.apache.axis.transport.local.LocalSender.class,
@@ -128,6 +129,62 @@ public class AdsAxisEngineConfigurationFactoryTest {
         defaultAxisServer);
   }
 
+  /**
+   * Tests that the client engine config returned by the factory when HTTP connection pooling is
+   * enabled sends HTTP requests with a pooled sender, and leaves the other transports unchanged.
+   */
+  @Test
+  public void testGetClientEngineConfig_poolingEnabled() throws Exception {
+    List<Boolean> compressionEnabledSettings = Lists.newArrayList(Boolean.TRUE, Boolean.FALSE);
+    when(adsLibConfiguration.getSoapHttpMaxConnectionsPerHost()).thenReturn(4);
+
+    for (Boolean compressionEnabledSetting : compressionEnabledSettings) {
+      when(adsLibConfiguration.isCompressionEnabled()).thenReturn(compressionEnabledSetting);
+      EngineConfiguration clientEngineConfig = adsAxisConfigFactory.getClientEngineConfig();
+      assertNotNull("No client engine config returned", clientEngineConfig);
+
+      AxisClient axisClient = new AxisClient(clientEngineConfig);
+
+      assertEquals(PooledCommonsHTTPSender.class,
+          getTransport(axisClient, "http").getPivotHandler().getClass());
+
+      assertEquals(org.apache.axis.transport.local.LocalSender.class,
+          getTransport(axisClient, "local").getPivotHandler().getClass());
+
+      assertEquals(org.apache.axis.transport.java.JavaSender.class,
+          getTransport(axisClient, "java").getPivotHandler().getClass());
+    }
+  }
+
+  /**
+   * Tests that the client engine config returned by the factory when response streaming is
+   * enabled ends the HTTP transport with a streaming handler, keeping the configured sender.
+   */
+  @Test
+  public void testGetClientEngineConfig_streamingEnabled() throws Exception {
+    when(adsLibConfiguration.isSoapResponseStreamingEnabled()).thenReturn(true);
+
+    when(adsLibConfiguration.isCompressionEnabled()).thenReturn(false);
+    AxisClient axisClient = new AxisClient(adsAxisConfigFactory.getClientEngineConfig());
+    assertTransportConfiguration(axisClient, defaultAxisClient);
+    assertEquals(StreamingResponseHandler.class,
+        getTransport(axisClient, "http").getResponseHandler().getClass());
+
+    when(adsLibConfiguration.isCompressionEnabled()).thenReturn(true);
+    axisClient = new AxisClient(adsAxisConfigFactory.getClientEngineConfig());
+    assertEquals(GzipCommonsHTTPSender.class,
+        getTransport(axisClient, "http").getPivotHandler().getClass());
+    assertEquals(StreamingResponseHandler.class,
+        getTransport(axisClient, "http").getResponseHandler().getClass());
+
+    when(adsLibConfiguration.getSoapHttpMaxConnectionsPerHost()).thenReturn(4);
+    axisClient = new AxisClient(adsAxisConfigFactory.getClientEngineConfig());
+    assertEquals(PooledCommonsHTTPSender.class,
+        getTransport(axisClient, "http").getPivotHandler().getClass());
+    assertEquals(StreamingResponseHandler.class,
+        getTransport(axisClient, "http").getResponseHandler().getClass());
+  }
+
   @Test
   public void testGetClientEngineConfig_factoryOverrideSet() throws Exception {
     List<Boolean> compressionEnabledSettings = Lists.newArrayList(Boolean.TRUE, Boolean.FALSE);
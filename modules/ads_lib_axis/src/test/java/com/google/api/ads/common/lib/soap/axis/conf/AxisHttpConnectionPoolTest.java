@@ -0,0 +1,99 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.common.lib.soap.axis.conf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.google.api.ads.common.lib.conf.AdsLibConfiguration;
+
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * Tests for {@link AxisHttpConnectionPool}.
+ */
+@RunWith(JUnit4.class)
+public class AxisHttpConnectionPoolTest {
+
+  @Mock
+  private AdsLibConfiguration adsLibConfiguration;
+
+  @Before
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    when(adsLibConfiguration.getSoapHttpMaxConnectionsPerHost()).thenReturn(3);
+    when(adsLibConfiguration.getSoapHttpMaxTotalConnections()).thenReturn(7);
+    when(adsLibConfiguration.getSoapHttpIdleTimeoutMillis()).thenReturn(5000L);
+    when(adsLibConfiguration.getSoapHttpConnectTimeoutMillis()).thenReturn(1000);
+    when(adsLibConfiguration.getSoapHttpReadTimeoutMillis()).thenReturn(2000);
+    when(adsLibConfiguration.getSoapHttpPoolTimeoutMillis()).thenReturn(3000L);
+  }
+
+  /**
+   * Tests that the configured settings are applied to the connection manager.
+   */
+  @Test
+  public void testGetPool() {
+    AxisHttpConnectionPool pool = AxisHttpConnectionPool.getPool(adsLibConfiguration);
+
+    assertEquals(3, pool.getMaxConnectionsPerHost());
+    assertEquals(7, pool.getMaxTotalConnections());
+    assertEquals(5000L, pool.getIdleTimeoutMillis());
+    assertEquals(3000L, pool.getPoolTimeoutMillis());
+    assertEquals(0, pool.getConnectionsInPool());
+    assertEquals(0, pool.getConnectionsInUse());
+    HttpConnectionManagerParams params = pool.getConnectionManager().getParams();
+    assertEquals(1000, params.getConnectionTimeout());
+    assertEquals(2000, params.getSoTimeout());
+    assertTrue(params.isStaleCheckingEnabled());
+    assertTrue(AxisHttpConnectionPool.getPools().contains(pool));
+  }
+
+  /**
+   * Tests that configurations with the same settings share a pool, and those with different
+   * settings do not.
+   */
+  @Test
+  public void testGetPool_shared() {
+    AxisHttpConnectionPool pool = AxisHttpConnectionPool.getPool(adsLibConfiguration);
+
+    assertSame(pool, AxisHttpConnectionPool.getPool(adsLibConfiguration));
+
+    when(adsLibConfiguration.getSoapHttpMaxTotalConnections()).thenReturn(0);
+    AxisHttpConnectionPool otherPool = AxisHttpConnectionPool.getPool(adsLibConfiguration);
+    assertNotSame(pool, otherPool);
+    assertEquals("Total connections should default to the connections per host", 3,
+        otherPool.getMaxTotalConnections());
+  }
+
+  /**
+   * Tests that a pool cannot be created if pooling is disabled.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetPool_disabled() {
+    when(adsLibConfiguration.getSoapHttpMaxConnectionsPerHost()).thenReturn(0);
+    AxisHttpConnectionPool.getPool(adsLibConfiguration);
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.common.lib.soap.axis.conf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link PooledCommonsHTTPSender}.
+ */
+@RunWith(JUnit4.class)
+public class PooledCommonsHTTPSenderTest {
+
+  /**
+   * Tests that the timeout of a call does not change the timeouts of the
+   * shared connection manager.
+   */
+  @Test
+  public void testInvoke_keepsPoolTimeouts() throws Exception {
+    MultiThreadedHttpConnectionManager connectionManager =
+        new MultiThreadedHttpConnectionManager();
+    HttpConnectionManagerParams params = connectionManager.getParams();
+    params.setConnectionTimeout(1000);
+    params.setSoTimeout(2000);
+    PooledCommonsHTTPSender sender = new PooledCommonsHTTPSender(connectionManager, 3000L);
+
+    MessageContext msgContext = new MessageContext(null);
+    msgContext.setTimeout(600000);
+    // Nothing listens on port 1, so the call fails without sending anything.
+    msgContext.setProperty(MessageContext.TRANS_URL, "http://localhost:1/");
+    msgContext.setRequestMessage(new Message(
+        "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+        + "<soapenv:Body/></soapenv:Envelope>"));
+    try {
+      sender.invoke(msgContext);
+      fail("Expected AxisFault");
+    } catch (AxisFault e) {
+      // Expected.
+    }
+
+    assertEquals(1000, params.getConnectionTimeout());
+    assertEquals(2000, params.getSoTimeout());
+    assertEquals(3000L, sender.getConnectionPoolTimeoutMillis());
+  }
+}
@@ -53,6 +53,8 @@ public class AdWordsJaxWsSoapCompressionIntegrationTest extends MockHttpIntegrat
   @BeforeClass
   public static void setupClass() {
     System.setProperty("api.adwords.useCompression", "true");
+    // Compresses even the small test requests.
+    System.setProperty("api.adwords.compressionThresholdBytes", "0");
   }
 
   /**
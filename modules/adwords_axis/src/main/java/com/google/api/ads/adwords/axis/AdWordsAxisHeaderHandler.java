@@ -26,16 +26,26 @@ import com.google.api.ads.common.lib.soap.AuthorizationHeaderHandler;
 import com.google.api.ads.common.lib.soap.axis.AxisHandler;
 import com.google.api.ads.common.lib.soap.axis.AxisSoapHeaderFactory;
 import com.google.api.ads.common.lib.useragent.UserAgentCombiner;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 
 import org.apache.axis.client.Stub;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * AdWords implementation of {@link HeaderHandler} for Axis.
+ *
+ * <p>The request header is built once for each combination of service and
+ * session header values, and reused by later calls with the same values from
+ * any session or service client, since a single handler is bound. Only
+ * the authorization header is set anew on every call. Up to
+ * {@link AdsLibConfiguration#getRequestHeaderCacheSize()} headers are kept, and
+ * the least recently used is discarded beyond that.
  */
 public class AdWordsAxisHeaderHandler implements
     HeaderHandler<AdWordsSession, AdWordsServiceDescriptor> {
@@ -50,7 +60,9 @@ public class AdWordsAxisHeaderHandler implements
   private final AxisSoapHeaderFactory<AdWordsServiceDescriptor> soapHeaderFactory;
   
   static final String REQUEST_HEADER_LOCAL_PART = "RequestHeader";
-  
+
+  private final Map<RequestHeaderKey, Object> requestHeaders;
+
   /**
    * Constructor.
    *
@@ -78,6 +90,14 @@ public class AdWordsAxisHeaderHandler implements
     this.userAgentCombiner = userAgentCombiner;
     this.subProductHeaderHandlerMap = subProductHeaderHandlerMap;
     this.soapHeaderFactory = soapHeaderFactory;
+    final int maxCachedRequestHeaders = adsLibConfiguration.getRequestHeaderCacheSize();
+    this.requestHeaders = Collections.synchronizedMap(
+        new LinkedHashMap<RequestHeaderKey, Object>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<RequestHeaderKey, Object> eldest) {
+            return size() > maxCachedRequestHeaders;
+          }
+        });
   }
 
   /**
@@ -93,32 +113,24 @@ public class AdWordsAxisHeaderHandler implements
       Preconditions.checkArgument(soapClient instanceof Stub,
           "soapClient must be Stub but was: %s", soapClient);
       Stub stub = (Stub) soapClient;
-      Object soapHeader = soapHeaderFactory.createSoapHeader(adWordsServiceDescriptor);
 
       String namespace =
           adWordsApiConfiguration.getNamespacePrefix() + "/"
               + adWordsServiceDescriptor.getPackageGroup() + "/"
               + adWordsServiceDescriptor.getVersion();
 
-      soapClientHandler.setHeader(stub, namespace, REQUEST_HEADER_LOCAL_PART, soapHeader);
-
-      soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "developerToken",
-          adWordsSession.getDeveloperToken());
-      soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "clientCustomerId",
-          adWordsSession.getClientCustomerId());
-      soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "userAgent",
-          userAgentCombiner.getUserAgent(adWordsSession.getUserAgent()));
-      soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "validateOnly",
-          adWordsSession.isValidateOnly());
-      soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "partialFailure",
-          adWordsSession.isPartialFailure());
+      RequestHeaderKey requestHeaderKey = new RequestHeaderKey(namespace,
+          adWordsServiceDescriptor.getSubProduct(), adWordsSession);
+      Object soapHeader = requestHeaders.get(requestHeaderKey);
+      if (soapHeader != null) {
+        soapClientHandler.setHeader(stub, namespace, REQUEST_HEADER_LOCAL_PART, soapHeader);
+      } else {
+        soapHeader = buildRequestHeader(stub, namespace, adWordsSession,
+            adWordsServiceDescriptor);
+        requestHeaders.put(requestHeaderKey, soapHeader);
+      }
 
       soapClientHandler.setCompression(stub, adsLibConfiguration.isCompressionEnabled());
-      
-      HeaderHandler<AdWordsSession, AdWordsServiceDescriptor> subProductHandler =
-          subProductHeaderHandlerMap.get(adWordsServiceDescriptor.getSubProduct());
-
-      subProductHandler.setHeaders(soapClient, adWordsSession, adWordsServiceDescriptor);
 
       setAuthenticationHeaders(soapClient, soapHeader, adWordsSession);
 
@@ -133,6 +145,37 @@ public class AdWordsAxisHeaderHandler implements
     }
   }
 
+  /**
+   * Creates the request header, sets it on the stub and fills in its values
+   * from the session, including those set by the sub product's header handler.
+   * The returned header must not be modified afterwards, since it is shared by
+   * every later call with the same session header values.
+   */
+  private Object buildRequestHeader(Stub stub, String namespace, AdWordsSession adWordsSession,
+      AdWordsServiceDescriptor adWordsServiceDescriptor) throws ClassNotFoundException,
+      InstantiationException, IllegalAccessException, AuthenticationException {
+    Object soapHeader = soapHeaderFactory.createSoapHeader(adWordsServiceDescriptor);
+
+    soapClientHandler.setHeader(stub, namespace, REQUEST_HEADER_LOCAL_PART, soapHeader);
+
+    soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "developerToken",
+        adWordsSession.getDeveloperToken());
+    soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "clientCustomerId",
+        adWordsSession.getClientCustomerId());
+    soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "userAgent",
+        userAgentCombiner.getUserAgent(adWordsSession.getUserAgent()));
+    soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "validateOnly",
+        adWordsSession.isValidateOnly());
+    soapClientHandler.setHeaderChild(stub, REQUEST_HEADER_LOCAL_PART, "partialFailure",
+        adWordsSession.isPartialFailure());
+
+    HeaderHandler<AdWordsSession, AdWordsServiceDescriptor> subProductHandler =
+        subProductHeaderHandlerMap.get(adWordsServiceDescriptor.getSubProduct());
+
+    subProductHandler.setHeaders(stub, adWordsSession, adWordsServiceDescriptor);
+    return soapHeader;
+  }
+
   /**
    * Sets the authentication headers.
    *
@@ -148,4 +191,57 @@ public class AdWordsAxisHeaderHandler implements
       AuthenticationException {
     authorizationHeaderHandler.setAuthorization(soapClient, adWordsSession);
   }
+
+  /**
+   * The service and session values a request header is built from, including
+   * those used by the sub product header handlers.
+   */
+  private static final class RequestHeaderKey {
+
+    private final String namespace;
+    private final AdWordsSubProduct subProduct;
+    private final String developerToken;
+    private final String clientCustomerId;
+    private final String userAgent;
+    private final Boolean validateOnly;
+    private final Boolean partialFailure;
+    private final Long expressBusinessId;
+    private final String expressPlusPageId;
+
+    RequestHeaderKey(String namespace, AdWordsSubProduct subProduct,
+        AdWordsSession adWordsSession) {
+      this.namespace = namespace;
+      this.subProduct = subProduct;
+      this.developerToken = adWordsSession.getDeveloperToken();
+      this.clientCustomerId = adWordsSession.getClientCustomerId();
+      this.userAgent = adWordsSession.getUserAgent();
+      this.validateOnly = adWordsSession.isValidateOnly();
+      this.partialFailure = adWordsSession.isPartialFailure();
+      this.expressBusinessId = adWordsSession.getExpressBusinessId();
+      this.expressPlusPageId = adWordsSession.getExpressPlusPageId();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof RequestHeaderKey)) {
+        return false;
+      }
+      RequestHeaderKey other = (RequestHeaderKey) obj;
+      return Objects.equal(namespace, other.namespace)
+          && Objects.equal(subProduct, other.subProduct)
+          && Objects.equal(developerToken, other.developerToken)
+          && Objects.equal(clientCustomerId, other.clientCustomerId)
+          && Objects.equal(userAgent, other.userAgent)
+          && Objects.equal(validateOnly, other.validateOnly)
+          && Objects.equal(partialFailure, other.partialFailure)
+          && Objects.equal(expressBusinessId, other.expressBusinessId)
+          && Objects.equal(expressPlusPageId, other.expressPlusPageId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(namespace, subProduct, developerToken, clientCustomerId, userAgent,
+          validateOnly, partialFailure, expressBusinessId, expressPlusPageId);
+    }
+  }
 }
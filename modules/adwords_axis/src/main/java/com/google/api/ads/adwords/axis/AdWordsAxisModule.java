@@ -24,6 +24,7 @@ import com.google.api.ads.common.lib.client.HeaderHandler;
 import com.google.api.ads.common.lib.soap.ProductFrameworkModule;
 import com.google.api.ads.common.lib.soap.axis.AxisModule;
 import com.google.api.ads.common.lib.soap.axis.AxisSoapHeaderFactory;
+import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.MapBinder;
 
@@ -59,7 +60,9 @@ public class AdWordsAxisModule extends ProductFrameworkModule {
     bind(new TypeLiteral<AxisSoapHeaderFactory<AdWordsServiceDescriptor>>() {}).to(
         new TypeLiteral<AdWordsAxisSoapHeaderFactory>() {});
 
-    bind(new TypeLiteral<HeaderHandler>() {}).to(new TypeLiteral<AdWordsAxisHeaderHandler>() {});
+    // A single handler, so that its prebuilt request headers are shared by all service clients.
+    bind(new TypeLiteral<HeaderHandler>() {}).to(new TypeLiteral<AdWordsAxisHeaderHandler>() {})
+        .in(Singleton.class);
     install(new AxisModule());
     install(new AdWordsModule());
     install(new AdWordsSoapModule());
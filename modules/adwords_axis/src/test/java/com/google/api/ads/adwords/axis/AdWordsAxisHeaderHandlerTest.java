@@ -21,6 +21,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -115,6 +116,8 @@ public class AdWordsAxisHeaderHandlerTest {
     MockitoAnnotations.initMocks(this);
   
     when(adWordsServiceDescriptor.getSubProduct()).thenReturn(subProduct);
+    when(adsLibConfiguration.getRequestHeaderCacheSize())
+        .thenReturn(AdsLibConfiguration.DEFAULT_REQUEST_HEADER_CACHE_SIZE);
   
     Map<AdWordsSubProduct, HeaderHandler<AdWordsSession, AdWordsServiceDescriptor>> handlerMap =
         Maps.newHashMap();
@@ -203,4 +206,30 @@ public class AdWordsAxisHeaderHandlerTest {
     }
   }
 
+  /**
+   * Tests that the request header is only built again once a session header value changes, while
+   * the authorization header is set on every call.
+   */
+  @Test
+  public void testSetHeaders_reusesRequestHeader() throws Exception {
+    when(soapClientHandler.getHeader(eq(soapClient), anyString())).thenReturn(Maps.newHashMap());
+    when(soapHeaderFactory.createSoapHeader(adWordsServiceDescriptor)).thenReturn(
+        Maps.newHashMap(), Maps.newHashMap());
+    when(userAgentCombiner.getUserAgent(anyString())).thenReturn("libSig");
+
+    headerHandler.setHeaders(soapClient, adWordsSession, adWordsServiceDescriptor);
+    headerHandler.setHeaders(soapClient, adWordsSession, adWordsServiceDescriptor);
+
+    verify(soapHeaderFactory, times(1)).createSoapHeader(adWordsServiceDescriptor);
+    verify(soapClientHandler, times(2)).setHeader(eq(soapClient), anyString(),
+        eq(AdWordsAxisHeaderHandler.REQUEST_HEADER_LOCAL_PART), any());
+    verify(authorizationHeaderHandler, times(2)).setAuthorization(soapClient, adWordsSession);
+
+    adWordsSession.setClientCustomerId("098-765-4321");
+    headerHandler.setHeaders(soapClient, adWordsSession, adWordsServiceDescriptor);
+
+    verify(soapHeaderFactory, times(2)).createSoapHeader(adWordsServiceDescriptor);
+    verify(soapClientHandler).setHeaderChild(soapClient,
+        AdWordsAxisHeaderHandler.REQUEST_HEADER_LOCAL_PART, "clientCustomerId", "098-765-4321");
+  }
 }
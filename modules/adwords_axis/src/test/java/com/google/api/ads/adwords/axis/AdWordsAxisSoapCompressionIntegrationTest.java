@@ -52,6 +52,8 @@ public class AdWordsAxisSoapCompressionIntegrationTest extends MockHttpIntegrati
   @BeforeClass
   public static void setupClass() {
     System.setProperty("api.adwords.useCompression", "true");
+    // Compresses even the small test requests.
+    System.setProperty("api.adwords.compressionThresholdBytes", "0");
   }
 
   /**
@@ -59,6 +61,19 @@ public class AdWordsAxisSoapCompressionIntegrationTest extends MockHttpIntegrati
    */
   @Test
   public void testGoldenSoap_oauth2_compressionEnabled() throws Exception {   
+    testGoldenSoap();
+  }
+
+  /**
+   * Tests making an Axis AdWords API call with compression enabled and a compressed response.
+   */
+  @Test
+  public void testGoldenSoap_oauth2_compressedResponse() throws Exception {
+    testHttpServer.setCompressResponses(true);
+    testGoldenSoap();
+  }
+
+  private void testGoldenSoap() throws Exception {
     testHttpServer.setMockResponseBody(SoapResponseXmlProvider.getTestSoapResponse(API_VERSION));
   
     GoogleCredential credential = new GoogleCredential.Builder().setTransport(
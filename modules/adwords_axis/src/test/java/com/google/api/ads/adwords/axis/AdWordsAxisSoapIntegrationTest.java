@@ -16,6 +16,8 @@ package com.google.api.ads.adwords.axis;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.api.ads.adwords.axis.factory.AdWordsServices;
@@ -28,6 +30,7 @@ import com.google.api.ads.adwords.axis.v201502.cm.BudgetOperation;
 import com.google.api.ads.adwords.axis.v201502.cm.BudgetServiceInterface;
 import com.google.api.ads.adwords.axis.v201502.cm.Money;
 import com.google.api.ads.adwords.axis.v201502.cm.Operator;
+import com.google.api.ads.adwords.lib.client.AdWordsServiceClient;
 import com.google.api.ads.adwords.lib.client.AdWordsSession;
 import com.google.api.ads.adwords.lib.soap.testing.SoapResponseXmlProvider;
 import com.google.api.ads.common.lib.auth.OfflineCredentials;
@@ -39,6 +42,8 @@ import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.common.collect.Lists;
 
+import org.apache.axis.client.Stub;
+import org.apache.axis.message.SOAPHeaderElement;
 import org.custommonkey.xmlunit.XMLAssert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -47,6 +52,7 @@ import org.junit.runners.JUnit4;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.rmi.RemoteException;
 
 /**
@@ -128,6 +134,58 @@ public class AdWordsAxisSoapIntegrationTest extends MockHttpIntegrationTest {
     assertEquals("Bearer TEST_ACCESS_TOKEN_2", testHttpServer.getLastAuthorizationHttpHeader());
   }
 
+  /**
+   * Tests that service clients for different sessions with the same header
+   * values set the same prebuilt request header.
+   */
+  @Test
+  public void testRequestHeaderSharedAcrossServiceClients() throws Exception {
+    testHttpServer.setRepeatedMockResponseBody(
+        SoapResponseXmlProvider.getTestSoapResponse(API_VERSION));
+
+    BudgetServiceInterface budgetService =
+        new AdWordsServices().get(createSession(), BudgetServiceInterface.class);
+    BudgetServiceInterface otherBudgetService =
+        new AdWordsServices().get(createSession(), BudgetServiceInterface.class);
+    BudgetOperation operation = new BudgetOperation();
+    operation.setOperand(new Budget());
+    operation.setOperator(Operator.ADD);
+    budgetService.mutate(new BudgetOperation[] {operation});
+    otherBudgetService.mutate(new BudgetOperation[] {operation});
+
+    Object requestHeader = getRequestHeader(budgetService);
+    assertNotNull(requestHeader);
+    assertSame(requestHeader, getRequestHeader(otherBudgetService));
+  }
+
+  private AdWordsSession createSession() throws Exception {
+    GoogleCredential credential = new GoogleCredential.Builder()
+        .setTransport(new NetHttpTransport()).setJsonFactory(new JacksonFactory()).build();
+    credential.setAccessToken("TEST_ACCESS_TOKEN");
+    return new AdWordsSession.Builder()
+        .withUserAgent("TEST_APP")
+        .withOAuth2Credential(credential)
+        .withEndpoint(testHttpServer.getServerUrl())
+        .withDeveloperToken("TEST_DEVELOPER_TOKEN")
+        .withClientCustomerId("TEST_CLIENT_CUSTOMER_ID")
+        .build();
+  }
+
+  /**
+   * Gets the request header set on the SOAP client of a service for its last
+   * call.
+   */
+  private static Object getRequestHeader(Object service) {
+    Stub stub = (Stub) ((AdWordsServiceClient) Proxy.getInvocationHandler(service))
+        .getSoapClient();
+    for (SOAPHeaderElement header : stub.getHeaders()) {
+      if (AdWordsAxisHeaderHandler.REQUEST_HEADER_LOCAL_PART.equals(header.getName())) {
+        return header.getObjectValue();
+      }
+    }
+    return null;
+  }
+
   /**
    * Submits a BudgetService.mutate call to the test server and asserts that the response contains
    * expected values.
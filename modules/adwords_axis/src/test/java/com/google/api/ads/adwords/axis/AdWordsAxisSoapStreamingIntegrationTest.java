@@ -0,0 +1,110 @@
+// Copyright 2015, Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.api.ads.adwords.axis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.api.ads.adwords.axis.factory.AdWordsServices;
+import com.google.api.ads.adwords.axis.v201502.cm.Budget;
+import com.google.api.ads.adwords.axis.v201502.cm.BudgetOperation;
+import com.google.api.ads.adwords.axis.v201502.cm.BudgetReturnValue;
+import com.google.api.ads.adwords.axis.v201502.cm.BudgetServiceInterface;
+import com.google.api.ads.adwords.axis.v201502.cm.Operator;
+import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.soap.testing.SoapResponseXmlProvider;
+import com.google.api.ads.common.lib.soap.streaming.PageCall;
+import com.google.api.ads.common.lib.soap.streaming.PageEntryHandler;
+import com.google.api.ads.common.lib.soap.streaming.StreamingPages;
+import com.google.api.ads.common.lib.testing.MockHttpIntegrationTest;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Tests that the entries of an AdWords Axis SOAP response can be streamed end-to-end when
+ * response streaming is enabled. This test should be run in its own JVM because it makes changes
+ * to system properties that could cause issues with other integration tests.
+ */
+@RunWith(JUnit4.class)
+public class AdWordsAxisSoapStreamingIntegrationTest extends MockHttpIntegrationTest {
+
+  private static final String API_VERSION = "v201502";
+
+  @BeforeClass
+  public static void setupClass() {
+    System.setProperty("api.adwords.useCompression", "false");
+    System.setProperty("api.adwords.soapResponseStreamingEnabled", "true");
+  }
+
+  /**
+   * Tests that the values of a BudgetService.mutate response are delivered to the handler and
+   * left out of the returned value.
+   */
+  @Test
+  public void testStreamedSoap() throws Exception {
+    testHttpServer.setMockResponseBody(SoapResponseXmlProvider.getTestSoapResponse(API_VERSION));
+
+    GoogleCredential credential = new GoogleCredential.Builder()
+        .setTransport(new NetHttpTransport()).setJsonFactory(new JacksonFactory()).build();
+    credential.setAccessToken("TEST_ACCESS_TOKEN");
+
+    AdWordsSession session = new AdWordsSession.Builder()
+        .withUserAgent("TEST_APP")
+        .withOAuth2Credential(credential)
+        .withEndpoint(testHttpServer.getServerUrl())
+        .withDeveloperToken("TEST_DEVELOPER_TOKEN")
+        .withClientCustomerId("TEST_CLIENT_CUSTOMER_ID")
+        .build();
+
+    final BudgetServiceInterface budgetService =
+        new AdWordsServices().get(session, BudgetServiceInterface.class);
+    final BudgetOperation operation = new BudgetOperation();
+    operation.setOperand(new Budget());
+    operation.setOperator(Operator.ADD);
+
+    final List<Budget> budgets = Lists.newArrayList();
+    BudgetReturnValue returnValue = StreamingPages.forEachEntry(Budget.class,
+        ImmutableSet.of("value"), new PageEntryHandler<Budget>() {
+          @Override
+          public void handleEntry(Budget budget) {
+            budgets.add(budget);
+          }
+        }, new PageCall<BudgetReturnValue, RemoteException>() {
+          @Override
+          public BudgetReturnValue call() throws RemoteException {
+            return budgetService.mutate(new BudgetOperation[] {operation});
+          }
+        });
+
+    assertEquals(1, budgets.size());
+    assertEquals("Budget ID does not match", 251877074L, budgets.get(0).getBudgetId().longValue());
+    assertEquals("Budget amount does not match", 50000000L,
+        budgets.get(0).getAmount().getMicroAmount().longValue());
+    assertNull("Streamed values should not be returned", returnValue.getValue());
+    assertEquals("BudgetReturnValue", returnValue.getListReturnValueType());
+  }
+}
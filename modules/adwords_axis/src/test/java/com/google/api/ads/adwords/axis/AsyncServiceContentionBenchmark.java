@@ -0,0 +1,143 @@
+// Copyright 2015 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.axis;
+
+import com.google.api.ads.adwords.axis.factory.AdWordsServices;
+import com.google.api.ads.adwords.axis.v201502.cm.Budget;
+import com.google.api.ads.adwords.axis.v201502.cm.BudgetOperation;
+import com.google.api.ads.adwords.axis.v201502.cm.BudgetReturnValue;
+import com.google.api.ads.adwords.axis.v201502.cm.BudgetServiceInterface;
+import com.google.api.ads.adwords.axis.v201502.cm.Operator;
+import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.soap.testing.SoapResponseXmlProvider;
+import com.google.api.ads.common.lib.client.ServiceExecutors;
+import com.google.api.ads.common.lib.testing.TestHttpServer;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of many concurrent asynchronous calls sharing one
+ * pooled service client, made against a local {@link TestHttpServer}.
+ *
+ * <p>Run with the number of calls to start at once (default 10000) and the
+ * SOAP client pool size (default 64). The calls run on a virtual thread per
+ * call where supported, as returned by
+ * {@link ServiceExecutors#newServiceCallExecutor(int)}, and then on a fixed pool
+ * of as many platform threads as pooled SOAP clients. On Java 21, run with
+ * {@code -Djdk.tracePinnedThreads=full} to report any virtual thread that
+ * blocks while pinning its carrier thread.
+ */
+public class AsyncServiceContentionBenchmark {
+
+  private static final String API_VERSION = "v201502";
+
+  /** The async twin of {@link BudgetServiceInterface}. */
+  public interface AsyncBudgetService {
+    ListenableFuture<BudgetReturnValue> mutate(BudgetOperation[] operations);
+  }
+
+  private final AdWordsSession session;
+
+  public AsyncServiceContentionBenchmark(String endpoint) {
+    GoogleCredential credential = new GoogleCredential.Builder()
+        .setTransport(new NetHttpTransport()).setJsonFactory(new JacksonFactory()).build();
+    credential.setAccessToken("TEST_ACCESS_TOKEN");
+    this.session = new AdWordsSession.Builder()
+        .withUserAgent("TEST_APP")
+        .withOAuth2Credential(credential)
+        .withEndpoint(endpoint)
+        .withDeveloperToken("TEST_DEVELOPER_TOKEN")
+        .withClientCustomerId("TEST_CLIENT_CUSTOMER_ID")
+        .build();
+  }
+
+  /**
+   * Starts {@code count} calls at once on the executor and waits for all of
+   * them to complete.
+   *
+   * @return the time it took in nanoseconds
+   */
+  private long timeCalls(ExecutorService executor, int count) throws Exception {
+    AsyncBudgetService budgetService = new AdWordsServices().getAsync(
+        session, BudgetServiceInterface.class, AsyncBudgetService.class, executor);
+    BudgetOperation operation = new BudgetOperation();
+    operation.setOperand(new Budget());
+    operation.setOperator(Operator.ADD);
+    BudgetOperation[] operations = new BudgetOperation[] {operation};
+
+    long start = System.nanoTime();
+    List<ListenableFuture<BudgetReturnValue>> results = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+      results.add(budgetService.mutate(operations));
+    }
+    for (ListenableFuture<BudgetReturnValue> result : results) {
+      result.get();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void printResult(String name, int count, long nanos) {
+    System.out.printf("  %-22s %d ms (%.0f calls per second)%n", name + ":",
+        TimeUnit.NANOSECONDS.toMillis(nanos), count * 1e9 / nanos);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int poolSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    // Read when the services are first created.
+    System.setProperty("api.adwords.useCompression", "false");
+    System.setProperty("api.adwords.soapClientPoolSize", String.valueOf(poolSize));
+    System.setProperty("api.adwords.soapHttpMaxConnectionsPerHost", String.valueOf(poolSize));
+
+    TestHttpServer testHttpServer = new TestHttpServer();
+    testHttpServer.start();
+    try {
+      testHttpServer.setRepeatedMockResponseBody(
+          SoapResponseXmlProvider.getTestSoapResponse(API_VERSION));
+      AsyncServiceContentionBenchmark benchmark =
+          new AsyncServiceContentionBenchmark(testHttpServer.getServerUrl());
+
+      ExecutorService serviceCallExecutor = ServiceExecutors.newServiceCallExecutor(poolSize);
+      ExecutorService platformThreadExecutor = Executors.newFixedThreadPool(poolSize);
+      try {
+        // Warm up class loading, the connection pool and the JIT before
+        // measuring.
+        benchmark.timeCalls(serviceCallExecutor, Math.min(count, 1000));
+        benchmark.timeCalls(platformThreadExecutor, Math.min(count, 1000));
+
+        long serviceCallNanos = benchmark.timeCalls(serviceCallExecutor, count);
+        long platformThreadNanos = benchmark.timeCalls(platformThreadExecutor, count);
+        System.out.printf("Made %d concurrent calls with %d pooled SOAP clients%n", count,
+            poolSize);
+        printResult(ServiceExecutors.isVirtualThreadSupported()
+            ? "Virtual thread per call" : "Service call executor", count, serviceCallNanos);
+        printResult(poolSize + " platform threads", count, platformThreadNanos);
+      } finally {
+        serviceCallExecutor.shutdown();
+        platformThreadExecutor.shutdown();
+      }
+    } finally {
+      testHttpServer.stop();
+    }
+  }
+}
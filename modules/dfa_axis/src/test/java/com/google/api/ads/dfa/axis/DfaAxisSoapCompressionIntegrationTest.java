@@ -49,6 +49,8 @@ public class DfaAxisSoapCompressionIntegrationTest extends MockHttpIntegrationTe
   @BeforeClass
   public static void setupClass() {
     System.setProperty("api.dfa.useCompression", "true");
+    // Compresses even the small test requests.
+    System.setProperty("api.dfa.compressionThresholdBytes", "0");
   }
   
   /**
@@ -50,6 +50,8 @@ public class DfpJaxWsSoapCompressionIntegrationTest extends MockHttpIntegrationT
   @BeforeClass
   public static void setupClass() {
     System.setProperty("api.dfp.useCompression", "true");
+    // Compresses even the small test requests.
+    System.setProperty("api.dfp.compressionThresholdBytes", "0");
   }
 
   /**
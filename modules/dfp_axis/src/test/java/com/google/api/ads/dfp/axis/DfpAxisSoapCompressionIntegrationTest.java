@@ -47,6 +47,8 @@ public class DfpAxisSoapCompressionIntegrationTest extends MockHttpIntegrationTe
   @BeforeClass
   public static void setupClass() {
     System.setProperty("api.dfp.useCompression", "true");
+    // Compresses even the small test requests.
+    System.setProperty("api.dfp.compressionThresholdBytes", "0");
   }
 
   /**